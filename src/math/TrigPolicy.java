@@ -0,0 +1,175 @@
+package math;
+
+/**
+ * Selects how the rotation math of this library evaluates its trigonometric functions, trading accuracy for speed.
+ *
+ * {@link #EXACT} defers to java.lang.Math. {@link #FAST} uses a lookup table for sine and cosine and
+ * minimax polynomials for the inverse functions, and is accurate to within {@link #FAST}.{@link #getMaxError()}
+ * radians (or units, for sin and cos) over the whole domain of each function. That is well beyond what is
+ * visible in blended animation, but is not appropriate where errors can accumulate, such as when integrating
+ * rotations over many steps.
+ *
+ * The policy in effect is global, and is read once at the start of each operation which uses it
+ * (see {@link math.floatV.Quaternionf}, {@link math.doubleV.Quaterniond} and the slerp kernels of
+ * {@link math.floatV.QuaternionBatchf} and {@link math.doubleV.QuaternionBatchd}), so switching
+ * policies from another thread never affects an operation midway.
+ */
+public abstract class TrigPolicy {
+
+	public abstract double sin(double radians);
+
+	public abstract double cos(double radians);
+
+	/**@param x clamped to [-1, 1]*/
+	public abstract double acos(double x);
+
+	/**@param x clamped to [-1, 1]*/
+	public abstract double asin(double x);
+
+	public abstract double atan2(double y, double x);
+
+	/**
+	 * @return the largest absolute error of any function of this policy, for any input.
+	 */
+	public abstract double getMaxError();
+
+	public static final TrigPolicy EXACT = new TrigPolicy() {
+		@Override
+		public double sin(double radians) {
+			return Math.sin(radians);
+		}
+
+		@Override
+		public double cos(double radians) {
+			return Math.cos(radians);
+		}
+
+		@Override
+		public double acos(double x) {
+			return Math.acos(x < -1d ? -1d : x > 1d ? 1d : x);
+		}
+
+		@Override
+		public double asin(double x) {
+			return Math.asin(x < -1d ? -1d : x > 1d ? 1d : x);
+		}
+
+		@Override
+		public double atan2(double y, double x) {
+			return Math.atan2(y, x);
+		}
+
+		@Override
+		public double getMaxError() {
+			return 0d;
+		}
+
+		@Override
+		public String toString() {
+			return "EXACT";
+		}
+	};
+
+	public static final TrigPolicy FAST = new FastTrig();
+
+	private static volatile TrigPolicy active = EXACT;
+
+	/**
+	 * @return the policy currently in effect. {@link #EXACT} unless changed.
+	 */
+	public static TrigPolicy active() {
+		return active;
+	}
+
+	public static void setActive(TrigPolicy policy) {
+		if(policy == null)
+			throw new IllegalArgumentException("policy must not be null");
+		active = policy;
+	}
+
+	/**
+	 * sin and cos by linear interpolation in a 4096 entry table over one period (max error 3e-7),
+	 * acos and asin by the 8 term polynomial of Abramowitz and Stegun 4.4.46 (max error 2.2e-8)
+	 * and atan2 by an 11th degree odd minimax polynomial for atan over [-1, 1] (max error 2e-6).
+	 */
+	private static final class FastTrig extends TrigPolicy {
+
+		private static final int TABLE_BITS = 12;
+		private static final int TABLE_SIZE = 1 << TABLE_BITS;
+		private static final int TABLE_MASK = TABLE_SIZE - 1;
+		private static final double TWO_PI = 2d * Math.PI;
+		private static final double HALF_PI = 0.5d * Math.PI;
+		private static final double TO_INDEX = TABLE_SIZE / TWO_PI;
+		/**one extra entry so that interpolation never wraps.*/
+		private static final double[] SIN = new double[TABLE_SIZE + 1];
+
+		static {
+			for(int i = 0; i <= TABLE_SIZE; i++)
+				SIN[i] = Math.sin(i * TWO_PI / TABLE_SIZE);
+		}
+
+		@Override
+		public double sin(double radians) {
+			double pos = radians * TO_INDEX;
+			double floor = Math.floor(pos);
+			double frac = pos - floor;
+			int idx = (int)((long)floor & TABLE_MASK);
+			double a = SIN[idx];
+			return a + (SIN[idx + 1] - a) * frac;
+		}
+
+		@Override
+		public double cos(double radians) {
+			return sin(radians + HALF_PI);
+		}
+
+		@Override
+		public double acos(double x) {
+			boolean negative = x < 0d;
+			double ax = negative ? -x : x;
+			if(ax >= 1d)
+				return negative ? Math.PI : 0d;
+			double poly = -0.0012624911d;
+			poly = poly * ax + 0.0066700901d;
+			poly = poly * ax - 0.0170881256d;
+			poly = poly * ax + 0.0308918810d;
+			poly = poly * ax - 0.0501743046d;
+			poly = poly * ax + 0.0889789874d;
+			poly = poly * ax - 0.2145988016d;
+			poly = poly * ax + 1.5707963050d;
+			double result = Math.sqrt(1d - ax) * poly;
+			return negative ? Math.PI - result : result;
+		}
+
+		@Override
+		public double asin(double x) {
+			return HALF_PI - acos(x);
+		}
+
+		@Override
+		public double atan2(double y, double x) {
+			double ay = y < 0d ? -y : y;
+			double ax = x < 0d ? -x : x;
+			if(ax == 0d && ay == 0d)
+				return Math.atan2(y, x);
+			boolean swap = ay > ax;
+			double z = swap ? ax / ay : ay / ax;
+			double z2 = z * z;
+			double r = z * (0.99997726d + z2 * (-0.33262347d + z2 * (0.19354346d
+					+ z2 * (-0.11643287d + z2 * (0.05265332d + z2 * -0.01172120d)))));
+			if(swap) r = HALF_PI - r;
+			if(x < 0d) r = Math.PI - r;
+			return Math.copySign(r, y);
+		}
+
+		@Override
+		public double getMaxError() {
+			return 2e-6d;
+		}
+
+		@Override
+		public String toString() {
+			return "FAST";
+		}
+	}
+}
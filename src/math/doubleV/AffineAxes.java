@@ -1,5 +1,8 @@
 package math.doubleV;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
 import math.doubleV.AbstractBasis;
 import math.doubleV.AbstractAxes.DependencyReference;
 import math.doubleV.AxisDependency;
@@ -18,9 +21,73 @@ public class AffineAxes extends AbstractAxes {
 	private sgRayd xTemp = new sgRayd(); 
 	private sgRayd yTemp = new sgRayd(); 
 	private sgRayd zTemp = new sgRayd();
+	private SGVec_3d tempHeading = new SGVec_3d();
 	
 	private int flipFlag = -1; //value of -1 means the bases do not need to flip. values of 0, 1, or 2 mean the bases 
 	//should flip along their X, Y, or Z axes respectively.  
+	
+	/**
+	 * state shared by every AffineAxes under the same root, and owned by that root. Axes move from one 
+	 * hierarchy to another as they are reparented (see {@link AffineAxes#syncHierarchy()}), so modifications 
+	 * to one hierarchy never invalidate the axes of another.
+	 */
+	static final class Hierarchy {
+		final AffineAxes root;
+		/**
+		 * source of every epoch value, so that epochs only ever increase and no two modifications anywhere 
+		 * are given the same value (see {@link AffineAxes#getModificationStamp()}).
+		 */
+		private static final AtomicLong EPOCHS = new AtomicLong(1);
+		/**
+		 * advanced whenever any axes in this hierarchy is modified, or leaves it. An axes which has been validated 
+		 * against the current epoch (and is not itself dirty) is known to be up to date without consulting its ancestors.
+		 */
+		private final AtomicLong epoch = new AtomicLong(EPOCHS.incrementAndGet());
+		private final LongAdder recomputations = new LongAdder();
+		
+		Hierarchy(AffineAxes root) {
+			this.root = root;
+		}
+		
+		long epoch() {
+			return epoch.get();
+		}
+		
+		/**
+		 * @return the new epoch.
+		 */
+		long modified() {
+			long next = EPOCHS.incrementAndGet();
+			while(true) {
+				long current = epoch.get();
+				if(current >= next) 
+					return current;
+				if(epoch.compareAndSet(current, next)) 
+					return next;
+			}
+		}
+	}
+	
+	/**not initialized in its declaration, as the super constructor may already have set it.*/
+	private Hierarchy hierarchy;
+	
+	/**incremented every time the global basis of these axes is recomputed, or their dependents otherwise need to be.*/
+	long globalVersion = 0;
+	/**the parent these axes were last composed against, and that parent's globalVersion at the time*/
+	AffineAxes composedAgainst = null;
+	long parentVersionAtUpdate = -1;
+	long validatedEpoch = 0;
+	
+	private int depth = 0;
+	private long depthEpoch = 0;
+	/**
+	 * the epoch at which these axes themselves were last modified, and the last computed {@link #getModificationStamp()} 
+	 * along with the epoch it was computed at. Not initialized in their declarations, as the super constructor 
+	 * may already have marked these axes dirty.
+	 */
+	private long modifiedEpoch;
+	private long stamp;
+	private long stampEpoch;
 
 
 	public <V extends Vec3d<?>> AffineAxes(V origin, V inX, V inY, V inZ, boolean forceOrthoNormality,
@@ -62,6 +129,17 @@ public class AffineAxes extends AbstractAxes {
 		this.forceOrthoNormality = forceOrthoNormality;
 	}
 	
+	/**
+	 * attaches the target axes to the given parent (if they aren't already attached to it), 
+	 * and sets their orthonormality constraint, in preparation for one of the *Into methods overwriting their local basis. 
+	 */
+	private static AffineAxes prepareTarget(AffineAxes target, AffineAxes parent, boolean forceOrthoNormality) {
+		if(target.getParentAxes() != parent || (parent == null) != target.areGlobal)
+			target.setParent(parent);
+		target.forceOrthoNormality = forceOrthoNormality;
+		return target;
+	}
+	
 	public <B extends AbstractBasis> B getLocalOf(B input) {
 		return (B) new AffineBasis(this.getLocalOf(input.getXRay()), this.getLocalOf(input.getYRay()), this.getLocalOf(input.getZRay()));
 	}
@@ -76,7 +154,7 @@ public class AffineAxes extends AbstractAxes {
 	 */
 	@Override
 	public AbstractAxes freeCopy() {
-		AbstractAxes freeCopy = 
+		AffineAxes freeCopy = 
 				new AffineAxes(
 						this.getLocalMBasis().translate, 
 						this.getLocalMBasis().getXHeading(), 
@@ -84,10 +162,21 @@ public class AffineAxes extends AbstractAxes {
 						this.getLocalMBasis().getZHeading(), 
 						this.forceOrthoNormality,
 						null);
-		freeCopy.getLocalMBasis().adoptValues(this.localMBasis);
-		freeCopy.markDirty();
-		freeCopy.updateGlobal();
-		return freeCopy;
+		return freeCopyInto(freeCopy);
+	}
+	
+	/**
+	 * like {@link #freeCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes freeCopyInto(AffineAxes target) {
+		prepareTarget(target, null, this.forceOrthoNormality);
+		target.getLocalMBasis().adoptValues(this.localMBasis);
+		target.markDirty();
+		target.updateGlobal();
+		return target;
 	}
 	
 	
@@ -108,6 +197,22 @@ public class AffineAxes extends AbstractAxes {
 		return copy;
 	}
 	
+	/**
+	 * like {@link #attachedCopy(boolean)}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is attached to the parent of these axes if it isn't already.
+	 * @param target
+	 * @param slipAware
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes attachedCopyInto(AffineAxes target, boolean slipAware) {
+		this.updateGlobal();
+		prepareTarget(target, this.getParentAxes(), this.forceOrthoNormality);
+		target.setSlipType(slipAware ? NORMAL : IGNORE);
+		target.getLocalMBasis().adoptValues(this.localMBasis);
+		target.markDirty();
+		return target;
+	}
+	
 	@Override
 	public AbstractAxes relativeTo(AbstractAxes in) { 
 		AffineAxes result = 
@@ -130,10 +235,22 @@ public class AffineAxes extends AbstractAxes {
 	public AffineAxes getGlobalCopy() {
 		this.updateGlobal();
 		AffineAxes globalCopy = new AffineAxes( this.getGlobalMBasis(), this.forceOrthoNormality, null);
-		globalCopy.getLocalMBasis().adoptValues(this.globalMBasis);
-		globalCopy.markDirty();
-		globalCopy.updateGlobal();
-		return globalCopy;
+		return globalCopyInto(globalCopy);
+	}
+	
+	/**
+	 * like {@link #getGlobalCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes globalCopyInto(AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, this.forceOrthoNormality);
+		target.getLocalMBasis().adoptValues(this.globalMBasis);
+		target.markDirty();
+		target.updateGlobal();
+		return target;
 	}
 
 	public AffineAxes getOrthoNormalizedGlobalCopy() {
@@ -147,15 +264,42 @@ public class AffineAxes extends AbstractAxes {
 						true,
 						null);
 		orthoNormalizedCopy.getLocalMBasis().rotation = new Rot(this.getGlobalMBasis().rotation.rotation);
-		orthoNormalizedCopy.getLocalMBasis().setShearXBaseTo(xBase.multCopy(getGlobalMBasis().flippedAxes[AffineBasis.X] ? -1 : 1), false);
-		orthoNormalizedCopy.getLocalMBasis().setShearYBaseTo(yBase.multCopy(getGlobalMBasis().flippedAxes[AffineBasis.Y] ? -1 : 1), false);
-		orthoNormalizedCopy.getLocalMBasis().setShearZBaseTo(zBase.multCopy(getGlobalMBasis().flippedAxes[AffineBasis.Z] ? -1 : 1), false);
+		orthoNormalizedCopy.getLocalMBasis().setShearXBaseTo(xBase.multCopy(getGlobalMBasis().isAxisFlipped(AffineBasis.X) ? -1 : 1), false);
+		orthoNormalizedCopy.getLocalMBasis().setShearYBaseTo(yBase.multCopy(getGlobalMBasis().isAxisFlipped(AffineBasis.Y) ? -1 : 1), false);
+		orthoNormalizedCopy.getLocalMBasis().setShearZBaseTo(zBase.multCopy(getGlobalMBasis().isAxisFlipped(AffineBasis.Z) ? -1 : 1), false);
 		orthoNormalizedCopy.getLocalMBasis().rotation = new Rot(this.getGlobalMBasis().rotation.rotation);
 		orthoNormalizedCopy.markDirty();
 		orthoNormalizedCopy.updateGlobal();
 		return orthoNormalizedCopy;
 	}
 	
+	/**
+	 * like {@link #getOrthoNormalizedGlobalCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes orthoNormalizedGlobalCopyInto(AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, true);
+		AffineBasis global = this.getGlobalMBasis();
+		AffineBasis local = target.getLocalMBasis();
+		local.adoptValues(global);
+		MRotation r = global.rotation.rotation;
+		local.rotation.rotation.set(r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3(), false);
+		SGVec_3d base = target.tempHeading;
+		base.set(xBase); if(global.isAxisFlipped(AffineBasis.X)) base.mult(-1d);
+		local.setShearXBaseTo(base, false);
+		base.set(yBase); if(global.isAxisFlipped(AffineBasis.Y)) base.mult(-1d);
+		local.setShearYBaseTo(base, false);
+		base.set(zBase); if(global.isAxisFlipped(AffineBasis.Z)) base.mult(-1d);
+		local.setShearZBaseTo(base, false);
+		local.refreshPrecomputed();
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+	
 	
 	public boolean hasNonOrthonormalAncestor() {
 		if(this.getParentAxes() == null) return false; 
@@ -309,9 +453,9 @@ public class AffineAxes extends AbstractAxes {
 		this.updateGlobal();
 		ax.updateGlobal();
 		boolean composedMatricesAreEquivalent = false; 
-		Matrix4d thisGlobal = forceOrthoNormality ? getGlobalMBasis().composedOrthoNormalMatrix : getGlobalMBasis().getComposedMatrix();
+		Matrix4d thisGlobal = forceOrthoNormality ? getGlobalMBasis().getComposedOrthoNormalMatrix() : getGlobalMBasis().getComposedMatrix();
 		if(this.getClass().isAssignableFrom(ax.getClass())) {
-			Matrix4d axGlobal = ((AffineAxes)ax).forceOrthoNormality ? ((AffineAxes)ax).getGlobalMBasis().composedOrthoNormalMatrix : ((AffineAxes)ax).getGlobalMBasis().getComposedMatrix();
+			Matrix4d axGlobal = ((AffineAxes)ax).forceOrthoNormality ? ((AffineAxes)ax).getGlobalMBasis().getComposedOrthoNormalMatrix() : ((AffineAxes)ax).getGlobalMBasis().getComposedMatrix();
 			composedMatricesAreEquivalent = thisGlobal.equals(axGlobal);
 		}		
 		boolean originsAreEquivalent = getGlobalMBasis().getOrigin().equals(ax.origin_());
@@ -341,44 +485,147 @@ public class AffineAxes extends AbstractAxes {
 		return result;
 	}
 	
+	/**
+	 * brings the global basis of these axes up to date. Staleness is detected lazily: 
+	 * these axes are recomposed only if they are dirty themselves, or if the parent's globalVersion 
+	 * differs from the one they were last composed against.
+	 */
 	public void updateGlobal() {
-		if(this.dirty || this.scaleDirty) {
-
-			if(this.areGlobal) {
-				this.globalMBasis.adoptValues(this.getLocalMBasis());
-			} else {
-				//parent.markDirty();
-				getParentAxes().updateGlobal();
-				getParentAxes().getGlobalMBasis().applyTo(this.localMBasis, this.globalMBasis);
-				/*if(this.debug) {	
-					System.out.println("Global Rotation post: \n" + getGlobalMBasis().rotation);
-				}*/
-			}
+		if(this.hierarchy != null && this.validatedEpoch == this.hierarchy.epoch() && !this.dirty && !this.scaleDirty) 
+			return;
+		boolean stale = this.dirty || this.scaleDirty;
+		if(!this.areGlobal) {
+			AffineAxes parent = getParentAxes();
+			parent.updateGlobal();
+			stale = stale || isStaleAgainst(parent);
 		}
+		//read before composing, so that a modification made while composing is not mistaken for one already seen.
+		long epoch = syncHierarchy().epoch();
+		if(stale) 
+			composeGlobal();
 		dirty = false;
+		this.validatedEpoch = epoch;
 	} 
 	
-	public void markChildScalesDirty() {
-		for(AxisDependency axes : dependentsSet) {
-			if(axes != null) {
-				if(AffineAxes.class.isAssignableFrom(axes.getClass()))
-					((AffineAxes)axes).markScaleDirty();
-			}
+	/**
+	 * forgets the parent these axes were last composed against and, if they no longer have a parent, moves them into 
+	 * a hierarchy of their own, so that they no longer keep their former hierarchy reachable (see {@link AxesPool}).
+	 */
+	void releaseFormerHierarchy() {
+		this.composedAgainst = null;
+		syncHierarchy();
+	}
+	
+	/**
+	 * @return the hierarchy these axes belong to. 
+	 */
+	Hierarchy hierarchy() {
+		Hierarchy result = this.hierarchy;
+		return result != null ? result : syncHierarchy();
+	}
+	
+	/**
+	 * moves these axes into the hierarchy of their parent (or into one of their own, if they have no parent) 
+	 * if they aren't in it already. Leaving a hierarchy counts as modifying it, so that descendants which were 
+	 * validated against the old hierarchy revalidate (and move along with these axes) the next time they are read. 
+	 * @return the hierarchy these axes now belong to.
+	 */
+	Hierarchy syncHierarchy() {
+		AffineAxes parent = getPathParent();
+		Hierarchy current = this.hierarchy;
+		Hierarchy target;
+		if(parent != null) 
+			target = parent.hierarchy();
+		else 
+			target = current != null && current.root == this ? current : new Hierarchy(this);
+		if(target != current) {
+			this.hierarchy = target;
+			this.validatedEpoch = 0;
+			this.depthEpoch = 0;
+			this.stampEpoch = 0;
+			if(current != null) 
+				current.modified();
+		}
+		return target;
+	}
+	
+	/**
+	 * @return true if these axes are dirty, or were last composed against a different parent 
+	 * or against an older version of the given parent's global basis.
+	 */
+	boolean isStaleAgainst(AffineAxes parent) {
+		return this.dirty || this.scaleDirty
+				|| this.composedAgainst != parent 
+				|| this.parentVersionAtUpdate != parent.globalVersion;
+	}
+	
+	/**
+	 * recomputes the global basis of these axes from their local basis and the global basis of their parent, 
+	 * without walking up the hierarchy. The parent's global basis is assumed to already be up to date 
+	 * (as is the case when axes are updated in parent-before-child order by a {@link SceneGraphUpdater}).
+	 */
+	void composeGlobal() {
+		if(this.areGlobal) {
+			this.globalMBasis.adoptValues(this.getLocalMBasis());
+			this.composedAgainst = null;
+		} else {
+			AffineAxes parent = getParentAxes();
+			((AffineBasis)parent.globalMBasis).applyTo(this.localMBasis, this.globalMBasis);
+			this.composedAgainst = parent;
+			this.parentVersionAtUpdate = parent.globalVersion;
+			/*if(this.debug) {	
+				System.out.println("Global Rotation post: \n" + getGlobalMBasis().rotation);
+			}*/
+		}
+		this.globalVersion++;
+		hierarchy().recomputations.increment();
+		this.dirty = false;
+		this.scaleDirty = false;
+	}
+	
+	/**
+	 * marks these axes dirty. Child AffineAxes are not marked dirty themselves, as they notice the change 
+	 * through this axes' globalVersion the next time they are read.
+	 */
+	@Override
+	public void markDirty() {
+		this.modifiedEpoch = hierarchy().modified();
+		if(localMBasis != null) 
+			getLocalMBasis().markArenaStale();
+		super.markDirty();
+	}
+	
+	/**
+	 * notifies the dependents of these axes which aren't child AffineAxes. Neither children nor the dependents 
+	 * of descendants are visited, so modifying axes costs the same however many descendants they have: children 
+	 * recompose lazily (see {@link #markDirty()}), and anything depending on a descendant can tell whether it is 
+	 * still current by comparing that descendant's {@link #getModificationStamp()} with the one it last saw.
+	 */
+	@Override
+	public void markDependentsDirty() {
+		for(AxisDependency dependent : dependentsSet) {
+			if(dependent == null) continue;
+			if(dependent instanceof AffineAxes && ((AffineAxes)dependent).getParentAxes() == this) continue;
+			dependent.markDirty();
 		}
 	}
+	
+	/**
+	 * invalidates every descendant of these axes in constant time, by advancing 
+	 * the version they were composed against.
+	 */
+	public void markChildScalesDirty() {
+		this.globalVersion++;
+		this.modifiedEpoch = hierarchy().modified();
+	}
 
 	public void markChildReflectionDirty(int flipFlag) {
-		for(AxisDependency axes : dependentsSet) {
-			if(axes != null) {
-				if(AffineAxes.class.isAssignableFrom(axes.getClass()))
-					((AffineAxes)axes).markChildScalesDirty();
-			}
-		}
+		markChildScalesDirty();
 	}
 
 	public void markScaleDirty() {
 		this.scaleDirty = true;
-		markChildScalesDirty();
+		this.modifiedEpoch = hierarchy().modified();
 	}
 
 	public void markReflectionDirty(int flipFlag) {
@@ -406,6 +653,22 @@ public class AffineAxes extends AbstractAxes {
 				null); 		
 	}	
 	
+	/**
+	 * like {@link #getLocalOf(AbstractAxes)}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param input
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes localOfInto(AffineAxes input, AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, input.forceOrthoNormality);
+		this.getGlobalMBasis().setToLocalOf(input.getGlobalMBasis(), target.getLocalMBasis());
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+	
 	
 	
 	/**
@@ -494,13 +757,13 @@ public class AffineAxes extends AbstractAxes {
 
 			if(autoFlip == 0) {
 				Rot newRot = new Rot(this.getParentAxes().getGlobalMBasis().getOrthonormalYHead(), this.getParentAxes().getGlobalMBasis().getOrthonormalZHead(), yHeading, zHeading);//new Rot(this.getGlobalMBasis().yBase, this.getGlobalMBasis().zBase, localY, localZ);/
-				this.getLocalMBasis().rotation = this.getParentAxes().getGlobalMBasis().getLocalizedRotation(newRot);//this.getParentAxes().getGlobalMBasis().rotation.applyInverseTo(newRot.applyTo(this.getParentAxes().getGlobalMBasis().rotation));
+				this.getParentAxes().getGlobalMBasis().setToLocalizedRotation(newRot, this.getLocalMBasis().rotation);//this.getParentAxes().getGlobalMBasis().rotation.applyInverseTo(newRot.applyTo(this.getParentAxes().getGlobalMBasis().rotation));
 			} else if( autoFlip == 1) {
 				Rot newRot = new Rot(this.getParentAxes().getGlobalMBasis().getOrthonormalXHead(), this.getParentAxes().getGlobalMBasis().getOrthonormalZHead(), xHeading, zHeading);
-				this.getLocalMBasis().rotation = this.getParentAxes().getGlobalMBasis().getLocalizedRotation(newRot);
+				this.getParentAxes().getGlobalMBasis().setToLocalizedRotation(newRot, this.getLocalMBasis().rotation);
 			} else{// if(autoFlip == 2){
 				Rot newRot = new Rot(this.getParentAxes().getGlobalMBasis().getOrthonormalXHead(), this.getParentAxes().getGlobalMBasis().getOrthonormalYHead(), xHeading, yHeading);
-				this.getLocalMBasis().rotation = this.getParentAxes().getGlobalMBasis().getLocalizedRotation(newRot);
+				this.getParentAxes().getGlobalMBasis().setToLocalizedRotation(newRot, this.getLocalMBasis().rotation);
 			}
 		}
 		this.getLocalMBasis().setXHeading(localX, false);
@@ -523,6 +786,21 @@ public class AffineAxes extends AbstractAxes {
 		return rawGlobalCopy;
 	}
 	
+	/**
+	 * like {@link #getRawGlobalCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes rawGlobalCopyInto(AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, false);
+		target.getLocalMBasis().adoptValues(this.globalMBasis);
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+	
 	
 	/**
 	 *TODO: implement this.
@@ -573,19 +851,22 @@ public class AffineAxes extends AbstractAxes {
 
 	public sgRayd x_norm_() {
 		this.updateGlobal();  
-		xTemp.p1().set(this.getGlobalMBasis().getOrigin()); xTemp.heading(this.getGlobalMBasis().getOrthonormalXHead());
+		this.getGlobalMBasis().setToOrthonormalXHead(tempHeading);
+		xTemp.p1().set(this.getGlobalMBasis().getOrigin()); xTemp.heading(tempHeading);
 		return xTemp;
 	}
 
 	public sgRayd y_norm_() {
 		this.updateGlobal();  
-		yTemp.p1().set(this.getGlobalMBasis().getOrigin()); yTemp.heading(this.getGlobalMBasis().getOrthonormalYHead());
+		this.getGlobalMBasis().setToOrthonormalYHead(tempHeading);
+		yTemp.p1().set(this.getGlobalMBasis().getOrigin()); yTemp.heading(tempHeading);
 		return yTemp;
 	}
 
 	public sgRayd z_norm_() {
 		this.updateGlobal();  
-		zTemp.p1().set(this.getGlobalMBasis().getOrigin()); zTemp.heading(this.getGlobalMBasis().getOrthonormalZHead());
+		this.getGlobalMBasis().setToOrthonormalZHead(tempHeading);
+		zTemp.p1().set(this.getGlobalMBasis().getOrigin()); zTemp.heading(tempHeading);
 		return zTemp;
 	}
 
@@ -795,6 +1076,160 @@ public class AffineAxes extends AbstractAxes {
 		}
 	}
 		
+	/**
+	 * binds the local basis of these axes to the given slot of a {@link TransformArena}, 
+	 * and copies the current local values into that slot. The slot is kept current as these axes change, 
+	 * see {@link AffineBasis#bindToArena(TransformArena, int)}.
+	 * @param arena
+	 * @param index
+	 */
+	public void bindToArena(TransformArena arena, int index) {
+		this.getLocalMBasis().bindToArena(arena, index);
+	}
+	
+	/**
+	 * sets the local basis of these axes to the values held in the arena slot it is bound to, 
+	 * and marks these axes dirty. 
+	 */
+	public void readFromArena() {
+		this.getLocalMBasis().readFromArena();
+		this.markDirty();
+	}
+	
+	/**
+	 * @return the number of ancestors these axes have (0 for axes without a parent). 
+	 * Cached until some axes in the same hierarchy is next modified.
+	 */
+	public int getDepth() {
+		if(hierarchy == null || depthEpoch != hierarchy.epoch()) {
+			AffineAxes parent = getPathParent();
+			int parentDepth = parent == null ? -1 : parent.getDepth();
+			long epoch = syncHierarchy().epoch();
+			depth = parentDepth + 1;
+			depthEpoch = epoch;
+		}
+		return depth;
+	}
+	
+	/**
+	 * @return the parent whose global basis these axes are composed against, or null if these axes are global.
+	 */
+	private AffineAxes getPathParent() {
+		return this.areGlobal ? null : getParentAxes();
+	}
+	
+	/**
+	 * @param a
+	 * @param b
+	 * @return the deepest axes which is an ancestor of (or the same as) both a and b, or null if they 
+	 * belong to different hierarchies.
+	 */
+	public static AffineAxes lowestCommonAncestor(AffineAxes a, AffineAxes b) {
+		int depthA = a.getDepth(), depthB = b.getDepth();
+		for(; depthA > depthB; depthA--) a = a.getPathParent();
+		for(; depthB > depthA; depthB--) b = b.getPathParent();
+		while(a != b) {
+			a = a.getPathParent();
+			b = b.getPathParent();
+		}
+		return a;
+	}
+	
+	/**
+	 * computes the affine matrix taking points in the local space of these axes to points in the local space of 
+	 * the reference axes. Only the local bases on the path between the two and their lowest common ancestor 
+	 * are composed, so neither axes' global basis is touched (or brought up to date), and nothing above 
+	 * the common ancestor contributes any rounding error. If the two belong to different hierarchies, both 
+	 * paths are composed all the way up through world space.
+	 * @param reference
+	 * @param output
+	 * @return the output matrix, for chaining.
+	 */
+	public Matrix4d setToTransformIn(AffineAxes reference, Matrix4d output) {
+		AffineAxes ancestor = lowestCommonAncestor(this, reference);
+		output.idt();
+		boolean orthogonal = reference.appendPathFrom(ancestor, output);
+		if(orthogonal) 
+			Matrix4d.invRigid(output.val, output.val);
+		else 
+			Matrix4d.invAffine(output.val, output.val);
+		appendPathFrom(ancestor, output);
+		return output;
+	}
+	
+	/**
+	 * @return the transform of these axes relative to the reference axes, see {@link #setToTransformIn(AffineAxes, Matrix4d)}.
+	 */
+	public Matrix4d getTransformIn(AffineAxes reference) {
+		return setToTransformIn(reference, new Matrix4d());
+	}
+	
+	/**
+	 * postmultiplies output by each local affine matrix from the given ancestor (exclusive) down to these axes, 
+	 * outermost first. A null ancestor appends the whole path from world space, root included. The path is walked by recursion, so that nothing needs to hold the partial products.
+	 * @return true if every local basis on the path was orthogonal (so that the product can be inverted by transposition).
+	 */
+	private boolean appendPathFrom(AffineAxes ancestor, Matrix4d output) {
+		if(this == ancestor) 
+			return true;
+		AffineAxes parent = getPathParent();
+		boolean orthogonal = parent == null || parent.appendPathFrom(ancestor, output);
+		AffineBasis local = getLocalMBasis();
+		double[] m = output.val, c = local.getComposedMatrix().val;
+		double tx = local.translate.x, ty = local.translate.y, tz = local.translate.z;
+		for(int row = 0; row < 3; row++) {
+			double a0 = m[row + Matrix4d.M00], a1 = m[row + Matrix4d.M01], a2 = m[row + Matrix4d.M02];
+			m[row + Matrix4d.M00] = a0 * c[Matrix4d.M00] + a1 * c[Matrix4d.M10] + a2 * c[Matrix4d.M20];
+			m[row + Matrix4d.M01] = a0 * c[Matrix4d.M01] + a1 * c[Matrix4d.M11] + a2 * c[Matrix4d.M21];
+			m[row + Matrix4d.M02] = a0 * c[Matrix4d.M02] + a1 * c[Matrix4d.M12] + a2 * c[Matrix4d.M22];
+			m[row + Matrix4d.M03] += a0 * tx + a1 * ty + a2 * tz;
+		}
+		return orthogonal && (local.getTransformKind() & AffineBasis.ORTHOGONAL) != 0;
+	}
+	
+	/**
+	 * @return a counter which changes every time the global basis of these axes is recomputed 
+	 * (or their dependents are otherwise invalidated). 
+	 */
+	public long getGlobalVersion() {
+		this.updateGlobal();
+		return globalVersion;
+	}
+	
+	/**
+	 * @return a value which changes whenever these axes or any of their ancestors are modified or reparented, 
+	 * and otherwise stays the same. Reading it never recomposes a global basis: after a modification, only the 
+	 * ancestors which haven't been read since are visited, to collect the stamps they were last modified at. 
+	 * Values are unique across hierarchies, so axes moved into another hierarchy never repeat a stamp they had before.
+	 */
+	public long getModificationStamp() {
+		Hierarchy current = this.hierarchy;
+		if(current == null || this.stampEpoch != current.epoch()) {
+			//read before visiting the ancestors, so that a modification made meanwhile is not mistaken for one already seen.
+			long epoch = syncHierarchy().epoch();
+			AffineAxes parent = getPathParent();
+			long parentStamp = parent == null ? 0 : parent.getModificationStamp();
+			this.stamp = Math.max(parentStamp, this.modifiedEpoch);
+			this.stampEpoch = epoch;
+		}
+		return this.stamp;
+	}
+	
+	/**
+	 * @return the number of times the global basis of any axes in the same hierarchy as these 
+	 * has been recomputed since the last call to {@link #resetRecomputationCount()}.
+	 */
+	public long getRecomputationCount() {
+		return hierarchy().recomputations.sum();
+	}
+	
+	/**
+	 * resets the recomputation count of the hierarchy these axes belong to.
+	 */
+	public void resetRecomputationCount() {
+		hierarchy().recomputations.reset();
+	}
+	
 	@Override
 	public AffineBasis getGlobalMBasis() {
 		this.updateGlobal();
@@ -40,9 +40,9 @@ public class AffineBasis extends AbstractBasis {
 
 	
 
-	public boolean[] flippedAxes;// = new boolean[3];
-	public Matrix4d reflectionMatrix;// = new Matrix4d();
-	public Matrix4d inverseReflectionMatrix;// = new Matrix4d();
+	private boolean[] flippedAxes;// = new boolean[3];
+	private Matrix4d reflectionMatrix;// = new Matrix4d();
+	private Matrix4d inverseReflectionMatrix;// = new Matrix4d();
 
 	protected int chirality = RIGHT;
 
@@ -56,7 +56,7 @@ public class AffineBasis extends AbstractBasis {
 	private Matrix4d inverseComposedMatrix;
 	private Matrix4d shearScaleMatrix; 
 	
-	public Matrix4d composedOrthoNormalMatrix;
+	private Matrix4d composedOrthoNormalMatrix;
 	private Matrix4d inverseComposedOrthoNormalMatrix;
 
 
@@ -67,6 +67,50 @@ public class AffineBasis extends AbstractBasis {
 	
 	double [] arrVec1 = new double[4];
 	double [] arrVec2 = new double[4];
+	
+	private TransformArena arena = null;
+	private int arenaIndex = -1;
+	
+	/**
+	 * scratch vectors, so that per-frame operations don't need to allocate. 
+	 * (created in init(), since init() may run before field initializers do).
+	 */
+	private SGVec_3d workingV1; 
+	private SGVec_3d workingV2;
+	private Rot localizedRotation;
+	
+	/**
+	 * bitmask of the derived values which are out of date with respect to this basis' 
+	 * rotation and shearScaleMatrix. refreshPrecomputed() only sets these bits, and each 
+	 * derived value is recomputed the first time it is read after its bit was set. 
+	 */
+	private int dirtyArtifacts; 
+	private static final int DIRTY_COMPOSED = 1, DIRTY_CHIRALITY = 2, DIRTY_ORTHONORMAL = 4, DIRTY_HEADINGS = 8, DIRTY_RAYS = 16; 
+	private static final int DIRTY_ALL = DIRTY_COMPOSED | DIRTY_CHIRALITY | DIRTY_ORTHONORMAL | DIRTY_HEADINGS | DIRTY_RAYS;
+	private long recomputations;
+	private long skippedRecomputations;
+	
+	/**
+	 * bitmask classifying the linear (rotation, scale, shear, reflection) portion of this basis,
+	 * see {@link #getTransformKind()}. Updated by refreshPrecomputed().
+	 */
+	private int transformKind;
+	
+	/**the linear portion of the basis is the identity. The basis can at most translate.*/
+	public static final int TRANSLATION = 1; 
+	/**the basis can only rotate and translate (its shearScaleMatrix is the identity).*/
+	public static final int RIGID = 2; 
+	/**the basis can rotate, reflect and translate, but does not scale or shear.*/
+	public static final int ORTHOGONAL = 4;
+	/**the basis preserves angles. It may rotate, reflect, translate and scale uniformly.*/
+	public static final int CONGRUENT = 8;
+	/**always set, any basis is affine.*/
+	public static final int AFFINE = 16;
+	/**the basis is mirrored (its shearScaleMatrix has a negative determinant).*/
+	public static final int NEGATIVE_DETERMINANT = 32;
+	
+	/**how far from exact a shearScaleMatrix or rotation may be and still be treated as belonging to a more specific kind.*/
+	private static final double KIND_TOLERANCE = 1e-12;
 
 
 
@@ -194,6 +238,11 @@ public class AffineBasis extends AbstractBasis {
 		orthoNormalInversesDirty = true;
 		composedOrthoNormalMatrix = new Matrix4d();
 		inverseComposedOrthoNormalMatrix = new Matrix4d();
+		workingV1 = new SGVec_3d(); 
+		workingV2 = new SGVec_3d();
+		localizedRotation = new Rot();
+		dirtyArtifacts = DIRTY_ALL;
+		transformKind = AFFINE;
 		this.initialized = true;
 	}
 
@@ -205,12 +254,7 @@ public class AffineBasis extends AbstractBasis {
 		AffineBasis in = (AffineBasis) inputBasis;
 		super.adoptValues(in);
 		this.shearScaleMatrix.set(in.getShearScaleMatrix());
-		this.composedMatrix.set(in.getComposedMatrix());
-		this.reflectionMatrix.set(in.reflectionMatrix);
 		scale.set(in.scale);
-		this.flippedAxes[X] = in.flippedAxes[X];
-		this.flippedAxes[Y] = in.flippedAxes[Y];
-		this.flippedAxes[Z] = in.flippedAxes[Z];
 
 		this.reflectionInversesDirty = true;
 		this.composedInversesDirty = true;
@@ -219,6 +263,7 @@ public class AffineBasis extends AbstractBasis {
 	}
 
 	public void orthoNormalize() {
+		ensureChirality();
 		if(flippedAxes[X]) shearScaleMatrix.setColumn(X, -xBase.x, -xBase.y, -xBase.z, 0);
 		else shearScaleMatrix.setColumn(X, xBase.x, xBase.y, xBase.z, 0);
 		if(flippedAxes[Y]) shearScaleMatrix.setColumn(Y, -yBase.x, -yBase.y, -yBase.z, 0);
@@ -245,17 +290,24 @@ public class AffineBasis extends AbstractBasis {
 
 	@Override
 	public <B extends AbstractBasis> void setToLocalOf(B global_input, B local_output) {
+		
+		if((transformKind & RIGID) != 0) {
+			//this basis has no scale, shear or reflection to remove, so only the rotation and translation change.
+			this.rotation.applyInverseTo(global_input.rotation, local_output.rotation);
+			((AffineBasis)local_output).shearScaleMatrix.set(((AffineBasis)global_input).shearScaleMatrix);
+			this.setToLocalOf(global_input.translate, local_output.translate);
+			local_output.refreshPrecomputed();
+			return;
+		}
 
 		this.rotation.applyInverseTo(global_input.rotation, local_output.rotation); 
-		((AffineBasis)local_output).composedMatrix.setToMulOf(this.getInverseComposedMatrix(), ((AffineBasis)global_input).composedMatrix);
+		((AffineBasis)local_output).composedMatrix.setToAffineMulOf(this.getInverseComposedMatrix(), ((AffineBasis)global_input).getComposedMatrix());
 		this.setToChiralityModifiedRotationOf(local_output.rotation, local_output.rotation);
 		//local_output.rotation.set(currentRot);
 		//Rot postModRot = this.rotation.applyTo(currentRot);
 
 		((AffineBasis)local_output).composedMatrix.getColumn(X, arrVec1);		
 		local_output.rotation.rotation.applyInverseTo(arrVec1, arrVec2);
-		SGVec_3d arrV = new SGVec_3d(); arrV.set(arrVec2);
-		//arrV.add(this.translate);
 		//SGVec_3d orthonormalVer = new SGVec_3d();  this.setToOrthoNormalLocalOf(arrV, orthonormalVer);
 		((AffineBasis)local_output).shearScaleMatrix.setColumn(X, arrVec2);	
 
@@ -268,7 +320,7 @@ public class AffineBasis extends AbstractBasis {
 		((AffineBasis)local_output).shearScaleMatrix.setColumn(Z, arrVec2);
 		//tempMatrix.mul(this.reflectionMatrix, global_input.reflectionMatrix);
 		//local_output.shearScaleMatrix.mul(local_output.shearScaleMatrix, tempMatrix);		
-		local_output.translate = this.getLocalOf(global_input.translate);
+		this.setToLocalOf(global_input.translate, local_output.translate);
 
 		local_output.refreshPrecomputed();
 	}
@@ -288,8 +340,8 @@ public class AffineBasis extends AbstractBasis {
 		this.rotation.applyInverseTo(global_input.rotation, local_output.rotation);//global_input.rotation.applyToInverseOf(this.rotation);
 		local_output.shearScaleMatrix.set(global_input.shearScaleMatrix);
 		local_output.applyInverseRotTo(this.rotation, global_input.shearScaleMatrix, local_output.shearScaleMatrix);
-		local_output.translate = this.getLocalOf(global_input.translate);
-		local_output.shearScaleMatrix.setToMulOf(local_output.shearScaleMatrix, this.reflectionMatrix);
+		this.setToLocalOf(global_input.translate, local_output.translate);
+		local_output.shearScaleMatrix.setToAffineMulOf(local_output.shearScaleMatrix, this.getReflectionMatrix());
 		local_output.refreshPrecomputed();		
 	}
 
@@ -303,11 +355,21 @@ public class AffineBasis extends AbstractBasis {
 	 * @param globalOutput
 	 */
 	@Override
-	public <B extends AbstractBasis>  void applyTo(B localInput, B globalOutput) {		
+	public <B extends AbstractBasis>  void applyTo(B localInput, B globalOutput) {	
+		//all scratch space used here belongs to globalOutput, so that 
+		//many children can safely be composed against the same parent concurrently.
+		AffineBasis globalOut = (AffineBasis)globalOutput;
 		this.applyTo(localInput.translate, globalOutput.translate);
-		tempMatrix.setToMulOf(this.shearScaleMatrix, ((AffineBasis)localInput).composedMatrix);		
-		setToChiralityModifiedRotationOf(localInput.rotation, globalOutput.rotation);
-		applyInverseRotTo(globalOutput.rotation, tempMatrix, ((AffineBasis)globalOutput).shearScaleMatrix);
+		if((transformKind & RIGID) != 0) {
+			//this basis has no scale, shear or reflection to impart, so the rotations simply compose.
+			globalOut.shearScaleMatrix.set(((AffineBasis)localInput).shearScaleMatrix);
+			this.rotation.applyTo(localInput.rotation, globalOutput.rotation);
+			globalOutput.refreshPrecomputed();
+			return;
+		}
+		globalOut.tempMatrix.setToAffineMulOf(this.shearScaleMatrix, ((AffineBasis)localInput).getComposedMatrix());		
+		setToChiralityModifiedRotationOf(localInput.rotation, globalOutput.rotation, globalOut.workingV1);
+		globalOut.applyInverseRotTo(globalOutput.rotation, globalOut.tempMatrix, globalOut.shearScaleMatrix);
 		this.rotation.applyTo(globalOutput.rotation, globalOutput.rotation);
 		globalOutput.refreshPrecomputed();
 	}
@@ -322,20 +384,62 @@ public class AffineBasis extends AbstractBasis {
 		}
  	}
 
+	/**
+	 * @return the input rotation with respect to this basis, computed into scratch storage belonging to this basis. 
+	 * The returned Rot is overwritten by the next call, so copy it (or use {@link #setToLocalizedRotation(Rot, Rot)}) 
+	 * to keep the result.
+	 */
 	@Override
 	public Rot getLocalizedRotation(Rot inRot) {	
-			SGVec_3d tempV = new SGVec_3d();
-			inRot.getAxis(tempV);
-			this.getInverseComposedOrthoNormalMatrix().transform(tempV, tempV);		
-			return new Rot(tempV, inRot.getAngle() * this.chirality);		
+			setToLocalizedRotation(inRot, localizedRotation);
+			return localizedRotation;		
+	}
+	
+	/**
+	 * like getLocalizedRotation, but writes the result into outRot. 
+	 * @param inRot
+	 * @param outRot may be the same object as inRot
+	 */
+	public void setToLocalizedRotation(Rot inRot, Rot outRot) {
+		double q0 = inRot.rotation.getQ0();
+		workingV1.x = inRot.rotation.getQ1();
+		workingV1.y = inRot.rotation.getQ2();
+		workingV1.z = inRot.rotation.getQ3();
+		this.getInverseComposedOrthoNormalMatrix().transform(workingV1, workingV1);		
+		ensureChirality();
+		setToChiralityScaled(q0, workingV1, outRot);
 	}
 	
 	private void setToChiralityModifiedRotationOf(Rot localRot, Rot outputRot) {
-		SGVec_3d tempV = new SGVec_3d();
-		localRot.getAxis(tempV);
-		this.reflectionMatrix.transform(tempV, tempV);
-		double angle = localRot.getAngle();
-		outputRot.set(tempV, angle*this.chirality);
+		setToChiralityModifiedRotationOf(localRot, outputRot, workingV1);
+	}
+	
+	/**
+	 * @param scratch vector to work in. 
+	 */
+	private void setToChiralityModifiedRotationOf(Rot localRot, Rot outputRot, SGVec_3d scratch) {
+		double q0 = localRot.rotation.getQ0();
+		scratch.x = localRot.rotation.getQ1();
+		scratch.y = localRot.rotation.getQ2();
+		scratch.z = localRot.rotation.getQ3();
+		this.getReflectionMatrix().transform(scratch, scratch);
+		setToChiralityScaled(q0, scratch, outputRot);
+	}
+	
+	/**
+	 * sets outputRot to the rotation with the given scalar part and (already transformed) vector part, 
+	 * its angle multiplied by this basis' chirality. 
+	 * 
+	 * Transforming a rotation's axis by an orthonormal matrix is the same as transforming the vector part of its quaternion, 
+	 * and negating its angle is the same as negating that vector part. So this is equivalent to 
+	 * outputRot.set(transformedAxis, angle * chirality), without the trigonometry of 
+	 * extracting an axis and angle and converting them back.
+	 */
+	private void setToChiralityScaled(double q0, SGVec_3d transformedVector, Rot outputRot) {
+		outputRot.rotation.set(q0,
+				this.chirality * transformedVector.x,
+				this.chirality * transformedVector.y,
+				this.chirality * transformedVector.z, false);
 	}
 
 
@@ -372,7 +476,7 @@ public class AffineBasis extends AbstractBasis {
 	 */
 	public Vec3d<?> getOrthonormalXHead() {
 		//setToShearXBase(workingVector);
-		if(!flippedAxes[X])  
+		if(!isAxisFlipped(X))  
 			return this.rotation.applyToCopy(xBase);
 		else 
 			return this.rotation.applyToCopy(SGVec_3d.mult(xBase, -1d));
@@ -383,7 +487,7 @@ public class AffineBasis extends AbstractBasis {
 	 * guaranteed to be orthonormal but not necessarily right-handed.
 	 */
 	public Vec3d<?> getOrthonormalYHead() {
-		if(!flippedAxes[Y])  
+		if(!isAxisFlipped(Y))  
 			return this.rotation.applyToCopy(yBase);
 		else 
 			return this.rotation.applyToCopy(SGVec_3d.mult(yBase, -1d));
@@ -395,11 +499,71 @@ public class AffineBasis extends AbstractBasis {
 	 */
 	public Vec3d<?> getOrthonormalZHead() {
 
-		if(!flippedAxes[Z])  
+		if(!isAxisFlipped(Z))  
 			return this.rotation.applyToCopy(zBase);
 		else 
 			return this.rotation.applyToCopy(SGVec_3d.mult(zBase, -1d));
 	}
+	
+	/**
+	 * sets output to the x-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public <V extends Vec3d<?>> void setToRotationalXHead(V output) {
+		this.rotation.applyTo(xBase, output);
+	}
+
+	/**
+	 * sets output to the y-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public <V extends Vec3d<?>> void setToRotationalYHead(V output) {
+		this.rotation.applyTo(yBase, output);
+	}
+
+	/**
+	 * sets output to the z-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public <V extends Vec3d<?>> void setToRotationalZHead(V output) {
+		this.rotation.applyTo(zBase, output);
+	}
+
+	/**
+	 * sets output to the x-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public <V extends Vec3d<?>> void setToOrthonormalXHead(V output) {
+		ensureChirality();
+		output.setX_(flippedAxes[X] ? -xBase.x : xBase.x); 
+		output.setY_(flippedAxes[X] ? -xBase.y : xBase.y); 
+		output.setZ_(flippedAxes[X] ? -xBase.z : xBase.z);
+		this.rotation.applyTo(output, output);
+	}
+
+	/**
+	 * sets output to the y-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public <V extends Vec3d<?>> void setToOrthonormalYHead(V output) {
+		ensureChirality();
+		output.setX_(flippedAxes[Y] ? -yBase.x : yBase.x); 
+		output.setY_(flippedAxes[Y] ? -yBase.y : yBase.y); 
+		output.setZ_(flippedAxes[Y] ? -yBase.z : yBase.z);
+		this.rotation.applyTo(output, output);
+	}
+
+	/**
+	 * sets output to the z-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public <V extends Vec3d<?>> void setToOrthonormalZHead(V output) {
+		ensureChirality();
+		output.setX_(flippedAxes[Z] ? -zBase.x : zBase.x); 
+		output.setY_(flippedAxes[Z] ? -zBase.y : zBase.y); 
+		output.setZ_(flippedAxes[Z] ? -zBase.z : zBase.z);
+		this.rotation.applyTo(output, output);
+	}
 
 	//FIXME: Or, at least make sure I work. 
 
@@ -410,29 +574,31 @@ public class AffineBasis extends AbstractBasis {
 	 */
 	public <V extends Vec3d<?>> void setToOrthoNormalGlobalOf(V input, V output) {	
 		if(input != null) {
-			//V tempV = output == input ? (V) input.copy() : output;
-			V tempV = (V) input.copy();
-			reflectionMatrix.transform(tempV, tempV);
-			this.rotation.applyTo(tempV, tempV);
-			output.setX_(tempV.x+translate.x); 
-			output.setY_(tempV.y+translate.y); 
-			output.setZ_(tempV.z+translate.z);  		
+			getReflectionMatrix().transform(input, output);
+			this.rotation.applyTo(output, output);
+			output.setX_(output.x+translate.x); 
+			output.setY_(output.y+translate.y); 
+			output.setZ_(output.z+translate.z);  		
 		}
 	}
 
 	public void setToOrientationalGlobalOf(SGVec_3d input, SGVec_3d output) {	
-		SGVec_3d tempV = new SGVec_3d();
-		this.rotation.applyTo(input, tempV);
-		output.setX_(tempV.x+translate.x); 
-		output.setY_(tempV.y+translate.y); 
-		output.setZ_(tempV.z+translate.z);  		
+		this.rotation.applyTo(input, output);
+		output.setX_(output.x+translate.x); 
+		output.setY_(output.y+translate.y); 
+		output.setZ_(output.z+translate.z);  		
 	}
 
 	public <V extends Vec3d<?>> void applyTo(V input, V output) {
-		V tempV = (V) input.copy();
-		this.composedMatrix.transform(tempV, tempV);		
-		output.set(tempV);
-		output.add(this.translate); 	
+		if((transformKind & TRANSLATION) != 0) {
+			output.setX_(input.x); output.setY_(input.y); output.setZ_(input.z);
+		} else if((transformKind & RIGID) != 0) 
+			this.rotation.applyTo(input, output);
+		else 
+			this.getComposedMatrix().transform(input, output);		
+		output.setX_(output.x+translate.x); 
+		output.setY_(output.y+translate.y); 
+		output.setZ_(output.z+translate.z); 	
 	}
 
 
@@ -448,14 +614,70 @@ public class AffineBasis extends AbstractBasis {
 	
 	
 	public <V extends Vec3d<?>> void setToLocalOf(V input, V output) {
-		V tempV = (V) input.copy();
-		tempV.set(input);
-		tempV.x -= translate.x; tempV.y -= translate.y; tempV.z -= translate.z; 		
+		double x = input.x - translate.x; 
+		double y = input.y - translate.y; 
+		double z = input.z - translate.z; 		
+		if((transformKind & (TRANSLATION | RIGID)) != 0) {
+			output.setX_(x); output.setY_(y); output.setZ_(z);
+			if((transformKind & TRANSLATION) == 0) 
+				this.rotation.applyInverseTo(output, output);
+			return;
+		}
+		double[] inv = this.getInverseComposedMatrix().val;
+		output.setX_(x * inv[M00] + y * inv[M01] + z * inv[M02]); 
+		output.setY_(x * inv[M10] + y * inv[M11] + z * inv[M12]); 
+		output.setZ_(x * inv[M20] + y * inv[M21] + z * inv[M22]);
+	}
 
-		this.getInverseComposedMatrix().transform(tempV, tempV);
-		output.setX_(tempV.x); 
-		output.setY_(tempV.y); 
-		output.setZ_(tempV.z);
+	/**
+	 * transforms a packed run of vectors from this basis' local space into global space, in place. 
+	 * The result is the same as calling {@link #applyTo(Vec3d, Vec3d)} on each vector.
+	 * @param vecs array holding the x, y, and z components of each vector
+	 * @param offset index of the x component of the first vector
+	 * @param numVecs number of vectors to transform
+	 * @param stride number of doubles between the starts of subsequent vectors. Must be >= 3.
+	 */
+	public void applyTo(double[] vecs, int offset, int numVecs, int stride) {
+		transform3x3(this.getComposedMatrix().val, translate.x, translate.y, translate.z, vecs, offset, numVecs, stride);
+	}
+	
+	/**
+	 * like {@link #setToOrthoNormalGlobalOf(Vec3d, Vec3d)}, but for a packed run of vectors, in place.
+	 * @see #applyTo(double[], int, int, int) 
+	 */
+	public void setToOrthoNormalGlobalOf(double[] vecs, int offset, int numVecs, int stride) {
+		transform3x3(this.getComposedOrthoNormalMatrix().val, translate.x, translate.y, translate.z, vecs, offset, numVecs, stride);
+	}
+	
+	/**
+	 * transforms a packed run of vectors from global space into this basis' local space, in place.
+	 * The result is the same as calling {@link #setToLocalOf(Vec3d, Vec3d)} on each vector.
+	 * @see #applyTo(double[], int, int, int) 
+	 */
+	public void setToLocalOf(double[] vecs, int offset, int numVecs, int stride) {
+		double[] m = this.getInverseComposedMatrix().val;
+		double m00 = m[M00], m01 = m[M01], m02 = m[M02];
+		double m10 = m[M10], m11 = m[M11], m12 = m[M12];
+		double m20 = m[M20], m21 = m[M21], m22 = m[M22];
+		double tx = translate.x, ty = translate.y, tz = translate.z;
+		for(int i = 0, v = offset; i < numVecs; i++, v += stride) {
+			double x = vecs[v] - tx, y = vecs[v+1] - ty, z = vecs[v+2] - tz;
+			vecs[v] = x * m00 + y * m01 + z * m02;
+			vecs[v+1] = x * m10 + y * m11 + z * m12;
+			vecs[v+2] = x * m20 + y * m21 + z * m22;
+		}
+	}
+	
+	private static void transform3x3(double[] m, double tx, double ty, double tz, double[] vecs, int offset, int numVecs, int stride) {
+		double m00 = m[M00], m01 = m[M01], m02 = m[M02];
+		double m10 = m[M10], m11 = m[M11], m12 = m[M12];
+		double m20 = m[M20], m21 = m[M21], m22 = m[M22];
+		for(int i = 0, v = offset; i < numVecs; i++, v += stride) {
+			double x = vecs[v], y = vecs[v+1], z = vecs[v+2];
+			vecs[v] = x * m00 + y * m01 + z * m02 + tx;
+			vecs[v+1] = x * m10 + y * m11 + z * m12 + ty;
+			vecs[v+2] = x * m20 + y * m21 + z * m22 + tz;
+		}
 	}
 
 	public <V extends Vec3d<?>> V getLocalOf(V global_input) {
@@ -468,7 +690,7 @@ public class AffineBasis extends AbstractBasis {
 		this.rotation.applyInverseTo(global_input.rotation, local_output.rotation);
 		local_output.shearScaleMatrix.set(global_input.shearScaleMatrix);
 		local_output.applyInverseRotTo(this.rotation, local_output.shearScaleMatrix, local_output.composedMatrix);
-		local_output.translate = this.getLocalOf(global_input.translate);
+		this.setToLocalOf(global_input.translate, local_output.translate);
 		local_output.refreshPrecomputed();		
 	}
 
@@ -479,10 +701,11 @@ public class AffineBasis extends AbstractBasis {
 	 * @param output
 	 */
 	public <V extends Vec3d<?>> void setToOrientationalLocalOf(V input, V output) {
-		V tempV = output == input ? (V) input.copy() : output;
-		tempV.set(input).sub(this.translate);
-		this.rotation.applyInverseTo(tempV, tempV);
-		output.set(tempV);
+		double x = input.x - translate.x; 
+		double y = input.y - translate.y; 
+		double z = input.z - translate.z; 
+		output.setX_(x); output.setY_(y); output.setZ_(z);
+		this.rotation.applyInverseTo(output, output);
 	}
 
 	/*public void setToOrthoNormalLocalOf(SGVec_3d input, SGVec_3d output) {		
@@ -494,11 +717,8 @@ public class AffineBasis extends AbstractBasis {
 	}*/
 
 	public <V extends Vec3d<?>> void setToOrthoNormalLocalOf(V input, V output) {		
-		V tempV = output == input ? (V) input.copy() : output;
-		tempV.set(input); 
-		this.setToOrientationalLocalOf(tempV, tempV);		
-		this.getInverseReflectionMatrix().transform(tempV, tempV);
-		output.set(tempV);
+		this.setToOrientationalLocalOf(input, output);		
+		this.getInverseReflectionMatrix().transform(output, output);
 	}
 
 
@@ -525,7 +745,7 @@ public class AffineBasis extends AbstractBasis {
 		String xMag =String.format("%." + 4 + "f", xh.mag() ); 	
 		String yMag =String.format("%." + 4 + "f", yh.mag() ); 
 		String zMag =String.format("%." + 4 + "f", zh.mag() ); 
-		//this.chirality = this.composedMatrix. ? RIGHT : LEFT;
+		ensureChirality();
 		String chirality = this.chirality == LEFT ? "LEFT" : "RIGHT";
 		String result = "-----------\n"  
 				+chirality + " handed \n"
@@ -540,7 +760,7 @@ public class AffineBasis extends AbstractBasis {
 	}	
 
 	public void scaleXTo(double scale) {
-		SGVec_3d shearX = new SGVec_3d(); 
+		SGVec_3d shearX = workingV2; 
 		this.setToShearXBase(shearX); 
 		shearX.normalize();
 		this.setShearXBaseTo(shearX, true);
@@ -548,7 +768,7 @@ public class AffineBasis extends AbstractBasis {
 	}
 
 	public void scaleYTo(double scale) {
-		SGVec_3d shearY = new SGVec_3d(); 
+		SGVec_3d shearY = workingV2; 
 		this.setToShearYBase(shearY); 
 		shearY.normalize();
 		this.setShearYBaseTo(shearY, true);
@@ -556,7 +776,7 @@ public class AffineBasis extends AbstractBasis {
 	}
 
 	public void scaleZTo(double scale) {
-		SGVec_3d shearZ = new SGVec_3d(); 
+		SGVec_3d shearZ = workingV2; 
 		this.setToShearZBase(shearZ); 
 		shearZ.normalize();
 		this.setShearZBaseTo(shearZ, true);
@@ -564,56 +784,57 @@ public class AffineBasis extends AbstractBasis {
 	}
 
 	public void scaleXBy(double scale) {
-		SGVec_3d shearX = new SGVec_3d(); 
+		SGVec_3d shearX = workingV2; 
 		setToShearXBase(shearX); 
 		double clampedScale = clamp(shearX.mag()*scale);
 		shearX.normalize();
 		shearX.mult(clampedScale);
 		this.setShearXBaseTo(shearX, true);
-		this.updateHeadings();
 
 	}
 
 	public void scaleYBy(double scale) {
-		SGVec_3d shearY = new SGVec_3d(); 
+		SGVec_3d shearY = workingV2; 
 		setToShearYBase(shearY); 
 		double clampedScale = clamp(shearY.mag()*scale);
 		shearY.normalize();
 		shearY.mult(clampedScale);
 		this.setShearYBaseTo(shearY, true);
-		this.updateHeadings();
 	}
 
 	public void scaleZBy(double scale) {
-		SGVec_3d shearZ = new SGVec_3d(); 
+		SGVec_3d shearZ = workingV2; 
 		setToShearZBase(shearZ); 
 		double clampedScale = clamp(shearZ.mag()*scale);
 		shearZ.normalize();
 		shearZ.mult(clampedScale);
 		this.setShearZBaseTo(shearZ, true);
-		this.updateHeadings();
 	}
 
 
 	public Vec3d<?> getXHeading() {
-		this.setToComposedXBase(scaledXHeading);
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
 		return scaledXHeading;
 	}
 
 	public Vec3d<?> getYHeading() {
-		this.setToComposedYBase(scaledYHeading);
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
 		return scaledYHeading;
 	}
 
 	public Vec3d<?> getZHeading() {
-		this.setToComposedZBase(scaledZHeading);
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
 		return scaledZHeading;
 	}
 
 	public <V extends Vec3d<?>> void setXHeading(V newXHeading, boolean refreshMatrices) {
 		double xHeadingMag = newXHeading.mag();
 		xHeadingMag = clamp(xHeadingMag); 
-		V modifiedXHeading = (V) newXHeading.copy();
+		SGVec_3d modifiedXHeading = workingV2; 
+		modifiedXHeading.set(newXHeading);
 		modifiedXHeading.normalize(); modifiedXHeading.mult(xHeadingMag);
 		rotation.applyInverseTo(modifiedXHeading, modifiedXHeading);
 		this.setShearXBaseTo(modifiedXHeading, refreshMatrices);
@@ -622,7 +843,8 @@ public class AffineBasis extends AbstractBasis {
 	public <V extends Vec3d<?>> void setYHeading(V newYHeading, boolean refreshMatrices) {
 		double yHeadingMag = newYHeading.mag();
 		yHeadingMag = clamp(yHeadingMag); 
-		V modifiedYHeading = (V) newYHeading.copy();
+		SGVec_3d modifiedYHeading = workingV2; 
+		modifiedYHeading.set(newYHeading);
 		modifiedYHeading.normalize(); modifiedYHeading.mult(yHeadingMag);
 		rotation.applyInverseTo(modifiedYHeading, modifiedYHeading);	 		
 		this.setShearYBaseTo(modifiedYHeading, refreshMatrices);
@@ -631,7 +853,8 @@ public class AffineBasis extends AbstractBasis {
 	public <V extends Vec3d<?>> void setZHeading(V newZHeading, boolean refreshMatrices) {
 		double zHeadingMag = newZHeading.mag();
 		zHeadingMag = clamp(zHeadingMag); 
-		V modifiedZHeading = (V) newZHeading.copy();
+		SGVec_3d modifiedZHeading = workingV2; 
+		modifiedZHeading.set(newZHeading);
 		modifiedZHeading.normalize(); modifiedZHeading.mult(zHeadingMag);
 		rotation.applyInverseTo(modifiedZHeading, modifiedZHeading);	 		
 		this.setShearZBaseTo(modifiedZHeading, refreshMatrices);
@@ -707,6 +930,7 @@ public class AffineBasis extends AbstractBasis {
 	 * of this matrix's xbasis 
 	 */
 	public void setToComposedXBase(Vec3d<?> vec){
+		ensureComposed();
 		vec.setX_(composedMatrix.val[M00]);
 		vec.setY_(composedMatrix.val[M10]); 
 		vec.setZ_(composedMatrix.val[M20]);
@@ -716,6 +940,7 @@ public class AffineBasis extends AbstractBasis {
 	 * of this matrix's pre-rotation ybasis 
 	 */
 	public void setToComposedYBase(Vec3d<?> vec){
+		ensureComposed();
 		vec.setX_(composedMatrix.val[M01]); 
 		vec.setY_(composedMatrix.val[M11]); 
 		vec.setZ_(composedMatrix.val[M21]);
@@ -725,6 +950,7 @@ public class AffineBasis extends AbstractBasis {
 	 * of this matrix's pre-rotation zbasis 
 	 */
 	public void setToComposedZBase(Vec3d<?> vec){
+		ensureComposed();
 		vec.setX_(composedMatrix.val[M02]); 
 		vec.setY_(composedMatrix.val[M12]); 
 		vec.setZ_(composedMatrix.val[M22]);
@@ -796,6 +1022,7 @@ public class AffineBasis extends AbstractBasis {
 
 
 	public void updateHeadings() {
+		ensureComposed();
 		scaledXHeading.x = composedMatrix.val[M00];
 		scaledXHeading.y = composedMatrix.val[M10];
 		scaledXHeading.z = composedMatrix.val[M20];
@@ -819,32 +1046,90 @@ public class AffineBasis extends AbstractBasis {
 	setToShearZBase(workingVector);
 	if(zBase.dot(workingVector) < 0) flippedAxes[Z] = true;
 	else flippedAxes[Z] = false;*/
-
+		dirtyArtifacts &= ~DIRTY_HEADINGS;
+		recomputations++;
 	}
 	
+	/**
+	 * flags every value derived from this basis' rotation and shearScaleMatrix as out of date. 
+	 * Other than the inverse rotation, nothing is recomputed here; each derived value 
+	 * (composed matrix, chirality and reflection, orthonormal matrix, headings, rays) 
+	 * is recomputed the first time it is read afterward.
+	 */
 	public void refreshPrecomputed() {
 		//this.shearScaleTransform.set(shearScaleMatrix);
 		if(!this.initialized) this.init();
-		applyRotTo(this.rotation, this.shearScaleMatrix, this.composedMatrix);
-		//this.composedTransform.set(composedMatrix);
-		//int oldDeterminant = this.chirality;
-		
-				
-		if(this.composedMatrix.determinant() > 0)
-			this.chirality = RIGHT; 
-		else 
-			this.chirality = LEFT;
-		this.updateHeadings();
+		skippedRecomputations += Integer.bitCount(dirtyArtifacts);
+		dirtyArtifacts = DIRTY_ALL;
 		this.rotation.setToReversion(inverseRotation);
-		this.updateRays();
-		//if(oldDeterminant != this.chirality)
-		this.updateChirality();
-		applyRotTo(this.rotation, this.reflectionMatrix, this.composedOrthoNormalMatrix);
-		//this.composedOrthonormalTransform.set(composedOrthoNormalMatrix);
+		updateTransformKind();
 		orthoNormalInversesDirty = true;
 		composedInversesDirty = true;
 		reflectionInversesDirty = true;
-		
+		markArenaStale();
+	}
+	
+	/**
+	 * computes any derived values which are currently out of date. Call this before 
+	 * sharing a basis between threads which will only read from it. 
+	 */
+	public void ensurePrecomputed() {
+		ensureOrthoNormal();
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+	}
+	
+	private void ensureComposed() {
+		if((dirtyArtifacts & DIRTY_COMPOSED) != 0) {
+			applyRotTo(this.rotation, this.shearScaleMatrix, this.composedMatrix);
+			dirtyArtifacts &= ~DIRTY_COMPOSED;
+			recomputations++;
+		}
+	}
+	
+	private void ensureChirality() {
+		if((dirtyArtifacts & DIRTY_CHIRALITY) != 0) {
+			ensureComposed();
+			if(this.composedMatrix.determinant() > 0)
+				this.chirality = RIGHT; 
+			else 
+				this.chirality = LEFT;
+			this.updateChirality();
+			dirtyArtifacts &= ~DIRTY_CHIRALITY;
+			recomputations++;
+		}
+	}
+	
+	private void ensureOrthoNormal() {
+		if((dirtyArtifacts & DIRTY_ORTHONORMAL) != 0) {
+			ensureChirality();
+			applyRotTo(this.rotation, this.reflectionMatrix, this.composedOrthoNormalMatrix);
+			dirtyArtifacts &= ~DIRTY_ORTHONORMAL;
+			recomputations++;
+		}
+	}
+	
+	/**
+	 * @return the number of derived values (composed matrix, chirality, orthonormal matrix, headings, rays) 
+	 * this basis has computed since its counters were last reset.
+	 */
+	public long getRecomputationCount() {
+		return recomputations;
+	}
+	
+	/**
+	 * @return the number of derived values which were invalidated again before anything read them 
+	 * (and so were never computed) since this basis' counters were last reset.
+	 */
+	public long getSkippedRecomputationCount() {
+		return skippedRecomputations;
+	}
+	
+	public void resetRecomputationCounters() {
+		recomputations = 0; 
+		skippedRecomputations = 0;
 	}
 
 	public void applyRotTo(Rot rotation, Matrix4d inputMatrix, Matrix4d outputMatrix) {		
@@ -898,36 +1183,24 @@ public class AffineBasis extends AbstractBasis {
 	}
 
 	public void setFlipArrayForMatrix(Matrix4d forMatrix, boolean[] flipArray, Rot rotation) {
-		SGVec_3d tempV = new SGVec_3d();
-		double[] vecArr = new double[4]; 
-		forMatrix.getColumn(Z, vecArr); 
-		tempV.x = vecArr[X]; tempV.y = vecArr[Y]; tempV.z =  vecArr[Z];
-		forMatrix.getColumn(Y, vecArr); 
-		tempV.x = vecArr[X]; tempV.y = vecArr[Y]; tempV.z =  vecArr[Z];
-		SGVec_3d tempVec = new SGVec_3d(); 
+		double[] m = forMatrix.val;
+		SGVec_3d tempVec = workingV1; 
 		rotation.applyTo(xBase, tempVec);		
-		forMatrix.getColumn(X, vecArr); 
-		tempV.x = vecArr[X]; tempV.y = vecArr[Y]; tempV.z =  vecArr[Z];		
-
-		double dot = tempVec.dot(tempV);
+		double dot = tempVec.x*m[M00] + tempVec.y*m[M10] + tempVec.z*m[M20];
 		if( dot < 0) {		
 			flipArray[X] = true;
 		} else {
 			flipArray[X] = false;
 		}
 
-		forMatrix.getColumn(Y, vecArr); 
-		tempV.x = vecArr[X]; tempV.y = vecArr[Y]; tempV.z =  vecArr[Z];
 		rotation.applyTo(yBase, tempVec);
-		if(tempVec.dot(tempV) < 0) {
+		if(tempVec.x*m[M01] + tempVec.y*m[M11] + tempVec.z*m[M21] < 0) {
 			flipArray[Y] = true;
 		}
 		else flipArray[Y] = false;
 
-		forMatrix.getColumn(Z, vecArr); 
-		tempV.x = vecArr[X]; tempV.y = vecArr[Y]; tempV.z =  vecArr[Z];
 		rotation.applyTo(zBase, tempVec);
-		if(tempVec.dot(tempV) < 0) {
+		if(tempVec.x*m[M02] + tempVec.y*m[M12] + tempVec.z*m[M22] < 0) {
 			flipArray[Z] = true;
 		}
 		else flipArray[Z] = false;		
@@ -940,12 +1213,23 @@ public class AffineBasis extends AbstractBasis {
 	 * @return true if axis should be flipped, false otherwise. Default is false. 
 	 */
 	public boolean isAxisFlipped(int axis) {
+		ensureChirality();
 		return this.flippedAxes[axis]; 
 	}
+	
+	/**
+	 * @return which of this basis' axes are mirrored, indexed by X, Y and Z. 
+	 * The array belongs to this basis and is overwritten whenever it changes; don't modify it. 
+	 */
+	public boolean[] getFlippedAxes() {
+		ensureChirality();
+		return flippedAxes;
+	}
 
 
 	private void updateRays() {		
-		SGVec_3d tempV = new SGVec_3d();
+		SGVec_3d tempV = workingV1;
+		ensureComposed();
 		xRay.setP1(this.translate); 		
 		yRay.setP1(this.translate);			
 		zRay.setP1(this.translate);
@@ -955,33 +1239,229 @@ public class AffineBasis extends AbstractBasis {
 		setToComposedYBase(tempV);
 		yRay.heading(tempV);
 		setToComposedZBase(tempV);
-		zRay.heading(tempV);		
+		zRay.heading(tempV);
+		dirtyArtifacts &= ~DIRTY_RAYS;
+		recomputations++;
+	}
+	
+	@Override
+	public sgRayd getXRay() {
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+		return xRay;
+	}
+	
+	@Override
+	public sgRayd getYRay() {
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+		return yRay;
+	}
+	
+	@Override
+	public sgRayd getZRay() {
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+		return zRay;
+	}
+
+
+	/**
+	 * @return a bitmask of {@link #TRANSLATION}, {@link #RIGID}, {@link #ORTHOGONAL}, {@link #CONGRUENT}, {@link #AFFINE} 
+	 * and {@link #NEGATIVE_DETERMINANT} describing what the linear portion of this basis does. More specific kinds
+	 * imply all of the less specific ones (a RIGID basis is also ORTHOGONAL, CONGRUENT and AFFINE).
+	 */
+	public int getTransformKind() {
+		return transformKind;
+	}
+	
+	/**
+	 * @return true if this basis neither translates, rotates, scales, shears nor reflects.
+	 */
+	public boolean isIdentity() {
+		return (transformKind & TRANSLATION) != 0 && translate.x == 0 && translate.y == 0 && translate.z == 0;
+	}
+	
+	private void updateTransformKind() {
+		double[] m = shearScaleMatrix.val;
+		double xx = m[M00]*m[M00] + m[M10]*m[M10] + m[M20]*m[M20];
+		double yy = m[M01]*m[M01] + m[M11]*m[M11] + m[M21]*m[M21];
+		double zz = m[M02]*m[M02] + m[M12]*m[M12] + m[M22]*m[M22];
+		double xy = m[M00]*m[M01] + m[M10]*m[M11] + m[M20]*m[M21];
+		double xz = m[M00]*m[M02] + m[M10]*m[M12] + m[M20]*m[M22];
+		double yz = m[M01]*m[M02] + m[M11]*m[M12] + m[M21]*m[M22];
+		double tolerance = KIND_TOLERANCE * xx;
+		int kind = AFFINE;
+		if(shearScaleMatrix.det3x3() < 0) 
+			kind |= NEGATIVE_DETERMINANT;
+		if(Math.abs(xy) <= tolerance && Math.abs(xz) <= tolerance && Math.abs(yz) <= tolerance 
+				&& Math.abs(xx - yy) <= tolerance && Math.abs(xx - zz) <= tolerance) {
+			kind |= CONGRUENT;
+			if(Math.abs(xx - 1d) <= KIND_TOLERANCE) {
+				kind |= ORTHOGONAL;
+				//unit length columns with a diagonal of 1 can only be the identity.
+				if(Math.abs(m[M00] - 1d) <= KIND_TOLERANCE && Math.abs(m[M11] - 1d) <= KIND_TOLERANCE && Math.abs(m[M22] - 1d) <= KIND_TOLERANCE) {
+					kind |= RIGID;
+					MRotation r = this.rotation.rotation;
+					if(Math.abs(r.getQ1()) <= KIND_TOLERANCE && Math.abs(r.getQ2()) <= KIND_TOLERANCE && Math.abs(r.getQ3()) <= KIND_TOLERANCE) 
+						kind |= TRANSLATION;
+				}
+			}
+		}
+		transformKind = kind;
+	}
+	
+	public String typeString() {
+		String result = "";
+		if ((transformKind & TRANSLATION)          > 0 ) result +=" TRANSLATION";
+		if ((transformKind & RIGID)                > 0 ) result +=" RIGID";
+		if ((transformKind & ORTHOGONAL)           > 0 ) result +=" ORTHOGONAL";
+		if ((transformKind & CONGRUENT)            > 0 ) result +=" CONGRUENT";
+		if ((transformKind & AFFINE)               > 0 ) result +=" AFFINE";
+		if ((transformKind & NEGATIVE_DETERMINANT) > 0 ) result +=" NEGATIVE_DETERMINANT";
+		return result;
+	}
+
+	/**maximum number of Newton iterations setFromMatrix will spend finding the rotation of a matrix.*/
+	private static final int POLAR_MAX_ITERATIONS = 24;
+	/**setFromMatrix stops iterating once the sum of squared changes to the rotation falls below this.*/
+	private static final double POLAR_TOLERANCE = 1e-26;
+
+	/**
+	 * sets this basis to represent the given affine matrix, see {@link #setFromMatrix(double[], int)}.
+	 * @param mat
+	 * @return this basis, for chaining.
+	 */
+	public AffineBasis setFromMatrix(Matrix4d mat) {
+		return setFromMatrix(mat.val, 0);
 	}
 
+	/**
+	 * sets this basis to represent the affine matrix held in the 16 values starting at offset 
+	 * (column major, as in {@link Matrix4d#val}), without allocating. 
+	 * 
+	 * The upper 3x3 portion is split by polar decomposition into the nearest rotation and a 
+	 * shear/scale matrix, using scaled Newton iteration (Q = (gQ + Q^-T/g)/2), which converges 
+	 * quadratically. As in {@link #AffineBasis(sgRayd, sgRayd, sgRayd)}, a mirrored matrix is handled by negating whichever axis 
+	 * most deviates from its identity direction before decomposing, and negating that axis of the shear/scale matrix 
+	 * after. A singular matrix can't be decomposed, and is stored with an identity rotation and the matrix itself as shear/scale.
+	 * @param mat
+	 * @param offset
+	 * @return this basis, for chaining.
+	 */
+	public AffineBasis setFromMatrix(double[] mat, int offset) {
+		double a00 = mat[offset+Matrix4d.M00], a01 = mat[offset+Matrix4d.M01], a02 = mat[offset+Matrix4d.M02];
+		double a10 = mat[offset+Matrix4d.M10], a11 = mat[offset+Matrix4d.M11], a12 = mat[offset+Matrix4d.M12];
+		double a20 = mat[offset+Matrix4d.M20], a21 = mat[offset+Matrix4d.M21], a22 = mat[offset+Matrix4d.M22];
+		this.translate.x = mat[offset+Matrix4d.M03];
+		this.translate.y = mat[offset+Matrix4d.M13];
+		this.translate.z = mat[offset+Matrix4d.M23];
+		double xMag = Math.sqrt(a00*a00 + a10*a10 + a20*a20);
+		double yMag = Math.sqrt(a01*a01 + a11*a11 + a21*a21);
+		double zMag = Math.sqrt(a02*a02 + a12*a12 + a22*a22);
+		this.scale.x = xMag; this.scale.y = yMag; this.scale.z = zMag;
+
+		double det = a00*(a11*a22 - a12*a21) + a01*(a12*a20 - a10*a22) + a02*(a10*a21 - a11*a20);
+		int flipped = -1;
+		if(det < 0) {
+			//improper, resolve by negating whichever axis most deviates from its identity direction.
+			double xDot = xMag == 0 ? 0 : a00/xMag, yDot = yMag == 0 ? 0 : a11/yMag, zDot = zMag == 0 ? 0 : a22/zMag;
+			if(xDot <= yDot && xDot <= zDot) {
+				flipped = X; a00 = -a00; a10 = -a10; a20 = -a20; 
+			} else if(yDot <= zDot) {
+				flipped = Y; a01 = -a01; a11 = -a11; a21 = -a21; 
+			} else {
+				flipped = Z; a02 = -a02; a12 = -a12; a22 = -a22; 
+			}
+		}
 
-	/*public String typeString(Transform3D input) {
-	if(input == null) input = composedTransform;
-	int type = input.getBestType();
-	String result = "";
-	if ((type & Transform3D.ZERO)             	  > 0 ) result += " ZERO";
-	if ((type & Transform3D.IDENTITY)             > 0 ) result +=" IDENTITY";
-	if ((type & Transform3D.SCALE)                > 0 ) result +=" SCALE";
-	if ((type & Transform3D.TRANSLATION)          > 0 ) result +=" TRANSLATION";
-	if ((type & Transform3D.ORTHOGONAL)           > 0 ) result +=" ORTHOGONAL";
-	if ((type & Transform3D.RIGID)                > 0 ) result +=" RIGID";
-	if ((type & Transform3D.CONGRUENT)            > 0 ) result +=" CONGRUENT";
-	if ((type & Transform3D.AFFINE)               > 0 ) result +=" AFFINE";
-	if ((type & Transform3D.NEGATIVE_DETERMINANT) > 0 ) result +=" NEGATIVE_DETERMINANT";
+		double q00 = a00, q01 = a01, q02 = a02;
+		double q10 = a10, q11 = a11, q12 = a12;
+		double q20 = a20, q21 = a21, q22 = a22;
+		boolean decomposed = det != 0;
+		for(int i = 0; decomposed && i < POLAR_MAX_ITERATIONS; i++) {
+			//cofactors of Q, which divided by det(Q) give the inverse transpose of Q.
+			double c00 = q11*q22 - q12*q21, c01 = q12*q20 - q10*q22, c02 = q10*q21 - q11*q20;
+			double c10 = q02*q21 - q01*q22, c11 = q00*q22 - q02*q20, c12 = q01*q20 - q00*q21;
+			double c20 = q01*q12 - q02*q11, c21 = q02*q10 - q00*q12, c22 = q00*q11 - q01*q10;
+			double qDet = q00*c00 + q01*c01 + q02*c02;
+			if(qDet == 0) {
+				decomposed = false;
+				break;
+			}
+			double invDet = 1d/qDet;
+			double qNorm = q00*q00 + q01*q01 + q02*q02 + q10*q10 + q11*q11 + q12*q12 + q20*q20 + q21*q21 + q22*q22;
+			double cNorm = c00*c00 + c01*c01 + c02*c02 + c10*c10 + c11*c11 + c12*c12 + c20*c20 + c21*c21 + c22*c22;
+			//gamma = sqrt(|Q^-T| / |Q|), which equalizes the magnitudes of the two terms being averaged.
+			double gamma = Math.sqrt(Math.sqrt(cNorm * invDet * invDet / qNorm));
+			double g = 0.5d * gamma, h = 0.5d * invDet / gamma;
+			double n00 = g*q00 + h*c00, n01 = g*q01 + h*c01, n02 = g*q02 + h*c02;
+			double n10 = g*q10 + h*c10, n11 = g*q11 + h*c11, n12 = g*q12 + h*c12;
+			double n20 = g*q20 + h*c20, n21 = g*q21 + h*c21, n22 = g*q22 + h*c22;
+			double d00 = n00 - q00, d01 = n01 - q01, d02 = n02 - q02;
+			double d10 = n10 - q10, d11 = n11 - q11, d12 = n12 - q12;
+			double d20 = n20 - q20, d21 = n21 - q21, d22 = n22 - q22;
+			double change = d00*d00 + d01*d01 + d02*d02 + d10*d10 + d11*d11 + d12*d12 + d20*d20 + d21*d21 + d22*d22;
+			q00 = n00; q01 = n01; q02 = n02;
+			q10 = n10; q11 = n11; q12 = n12;
+			q20 = n20; q21 = n21; q22 = n22;
+			if(change < POLAR_TOLERANCE) 
+				break;
+		}
+		if(!decomposed) {
+			q00 = 1; q01 = 0; q02 = 0;
+			q10 = 0; q11 = 1; q12 = 0;
+			q20 = 0; q21 = 0; q22 = 1;
+		}
 
-	return result;
-}*/
+		//quaternion of Q (Shepperd's method). MRotation.applyTo rotates by the conjugate 
+		//of the quaternion it holds, so the vector part is negated when stored.
+		double w, x, y, z;
+		double trace = q00 + q11 + q22;
+		if(trace > 0) {
+			double s = 0.5d / Math.sqrt(trace + 1d);
+			w = 0.25d / s; x = (q21 - q12) * s; y = (q02 - q20) * s; z = (q10 - q01) * s;
+		} else if(q00 > q11 && q00 > q22) {
+			double s = 2d * Math.sqrt(1d + q00 - q11 - q22);
+			w = (q21 - q12) / s; x = 0.25d * s; y = (q01 + q10) / s; z = (q02 + q20) / s;
+		} else if(q11 > q22) {
+			double s = 2d * Math.sqrt(1d + q11 - q00 - q22);
+			w = (q02 - q20) / s; x = (q01 + q10) / s; y = 0.25d * s; z = (q12 + q21) / s;
+		} else {
+			double s = 2d * Math.sqrt(1d + q22 - q00 - q11);
+			w = (q10 - q01) / s; x = (q02 + q20) / s; y = (q12 + q21) / s; z = 0.25d * s;
+		}
+		this.rotation.rotation.set(w, -x, -y, -z, true);
+
+		//shearScale = Q^T A, with the negated axis restored.
+		double[] ss = this.shearScaleMatrix.val;
+		double fx = flipped == X ? -1d : 1d, fy = flipped == Y ? -1d : 1d, fz = flipped == Z ? -1d : 1d;
+		ss[Matrix4d.M00] = fx*(q00*a00 + q10*a10 + q20*a20); ss[Matrix4d.M01] = fy*(q00*a01 + q10*a11 + q20*a21); ss[Matrix4d.M02] = fz*(q00*a02 + q10*a12 + q20*a22);
+		ss[Matrix4d.M10] = fx*(q01*a00 + q11*a10 + q21*a20); ss[Matrix4d.M11] = fy*(q01*a01 + q11*a11 + q21*a21); ss[Matrix4d.M12] = fz*(q01*a02 + q11*a12 + q21*a22);
+		ss[Matrix4d.M20] = fx*(q02*a00 + q12*a10 + q22*a20); ss[Matrix4d.M21] = fy*(q02*a01 + q12*a11 + q22*a21); ss[Matrix4d.M22] = fz*(q02*a02 + q12*a12 + q22*a22);
+		ss[Matrix4d.M03] = 0; ss[Matrix4d.M13] = 0; ss[Matrix4d.M23] = 0;
+		ss[Matrix4d.M30] = 0; ss[Matrix4d.M31] = 0; ss[Matrix4d.M32] = 0; ss[Matrix4d.M33] = 1;
+		refreshPrecomputed();
+		return this;
+	}
+
+	/**
+	 * sets each of count bases to the affine matrix at the corresponding position of a packed 
+	 * run of 4x4 column major matrices (16 values each). See {@link #setFromMatrix(double[], int)}.
+	 * @param mats 
+	 * @param offset index of the first value of the first matrix
+	 * @param bases the bases to set
+	 * @param count number of matrices to import
+	 */
+	public static void setFromMatrices(double[] mats, int offset, AffineBasis[] bases, int count) {
+		for(int i = 0; i < count; i++) 
+			bases[i].setFromMatrix(mats, offset + i*16);
+	}
 
 	public void setIdentity() {
 		this.scale.x = 1; this.scale.y = 1; this.scale.z = 1; 
-		this.scaledXHeading = xBase.copy();
-		this.scaledYHeading = yBase.copy(); 
-		this.scaledZHeading = zBase.copy();
-		this.rotation = new Rot();
+		//the scaled headings are rederived from the composed matrix by refreshPrecomputed(). 
+		this.rotation.rotation.set(1, 0, 0, 0, false);
 		this.translate.x = 0; this.translate.y = 0; this.translate.z = 0;
 		this.xRay.p1(this.translate); this.xRay.p2(xBase);
 		this.yRay.p1(this.translate); this.yRay.p2(yBase); 
@@ -1022,13 +1502,84 @@ public class AffineBasis extends AbstractBasis {
 
 	}
 
+	/**
+	 * binds this basis to the given slot of a {@link TransformArena}, and stores its current values there. 
+	 * Once bound, the slot is re-read from this basis before the arena's next bulk operation whenever this basis changes, 
+	 * see {@link #markArenaStale()}. Any basis previously bound to the slot is unbound.
+	 * @param arena the arena to bind to, or null to unbind.
+	 * @param index the slot to bind to. 
+	 */
+	public void bindToArena(TransformArena arena, int index) {
+		if(this.arena != null) 
+			this.arena.detach(arenaIndex, this);
+		this.arena = arena; 
+		this.arenaIndex = arena == null ? -1 : index;
+		if(arena != null) 
+			arena.attach(index, this);
+	}
+	
+	/**
+	 * flags the arena slot this basis is bound to (if any) as out of date. Called by {@link #refreshPrecomputed()}, 
+	 * so this only needs to be called directly after writing to the fields of this basis 
+	 * (such as its translation) without refreshing it or marking the axes owning it dirty.
+	 */
+	public void markArenaStale() {
+		if(this.arena != null) 
+			this.arena.markStale(arenaIndex);
+	}
+	
+	public TransformArena getArena() {
+		return arena;
+	}
+	
+	/**
+	 * @return the slot this basis is bound to in its arena, or -1 if the basis is not bound to an arena.
+	 */
+	public int getArenaIndex() {
+		return arenaIndex;
+	}
+	
+	/**
+	 * copies the values of this basis into the arena slot it is bound to right away, rather than on the arena's next bulk operation.
+	 */
+	public void writeToArena() {
+		this.arena.store(arenaIndex, this);
+	}
+	
+	/**
+	 * sets the values of this basis to those held in the arena slot it is bound to. 
+	 */
+	public void readFromArena() {
+		this.arena.load(arenaIndex, this);
+	}
+
 	public Matrix4d getComposedMatrix() {
+		ensureComposed();
 		return composedMatrix;
 	}
+	
+	/**
+	 * @return the diagonal matrix of 1s and -1s which flips whichever axes of this basis are mirrored. 
+	 */
+	public Matrix4d getReflectionMatrix() {
+		ensureChirality();
+		return reflectionMatrix;
+	}
+	
+	/**
+	 * @return this basis' rotation applied to its reflection matrix. 
+	 */
+	public Matrix4d getComposedOrthoNormalMatrix() {
+		ensureOrthoNormal();
+		return composedOrthoNormalMatrix;
+	}
 
 	public Matrix4d getInverseComposedMatrix() {
 		if(composedInversesDirty) {
-			this.inverseComposedMatrix.toInverseOf(composedMatrix);
+			if((transformKind & ORTHOGONAL) != 0) 
+				this.inverseComposedMatrix.toRigidInverseOf(getComposedMatrix());
+			else
+				this.inverseComposedMatrix.toAffineInverseOf(getComposedMatrix());
 			composedInversesDirty = false;			
 		}
 		return this.inverseComposedMatrix;
@@ -1036,7 +1587,8 @@ public class AffineBasis extends AbstractBasis {
 
 	public Matrix4d getInverseReflectionMatrix() {
 		if(reflectionInversesDirty) {
-			this.inverseReflectionMatrix.toInverseOf(this.reflectionMatrix);
+			//a reflection matrix is diagonal with entries of 1 or -1, so it is its own inverse.
+			this.inverseReflectionMatrix.set(this.getReflectionMatrix());
 			reflectionInversesDirty = false;			
 		}
 		return this.inverseReflectionMatrix;
@@ -1045,7 +1597,8 @@ public class AffineBasis extends AbstractBasis {
 
 	private Matrix4d getInverseComposedOrthoNormalMatrix() {
 		if(orthoNormalInversesDirty) {
-			this.inverseComposedOrthoNormalMatrix.toInverseOf(composedOrthoNormalMatrix);
+			//a rotation applied to a reflection is orthonormal, so its transpose is its inverse.
+			this.inverseComposedOrthoNormalMatrix.toRigidInverseOf(getComposedOrthoNormalMatrix());
 			orthoNormalInversesDirty = false;			
 		}
 		return this.inverseComposedOrthoNormalMatrix;
@@ -1056,6 +1609,35 @@ public class AffineBasis extends AbstractBasis {
 		return this.shearScaleMatrix;
 	}
 
+	/**
+	 * writes the composed matrix and translation of this basis into a single 4x4 affine matrix.
+	 * @param output
+	 * @return the output matrix, for chaining.
+	 */
+	public Matrix4d setToAffineMatrix(Matrix4d output) {
+		double[] c = getComposedMatrix().val, o = output.val;
+		o[Matrix4d.M00] = c[Matrix4d.M00]; o[Matrix4d.M01] = c[Matrix4d.M01]; o[Matrix4d.M02] = c[Matrix4d.M02]; o[Matrix4d.M03] = translate.x;
+		o[Matrix4d.M10] = c[Matrix4d.M10]; o[Matrix4d.M11] = c[Matrix4d.M11]; o[Matrix4d.M12] = c[Matrix4d.M12]; o[Matrix4d.M13] = translate.y;
+		o[Matrix4d.M20] = c[Matrix4d.M20]; o[Matrix4d.M21] = c[Matrix4d.M21]; o[Matrix4d.M22] = c[Matrix4d.M22]; o[Matrix4d.M23] = translate.z;
+		o[Matrix4d.M30] = 0; o[Matrix4d.M31] = 0; o[Matrix4d.M32] = 0; o[Matrix4d.M33] = 1;
+		return output;
+	}
+	
+	/**
+	 * writes the inverse of {@link #setToAffineMatrix(Matrix4d)} into the output matrix, 
+	 * taking the cheaper rigid inverse when this basis does not scale or shear.
+	 * @param output
+	 * @return the output matrix, for chaining.
+	 */
+	public Matrix4d setToInverseAffineMatrix(Matrix4d output) {
+		setToAffineMatrix(output);
+		if((transformKind & ORTHOGONAL) != 0) 
+			output.toRigidInverseOf(output);
+		else 
+			output.toAffineInverseOf(output);
+		return output;
+	}
+
 	public static final int 
 	M00 = 0, M01 = 4, M02 = 8, M03 = 1, 
 	M10 = 1, M11 = 5, M12 = 9, M13 = 13,
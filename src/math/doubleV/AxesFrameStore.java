@@ -0,0 +1,339 @@
+package math.doubleV;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * A memory-mapped store of animation frames for a hierarchy of AffineAxes with a fixed topology.
+ *
+ * Each frame holds the local basis of every axes in the hierarchy, in the parent-before-child order of a
+ * {@link SceneGraphUpdater}, using the same per-axes layout as an {@link AxesSnapshot} record
+ * (translation, rotation quaternion, 3x3 shear/scale). The topology itself is written once, in the header:
+ * <pre>
+ * int    magic ({@link #MAGIC})
+ * int    format version ({@link #VERSION})
+ * int    number of axes per frame
+ * int    number of frames
+ * per axes: int parent index (or -1), int flags (as in AxesSnapshot)
+ * frames, each {@link #FRAME_RECORD_BYTES} * the number of axes long
+ * </pre>
+ *
+ * Frames are read straight out of the mapping into the bound hierarchy, so seeking to and sampling a frame costs
+ * no more than copying its values, regardless of how long the recording is. The file is mapped in segments of
+ * whole frames, which keeps each mapping under the 2GB limit of a single MappedByteBuffer and lets a recording grow
+ * one segment at a time.
+ *
+ * Not thread safe.
+ */
+public class AxesFrameStore implements Closeable {
+
+	/**"EWBF", read as a little-endian int*/
+	public static final int MAGIC = 0x46425745;
+	public static final int VERSION = 2;
+	/**bytes per axes in a frame. The same as an AxesSnapshot record, minus the parent index and flags.*/
+	public static final int FRAME_RECORD_BYTES = AxesSnapshot.RECORD_BYTES - 8;
+	public static final int DEFAULT_SEGMENT_FRAMES = 1024;
+
+	private static final int FRAME_COUNT_OFFSET = 12;
+
+	/**sun.misc.Unsafe and its invokeCleaner(ByteBuffer), or null if this runtime doesn't offer them.*/
+	private static final Object UNSAFE;
+	private static final Method INVOKE_CLEANER;
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			unsafe = theUnsafe.get(null);
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private final FileChannel channel;
+	private final boolean writable;
+	private final SceneGraphUpdater order;
+	private final int nodeCount;
+	private final long headerBytes;
+	private final long frameBytes;
+	private final int segmentFrames;
+	/**null once the store is closed.*/
+	private MappedByteBuffer header;
+	private final ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private int frameCount;
+	private int currentFrame = -1;
+
+	private AxesFrameStore(FileChannel channel, boolean writable, SceneGraphUpdater order, int nodeCount,
+			int frameCount, int segmentFrames) throws IOException {
+		this.channel = channel;
+		this.writable = writable;
+		this.order = order;
+		this.nodeCount = nodeCount;
+		this.frameCount = frameCount;
+		this.headerBytes = 16 + 8L * nodeCount;
+		this.frameBytes = (long)FRAME_RECORD_BYTES * nodeCount;
+		this.segmentFrames = (int)Math.max(1, Math.min(segmentFrames, Integer.MAX_VALUE / Math.max(1, frameBytes)));
+		this.header = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, headerBytes);
+		this.header.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * creates (or truncates) a frame store for the hierarchy held by the given updater, writing its topology to the header.
+	 * @param file
+	 * @param order an updater whose flattened hierarchy is current. Its topology must not change while the store is in use.
+	 * @return a writable store with no frames.
+	 * @throws IOException
+	 */
+	public static AxesFrameStore create(Path file, SceneGraphUpdater order) throws IOException {
+		return create(file, order, DEFAULT_SEGMENT_FRAMES);
+	}
+
+	/**
+	 * @param segmentFrames the number of frames to map at a time (clamped so that a segment fits in a single mapping).
+	 * The file grows by this many frames whenever a recording outgrows it.
+	 * @see #create(Path, SceneGraphUpdater)
+	 */
+	public static AxesFrameStore create(Path file, SceneGraphUpdater order, int segmentFrames) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			AxesFrameStore store = new AxesFrameStore(channel, true, order, order.size(), 0, segmentFrames);
+			int[] parents = order.getParentIndices();
+			store.header.putInt(0, MAGIC);
+			store.header.putInt(4, VERSION);
+			store.header.putInt(8, store.nodeCount);
+			store.header.putInt(FRAME_COUNT_OFFSET, 0);
+			for(int i = 0; i < store.nodeCount; i++) {
+				store.header.putInt(16 + 8 * i, parents[i]);
+				store.header.putInt(20 + 8 * i, order.get(i).forceOrthoNormality ? AxesSnapshot.FLAG_ORTHONORMAL : 0);
+			}
+			return store;
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * opens an existing frame store and binds it to the hierarchy held by the given updater.
+	 * @param file
+	 * @param order an updater whose flattened hierarchy is current, and has the same topology as the one the store was recorded from.
+	 * @param writable whether frames may be recorded into the store.
+	 * @throws IOException if the file is not a frame store, or was recorded from a different topology.
+	 */
+	public static AxesFrameStore open(Path file, SceneGraphUpdater order, boolean writable) throws IOException {
+		FileChannel channel = writable
+				? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+				: FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			if(channel.size() < 16)
+				throw new IOException("not an axes frame store (file too short)");
+			MappedByteBuffer probe = channel.map(FileChannel.MapMode.READ_ONLY, 0, 16);
+			probe.order(ByteOrder.LITTLE_ENDIAN);
+			if(probe.getInt(0) != MAGIC)
+				throw new IOException("not an axes frame store (bad magic number " + Integer.toHexString(probe.getInt(0)) + ")");
+			if(probe.getInt(4) != VERSION)
+				throw new IOException("unsupported axes frame store version " + probe.getInt(4));
+			int nodeCount = probe.getInt(8);
+			int frameCount = probe.getInt(FRAME_COUNT_OFFSET);
+			unmap(probe);
+			if(nodeCount != order.size())
+				throw new IOException("frame store holds " + nodeCount + " axes per frame, but the hierarchy has " + order.size());
+			AxesFrameStore store = new AxesFrameStore(channel, writable, order, nodeCount, frameCount, DEFAULT_SEGMENT_FRAMES);
+			if(channel.size() < store.headerBytes + store.frameBytes * frameCount)
+				throw new IOException("corrupt axes frame store (file holds fewer than " + frameCount + " frames)");
+			int[] parents = order.getParentIndices();
+			for(int i = 0; i < nodeCount; i++) {
+				if(store.header.getInt(16 + 8 * i) != parents[i])
+					throw new IOException("frame store was recorded from a different topology (axes " + i + " has a different parent)");
+			}
+			return store;
+		} catch(IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * records the current local bases of the hierarchy as a new frame at the end of the store.
+	 * @return the index of the recorded frame.
+	 */
+	public int append() {
+		int frame = frameCount;
+		record(frame);
+		return frame;
+	}
+
+	/**
+	 * records the current local bases of the hierarchy into the given frame, overwriting it if it already exists.
+	 * @param frame at most {@link #getFrameCount()}. Recording at exactly the frame count appends a frame.
+	 */
+	public void record(int frame) {
+		if(!writable)
+			throw new IllegalStateException("frame store was opened read only");
+		if(frame < 0 || frame > frameCount)
+			throw new IndexOutOfBoundsException("frame " + frame + " out of range [0, " + frameCount + "]");
+		MappedByteBuffer segment = seekSegment(frame);
+		for(int i = 0; i < nodeCount; i++)
+			AxesSnapshot.putBasis(segment, order.get(i).getLocalMBasis());
+		if(frame == frameCount) {
+			frameCount++;
+			header.putInt(FRAME_COUNT_OFFSET, frameCount);
+		}
+	}
+
+	/**
+	 * sets the local basis of every axes in the hierarchy to its value in the given frame, and marks them dirty.
+	 * @param frame
+	 */
+	public void sample(int frame) {
+		if(frame < 0 || frame >= frameCount)
+			throw new IndexOutOfBoundsException("frame " + frame + " out of range [0, " + frameCount + ")");
+		MappedByteBuffer segment = seekSegment(frame);
+		for(int i = 0; i < nodeCount; i++) {
+			AffineAxes axes = order.get(i);
+			AxesSnapshot.getBasis(segment, axes.getLocalMBasis());
+			axes.markDirty();
+		}
+		currentFrame = frame;
+	}
+
+	/**
+	 * moves to the given frame (or the nearest one that exists) and samples it into the hierarchy.
+	 * @param frame
+	 * @return the frame actually sampled.
+	 */
+	public int seek(int frame) {
+		if(frameCount == 0)
+			throw new IllegalStateException("frame store is empty");
+		int clamped = Math.max(0, Math.min(frameCount - 1, frame));
+		if(clamped != currentFrame)
+			sample(clamped);
+		return clamped;
+	}
+
+	/**
+	 * samples the frame after the current one, if there is one.
+	 * @return false if the current frame was already the last one.
+	 */
+	public boolean next() {
+		if(currentFrame + 1 >= frameCount)
+			return false;
+		sample(currentFrame + 1);
+		return true;
+	}
+
+	/**
+	 * @return the segment holding the given frame, positioned at the start of that frame.
+	 */
+	private MappedByteBuffer seekSegment(int frame) {
+		if(header == null)
+			throw new IllegalStateException("frame store is closed");
+		int segmentIdx = frame / segmentFrames;
+		while(segments.size() <= segmentIdx) {
+			long start = headerBytes + frameBytes * (long)segmentFrames * segments.size();
+			long length = frameBytes * segmentFrames;
+			try {
+				if(!writable)
+					length = Math.min(length, channel.size() - start);
+				MappedByteBuffer segment = channel.map(
+						writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, start, length);
+				segment.order(ByteOrder.LITTLE_ENDIAN);
+				segments.add(segment);
+			} catch(IOException e) {
+				throw new IllegalStateException("could not map frames starting at " + (segments.size() * segmentFrames), e);
+			}
+		}
+		MappedByteBuffer segment = segments.get(segmentIdx);
+		segment.position((int)(frameBytes * (frame - segmentIdx * segmentFrames)));
+		return segment;
+	}
+
+	/**
+	 * @return the number of frames recorded.
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return the most recently sampled frame, or -1 if none has been.
+	 */
+	public int getCurrentFrame() {
+		return currentFrame;
+	}
+
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	public SceneGraphUpdater getOrder() {
+		return order;
+	}
+
+	/**
+	 * forces every recorded frame out to the storage device.
+	 */
+	public void flush() {
+		if(!writable || header == null) return;
+		header.force();
+		for(MappedByteBuffer segment : segments)
+			segment.force();
+	}
+
+	/**
+	 * flushes the store, unmaps it, and trims any mapped space past the last recorded frame from the file.
+	 * A file can't safely be truncated while any part of it is still mapped (touching a mapping past the new end of the
+	 * file faults, and some platforms refuse the truncation outright), so if this runtime can't unmap the buffers
+	 * immediately the unused space is left in place. Readers only go by the frame count in the header, so it does no harm.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(header == null)
+			return;
+		try {
+			flush();
+			boolean unmapped = true;
+			for(MappedByteBuffer segment : segments)
+				unmapped &= unmap(segment);
+			segments.clear();
+			unmapped &= unmap(header);
+			header = null;
+			if(writable && unmapped)
+				channel.truncate(headerBytes + frameBytes * frameCount);
+		} finally {
+			segments.clear();
+			header = null;
+			channel.close();
+		}
+	}
+
+	/**
+	 * releases the given mapping now rather than whenever it's garbage collected. The buffer must not be touched afterward.
+	 * @return false if this runtime offers no way to do that, in which case the mapping stays valid until it's collected.
+	 */
+	private static boolean unmap(MappedByteBuffer buffer) {
+		if(INVOKE_CLEANER == null)
+			return false;
+		try {
+			INVOKE_CLEANER.invoke(UNSAFE, buffer);
+			return true;
+		} catch(ReflectiveOperationException | RuntimeException e) {
+			return false;
+		}
+	}
+}
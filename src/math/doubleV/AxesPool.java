@@ -0,0 +1,165 @@
+package math.doubleV;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * A pool of reusable AffineAxes, for iterative code (such as IK solvers) which would otherwise allocate fresh
+ * axes through freeCopy(), getGlobalCopy() and the like on every iteration. Combine with the *Into variants
+ * of those methods (see {@link AffineAxes#globalCopyInto(AffineAxes)}) to run with a flat heap:
+ *
+ * <pre>
+ * AffineAxes scratch = pool.obtain();
+ * bone.globalCopyInto(scratch);
+ * ...
+ * pool.free(scratch);
+ * </pre>
+ *
+ * Axes handed out by {@link #obtain()} are parentless, global, identity axes with no orthonormality constraint.
+ * The pool keeps track of every axes it has handed out and not yet taken back, so that leaks can be detected with
+ * {@link #getOutstandingCount()} or {@link #checkForLeaks()}. If allocation site recording is enabled,
+ * each obtain() additionally captures a stack trace, which is reported as the cause of any leak found.
+ *
+ * Not thread safe.
+ */
+public class AxesPool {
+
+	private final ArrayList<AffineAxes> available = new ArrayList<AffineAxes>();
+	/**axes which have been obtained and not freed, mapped to where they were obtained (or null if sites aren't being recorded).*/
+	private final IdentityHashMap<AffineAxes, Throwable> outstanding = new IdentityHashMap<AffineAxes, Throwable>();
+	private final int maxRetained;
+	private boolean recordAllocationSites = false;
+	private long created = 0;
+	/**holds the dependents of axes being reset, so that they can be detached without modifying the set being walked.*/
+	private final ArrayList<AxisDependency> detaching = new ArrayList<AxisDependency>();
+
+	public AxesPool() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxRetained the most freed axes the pool will hold on to. Axes freed beyond this are left to the garbage collector.
+	 */
+	public AxesPool(int maxRetained) {
+		this.maxRetained = Math.max(0, maxRetained);
+	}
+
+	/**
+	 * @return a parentless identity axes, either recycled or newly created.
+	 */
+	public AffineAxes obtain() {
+		AffineAxes result;
+		int last = available.size() - 1;
+		if(last >= 0) {
+			result = available.remove(last);
+		} else {
+			result = new AffineAxes(new SGVec_3d(0, 0, 0), AffineAxes.xBase, AffineAxes.yBase, AffineAxes.zBase, false, null);
+			created++;
+		}
+		outstanding.put(result, recordAllocationSites ? new Throwable("AffineAxes obtained here were never freed") : null);
+		return result;
+	}
+
+	/**
+	 * returns the given axes to the pool. The axes are detached from their parent, their children are detached from them 
+	 * (keeping their global transforms), any other dependents are dropped, and the axes are reset to the identity. 
+	 * They must not be used by the caller afterward.
+	 * @param axes
+	 * @throws IllegalStateException if the axes were not obtained from this pool, or have already been freed.
+	 */
+	public void free(AffineAxes axes) {
+		if(!outstanding.containsKey(axes))
+			throw new IllegalStateException("axes were not obtained from this pool, or have already been freed");
+		outstanding.remove(axes);
+		reset(axes);
+		if(available.size() < maxRetained)
+			available.add(axes);
+	}
+
+	/**
+	 * returns every outstanding axes to the pool at once. Useful at the end of a solver iteration or frame,
+	 * after which none of the axes obtained during it may be used.
+	 */
+	public void freeAll() {
+		for(AffineAxes axes : outstanding.keySet()) {
+			reset(axes);
+			if(available.size() < maxRetained)
+				available.add(axes);
+		}
+		outstanding.clear();
+	}
+
+	/**
+	 * severs every link between the given axes and the rest of their hierarchy, so that a recycled axes neither 
+	 * carries over its old children or listeners, nor keeps its old hierarchy reachable while it sits in the pool.
+	 */
+	private void reset(AffineAxes axes) {
+		for(AxisDependency dependent : axes.dependentsSet) {
+			if(dependent != null)
+				detaching.add(dependent);
+		}
+		for(int i = 0; i < detaching.size(); i++) {
+			AxisDependency dependent = detaching.get(i);
+			if(dependent instanceof AbstractAxes && dependent.getParentAxes() == axes)
+				((AbstractAxes)dependent).setParent(null);
+		}
+		detaching.clear();
+		axes.dependentsSet.clear();
+		if(axes.getParentAxes() != null)
+			axes.setParent(null);
+		axes.releaseFormerHierarchy();
+		axes.forceOrthoNormality = false;
+		axes.getLocalMBasis().setIdentity();
+		axes.markDirty();
+	}
+
+	/**
+	 * @param record if true, every subsequent call to {@link #obtain()} captures a stack trace, so that leaks can be
+	 * traced back to where the leaked axes were obtained. This is expensive, and meant for debugging.
+	 */
+	public void setRecordAllocationSites(boolean record) {
+		this.recordAllocationSites = record;
+	}
+
+	public boolean isRecordingAllocationSites() {
+		return recordAllocationSites;
+	}
+
+	/**
+	 * @return the number of axes which have been obtained but not yet freed.
+	 */
+	public int getOutstandingCount() {
+		return outstanding.size();
+	}
+
+	/**
+	 * @return the number of freed axes waiting to be reused.
+	 */
+	public int getAvailableCount() {
+		return available.size();
+	}
+
+	/**
+	 * @return the number of axes this pool has had to construct (as opposed to recycle) over its lifetime.
+	 */
+	public long getCreatedCount() {
+		return created;
+	}
+
+	/**
+	 * @throws IllegalStateException if any obtained axes have not been freed. If allocation sites are being recorded,
+	 * the site of one of the leaked axes is attached as the exception's cause.
+	 */
+	public void checkForLeaks() {
+		if(outstanding.isEmpty()) return;
+		Throwable site = null;
+		for(Map.Entry<AffineAxes, Throwable> entry : outstanding.entrySet()) {
+			if(entry.getValue() != null) {
+				site = entry.getValue();
+				break;
+			}
+		}
+		throw new IllegalStateException(outstanding.size() + " pooled axes were never freed", site);
+	}
+}
@@ -0,0 +1,197 @@
+package math.doubleV;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Reads and writes hierarchies of AffineAxes in a compact, versioned, little-endian binary format.
+ *
+ * Layout:
+ * <pre>
+ * header:
+ *   int    magic ({@link #MAGIC})
+ *   int    format version ({@link #VERSION})
+ *   int    number of axes
+ * one record per axes, parent-before-child:
+ *   int    index of the parent record, or -1 for the root
+ *   int    flags ({@link #FLAG_ORTHONORMAL})
+ *   double translation x, y, z
+ *   double rotation q0, q1, q2, q3 (scalar first, as in MRotation)
+ *   double shear/scale m00, m10, m20, m01, m11, m21, m02, m12, m22
+ *   double scale x, y, z (as in {@link AffineBasis#scale})
+ * </pre>
+ * Records hold local bases, so a hierarchy is rebuilt exactly by composing them in order. The
+ * parent-before-child ordering is the same one a {@link SceneGraphUpdater} produces.
+ *
+ * Reading and writing stream through a fixed size buffer, so memory use doesn't grow with the size of the hierarchy
+ * (beyond the axes themselves). Reading consumes exactly the bytes the snapshot occupies, so snapshots can be read
+ * back to back from one stream, or followed by other data.
+ */
+public class AxesSnapshot {
+
+	/**"EWBA", read as a little-endian int*/
+	public static final int MAGIC = 0x41425745;
+	public static final int VERSION = 2;
+	public static final int HEADER_BYTES = 12;
+	/**bytes per axes record, see the class description.*/
+	public static final int RECORD_BYTES = 4 + 4 + (3 + 4 + 9 + 3) * 8;
+
+	/**set in a record's flags if the axes have their orthonormality constraint enabled.*/
+	public static final int FLAG_ORTHONORMAL = 1;
+
+	private static final int BUFFER_RECORDS = 512;
+
+	/**
+	 * writes the given axes and all of their descendants to the output stream. The stream is not closed.
+	 * @param root
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void write(AffineAxes root, OutputStream out) throws IOException {
+		SceneGraphUpdater order = new SceneGraphUpdater(root);
+		order.rebuild();
+		write(order, Channels.newChannel(out));
+	}
+
+	/**
+	 * writes the axes held by the given updater, in its parent-before-child order.
+	 * @param order an updater whose flattened hierarchy is current
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void write(SceneGraphUpdater order, WritableByteChannel out) throws IOException {
+		int count = order.size();
+		int[] parents = order.getParentIndices();
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * BUFFER_RECORDS).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(count);
+		for(int i = 0; i < count; i++) {
+			if(buffer.remaining() < RECORD_BYTES)
+				drain(buffer, out);
+			AffineAxes axes = order.get(i);
+			buffer.putInt(parents[i]);
+			buffer.putInt(axes.forceOrthoNormality ? FLAG_ORTHONORMAL : 0);
+			putBasis(buffer, axes.getLocalMBasis());
+		}
+		drain(buffer, out);
+	}
+
+	/**
+	 * reads a hierarchy previously written by {@link #write(AffineAxes, OutputStream)}. The stream is not closed.
+	 * @param in
+	 * @return every axes read, in the order they were written. The first element is the root.
+	 * @throws IOException if the stream ends early, or does not hold a hierarchy in a supported version of this format.
+	 */
+	public static AffineAxes[] read(InputStream in) throws IOException {
+		return read(Channels.newChannel(in));
+	}
+
+	/**
+	 * as {@link #read(InputStream)}, but reads from a channel. 
+	 */
+	public static AffineAxes[] read(ReadableByteChannel in) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * BUFFER_RECORDS).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.limit(0);
+		fill(buffer, in, HEADER_BYTES, HEADER_BYTES);
+		int magic = buffer.getInt();
+		if(magic != MAGIC)
+			throw new IOException("not an axes snapshot (bad magic number " + Integer.toHexString(magic) + ")");
+		int version = buffer.getInt();
+		if(version != VERSION)
+			throw new IOException("unsupported axes snapshot version " + version);
+		int count = buffer.getInt();
+		if(count < 0)
+			throw new IOException("corrupt axes snapshot (negative count)");
+		//grown as records arrive, so that a corrupt count can't demand more memory than the stream actually holds.
+		AffineAxes[] result = new AffineAxes[Math.min(count, BUFFER_RECORDS)];
+		for(int i = 0; i < count; i++) {
+			fill(buffer, in, RECORD_BYTES, (long)(count - i) * RECORD_BYTES);
+			if(i == result.length)
+				result = Arrays.copyOf(result, (int)Math.min(count, 2L * result.length));
+			int parentIdx = buffer.getInt();
+			int flags = buffer.getInt();
+			if(parentIdx >= i || parentIdx < -1)
+				throw new IOException("corrupt axes snapshot (record " + i + " refers to parent " + parentIdx + ")");
+			AffineAxes parent = parentIdx < 0 ? null : result[parentIdx];
+			AffineAxes axes = new AffineAxes(new SGVec_3d(0,0,0), AffineAxes.xBase, AffineAxes.yBase, AffineAxes.zBase,
+					(flags & FLAG_ORTHONORMAL) != 0, parent);
+			getBasis(buffer, axes.getLocalMBasis());
+			axes.markDirty();
+			result[i] = axes;
+		}
+		return result;
+	}
+
+	/**
+	 * writes the translation, rotation and shear/scale of the given basis at the buffer's position,
+	 * in the layout of a record (after its parent index and flags).
+	 */
+	static void putBasis(ByteBuffer buffer, AffineBasis basis) {
+		buffer.putDouble(basis.translate.x);
+		buffer.putDouble(basis.translate.y);
+		buffer.putDouble(basis.translate.z);
+		MRotation rot = basis.rotation.rotation;
+		buffer.putDouble(rot.getQ0());
+		buffer.putDouble(rot.getQ1());
+		buffer.putDouble(rot.getQ2());
+		buffer.putDouble(rot.getQ3());
+		double[] ss = basis.getShearScaleMatrix().val;
+		buffer.putDouble(ss[Matrix4d.M00]); buffer.putDouble(ss[Matrix4d.M10]); buffer.putDouble(ss[Matrix4d.M20]);
+		buffer.putDouble(ss[Matrix4d.M01]); buffer.putDouble(ss[Matrix4d.M11]); buffer.putDouble(ss[Matrix4d.M21]);
+		buffer.putDouble(ss[Matrix4d.M02]); buffer.putDouble(ss[Matrix4d.M12]); buffer.putDouble(ss[Matrix4d.M22]);
+		buffer.putDouble(basis.scale.x);
+		buffer.putDouble(basis.scale.y);
+		buffer.putDouble(basis.scale.z);
+	}
+
+	/**
+	 * the inverse of {@link #putBasis(ByteBuffer, AffineBasis)}. Recomputes the basis' derived values.
+	 */
+	static void getBasis(ByteBuffer buffer, AffineBasis basis) {
+		basis.translate.x = buffer.getDouble();
+		basis.translate.y = buffer.getDouble();
+		basis.translate.z = buffer.getDouble();
+		double q0 = buffer.getDouble(), q1 = buffer.getDouble(), q2 = buffer.getDouble(), q3 = buffer.getDouble();
+		basis.rotation.rotation.set(q0, q1, q2, q3, false);
+		double[] ss = basis.getShearScaleMatrix().val;
+		ss[Matrix4d.M00] = buffer.getDouble(); ss[Matrix4d.M10] = buffer.getDouble(); ss[Matrix4d.M20] = buffer.getDouble();
+		ss[Matrix4d.M01] = buffer.getDouble(); ss[Matrix4d.M11] = buffer.getDouble(); ss[Matrix4d.M21] = buffer.getDouble();
+		ss[Matrix4d.M02] = buffer.getDouble(); ss[Matrix4d.M12] = buffer.getDouble(); ss[Matrix4d.M22] = buffer.getDouble();
+		basis.scale.x = buffer.getDouble();
+		basis.scale.y = buffer.getDouble();
+		basis.scale.z = buffer.getDouble();
+		basis.refreshPrecomputed();
+	}
+
+	private static void drain(ByteBuffer buffer, WritableByteChannel out) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining())
+			out.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * makes sure at least the requested number of bytes are available to be read from the buffer, 
+	 * without reading past the end of the snapshot.
+	 * @param unread the number of bytes of the snapshot, from the buffer's position on, which remain to be consumed. 
+	 */
+	private static void fill(ByteBuffer buffer, ReadableByteChannel in, int requested, long unread) throws IOException {
+		if(buffer.remaining() >= requested)
+			return;
+		buffer.compact();
+		buffer.limit((int)Math.min(buffer.capacity(), unread));
+		while(buffer.position() < requested) {
+			if(in.read(buffer) < 0)
+				throw new IOException("unexpected end of axes snapshot");
+		}
+		buffer.flip();
+	}
+}
@@ -0,0 +1,326 @@
+package math.doubleV;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import math.floatV.Quaternionf;
+import math.floatV.SGVec_3f;
+
+/**
+ * Deforms meshes against a set of bones by dual quaternion blending, which (unlike linearly blending skinning
+ * matrices) keeps blended transforms rigid, and so doesn't collapse joints into the "candy wrapper" shape under twist.
+ *
+ * Each bone's skinning transform is held as a unit dual quaternion, 8 doubles apiece
+ * (real w, x, y, z followed by dual w, x, y, z). Bones are set in bulk from the global bases of AffineAxes
+ * (see {@link #setBones(AffineAxes[])}) or one by one from a Quaternionf and translation, and are composed with the inverse of
+ * the bind pose, if one was given. Only the rotation and translation of a basis are used; any scale or shear is ignored.
+ *
+ * Meshes are packed float buffers: positions and normals as consecutive x, y, z triples, and for each vertex a fixed
+ * number of bone indices and weights. Deformation writes to separate output buffers, and can optionally be split
+ * into vertex chunks run in parallel (see {@link #setParallel(ForkJoinPool, int)}). Apart from those fork/join tasks,
+ * nothing here allocates.
+ *
+ * Bones must not be changed while a deformation is running.
+ */
+public class DualQuaternionSkinner {
+
+	public static final int STRIDE = 8;
+	public static final int DEFAULT_GRAIN_SIZE = 4096;
+
+	private final int boneCount;
+	/**current skinning transform of each bone (including the inverse bind pose).*/
+	private final double[] skin;
+	/**inverse bind pose of each bone, or null for none.*/
+	private double[] inverseBind = null;
+
+	private ForkJoinPool pool = null;
+	private int grainSize = DEFAULT_GRAIN_SIZE;
+
+	public DualQuaternionSkinner(int boneCount) {
+		this.boneCount = boneCount;
+		this.skin = new double[boneCount * STRIDE];
+		for(int i = 0; i < skin.length; i += STRIDE)
+			skin[i] = 1d;
+	}
+
+	public int getBoneCount() {
+		return boneCount;
+	}
+
+	/**
+	 * @return the packed dual quaternions of every bone's current skinning transform. Owned by this skinner.
+	 */
+	public double[] getSkinningDualQuaternions() {
+		return skin;
+	}
+
+	/**
+	 * deforms vertex chunks in parallel on the given pool.
+	 * @param pool
+	 * @param grainSize the number of vertices below which a chunk is deformed on the current thread rather than split further.
+	 */
+	public void setParallel(ForkJoinPool pool, int grainSize) {
+		this.pool = pool;
+		this.grainSize = Math.max(1, grainSize);
+	}
+
+	/**
+	 * deforms vertex chunks in parallel on the common pool.
+	 */
+	public void setParallel() {
+		setParallel(ForkJoinPool.commonPool(), grainSize);
+	}
+
+	public void setSequential() {
+		this.pool = null;
+	}
+
+	/**
+	 * records the pose the mesh was bound in. Subsequent bone transforms are composed with its inverse, so that a mesh
+	 * in the bind pose comes out undeformed when its bones are in that same pose.
+	 * @param bindGlobals the global basis of each bone at bind time
+	 */
+	public void setBindPose(AffineBasis[] bindGlobals) {
+		if(inverseBind == null)
+			inverseBind = new double[boneCount * STRIDE];
+		for(int b = 0; b < boneCount; b++) {
+			int i = b * STRIDE;
+			storeBasis(bindGlobals[b], inverseBind, i);
+			conjugate(inverseBind, i);
+		}
+	}
+
+	/**
+	 * as {@link #setBindPose(AffineBasis[])}, from the current global bases of the given axes.
+	 */
+	public void setBindPose(AffineAxes[] bones) {
+		if(inverseBind == null)
+			inverseBind = new double[boneCount * STRIDE];
+		for(int b = 0; b < boneCount; b++) {
+			int i = b * STRIDE;
+			storeBasis(bones[b].getGlobalMBasis(), inverseBind, i);
+			conjugate(inverseBind, i);
+		}
+	}
+
+	public void clearBindPose() {
+		inverseBind = null;
+	}
+
+	/**
+	 * sets every bone from the current global basis of the corresponding axes.
+	 * @param bones
+	 */
+	public void setBones(AffineAxes[] bones) {
+		for(int b = 0; b < boneCount; b++)
+			setBone(b, bones[b].getGlobalMBasis());
+	}
+
+	/**
+	 * sets every bone from the corresponding global basis.
+	 * @param globals
+	 */
+	public void setBones(AffineBasis[] globals) {
+		for(int b = 0; b < boneCount; b++)
+			setBone(b, globals[b]);
+	}
+
+	/**
+	 * sets a bone from the rotation and translation of the given global basis.
+	 * @param bone
+	 * @param global
+	 */
+	public void setBone(int bone, AffineBasis global) {
+		int i = bone * STRIDE;
+		storeBasis(global, skin, i);
+		applyBind(i);
+	}
+
+	/**
+	 * sets a bone to the rigid transform rotating by the given quaternion, then translating by the given vector.
+	 * @param bone
+	 * @param rotation
+	 * @param translation
+	 */
+	public void setBone(int bone, Quaternionf rotation, SGVec_3f translation) {
+		int i = bone * STRIDE;
+		store(rotation.getQ0(), rotation.getQ1(), rotation.getQ2(), rotation.getQ3(),
+				translation.x, translation.y, translation.z, skin, i);
+		applyBind(i);
+	}
+
+	private void applyBind(int i) {
+		if(inverseBind != null)
+			multiply(skin, i, inverseBind, i, skin, i);
+	}
+
+	private static void storeBasis(AffineBasis basis, double[] out, int i) {
+		MRotation rot = basis.rotation.rotation;
+		//MRotation holds the conjugate of the vector-operator quaternion. See Quaterniond.set(MRotation).
+		store(rot.getQ0(), -rot.getQ1(), -rot.getQ2(), -rot.getQ3(),
+				basis.translate.x, basis.translate.y, basis.translate.z, out, i);
+	}
+
+	/**
+	 * stores the unit dual quaternion for rotation (w, x, y, z) followed by translation t: real = q, dual = t q / 2.
+	 */
+	private static void store(double w, double x, double y, double z, double tx, double ty, double tz, double[] out, int i) {
+		double len2 = w * w + x * x + y * y + z * z;
+		if(len2 != 1d && len2 != 0d) {
+			double invLen = 1d / Math.sqrt(len2);
+			w *= invLen; x *= invLen; y *= invLen; z *= invLen;
+		}
+		out[i] = w;
+		out[i + 1] = x;
+		out[i + 2] = y;
+		out[i + 3] = z;
+		out[i + 4] = -0.5d * (tx * x + ty * y + tz * z);
+		out[i + 5] = 0.5d * (tx * w + ty * z - tz * y);
+		out[i + 6] = 0.5d * (ty * w + tz * x - tx * z);
+		out[i + 7] = 0.5d * (tz * w + tx * y - ty * x);
+	}
+
+	/**
+	 * inverts a unit dual quaternion in place, by conjugating both of its parts.
+	 */
+	private static void conjugate(double[] dq, int i) {
+		dq[i + 1] = -dq[i + 1]; dq[i + 2] = -dq[i + 2]; dq[i + 3] = -dq[i + 3];
+		dq[i + 5] = -dq[i + 5]; dq[i + 6] = -dq[i + 6]; dq[i + 7] = -dq[i + 7];
+	}
+
+	/**
+	 * out = a * b, the transform applying b and then a. out may be either input.
+	 */
+	private static void multiply(double[] a, int ai, double[] b, int bi, double[] out, int oi) {
+		double aw = a[ai], ax = a[ai + 1], ay = a[ai + 2], az = a[ai + 3];
+		double adw = a[ai + 4], adx = a[ai + 5], ady = a[ai + 6], adz = a[ai + 7];
+		double bw = b[bi], bx = b[bi + 1], by = b[bi + 2], bz = b[bi + 3];
+		double bdw = b[bi + 4], bdx = b[bi + 5], bdy = b[bi + 6], bdz = b[bi + 7];
+		out[oi] = aw * bw - ax * bx - ay * by - az * bz;
+		out[oi + 1] = aw * bx + ax * bw + ay * bz - az * by;
+		out[oi + 2] = aw * by + ay * bw + az * bx - ax * bz;
+		out[oi + 3] = aw * bz + az * bw + ax * by - ay * bx;
+		//dual = a.real * b.dual + a.dual * b.real
+		out[oi + 4] = (aw * bdw - ax * bdx - ay * bdy - az * bdz) + (adw * bw - adx * bx - ady * by - adz * bz);
+		out[oi + 5] = (aw * bdx + ax * bdw + ay * bdz - az * bdy) + (adw * bx + adx * bw + ady * bz - adz * by);
+		out[oi + 6] = (aw * bdy + ay * bdw + az * bdx - ax * bdz) + (adw * by + ady * bw + adz * bx - adx * bz);
+		out[oi + 7] = (aw * bdz + az * bdw + ax * bdy - ay * bdx) + (adw * bz + adz * bw + adx * by - ady * bx);
+	}
+
+	/**
+	 * deforms vertices [fromVertex, toVertex) of a mesh by the current bone transforms.
+	 * @param positions x, y, z per vertex
+	 * @param normals x, y, z per vertex, or null to deform positions only
+	 * @param boneIndices influences entries per vertex
+	 * @param boneWeights influences entries per vertex. Need not sum to 1; a vertex with no weight is copied unchanged.
+	 * @param influences number of bones influencing each vertex
+	 * @param outPositions receives the deformed positions. Must not be the same array as positions.
+	 * @param outNormals receives the deformed normals (which remain unit length if they were), or null
+	 * @param fromVertex
+	 * @param toVertex
+	 */
+	public void deform(float[] positions, float[] normals, int[] boneIndices, float[] boneWeights, int influences,
+			float[] outPositions, float[] outNormals, int fromVertex, int toVertex) {
+		if(outPositions == positions || (normals != null && outNormals == normals))
+			throw new IllegalArgumentException("deformed vertices must be written to separate buffers");
+		if(pool == null || toVertex - fromVertex <= grainSize)
+			deformRange(positions, normals, boneIndices, boneWeights, influences, outPositions, outNormals, fromVertex, toVertex);
+		else
+			pool.invoke(new DeformTask(positions, normals, boneIndices, boneWeights, influences, outPositions, outNormals, fromVertex, toVertex));
+	}
+
+	/**
+	 * deforms every vertex of a mesh.
+	 * @see #deform(float[], float[], int[], float[], int, float[], float[], int, int)
+	 */
+	public void deform(float[] positions, float[] normals, int[] boneIndices, float[] boneWeights, int influences,
+			float[] outPositions, float[] outNormals) {
+		deform(positions, normals, boneIndices, boneWeights, influences, outPositions, outNormals, 0, positions.length / 3);
+	}
+
+	private void deformRange(float[] positions, float[] normals, int[] boneIndices, float[] boneWeights, int influences,
+			float[] outPositions, float[] outNormals, int fromVertex, int toVertex) {
+		double[] dqs = skin;
+		for(int v = fromVertex; v < toVertex; v++) {
+			int inf = v * influences;
+			int first = boneIndices[inf] * STRIDE;
+			double rw = 0d, rx = 0d, ry = 0d, rz = 0d, dw = 0d, dx = 0d, dy = 0d, dz = 0d;
+			for(int k = 0; k < influences; k++) {
+				double weight = boneWeights[inf + k];
+				if(weight == 0d) continue;
+				int b = boneIndices[inf + k] * STRIDE;
+				//keep every influence in the same hemisphere as the first, so that q and -q don't cancel.
+				if(dqs[b] * dqs[first] + dqs[b + 1] * dqs[first + 1] + dqs[b + 2] * dqs[first + 2] + dqs[b + 3] * dqs[first + 3] < 0d)
+					weight = -weight;
+				rw += dqs[b] * weight; rx += dqs[b + 1] * weight; ry += dqs[b + 2] * weight; rz += dqs[b + 3] * weight;
+				dw += dqs[b + 4] * weight; dx += dqs[b + 5] * weight; dy += dqs[b + 6] * weight; dz += dqs[b + 7] * weight;
+			}
+			int p = v * 3;
+			double len2 = rw * rw + rx * rx + ry * ry + rz * rz;
+			if(len2 == 0d) {
+				outPositions[p] = positions[p]; outPositions[p + 1] = positions[p + 1]; outPositions[p + 2] = positions[p + 2];
+				if(normals != null) {
+					outNormals[p] = normals[p]; outNormals[p + 1] = normals[p + 1]; outNormals[p + 2] = normals[p + 2];
+				}
+				continue;
+			}
+			double invLen = 1d / Math.sqrt(len2);
+			rw *= invLen; rx *= invLen; ry *= invLen; rz *= invLen;
+			dw *= invLen; dx *= invLen; dy *= invLen; dz *= invLen;
+			//translation = 2 * (rw * d - dw * r + r x d)
+			double tx = 2d * (rw * dx - dw * rx + ry * dz - rz * dy);
+			double ty = 2d * (rw * dy - dw * ry + rz * dx - rx * dz);
+			double tz = 2d * (rw * dz - dw * rz + rx * dy - ry * dx);
+			//rotated = v + 2 * r x (r x v + rw * v)
+			double px = positions[p], py = positions[p + 1], pz = positions[p + 2];
+			double cx = ry * pz - rz * py + rw * px;
+			double cy = rz * px - rx * pz + rw * py;
+			double cz = rx * py - ry * px + rw * pz;
+			outPositions[p] = (float)(px + 2d * (ry * cz - rz * cy) + tx);
+			outPositions[p + 1] = (float)(py + 2d * (rz * cx - rx * cz) + ty);
+			outPositions[p + 2] = (float)(pz + 2d * (rx * cy - ry * cx) + tz);
+			if(normals != null) {
+				double nx = normals[p], ny = normals[p + 1], nz = normals[p + 2];
+				cx = ry * nz - rz * ny + rw * nx;
+				cy = rz * nx - rx * nz + rw * ny;
+				cz = rx * ny - ry * nx + rw * nz;
+				outNormals[p] = (float)(nx + 2d * (ry * cz - rz * cy));
+				outNormals[p + 1] = (float)(ny + 2d * (rz * cx - rx * cz));
+				outNormals[p + 2] = (float)(nz + 2d * (rx * cy - ry * cx));
+			}
+		}
+	}
+
+	/**
+	 * deforms a contiguous chunk of vertices, splitting it in half until it is no larger than the grain size.
+	 */
+	private class DeformTask extends RecursiveAction {
+		private final float[] positions, normals, boneWeights, outPositions, outNormals;
+		private final int[] boneIndices;
+		private final int influences, from, to;
+
+		DeformTask(float[] positions, float[] normals, int[] boneIndices, float[] boneWeights, int influences,
+				float[] outPositions, float[] outNormals, int from, int to) {
+			this.positions = positions;
+			this.normals = normals;
+			this.boneIndices = boneIndices;
+			this.boneWeights = boneWeights;
+			this.influences = influences;
+			this.outPositions = outPositions;
+			this.outNormals = outNormals;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= grainSize) {
+				deformRange(positions, normals, boneIndices, boneWeights, influences, outPositions, outNormals, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new DeformTask(positions, normals, boneIndices, boneWeights, influences, outPositions, outNormals, from, mid),
+					new DeformTask(positions, normals, boneIndices, boneWeights, influences, outPositions, outNormals, mid, to));
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package math.doubleV;
+
+import math.TrigPolicy;
+
+/**
+ * Bulk quaternion operations over packed arrays.
+ *
+ * Quaternions are stored four doubles apiece, scalar first (w, x, y, z), so that quaternion i occupies indices
+ * [4i, 4i+4). Every operation walks its arrays front to back in a single pass, without allocating, and
+ * computes its results into locals before storing them, so the output array may be the same as any of the inputs.
+ *
+ * Double precision counterpart of {@link math.floatV.QuaternionBatchf}, following the same conventions.
+ */
+public final class QuaternionBatchd {
+
+	public static final int STRIDE = 4;
+
+	/**below this angle (in terms of 1 - |cos(angle)|) slerp falls back to linear interpolation.*/
+	private static final double SLERP_LINEAR_THRESHOLD = 1e-12;
+
+	private QuaternionBatchd() {}
+
+	/**
+	 * sets each output quaternion to the product a * b of the corresponding input quaternions
+	 * (as in Quaternionf.mul()).
+	 * @param a
+	 * @param b
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void multiply(double[] a, double[] b, double[] out, int count) {
+		int end = count * STRIDE;
+		for(int i = 0; i < end; i += STRIDE) {
+			double aw = a[i], ax = a[i + 1], ay = a[i + 2], az = a[i + 3];
+			double bw = b[i], bx = b[i + 1], by = b[i + 2], bz = b[i + 3];
+			out[i] = aw * bw - ax * bx - ay * by - az * bz;
+			out[i + 1] = aw * bx + ax * bw + ay * bz - az * by;
+			out[i + 2] = aw * by + ay * bw + az * bx - ax * bz;
+			out[i + 3] = aw * bz + az * bw + ax * by - ay * bx;
+		}
+	}
+
+	/**
+	 * normalizes each quaternion to unit length, in place. Zero length quaternions become the identity.
+	 * @param q
+	 * @param count number of quaternions
+	 */
+	public static void normalize(double[] q, int count) {
+		normalize(q, q, count);
+	}
+
+	/**
+	 * writes the normalized version of each input quaternion to the output array. Zero length quaternions become the identity.
+	 * @param in
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void normalize(double[] in, double[] out, int count) {
+		int end = count * STRIDE;
+		for(int i = 0; i < end; i += STRIDE) {
+			double w = in[i], x = in[i + 1], y = in[i + 2], z = in[i + 3];
+			double len2 = w * w + x * x + y * y + z * z;
+			if(len2 == 0d) {
+				out[i] = 1d; out[i + 1] = 0d; out[i + 2] = 0d; out[i + 3] = 0d;
+			} else {
+				double invLen = 1d / Math.sqrt(len2);
+				out[i] = w * invLen; out[i + 1] = x * invLen; out[i + 2] = y * invLen; out[i + 3] = z * invLen;
+			}
+		}
+	}
+
+	/**
+	 * spherically interpolates each quaternion of a toward the corresponding quaternion of b by the same amount,
+	 * along the shortest path. Evaluated with the active {@link TrigPolicy}.
+	 * @param a
+	 * @param b
+	 * @param alpha in the range [0,1]
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void slerp(double[] a, double[] b, double alpha, double[] out, int count) {
+		TrigPolicy trig = TrigPolicy.active();
+		int end = count * STRIDE;
+		for(int i = 0; i < end; i += STRIDE)
+			slerp(a, b, i, alpha, out, trig);
+	}
+
+	/**
+	 * as {@link #slerp(double[], double[], double, double[], int)}, but with a separate amount for each quaternion.
+	 * @param alphas one per quaternion
+	 */
+	public static void slerp(double[] a, double[] b, double[] alphas, double[] out, int count) {
+		TrigPolicy trig = TrigPolicy.active();
+		for(int q = 0, i = 0; q < count; q++, i += STRIDE)
+			slerp(a, b, i, alphas[q], out, trig);
+	}
+
+	private static void slerp(double[] a, double[] b, int i, double alpha, double[] out, TrigPolicy trig) {
+		double aw = a[i], ax = a[i + 1], ay = a[i + 2], az = a[i + 3];
+		double bw = b[i], bx = b[i + 1], by = b[i + 2], bz = b[i + 3];
+		double d = aw * bw + ax * bx + ay * by + az * bz;
+		double absDot = d < 0d ? -d : d;
+		double scale0 = 1d - alpha;
+		double scale1 = alpha;
+		if(1d - absDot > SLERP_LINEAR_THRESHOLD) {
+			//sin((1-t)theta) = sin(theta)cos(t theta) - cos(theta)sin(t theta), so only one angle's sine and cosine are needed.
+			double theta = trig.acos(absDot);
+			double invSinTheta = 1d / Math.sqrt(1d - absDot * absDot);
+			double tTheta = alpha * theta;
+			double sinT = trig.sin(tTheta);
+			double cosT = trig.cos(tTheta);
+			scale1 = sinT * invSinTheta;
+			scale0 = cosT - absDot * sinT * invSinTheta;
+		}
+		if(d < 0d) scale1 = -scale1;
+		out[i] = scale0 * aw + scale1 * bw;
+		out[i + 1] = scale0 * ax + scale1 * bx;
+		out[i + 2] = scale0 * ay + scale1 * by;
+		out[i + 3] = scale0 * az + scale1 * bz;
+	}
+
+	/**
+	 * linearly interpolates each quaternion of a toward the corresponding quaternion of b along the shortest path, and
+	 * normalizes the result. Cheaper than slerp, at the cost of a nonuniform rate of rotation across alpha.
+	 * @param a
+	 * @param b
+	 * @param alpha in the range [0,1]
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void nlerp(double[] a, double[] b, double alpha, double[] out, int count) {
+		int end = count * STRIDE;
+		double scale0 = 1d - alpha;
+		for(int i = 0; i < end; i += STRIDE) {
+			double aw = a[i], ax = a[i + 1], ay = a[i + 2], az = a[i + 3];
+			double bw = b[i], bx = b[i + 1], by = b[i + 2], bz = b[i + 3];
+			double scale1 = aw * bw + ax * bx + ay * by + az * bz < 0d ? -alpha : alpha;
+			double w = scale0 * aw + scale1 * bw;
+			double x = scale0 * ax + scale1 * bx;
+			double y = scale0 * ay + scale1 * by;
+			double z = scale0 * az + scale1 * bz;
+			double len2 = w * w + x * x + y * y + z * z;
+			double invLen = len2 == 0d ? 0d : 1d / Math.sqrt(len2);
+			out[i] = w * invLen; out[i + 1] = x * invLen; out[i + 2] = y * invLen; out[i + 3] = z * invLen;
+		}
+	}
+
+	/**
+	 * blends any number of poses by normalized weighted quaternion averaging. Each quaternion is first
+	 * flipped into the same hemisphere as its counterpart in the first pose, so that q and -q (the same rotation)
+	 * reinforce rather than cancel. This is a close approximation of the true weighted rotational mean for
+	 * rotations which are not too far apart, as is the case when blending animation layers.
+	 * @param poses the packed quaternions of each pose. Each must hold at least count quaternions.
+	 * @param weights one per pose. Need not sum to 1.
+	 * @param poseCount number of poses to blend
+	 * @param out must not be any of the poses.
+	 * @param count number of quaternions per pose
+	 */
+	public static void blend(double[][] poses, double[] weights, int poseCount, double[] out, int count) {
+		int end = count * STRIDE;
+		double[] reference = poses[0];
+		for(int p = 0; p < poseCount; p++) {
+			if(poses[p] == out)
+				throw new IllegalArgumentException("the output must not be one of the poses being blended");
+		}
+		double w0 = weights[0];
+		for(int i = 0; i < end; i++)
+			out[i] = reference[i] * w0;
+		for(int p = 1; p < poseCount; p++) {
+			double[] pose = poses[p];
+			double weight = weights[p];
+			if(weight == 0d) continue;
+			for(int i = 0; i < end; i += STRIDE) {
+				double pw = pose[i], px = pose[i + 1], py = pose[i + 2], pz = pose[i + 3];
+				double d = pw * reference[i] + px * reference[i + 1] + py * reference[i + 2] + pz * reference[i + 3];
+				double s = d < 0d ? -weight : weight;
+				out[i] += s * pw;
+				out[i + 1] += s * px;
+				out[i + 2] += s * py;
+				out[i + 3] += s * pz;
+			}
+		}
+		normalize(out, out, count);
+	}
+}
@@ -0,0 +1,207 @@
+package math.doubleV;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of the transforms of one AffineAxes relative to another.
+ *
+ * For a pair (a, b) the cache holds the affine matrix taking points in a's local space to points in b's
+ * local space (that is, the inverse of b's global matrix applied to a's global matrix). Each entry remembers the
+ * {@link AffineAxes#getModificationStamp() modification stamps} of both axes it was computed from, and is recomputed
+ * in place (along the path through their lowest common ancestor, see {@link AffineAxes#setToTransformIn(AffineAxes, Matrix4d)})
+ * the first time it is read after either of them changes. Checking the stamps never brings a global basis up to date,
+ * so neither a hit nor a miss composes anything above the common ancestor (or, for axes in different hierarchies,
+ * anything beyond the two paths to their roots). Once the cache is full, the least recently
+ * read pair is evicted to make room for a new one.
+ *
+ * Pairs are keyed by identity, and are ordered: (a, b) and (b, a) are separate entries.
+ *
+ * Not thread safe. Lookups reuse a single probe key so that cache hits don't allocate.
+ */
+public class RelativeTransformCache {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final int capacity;
+	private final LinkedHashMap<PairKey, Entry> entries;
+	private final PairKey probe = new PairKey();
+	/**the most recently evicted entry, kept so that the next miss can reuse its storage.*/
+	private Entry spare = null;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public RelativeTransformCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the maximum number of pairs to hold at once.
+	 */
+	public RelativeTransformCache(int capacity) {
+		this.capacity = Math.max(1, capacity);
+		this.entries = new LinkedHashMap<PairKey, Entry>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PairKey, Entry> eldest) {
+				if(size() > RelativeTransformCache.this.capacity) {
+					evictions++;
+					spare = eldest.getValue();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @return the matrix taking points in a's local space to points in b's local space. The returned matrix
+	 * is owned by the cache, and must not be modified. Its values are only guaranteed to remain
+	 * current until the next call to this cache.
+	 */
+	public Matrix4d getRelative(AffineAxes a, AffineAxes b) {
+		long versionA = a.getModificationStamp();
+		long versionB = b.getModificationStamp();
+		probe.a = a;
+		probe.b = b;
+		Entry entry = entries.get(probe);
+		probe.a = null;
+		probe.b = null;
+		if(entry != null) {
+			if(entry.versionA == versionA && entry.versionB == versionB) {
+				hits++;
+				return entry.aInB;
+			}
+		} else {
+			entry = spare != null ? spare : new Entry();
+			spare = null;
+			entries.put(new PairKey(a, b), entry);
+		}
+		misses++;
+		compute(a, b, entry.aInB);
+		entry.versionA = versionA;
+		entry.versionB = versionB;
+		return entry.aInB;
+	}
+
+	/**
+	 * copies the transform of a relative to b into the output matrix.
+	 * @param a
+	 * @param b
+	 * @param output
+	 * @return the output matrix, for chaining.
+	 */
+	public Matrix4d setToRelative(AffineAxes a, AffineAxes b, Matrix4d output) {
+		return output.set(getRelative(a, b));
+	}
+
+	/**
+	 * transforms a point given in a's local space into b's local space.
+	 * @param a
+	 * @param b
+	 * @param input
+	 * @param output
+	 */
+	public <V extends Vec3d<?>> void setToRelativeOf(AffineAxes a, AffineAxes b, V input, V output) {
+		Matrix4d.mulVec(getRelative(a, b).val, input, output);
+	}
+
+	private void compute(AffineAxes a, AffineAxes b, Matrix4d output) {
+		a.setToTransformIn(b, output);
+	}
+
+	/**
+	 * removes every pair involving the given axes. Useful when axes are discarded, as the cache
+	 * otherwise keeps them reachable until they are evicted.
+	 * @param axes
+	 */
+	public void forget(AffineAxes axes) {
+		Iterator<PairKey> keys = entries.keySet().iterator();
+		while(keys.hasNext()) {
+			PairKey key = keys.next();
+			if(key.a == axes || key.b == axes)
+				keys.remove();
+		}
+	}
+
+	public void clear() {
+		entries.clear();
+		spare = null;
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of lookups answered from a current cache entry.
+	 */
+	public long getHitCount() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups which had to compute their transform, either because the pair
+	 * was not cached, or because one of its axes had changed.
+	 */
+	public long getMissCount() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of pairs dropped to keep the cache within its capacity.
+	 */
+	public long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * @return the fraction of lookups which were hits, or 0 if there have been no lookups.
+	 */
+	public double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0d : (double)hits / (double)total;
+	}
+
+	public void resetCounters() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	private static final class PairKey {
+		AffineAxes a, b;
+
+		PairKey() {}
+
+		PairKey(AffineAxes a, AffineAxes b) {
+			this.a = a;
+			this.b = b;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(a) + System.identityHashCode(b);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof PairKey)) return false;
+			PairKey other = (PairKey) o;
+			return a == other.a && b == other.b;
+		}
+	}
+
+	private static final class Entry {
+		final Matrix4d aInB = new Matrix4d();
+		long versionA, versionB;
+	}
+}
@@ -0,0 +1,306 @@
+package math.doubleV;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Brings every global basis in a hierarchy of AffineAxes up to date in a single linear pass.
+ *
+ * The hierarchy is flattened once into a parent-before-child (depth-first, pre-order) array.
+ * Each call to {@link #update()} then walks that array front to back, recomputing only those axes
+ * which are dirty or whose parent's global version has changed since they were last composed. Because a parent is always
+ * visited before its children, no axes ever needs to recurse into its ancestors, and once the pass
+ * completes every accessor (x_(), y_norm_(), orientation_X_() ...) reduces to a flag check and a read.
+ *
+ * The flattened order is cached. It is revalidated cheaply on every update (by checking that each axes
+ * still has the parent it was flattened under), but axes which are newly attached to the hierarchy
+ * are only picked up after a call to {@link #rebuild()}.
+ *
+ * Optionally, updates can be run in parallel (see {@link #setParallel(ForkJoinPool, int)}). In that mode
+ * the flattened hierarchy is split into work-stealing fork/join tasks along subtree boundaries, and a
+ * subtree is only handed to another thread once its root is clean. Every axes is still composed by exactly the
+ * same code from exactly the same inputs, so the resulting global bases are bit-identical to a sequential update.
+ */
+public class SceneGraphUpdater {
+
+	protected AffineAxes root;
+	protected AffineAxes[] nodes = new AffineAxes[0];
+	/**index into nodes of each node's parent, or -1 for the root.*/
+	protected int[] parentIndices = new int[0];
+	/**number of nodes in the subtree rooted at each node (including the node itself)*/
+	protected int[] subtreeSizes = new int[0];
+	protected boolean[] recomputed = new boolean[0];
+	protected int size = 0;
+	protected int lastRecomputedCount = 0;
+	/**the modification epoch of the root's hierarchy at the start of the current pass. Every axes visited by the pass is valid as of this epoch.*/
+	protected long passEpoch = 0;
+	private boolean topologyDirty = true;
+
+	private ForkJoinPool pool = null;
+	private int grainSize = DEFAULT_GRAIN_SIZE;
+	public static final int DEFAULT_GRAIN_SIZE = 256;
+
+	private final ArrayList<AffineAxes> stack = new ArrayList<AffineAxes>();
+	private final ArrayList<Integer> stackParents = new ArrayList<Integer>();
+
+	/**
+	 * @param root the topmost axes of the hierarchy to keep updated. Only this axes and its descendants
+	 * will be updated. (If the root itself has a parent, that parent is updated the old fashioned way).
+	 */
+	public SceneGraphUpdater(AffineAxes root) {
+		this.root = root;
+	}
+
+	public AffineAxes getRoot() {
+		return root;
+	}
+
+	public void setRoot(AffineAxes root) {
+		this.root = root;
+		this.topologyDirty = true;
+	}
+
+	/**
+	 * flags the cached parent-before-child ordering for recomputation on the next update.
+	 * Call this after attaching new axes anywhere in the hierarchy.
+	 */
+	public void markTopologyDirty() {
+		this.topologyDirty = true;
+	}
+
+	/**
+	 * reflattens the hierarchy into parent-before-child order. Every subtree ends up
+	 * occupying a contiguous range of the flattened array, starting with its own root.
+	 */
+	public void rebuild() {
+		size = 0;
+		stack.clear();
+		stackParents.clear();
+		if(root != null) {
+			stack.add(root);
+			stackParents.add(-1);
+		}
+		while(!stack.isEmpty()) {
+			int last = stack.size()-1;
+			AffineAxes current = stack.remove(last);
+			int parentIdx = stackParents.remove(last);
+			ensureCapacity(size+1);
+			int idx = size++;
+			nodes[idx] = current;
+			parentIndices[idx] = parentIdx;
+			for(AxisDependency dependent : current.dependentsSet) {
+				if(dependent != null && AffineAxes.class.isAssignableFrom(dependent.getClass())) {
+					AffineAxes child = (AffineAxes) dependent;
+					if(child.getParentAxes() == current) {
+						stack.add(child);
+						stackParents.add(idx);
+					}
+				}
+			}
+		}
+		for(int i=0; i<size; i++) 
+			subtreeSizes[i] = 0;
+		for(int i=size-1; i>=0; i--) {
+			subtreeSizes[i] += 1;
+			if(parentIndices[i] >= 0)
+				subtreeSizes[parentIndices[i]] += subtreeSizes[i];
+		}
+		for(int i=size; i<nodes.length; i++)
+			nodes[i] = null;
+		topologyDirty = false;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > nodes.length) {
+			int newCapacity = Math.max(capacity, nodes.length*2);
+			AffineAxes[] newNodes = new AffineAxes[newCapacity];
+			int[] newParents = new int[newCapacity];
+			System.arraycopy(nodes, 0, newNodes, 0, nodes.length);
+			System.arraycopy(parentIndices, 0, newParents, 0, parentIndices.length);
+			nodes = newNodes;
+			parentIndices = newParents;
+			subtreeSizes = new int[newCapacity];
+			recomputed = new boolean[newCapacity];
+		}
+	}
+
+	/**
+	 * @return true if every flattened axes still has the parent it was flattened under.
+	 */
+	protected boolean topologyIsCurrent() {
+		if(topologyDirty) return false;
+		for(int i=1; i<size; i++) {
+			if(nodes[i].getParentAxes() != nodes[parentIndices[i]])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * enables parallel updates.
+	 * @param pool the pool to run update tasks in. If null, updates are run sequentially on the calling thread.
+	 * @param grainSize the number of axes below which a subtree is updated sequentially rather than split further.
+	 */
+	public void setParallel(ForkJoinPool pool, int grainSize) {
+		this.pool = pool;
+		this.grainSize = Math.max(1, grainSize);
+	}
+
+	/**
+	 * enables parallel updates on the common fork/join pool with the default grain size.
+	 */
+	public void setParallel() {
+		setParallel(ForkJoinPool.commonPool(), DEFAULT_GRAIN_SIZE);
+	}
+
+	/**
+	 * disables parallel updates.
+	 */
+	public void setSequential() {
+		this.pool = null;
+	}
+
+	public int getGrainSize() {
+		return grainSize;
+	}
+
+	/**
+	 * recomputes the global basis of every dirty axes in the hierarchy (and of every descendant of a
+	 * dirty axes), in parent-before-child order and without recursion.
+	 */
+	public void update() {
+		if(!topologyIsCurrent())
+			rebuild();
+		int recomputedCount = 0;
+		if(size > 0) {
+			//the root goes first, so that the pass is validated against the hierarchy the root ends up in.
+			if(updateNode(0)) recomputedCount++;
+			passEpoch = nodes[0].hierarchy().epoch();
+		}
+		if(pool != null && size > grainSize) {
+			((AffineBasis)nodes[0].globalMBasis).ensurePrecomputed();
+			pool.invoke(new SubtreeRangeTask(1, size));
+			for(int i=1; i<size; i++) {
+				if(recomputed[i]) recomputedCount++;
+			}
+		} else {
+			for(int i=1; i<size; i++) {
+				if(updateNode(i)) recomputedCount++;
+			}
+		}
+		lastRecomputedCount = recomputedCount;
+	}
+
+	/**
+	 * updates the node at the given index of the flattened array, assuming its parent is already up to date.
+	 * @return true if the node's global basis was recomputed
+	 */
+	protected boolean updateNode(int idx) {
+		AffineAxes node = nodes[idx];
+		int parentIdx = parentIndices[idx];
+		boolean stale;
+		if(parentIdx < 0) {
+			long versionBefore = node.globalVersion;
+			node.updateGlobal();
+			stale = node.globalVersion != versionBefore;
+		} else {
+			node.syncHierarchy();
+			stale = node.isStaleAgainst(nodes[parentIdx]);
+			if(stale)
+				node.composeGlobal();
+			node.validatedEpoch = passEpoch;
+		}
+		recomputed[idx] = stale;
+		return stale;
+	}
+
+	/**
+	 * binds the local basis of every axes in the hierarchy to the slot of the given arena matching 
+	 * its position in the parent-before-child ordering, and copies each local basis into its slot. 
+	 * The slots are kept current as the axes change, and can be composed in bulk with 
+	 * {@link TransformArena#composeGlobals(int[], int, TransformArena)} using {@link #getParentIndices()}.
+	 * Call this again after the hierarchy's topology changes.
+	 * @param arena
+	 */
+	public void bindLocals(TransformArena arena) {
+		if(!topologyIsCurrent())
+			rebuild();
+		arena.setSize(size);
+		for(int i=0; i<size; i++) 
+			nodes[i].bindToArena(arena, i);
+	}
+
+	/**
+	 * @return the index of each flattened axes' parent (or -1 for the root). Only the first {@link #size()} entries are meaningful.
+	 */
+	public int[] getParentIndices() {
+		return parentIndices;
+	}
+
+	/**
+	 * updates a contiguous run of sibling subtrees in the flattened array [from, to), 
+	 * the parent of which is already up to date.
+	 */
+	private class SubtreeRangeTask extends RecursiveAction {
+		private final int from, to;
+
+		SubtreeRangeTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= grainSize) {
+				for(int i=from; i<to; i++)
+					updateNode(i);
+				return;
+			}
+			int start = from;
+			if(from + subtreeSizes[from] == to) {
+				//a single subtree. Its root must be clean before its children can be handed off. 
+				//That includes the values its basis computes lazily: every getter of those values 
+				//fills them in on first read, so if they were still dirty here, each of the tasks 
+				//reading this node's basis would race to fill them in at once.
+				updateNode(from);
+				((AffineBasis)nodes[from].globalMBasis).ensurePrecomputed();
+				start = from + 1;
+			}
+			ArrayList<SubtreeRangeTask> tasks = new ArrayList<SubtreeRangeTask>();
+			int chunkStart = start;
+			for(int child = start; child<to; child += subtreeSizes[child]) {
+				int childEnd = child + subtreeSizes[child];
+				if(childEnd - chunkStart > grainSize && child > chunkStart) {
+					tasks.add(new SubtreeRangeTask(chunkStart, child));
+					chunkStart = child;
+				}
+			}
+			if(chunkStart < to)
+				tasks.add(new SubtreeRangeTask(chunkStart, to));
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * @return the number of axes in the flattened hierarchy.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of axes whose global basis was recomputed during the most recent update.
+	 */
+	public int getLastRecomputedCount() {
+		return lastRecomputedCount;
+	}
+
+	/**
+	 * @param idx
+	 * @return the axes at the given position in the parent-before-child ordering.
+	 */
+	public AffineAxes get(int idx) {
+		return nodes[idx];
+	}
+}
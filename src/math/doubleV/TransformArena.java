@@ -0,0 +1,354 @@
+package math.doubleV;
+
+/**
+ * Structure-of-arrays storage for the transforms of many bases.
+ *
+ * Where each AffineBasis holds its values in its own scattered Matrix4d, Rot and vector objects, an arena keeps
+ * the translation, rotation quaternion, shear/scale matrix and composed matrix of every transform it holds in
+ * a handful of contiguous primitive arrays, addressed by an integer handle. Bulk operations
+ * ({@link #compose(int, int)}, {@link #composeGlobals(int[], int, TransformArena)}) then stream
+ * linearly through memory instead of chasing references.
+ *
+ * An AffineBasis can be bound to a slot of an arena (see {@link AffineBasis#bindToArena(TransformArena, int)}),
+ * but it is not a view into the arena: a bound slot holds a copy of its basis, and the basis keeps its own objects.
+ * The arena can't be their backing store, because the storage isn't this package's to redirect: the translation
+ * and rotation live in the SGVec_3d and MRotation instances AbstractBasis creates, and every Matrix4d owns a final
+ * val array, all of which are read and written directly throughout the library. So a bound basis costs a second
+ * copy of its values plus a pass to refresh that copy, which pays off only when bulk operations touch many
+ * slots per edit. Hierarchies which are mostly read one basis at a time are better left unbound.
+ * 
+ * The copy is kept current lazily: a bound basis flags its slot whenever it changes
+ * (through {@link AffineBasis#refreshPrecomputed()}, or through {@link AffineAxes#markDirty()} on the axes owning it),
+ * and flagged slots are re-read from their bases by {@link #sync()}, which every bulk operation calls first. Code
+ * which writes to a basis' public fields without going through either of those must call
+ * {@link AffineBasis#markArenaStale()} itself. Values only flow back from the arena into a basis
+ * on an explicit {@link AffineBasis#readFromArena()}.
+ *
+ * Arenas are not thread safe.
+ *
+ * Layouts (all matrices are 3x3 and column major, like the upper left of a Matrix4d):
+ * translations : x, y, z
+ * rotations : q0, q1, q2, q3 (scalar first, as in MRotation)
+ * shearScales : m00, m10, m20, m01, m11, m21, m02, m12, m22
+ * composed : rotation applied to shearScale, same layout as shearScales.
+ */
+public class TransformArena {
+
+	public static final int TRANSLATION_STRIDE = 3;
+	public static final int ROTATION_STRIDE = 4;
+	public static final int MATRIX_STRIDE = 9;
+
+	public double[] translations;
+	public double[] rotations;
+	public double[] shearScales;
+	public double[] composed;
+
+	protected int size = 0;
+	protected int capacity;
+	
+	/**the basis bound to each slot, if any.*/
+	private AffineBasis[] bound;
+	/**slots whose bound basis has changed since it was last stored.*/
+	private boolean[] stale;
+	private boolean anyStale = false;
+
+	public TransformArena() {
+		this(16);
+	}
+
+	/**
+	 * @param initialCapacity number of bases the arena can hold before it needs to grow.
+	 */
+	public TransformArena(int initialCapacity) {
+		capacity = Math.max(1, initialCapacity);
+		translations = new double[capacity*TRANSLATION_STRIDE];
+		rotations = new double[capacity*ROTATION_STRIDE];
+		shearScales = new double[capacity*MATRIX_STRIDE];
+		composed = new double[capacity*MATRIX_STRIDE];
+		bound = new AffineBasis[capacity];
+		stale = new boolean[capacity];
+	}
+
+	/**
+	 * reserves a new slot in the arena, initialized to the identity transform.
+	 * @return the handle of the new slot
+	 */
+	public int allocate() {
+		ensureCapacity(size+1);
+		int idx = size++;
+		setIdentity(idx);
+		return idx;
+	}
+
+	/**
+	 * makes sure the arena holds at least the given number of slots, allocating any missing slots as identity transforms.
+	 * @param count
+	 */
+	public void setSize(int count) {
+		ensureCapacity(count);
+		for(int i = size; i<count; i++)
+			setIdentity(i);
+		size = count;
+	}
+
+	/**
+	 * forgets every slot without releasing the underlying storage. Any bases bound to the arena are unbound.
+	 */
+	public void clear() {
+		for(int i = 0; i<capacity; i++) {
+			if(bound[i] != null)
+				bound[i].bindToArena(null, -1);
+			stale[i] = false;
+		}
+		anyStale = false;
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void ensureCapacity(int requested) {
+		if(requested > capacity) {
+			int newCapacity = Math.max(requested, capacity*2);
+			translations = grow(translations, newCapacity*TRANSLATION_STRIDE);
+			rotations = grow(rotations, newCapacity*ROTATION_STRIDE);
+			shearScales = grow(shearScales, newCapacity*MATRIX_STRIDE);
+			composed = grow(composed, newCapacity*MATRIX_STRIDE);
+			AffineBasis[] newBound = new AffineBasis[newCapacity];
+			System.arraycopy(bound, 0, newBound, 0, capacity);
+			bound = newBound;
+			boolean[] newStale = new boolean[newCapacity];
+			System.arraycopy(stale, 0, newStale, 0, capacity);
+			stale = newStale;
+			capacity = newCapacity;
+		}
+	}
+
+	private static double[] grow(double[] src, int length) {
+		double[] result = new double[length];
+		System.arraycopy(src, 0, result, 0, src.length);
+		return result;
+	}
+
+	public void setIdentity(int idx) {
+		int t = idx*TRANSLATION_STRIDE, r = idx*ROTATION_STRIDE, m = idx*MATRIX_STRIDE;
+		translations[t] = 0; translations[t+1] = 0; translations[t+2] = 0;
+		rotations[r] = 1; rotations[r+1] = 0; rotations[r+2] = 0; rotations[r+3] = 0;
+		for(int i=0; i<MATRIX_STRIDE; i++) {
+			shearScales[m+i] = (i % 4 == 0) ? 1 : 0;
+			composed[m+i] = (i % 4 == 0) ? 1 : 0;
+		}
+	}
+
+	/**
+	 * records the given basis as bound to the given slot (unbinding whichever basis was bound to it before), 
+	 * and stores its current values there. Called by {@link AffineBasis#bindToArena(TransformArena, int)}.
+	 */
+	void attach(int idx, AffineBasis basis) {
+		AffineBasis previous = bound[idx];
+		if(previous != null && previous != basis)
+			previous.bindToArena(null, -1);
+		bound[idx] = basis;
+		store(idx, basis);
+	}
+	
+	/**
+	 * forgets the binding of the given basis to the given slot. The slot keeps the values last stored in it.
+	 */
+	void detach(int idx, AffineBasis basis) {
+		if(idx < capacity && bound[idx] == basis) {
+			bound[idx] = null;
+			stale[idx] = false;
+		}
+	}
+	
+	/**
+	 * @return the basis bound to the given slot, or null if there isn't one.
+	 */
+	public AffineBasis getBound(int idx) {
+		return bound[idx];
+	}
+	
+	/**
+	 * flags the given slot as out of date with respect to the basis bound to it.
+	 */
+	void markStale(int idx) {
+		stale[idx] = true;
+		anyStale = true;
+	}
+	
+	/**
+	 * stores the current values of every bound basis which has changed since it was last stored. 
+	 * Called at the start of every bulk operation, so it only needs to be called directly before reading the arrays.
+	 */
+	public void sync() {
+		if(!anyStale) return;
+		for(int i = 0; i<size; i++) {
+			if(stale[i]) {
+				stale[i] = false;
+				if(bound[i] != null) 
+					store(i, bound[i]);
+			}
+		}
+		anyStale = false;
+	}
+
+	/**
+	 * copies the translation, rotation, shear/scale and composed matrix of the input basis into the given slot.
+	 * @param idx
+	 * @param basis
+	 */
+	public void store(int idx, AffineBasis basis) {
+		int t = idx*TRANSLATION_STRIDE, r = idx*ROTATION_STRIDE, m = idx*MATRIX_STRIDE;
+		translations[t] = basis.translate.x;
+		translations[t+1] = basis.translate.y;
+		translations[t+2] = basis.translate.z;
+		MRotation rot = basis.rotation.rotation;
+		rotations[r] = rot.getQ0();
+		rotations[r+1] = rot.getQ1();
+		rotations[r+2] = rot.getQ2();
+		rotations[r+3] = rot.getQ3();
+		copy3x3(basis.getShearScaleMatrix().val, shearScales, m);
+		copy3x3(basis.getComposedMatrix().val, composed, m);
+		stale[idx] = false;
+	}
+
+	/**
+	 * sets the translation, rotation and shear/scale of the input basis to the values held in the given slot,
+	 * and recomputes the basis' derived values.
+	 * @param idx
+	 * @param basis
+	 */
+	public void load(int idx, AffineBasis basis) {
+		int t = idx*TRANSLATION_STRIDE, r = idx*ROTATION_STRIDE, m = idx*MATRIX_STRIDE;
+		basis.translate.x = translations[t];
+		basis.translate.y = translations[t+1];
+		basis.translate.z = translations[t+2];
+		basis.rotation.rotation.set(rotations[r], rotations[r+1], rotations[r+2], rotations[r+3], false);
+		double[] ss = basis.getShearScaleMatrix().val;
+		ss[Matrix4d.M00] = shearScales[m];   ss[Matrix4d.M10] = shearScales[m+1]; ss[Matrix4d.M20] = shearScales[m+2];
+		ss[Matrix4d.M01] = shearScales[m+3]; ss[Matrix4d.M11] = shearScales[m+4]; ss[Matrix4d.M21] = shearScales[m+5];
+		ss[Matrix4d.M02] = shearScales[m+6]; ss[Matrix4d.M12] = shearScales[m+7]; ss[Matrix4d.M22] = shearScales[m+8];
+		basis.refreshPrecomputed();
+		//the basis now matches the slot, so there is nothing to store back.
+		stale[idx] = false;
+	}
+
+	private static void copy3x3(double[] mat4, double[] dest, int m) {
+		dest[m] = mat4[Matrix4d.M00];   dest[m+1] = mat4[Matrix4d.M10]; dest[m+2] = mat4[Matrix4d.M20];
+		dest[m+3] = mat4[Matrix4d.M01]; dest[m+4] = mat4[Matrix4d.M11]; dest[m+5] = mat4[Matrix4d.M21];
+		dest[m+6] = mat4[Matrix4d.M02]; dest[m+7] = mat4[Matrix4d.M12]; dest[m+8] = mat4[Matrix4d.M22];
+	}
+
+	/**
+	 * recomputes the composed matrices of count consecutive slots (starting at from)
+	 * by applying each slot's rotation to its shear/scale matrix.
+	 */
+	public void compose(int from, int count) {
+		sync();
+		for(int i = from, end = from+count; i<end; i++) {
+			int r = i*ROTATION_STRIDE, m = i*MATRIX_STRIDE;
+			double q0 = rotations[r], q1 = rotations[r+1], q2 = rotations[r+2], q3 = rotations[r+3];
+			double q00 = q0*q0, q11 = q1*q1, q22 = q2*q2, q33 = q3*q3;
+			double q01 = q0*q1, q02 = q0*q2, q03 = q0*q3;
+			double q12 = q1*q2, q13 = q1*q3, q23 = q2*q3;
+			//same matrix as is implied by MRotation.applyTo
+			double r00 = q00 + q11 - q22 - q33, r01 = 2d*(q12 + q03), r02 = 2d*(q13 - q02);
+			double r10 = 2d*(q12 - q03), r11 = q00 - q11 + q22 - q33, r12 = 2d*(q23 + q01);
+			double r20 = 2d*(q13 + q02), r21 = 2d*(q23 - q01), r22 = q00 - q11 - q22 + q33;
+			for(int c = 0; c<9; c+=3) {
+				double sx = shearScales[m+c], sy = shearScales[m+c+1], sz = shearScales[m+c+2];
+				composed[m+c]   = r00*sx + r01*sy + r02*sz;
+				composed[m+c+1] = r10*sx + r11*sy + r12*sz;
+				composed[m+c+2] = r20*sx + r21*sy + r22*sz;
+			}
+		}
+	}
+
+	/**
+	 * computes the global transforms of the first count slots of this arena (treated as local transforms), 
+	 * writing the translation, rotation, shear/scale and composed matrix of each into the same slot of the globals arena.
+	 *
+	 * This is the same composition {@link AffineBasis#applyTo(AbstractBasis, AbstractBasis)} performs: the global composed
+	 * matrix and translation are the parent's affine transform applied to the local ones, and the global rotation is the
+	 * parent's rotation applied to the local rotation after that has been mirrored by the parent's reflection and chirality,
+	 * with the global shear/scale matrix taking up whatever remains. The local composed matrices are recomputed
+	 * first (as by {@link #compose(int, int)}), so only the translations, rotations and shear/scale matrices of this arena need be current.
+	 *
+	 * Slots must be ordered parent-before-child (as they are by a {@link SceneGraphUpdater}), so that
+	 * each parent's global values are final by the time its children read them.
+	 *
+	 * @param parentIndices the slot of each slot's parent, or -1 for slots without a parent in the arena.
+	 * @param count number of slots to compose.
+	 * @param globals the arena to write global values into. May not be this arena.
+	 */
+	public void composeGlobals(int[] parentIndices, int count, TransformArena globals) {
+		if(globals == this)
+			throw new IllegalArgumentException("the globals arena must not be the arena being composed");
+		compose(0, count);
+		globals.setSize(Math.max(globals.size, count));
+		double[] gc = globals.composed, gt = globals.translations, gr = globals.rotations, gs = globals.shearScales;
+		for(int i = 0; i<count; i++) {
+			int m = i*MATRIX_STRIDE, t = i*TRANSLATION_STRIDE, r = i*ROTATION_STRIDE;
+			int p = parentIndices[i];
+			if(p < 0) {
+				System.arraycopy(composed, m, gc, m, MATRIX_STRIDE);
+				System.arraycopy(shearScales, m, gs, m, MATRIX_STRIDE);
+				System.arraycopy(rotations, r, gr, r, ROTATION_STRIDE);
+				gt[t] = translations[t]; gt[t+1] = translations[t+1]; gt[t+2] = translations[t+2];
+				continue;
+			}
+			int pm = p*MATRIX_STRIDE, pt = p*TRANSLATION_STRIDE, pr = p*ROTATION_STRIDE;
+			double p00 = gc[pm],   p10 = gc[pm+1], p20 = gc[pm+2];
+			double p01 = gc[pm+3], p11 = gc[pm+4], p21 = gc[pm+5];
+			double p02 = gc[pm+6], p12 = gc[pm+7], p22 = gc[pm+8];
+			double tx = translations[t], ty = translations[t+1], tz = translations[t+2];
+			gt[t]   = p00*tx + p01*ty + p02*tz + gt[pt];
+			gt[t+1] = p10*tx + p11*ty + p12*tz + gt[pt+1];
+			gt[t+2] = p20*tx + p21*ty + p22*tz + gt[pt+2];
+			for(int c = 0; c<9; c+=3) {
+				double lx = composed[m+c], ly = composed[m+c+1], lz = composed[m+c+2];
+				gc[m+c]   = p00*lx + p01*ly + p02*lz;
+				gc[m+c+1] = p10*lx + p11*ly + p12*lz;
+				gc[m+c+2] = p20*lx + p21*ly + p22*lz;
+			}
+			
+			//the parent's reflection and chirality, as AffineBasis derives them. An axis is flipped where the parent's rotation 
+			//points it away from the parent's composed column, which is where the shear/scale matrix's diagonal is negative.
+			double s00 = gs[pm],   s10 = gs[pm+1], s20 = gs[pm+2];
+			double s01 = gs[pm+3], s11 = gs[pm+4], s21 = gs[pm+5];
+			double s02 = gs[pm+6], s12 = gs[pm+7], s22 = gs[pm+8];
+			double det = s00*(s11*s22 - s21*s12) - s01*(s10*s22 - s20*s12) + s02*(s10*s21 - s20*s11);
+			double chirality = det > 0 ? 1d : -1d;
+			double q0 = rotations[r];
+			double q1 = (s00 < 0 ? -chirality : chirality) * rotations[r+1];
+			double q2 = (s11 < 0 ? -chirality : chirality) * rotations[r+2];
+			double q3 = (s22 < 0 ? -chirality : chirality) * rotations[r+3];
+			
+			//shear/scale = (mirrored local rotation)^-1 * parent shear/scale * local composed
+			double q00 = q0*q0, q11 = q1*q1, q22 = q2*q2, q33 = q3*q3;
+			double q01 = q0*q1, q02 = q0*q2, q03 = q0*q3;
+			double q12 = q1*q2, q13 = q1*q3, q23 = q2*q3;
+			double r00 = q00 + q11 - q22 - q33, r01 = 2d*(q12 + q03), r02 = 2d*(q13 - q02);
+			double r10 = 2d*(q12 - q03), r11 = q00 - q11 + q22 - q33, r12 = 2d*(q23 + q01);
+			double r20 = 2d*(q13 + q02), r21 = 2d*(q23 - q01), r22 = q00 - q11 - q22 + q33;
+			for(int c = 0; c<9; c+=3) {
+				double lx = composed[m+c], ly = composed[m+c+1], lz = composed[m+c+2];
+				double x = s00*lx + s01*ly + s02*lz;
+				double y = s10*lx + s11*ly + s12*lz;
+				double z = s20*lx + s21*ly + s22*lz;
+				gs[m+c]   = r00*x + r10*y + r20*z;
+				gs[m+c+1] = r01*x + r11*y + r21*z;
+				gs[m+c+2] = r02*x + r12*y + r22*z;
+			}
+			
+			//rotation = parent rotation applied to the mirrored local rotation (as in MRotation.applyTo(MRotation))
+			double a0 = gr[pr], a1 = gr[pr+1], a2 = gr[pr+2], a3 = gr[pr+3];
+			gr[r]   = q0*a0 - (q1*a1 + q2*a2 + q3*a3);
+			gr[r+1] = q1*a0 + q0*a1 + (q2*a3 - q3*a2);
+			gr[r+2] = q2*a0 + q0*a2 + (q3*a1 - q1*a3);
+			gr[r+3] = q3*a0 + q0*a3 + (q1*a2 - q2*a1);
+		}
+	}
+}
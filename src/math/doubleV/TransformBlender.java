@@ -0,0 +1,372 @@
+package math.doubleV;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import math.floatV.Matrix4f;
+
+/**
+ * Blends any number of weighted poses of the same set of nodes (animation layers, say) into one.
+ *
+ * A pose is a packed double[] holding {@link #STRIDE} values per node:
+ * <pre>
+ * translation x, y, z
+ * rotation w, x, y, z (a unit quaternion, scalar first, acting on vectors as in Quaternionf)
+ * scale x, y, z
+ * </pre>
+ * Translations and scales are blended linearly, and rotations by normalized quaternion averaging (each rotation
+ * is first flipped into the hemisphere of its counterpart in the first pose, so that q and -q reinforce rather than
+ * cancel). Weights are divided by their sum, so they needn't be normalized beforehand.
+ *
+ * Poses can be filled from, and blended results written straight into, Matrix4d, Matrix4f and AffineBasis
+ * instances. None of these operations allocate. Blending can optionally be split into node ranges run in parallel
+ * (see {@link #setParallel(ForkJoinPool, int)}), which allocates only its fork/join tasks. Each node is blended by the same
+ * code either way, so results are identical.
+ */
+public class TransformBlender {
+
+	public static final int STRIDE = 10;
+	public static final int TRANSLATION = 0;
+	public static final int ROTATION = 3;
+	public static final int SCALE = 7;
+
+	public static final int DEFAULT_GRAIN_SIZE = 512;
+
+	private ForkJoinPool pool = null;
+	private int grainSize = DEFAULT_GRAIN_SIZE;
+
+	/**
+	 * blends node ranges in parallel on the given pool.
+	 * @param pool
+	 * @param grainSize the number of nodes below which a range is blended on the current thread rather than split further.
+	 */
+	public void setParallel(ForkJoinPool pool, int grainSize) {
+		this.pool = pool;
+		this.grainSize = Math.max(1, grainSize);
+	}
+
+	/**
+	 * blends node ranges in parallel on the common pool.
+	 */
+	public void setParallel() {
+		setParallel(ForkJoinPool.commonPool(), grainSize);
+	}
+
+	public void setSequential() {
+		this.pool = null;
+	}
+
+	public int getGrainSize() {
+		return grainSize;
+	}
+
+	/**
+	 * blends the first poseCount poses into the output pose, for nodes [fromNode, toNode).
+	 * @param poses
+	 * @param weights one per pose
+	 * @param poseCount
+	 * @param out must not be any of the poses being blended
+	 * @param fromNode
+	 * @param toNode
+	 */
+	public void blend(double[][] poses, double[] weights, int poseCount, double[] out, int fromNode, int toNode) {
+		if(poseCount < 1)
+			throw new IllegalArgumentException("at least one pose is required");
+		double totalWeight = 0d;
+		for(int p = 0; p < poseCount; p++) {
+			if(poses[p] == out)
+				throw new IllegalArgumentException("the output must not be one of the poses being blended");
+			totalWeight += weights[p];
+		}
+		double invTotal = totalWeight == 0d ? 0d : 1d / totalWeight;
+		if(pool == null || toNode - fromNode <= grainSize)
+			blendRange(poses, weights, poseCount, invTotal, out, fromNode, toNode);
+		else
+			pool.invoke(new BlendTask(poses, weights, poseCount, invTotal, out, fromNode, toNode));
+	}
+
+	private static void blendRange(double[][] poses, double[] weights, int poseCount, double invTotal, double[] out,
+			int fromNode, int toNode) {
+		int start = fromNode * STRIDE, end = toNode * STRIDE;
+		double[] reference = poses[0];
+		double w0 = weights[0] * invTotal;
+		for(int i = start; i < end; i++)
+			out[i] = reference[i] * w0;
+		for(int p = 1; p < poseCount; p++) {
+			double[] pose = poses[p];
+			double weight = weights[p] * invTotal;
+			if(weight == 0d) continue;
+			for(int i = start; i < end; i += STRIDE) {
+				out[i] += pose[i] * weight;
+				out[i + 1] += pose[i + 1] * weight;
+				out[i + 2] += pose[i + 2] * weight;
+				int r = i + ROTATION;
+				double pw = pose[r], px = pose[r + 1], py = pose[r + 2], pz = pose[r + 3];
+				double d = pw * reference[r] + px * reference[r + 1] + py * reference[r + 2] + pz * reference[r + 3];
+				double s = d < 0d ? -weight : weight;
+				out[r] += pw * s;
+				out[r + 1] += px * s;
+				out[r + 2] += py * s;
+				out[r + 3] += pz * s;
+				int sc = i + SCALE;
+				out[sc] += pose[sc] * weight;
+				out[sc + 1] += pose[sc + 1] * weight;
+				out[sc + 2] += pose[sc + 2] * weight;
+			}
+		}
+		for(int r = start + ROTATION; r < end; r += STRIDE) {
+			double w = out[r], x = out[r + 1], y = out[r + 2], z = out[r + 3];
+			double len2 = w * w + x * x + y * y + z * z;
+			if(len2 == 0d) {
+				out[r] = 1d; out[r + 1] = 0d; out[r + 2] = 0d; out[r + 3] = 0d;
+			} else {
+				double invLen = 1d / Math.sqrt(len2);
+				out[r] = w * invLen; out[r + 1] = x * invLen; out[r + 2] = y * invLen; out[r + 3] = z * invLen;
+			}
+		}
+	}
+
+	/**
+	 * blends a contiguous range of nodes, splitting it in half until it is no larger than the grain size.
+	 */
+	private class BlendTask extends RecursiveAction {
+		private final double[][] poses;
+		private final double[] weights;
+		private final int poseCount;
+		private final double invTotal;
+		private final double[] out;
+		private final int from, to;
+
+		BlendTask(double[][] poses, double[] weights, int poseCount, double invTotal, double[] out, int from, int to) {
+			this.poses = poses;
+			this.weights = weights;
+			this.poseCount = poseCount;
+			this.invTotal = invTotal;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from <= grainSize) {
+				blendRange(poses, weights, poseCount, invTotal, out, from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new BlendTask(poses, weights, poseCount, invTotal, out, from, mid),
+					new BlendTask(poses, weights, poseCount, invTotal, out, mid, to));
+		}
+	}
+
+	/**
+	 * sets the given matrix to the transform of a node of a pose: translation * rotation * scale.
+	 * @param pose
+	 * @param node
+	 * @param out
+	 * @return the output matrix, for chaining.
+	 */
+	public static Matrix4d toMatrix(double[] pose, int node, Matrix4d out) {
+		int i = node * STRIDE;
+		double[] m = out.val;
+		double w = pose[i + ROTATION], x = pose[i + ROTATION + 1], y = pose[i + ROTATION + 2], z = pose[i + ROTATION + 3];
+		double sx = pose[i + SCALE], sy = pose[i + SCALE + 1], sz = pose[i + SCALE + 2];
+		m[Matrix4d.M00] = (1d - 2d * (y * y + z * z)) * sx;
+		m[Matrix4d.M10] = 2d * (x * y + z * w) * sx;
+		m[Matrix4d.M20] = 2d * (x * z - y * w) * sx;
+		m[Matrix4d.M01] = 2d * (x * y - z * w) * sy;
+		m[Matrix4d.M11] = (1d - 2d * (x * x + z * z)) * sy;
+		m[Matrix4d.M21] = 2d * (y * z + x * w) * sy;
+		m[Matrix4d.M02] = 2d * (x * z + y * w) * sz;
+		m[Matrix4d.M12] = 2d * (y * z - x * w) * sz;
+		m[Matrix4d.M22] = (1d - 2d * (x * x + y * y)) * sz;
+		m[Matrix4d.M03] = pose[i + TRANSLATION];
+		m[Matrix4d.M13] = pose[i + TRANSLATION + 1];
+		m[Matrix4d.M23] = pose[i + TRANSLATION + 2];
+		m[Matrix4d.M30] = 0d; m[Matrix4d.M31] = 0d; m[Matrix4d.M32] = 0d; m[Matrix4d.M33] = 1d;
+		return out;
+	}
+
+	/**
+	 * single precision version of {@link #toMatrix(double[], int, Matrix4d)}.
+	 */
+	public static Matrix4f toMatrix(double[] pose, int node, Matrix4f out) {
+		int i = node * STRIDE;
+		float[] m = out.val;
+		double w = pose[i + ROTATION], x = pose[i + ROTATION + 1], y = pose[i + ROTATION + 2], z = pose[i + ROTATION + 3];
+		double sx = pose[i + SCALE], sy = pose[i + SCALE + 1], sz = pose[i + SCALE + 2];
+		m[Matrix4f.M00] = (float)((1d - 2d * (y * y + z * z)) * sx);
+		m[Matrix4f.M10] = (float)(2d * (x * y + z * w) * sx);
+		m[Matrix4f.M20] = (float)(2d * (x * z - y * w) * sx);
+		m[Matrix4f.M01] = (float)(2d * (x * y - z * w) * sy);
+		m[Matrix4f.M11] = (float)((1d - 2d * (x * x + z * z)) * sy);
+		m[Matrix4f.M21] = (float)(2d * (y * z + x * w) * sy);
+		m[Matrix4f.M02] = (float)(2d * (x * z + y * w) * sz);
+		m[Matrix4f.M12] = (float)(2d * (y * z - x * w) * sz);
+		m[Matrix4f.M22] = (float)((1d - 2d * (x * x + y * y)) * sz);
+		m[Matrix4f.M03] = (float)pose[i + TRANSLATION];
+		m[Matrix4f.M13] = (float)pose[i + TRANSLATION + 1];
+		m[Matrix4f.M23] = (float)pose[i + TRANSLATION + 2];
+		m[Matrix4f.M30] = 0f; m[Matrix4f.M31] = 0f; m[Matrix4f.M32] = 0f; m[Matrix4f.M33] = 1f;
+		return out;
+	}
+
+	/**
+	 * sets the given basis to the transform of a node of a pose. The basis ends up with no shear; its
+	 * shear/scale matrix holds only the pose's scale.
+	 * @param pose
+	 * @param node
+	 * @param out
+	 * @return the output basis, for chaining.
+	 */
+	public static AffineBasis toBasis(double[] pose, int node, AffineBasis out) {
+		int i = node * STRIDE;
+		out.translate.x = pose[i + TRANSLATION];
+		out.translate.y = pose[i + TRANSLATION + 1];
+		out.translate.z = pose[i + TRANSLATION + 2];
+		//MRotation holds the conjugate of the vector-operator quaternion. See Quaterniond.set(MRotation).
+		out.rotation.rotation.set(pose[i + ROTATION], -pose[i + ROTATION + 1], -pose[i + ROTATION + 2], -pose[i + ROTATION + 3], false);
+		Matrix4d ss = out.getShearScaleMatrix();
+		ss.idt();
+		ss.val[Matrix4d.M00] = pose[i + SCALE];
+		ss.val[Matrix4d.M11] = pose[i + SCALE + 1];
+		ss.val[Matrix4d.M22] = pose[i + SCALE + 2];
+		out.refreshPrecomputed();
+		return out;
+	}
+
+	/**
+	 * writes nodes [fromNode, toNode) of a pose into the corresponding matrices.
+	 */
+	public static void toMatrices(double[] pose, Matrix4d[] outs, int fromNode, int toNode) {
+		for(int n = fromNode; n < toNode; n++)
+			toMatrix(pose, n, outs[n]);
+	}
+
+	/**
+	 * writes nodes [fromNode, toNode) of a pose into the corresponding matrices.
+	 */
+	public static void toMatrices(double[] pose, Matrix4f[] outs, int fromNode, int toNode) {
+		for(int n = fromNode; n < toNode; n++)
+			toMatrix(pose, n, outs[n]);
+	}
+
+	/**
+	 * writes nodes [fromNode, toNode) of a pose into the corresponding bases.
+	 */
+	public static void toBases(double[] pose, AffineBasis[] outs, int fromNode, int toNode) {
+		for(int n = fromNode; n < toNode; n++)
+			toBasis(pose, n, outs[n]);
+	}
+
+	/**
+	 * stores the given matrix (which should be a rotation, translation and per axis scale, without shear)
+	 * as a node of a pose. A reflection is stored as a negative x scale.
+	 * @param pose
+	 * @param node
+	 * @param m
+	 */
+	public static void setNode(double[] pose, int node, Matrix4d m) {
+		double[] v = m.val;
+		setNode(pose, node, v[Matrix4d.M03], v[Matrix4d.M13], v[Matrix4d.M23],
+				v[Matrix4d.M00], v[Matrix4d.M10], v[Matrix4d.M20],
+				v[Matrix4d.M01], v[Matrix4d.M11], v[Matrix4d.M21],
+				v[Matrix4d.M02], v[Matrix4d.M12], v[Matrix4d.M22]);
+	}
+
+	/**
+	 * single precision version of {@link #setNode(double[], int, Matrix4d)}.
+	 */
+	public static void setNode(double[] pose, int node, Matrix4f m) {
+		float[] v = m.val;
+		setNode(pose, node, v[Matrix4f.M03], v[Matrix4f.M13], v[Matrix4f.M23],
+				v[Matrix4f.M00], v[Matrix4f.M10], v[Matrix4f.M20],
+				v[Matrix4f.M01], v[Matrix4f.M11], v[Matrix4f.M21],
+				v[Matrix4f.M02], v[Matrix4f.M12], v[Matrix4f.M22]);
+	}
+
+	/**
+	 * stores the given basis as a node of a pose. Any shear in the basis is discarded:
+	 * only the lengths of its shear/scale matrix's columns are kept, signed by its diagonal.
+	 * @param pose
+	 * @param node
+	 * @param basis
+	 */
+	public static void setNode(double[] pose, int node, AffineBasis basis) {
+		int i = node * STRIDE;
+		pose[i + TRANSLATION] = basis.translate.x;
+		pose[i + TRANSLATION + 1] = basis.translate.y;
+		pose[i + TRANSLATION + 2] = basis.translate.z;
+		MRotation rot = basis.rotation.rotation;
+		pose[i + ROTATION] = rot.getQ0();
+		pose[i + ROTATION + 1] = -rot.getQ1();
+		pose[i + ROTATION + 2] = -rot.getQ2();
+		pose[i + ROTATION + 3] = -rot.getQ3();
+		double[] ss = basis.getShearScaleMatrix().val;
+		pose[i + SCALE] = signedLength(ss[Matrix4d.M00], ss[Matrix4d.M10], ss[Matrix4d.M20], ss[Matrix4d.M00]);
+		pose[i + SCALE + 1] = signedLength(ss[Matrix4d.M01], ss[Matrix4d.M11], ss[Matrix4d.M21], ss[Matrix4d.M11]);
+		pose[i + SCALE + 2] = signedLength(ss[Matrix4d.M02], ss[Matrix4d.M12], ss[Matrix4d.M22], ss[Matrix4d.M22]);
+	}
+
+	private static double signedLength(double x, double y, double z, double sign) {
+		double len = Math.sqrt(x * x + y * y + z * z);
+		return sign < 0d ? -len : len;
+	}
+
+	private static void setNode(double[] pose, int node, double tx, double ty, double tz,
+			double xx, double xy, double xz, double yx, double yy, double yz, double zx, double zy, double zz) {
+		int i = node * STRIDE;
+		pose[i + TRANSLATION] = tx;
+		pose[i + TRANSLATION + 1] = ty;
+		pose[i + TRANSLATION + 2] = tz;
+		double sx = Math.sqrt(xx * xx + xy * xy + xz * xz);
+		double sy = Math.sqrt(yx * yx + yy * yy + yz * yz);
+		double sz = Math.sqrt(zx * zx + zy * zy + zz * zz);
+		double det = xx * (yy * zz - yz * zy) - yx * (xy * zz - xz * zy) + zx * (xy * yz - xz * yy);
+		if(det < 0d) sx = -sx;
+		pose[i + SCALE] = sx;
+		pose[i + SCALE + 1] = sy;
+		pose[i + SCALE + 2] = sz;
+		double ix = sx == 0d ? 0d : 1d / sx, iy = sy == 0d ? 0d : 1d / sy, iz = sz == 0d ? 0d : 1d / sz;
+		xx *= ix; xy *= ix; xz *= ix;
+		yx *= iy; yy *= iy; yz *= iy;
+		zx *= iz; zy *= iz; zz *= iz;
+		//Shepperd's method, on the rotation with columns x, y, z.
+		double w, x, y, z;
+		double trace = xx + yy + zz;
+		if(trace >= 0d) {
+			double s = Math.sqrt(trace + 1d);
+			w = 0.5d * s;
+			s = 0.5d / s;
+			x = (yz - zy) * s;
+			y = (zx - xz) * s;
+			z = (xy - yx) * s;
+		} else if(xx > yy && xx > zz) {
+			double s = Math.sqrt(1d + xx - yy - zz);
+			x = 0.5d * s;
+			s = 0.5d / s;
+			y = (yx + xy) * s;
+			z = (zx + xz) * s;
+			w = (yz - zy) * s;
+		} else if(yy > zz) {
+			double s = Math.sqrt(1d + yy - xx - zz);
+			y = 0.5d * s;
+			s = 0.5d / s;
+			x = (yx + xy) * s;
+			z = (zy + yz) * s;
+			w = (zx - xz) * s;
+		} else {
+			double s = Math.sqrt(1d + zz - xx - yy);
+			z = 0.5d * s;
+			s = 0.5d / s;
+			x = (zx + xz) * s;
+			y = (zy + yz) * s;
+			w = (xy - yx) * s;
+		}
+		double invLen = 1d / Math.sqrt(w * w + x * x + y * y + z * z);
+		pose[i + ROTATION] = w * invLen;
+		pose[i + ROTATION + 1] = x * invLen;
+		pose[i + ROTATION + 2] = y * invLen;
+		pose[i + ROTATION + 3] = z * invLen;
+	}
+}
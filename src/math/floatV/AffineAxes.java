@@ -0,0 +1,1198 @@
+package math.floatV;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import math.floatV.AbstractBasis;
+import math.floatV.AbstractAxes.DependencyReference;
+import math.floatV.AxisDependancy;
+import math.floatV.Rot;
+import math.floatV.SGVec_3f;
+import math.floatV.Vec3f;
+import math.floatV.sgRayf;
+
+/**
+ * Single precision counterpart of {@link math.doubleV.AffineAxes}.
+ */
+public class AffineAxes extends AbstractAxes {
+	
+	public static SGVec_3f xBase = new SGVec_3f(1,0,0);
+	public static SGVec_3f yBase = new SGVec_3f(0,1,0);
+	public static SGVec_3f zBase = new SGVec_3f(0,0,1);
+	
+	public boolean scaleDirty = false;
+	private sgRayf xTemp = new sgRayf(); 
+	private sgRayf yTemp = new sgRayf(); 
+	private sgRayf zTemp = new sgRayf();
+	private SGVec_3f tempHeading = new SGVec_3f();
+	
+	private int flipFlag = -1; //value of -1 means the bases do not need to flip. values of 0, 1, or 2 mean the bases 
+	//should flip along their X, Y, or Z axes respectively.  
+	
+	/**
+	 * state shared by every AffineAxes under the same root, and owned by that root. Axes move from one 
+	 * hierarchy to another as they are reparented (see {@link AffineAxes#syncHierarchy()}), so modifications 
+	 * to one hierarchy never invalidate the axes of another.
+	 */
+	static final class Hierarchy {
+		final AffineAxes root;
+		/**
+		 * source of every epoch value, so that epochs only ever increase and no two modifications anywhere 
+		 * are given the same value (see {@link AffineAxes#getModificationStamp()}).
+		 */
+		private static final AtomicLong EPOCHS = new AtomicLong(1);
+		/**
+		 * advanced whenever any axes in this hierarchy is modified, or leaves it. An axes which has been validated 
+		 * against the current epoch (and is not itself dirty) is known to be up to date without consulting its ancestors.
+		 */
+		private final AtomicLong epoch = new AtomicLong(EPOCHS.incrementAndGet());
+		private final LongAdder recomputations = new LongAdder();
+		
+		Hierarchy(AffineAxes root) {
+			this.root = root;
+		}
+		
+		long epoch() {
+			return epoch.get();
+		}
+		
+		/**
+		 * @return the new epoch.
+		 */
+		long modified() {
+			long next = EPOCHS.incrementAndGet();
+			while(true) {
+				long current = epoch.get();
+				if(current >= next) 
+					return current;
+				if(epoch.compareAndSet(current, next)) 
+					return next;
+			}
+		}
+	}
+	
+	/**not initialized in its declaration, as the super constructor may already have set it.*/
+	private Hierarchy hierarchy;
+	
+	/**incremented every time the global basis of these axes is recomputed, or their dependents otherwise need to be.*/
+	long globalVersion = 0;
+	/**the parent these axes were last composed against, and that parent's globalVersion at the time*/
+	AffineAxes composedAgainst = null;
+	long parentVersionAtUpdate = -1;
+	long validatedEpoch = 0;
+	
+	private int depth = 0;
+	private long depthEpoch = 0;
+	/**
+	 * the epoch at which these axes themselves were last modified, and the last computed {@link #getModificationStamp()} 
+	 * along with the epoch it was computed at. Not initialized in their declarations, as the super constructor 
+	 * may already have marked these axes dirty.
+	 */
+	private long modifiedEpoch;
+	private long stamp;
+	private long stampEpoch;
+
+
+	public <V extends Vec3f<?>> AffineAxes(V origin, V inX, V inY, V inZ, boolean forceOrthoNormality,
+			AbstractAxes parent) {
+		super(origin, inX, inY, inZ, parent, true);
+		this.forceOrthoNormality = forceOrthoNormality; 
+		createTempVars(origin);
+
+		areGlobal = true;		
+		sgRayf xRay = new sgRayf(origin, origin.addCopy(inX));
+		sgRayf yRay = new sgRayf(origin, origin.addCopy(inY));
+		sgRayf zRay = new sgRayf(origin, origin.addCopy(inZ));
+
+		localMBasis = new AffineBasis(xRay, yRay, zRay);
+		globalMBasis = new AffineBasis(xRay, yRay, zRay);
+		
+		V o = (V)origin.copy(); o.set(0,0,0);
+		V i = (V)o.copy(); i.set(1,1,1);
+		xTemp = new sgRayf(o, i); 
+	    yTemp = new sgRayf(o.copy(), i.copy()); 
+		zTemp = new sgRayf(o.copy(), i.copy());
+		//globalNormalizedBasis = getGlobalMBasis().copy();
+		
+
+		if(parent != null) {
+			this.setParent(parent);
+		} 	else {
+			this.areGlobal = true;
+		}
+		this.updateGlobal();
+	}
+
+
+	public AffineAxes(AffineBasis globalMBasis, boolean forceOrthoNormality, AffineAxes parent) {
+		super(globalMBasis, parent);
+		 xTemp = new sgRayf(makeDefaultVec(), makeDefaultVec()); 
+		 yTemp = new sgRayf(makeDefaultVec(), makeDefaultVec()); 
+		 zTemp = new sgRayf(makeDefaultVec(), makeDefaultVec());
+		this.forceOrthoNormality = forceOrthoNormality;
+	}
+	
+	/**
+	 * attaches the target axes to the given parent (if they aren't already attached to it), 
+	 * and sets their orthonormality constraint, in preparation for one of the *Into methods overwriting their local basis. 
+	 */
+	private static AffineAxes prepareTarget(AffineAxes target, AffineAxes parent, boolean forceOrthoNormality) {
+		if(target.getParentAxes() != parent || (parent == null) != target.areGlobal)
+			target.setParent(parent);
+		target.forceOrthoNormality = forceOrthoNormality;
+		return target;
+	}
+	
+	public <B extends AbstractBasis> B getLocalOf(B input) {
+		return (B) new AffineBasis(this.getLocalOf(input.getXRay()), this.getLocalOf(input.getYRay()), this.getLocalOf(input.getZRay()));
+	}
+
+
+	/**
+	 * @return a copy of these axes that does not refer to any parent. 
+	 * Because there is no parent, the copy's global coordinates and local coordinates will be equivalent to each other. 
+	 * The copy's local coordinates will also be equivalent to the original's local coordinates. However, the copy's
+	 * global coordinates will likely be drastically different from the original's global coordinates. 
+	 *   
+	 */
+	@Override
+	public AbstractAxes freeCopy() {
+		AffineAxes freeCopy = 
+				new AffineAxes(
+						this.getLocalMBasis().translate, 
+						this.getLocalMBasis().getXHeading(), 
+						this.getLocalMBasis().getYHeading(),
+						this.getLocalMBasis().getZHeading(), 
+						this.forceOrthoNormality,
+						null);
+		return freeCopyInto(freeCopy);
+	}
+	
+	/**
+	 * like {@link #freeCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes freeCopyInto(AffineAxes target) {
+		prepareTarget(target, null, this.forceOrthoNormality);
+		target.getLocalMBasis().adoptValues(this.localMBasis);
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+	
+	
+	/**
+	 * Creates an exact copy of this Axes object. Attached to the same parent as this Axes object
+	 * @param slipAware
+	 * @return
+	 */
+	@Override
+	public AbstractAxes attachedCopy(boolean slipAware) {
+		this.updateGlobal();
+		AbstractAxes copy = new AffineAxes(getGlobalMBasis(),
+																this.forceOrthoNormality, 
+																this.getParentAxes());  
+		if(!slipAware) copy.setSlipType(IGNORE);
+		copy.getLocalMBasis().adoptValues(this.localMBasis);
+		copy.markDirty();
+		return copy;
+	}
+	
+	/**
+	 * like {@link #attachedCopy(boolean)}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is attached to the parent of these axes if it isn't already.
+	 * @param target
+	 * @param slipAware
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes attachedCopyInto(AffineAxes target, boolean slipAware) {
+		this.updateGlobal();
+		prepareTarget(target, this.getParentAxes(), this.forceOrthoNormality);
+		target.setSlipType(slipAware ? NORMAL : IGNORE);
+		target.getLocalMBasis().adoptValues(this.localMBasis);
+		target.markDirty();
+		return target;
+	}
+	
+	@Override
+	public AbstractAxes relativeTo(AbstractAxes in) { 
+		AffineAxes result = 
+				new AffineAxes(workingVector, 
+						this.getLocalMBasis().getXRay().heading(), 
+						this.getLocalMBasis().getYRay().heading(), 
+						this.getLocalMBasis().getZRay().heading(), 
+						this.forceOrthoNormality, 
+						null);
+
+		result.setParent(in);
+		return result;
+	}
+	
+	/**
+	 * Make a GlobalCopy of these Axes. 
+	 * @return
+	 */
+	@Override
+	public AffineAxes getGlobalCopy() {
+		this.updateGlobal();
+		AffineAxes globalCopy = new AffineAxes( this.getGlobalMBasis(), this.forceOrthoNormality, null);
+		return globalCopyInto(globalCopy);
+	}
+	
+	/**
+	 * like {@link #getGlobalCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes globalCopyInto(AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, this.forceOrthoNormality);
+		target.getLocalMBasis().adoptValues(this.globalMBasis);
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+
+	public AffineAxes getOrthoNormalizedGlobalCopy() {
+		this.updateGlobal();		
+		AffineAxes orthoNormalizedCopy =
+				new AffineAxes(
+						this.origin_(), 
+						this.x_norm_().heading(), 
+						this.y_norm_().heading(),
+						this.z_norm_().heading(), 
+						true,
+						null);
+		orthoNormalizedCopy.getLocalMBasis().rotation = new Rot(this.getGlobalMBasis().rotation.rotation);
+		orthoNormalizedCopy.getLocalMBasis().setShearXBaseTo(xBase.multCopy(getGlobalMBasis().isAxisFlipped(AffineBasis.X) ? -1 : 1), false);
+		orthoNormalizedCopy.getLocalMBasis().setShearYBaseTo(yBase.multCopy(getGlobalMBasis().isAxisFlipped(AffineBasis.Y) ? -1 : 1), false);
+		orthoNormalizedCopy.getLocalMBasis().setShearZBaseTo(zBase.multCopy(getGlobalMBasis().isAxisFlipped(AffineBasis.Z) ? -1 : 1), false);
+		orthoNormalizedCopy.getLocalMBasis().rotation = new Rot(this.getGlobalMBasis().rotation.rotation);
+		orthoNormalizedCopy.markDirty();
+		orthoNormalizedCopy.updateGlobal();
+		return orthoNormalizedCopy;
+	}
+	
+	/**
+	 * like {@link #getOrthoNormalizedGlobalCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes orthoNormalizedGlobalCopyInto(AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, true);
+		AffineBasis global = this.getGlobalMBasis();
+		AffineBasis local = target.getLocalMBasis();
+		local.adoptValues(global);
+		MRotation r = global.rotation.rotation;
+		local.rotation.rotation.set(r.getQ0(), r.getQ1(), r.getQ2(), r.getQ3(), false);
+		SGVec_3f base = target.tempHeading;
+		base.set(xBase); if(global.isAxisFlipped(AffineBasis.X)) base.mult(-1f);
+		local.setShearXBaseTo(base, false);
+		base.set(yBase); if(global.isAxisFlipped(AffineBasis.Y)) base.mult(-1f);
+		local.setShearYBaseTo(base, false);
+		base.set(zBase); if(global.isAxisFlipped(AffineBasis.Z)) base.mult(-1f);
+		local.setShearZBaseTo(base, false);
+		local.refreshPrecomputed();
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+	
+	
+	public boolean hasNonOrthonormalAncestor() {
+		if(this.getParentAxes() == null) return false; 
+		else if (!this.getParentAxes().forceOrthoNormality || !this.forceOrthoNormality) 
+			return true; 
+		else 
+			return this.getParentAxes().hasNonOrthonormalAncestor();
+	}
+
+	public <V extends Vec3f<?>> V getRawGlobalOf(V input) {
+		V result =  (V) input.copy();
+		setToRawGlobalOf(input, result);
+		return  result;
+	}
+
+	public sgRayf getRawGlobalOf(sgRayf input) {
+		return new sgRayf(getRawGlobalOf(input.p1()), getRawGlobalOf(input.p2()));
+	}
+
+
+	public sgRayf getRawLocalOf(sgRayf input) {
+		return new sgRayf(getRawLocalOf(input.p1()), getRawLocalOf(input.p2()));
+	}
+
+
+
+	public sgRayf getOrthoNormalizedLocalOf(sgRayf input) {
+		return new sgRayf(getOrthoNormalizedLocalOf(input.p1()), getOrthoNormalizedLocalOf(input.p2()));
+	}
+
+	public <V extends Vec3f<?>> V   getOrthoNormalizedLocalOf(V in) {
+		V result =  (V) in.copy(); 
+		setToOrthoNormalLocalOf(in, result);
+		return  result;
+	}
+
+
+	/**
+	 * like getLocalOf, except uses the axes non-orthonormal doppelganger. 
+	 * @param in
+	 * @return
+	 */
+	public <V extends Vec3f<?>> V  getRawLocalOf(V in) {
+		V result =  (V) in.copy(); 
+		setToRawLocalOf(in, result);
+		return  result;
+	}
+	
+	/**
+	 *  Given a vector in global coordinates, modifies the vector's values to represent its position in theseAxes local coordinates.
+	 * @param in
+	 * @return a reference to the @param in object. 
+	 */
+	public SGVec_3f setToLocalOf(SGVec_3f  in) {
+		if(forceOrthoNormality)
+			setToOrthoNormalLocalOf(in, in);
+		else 
+			setToRawLocalOf(in, in);
+		return in;
+	}
+
+	/**
+	 *  Given a vector in global coordinates, modifies the vector's values to represent its position in theseAxes local coordinates.
+	 * @param in
+	 */
+	public void setToLocalOf(SGVec_3f in, SGVec_3f out) {
+		if(forceOrthoNormality)
+			setToOrthoNormalLocalOf(in, out);
+		else 
+			setToRawLocalOf(in, out);
+	}
+
+	/**
+	 * like setToLocalOf, except uses the axes non-orthonormal doppelganger. 
+	 * @param in
+	 * @return
+	 */
+	public <V extends Vec3f<?>> void setToRawLocalOf(V in, V out) {
+		this.updateGlobal();
+		this.getGlobalMBasis().setToLocalOf(in, out);
+	}
+
+	public void setToRawLocalOf(sgRayf input, sgRayf output) {
+		this.setToRawLocalOf(input.p1(), output.p1());
+		this.setToRawLocalOf(input.p2(), output.p2());
+	}
+
+	public void setToRawLocalOf(AffineBasis input, AffineBasis output) {
+		this.updateGlobal();
+		this.getGlobalMBasis().setToLocalOf(input, output);
+	}
+
+	public void setToOrthoNormalizedLocalOf(AffineBasis input, AffineBasis output) {
+		this.updateGlobal();
+		this.getGlobalMBasis().setToOrthoNormalLocalOf(input, output);
+	}
+	
+	/**
+	 * @param input_global a ray in global space
+	 * @param local_output will be updated to represent that   
+	 * with respect to an orthonormal version of this axes. (shear is not applied, but reflections are) 
+	 */	
+
+	public void setToOrthonormalLocalOf(sgRayf global_input, sgRayf local_output) {
+		this.setToOrthoNormalLocalOf(global_input.p1(), local_output.p1());
+		this.setToOrthoNormalLocalOf(global_input.p2(), local_output.p2());
+	}
+	
+	/**
+	 * @param input_global a point in global space
+	 * @param local_output will be updated to represent that point  
+	 * with respect to an orthonormal version of this axes. (shear is not applied, but reflections are) 
+	 */	
+
+	public <V extends Vec3f<?>> void setToOrthoNormalLocalOf(V input_global, V output_local_normalized) {
+		this.updateGlobal();
+		this.getGlobalMBasis().setToOrthoNormalLocalOf(input_global, output_local_normalized);
+	}
+	
+	/**
+	 * @param input_global a point in global space
+	 * @param output_local_orthonormal_chiral will be updated to the same point 
+	 * with respect to a righthanded orthonormal version of this axes.
+	 */	
+	public <V extends Vec3f<?>> void setToOrientationalLocalOf(V input_global, V output_local_orthonormal_chiral) {
+		this.updateGlobal();
+		this.getGlobalMBasis().setToOrientationalLocalOf(input_global, output_local_orthonormal_chiral);
+	}
+	
+	/**
+	 * @param input_global a point in global space
+	 * @return a copy of that point with respect to a righthanded orthonormal version of this axes.
+	 */	
+	public SGVec_3f   getOrientationalLocalOf(SGVec_3f input_global) {
+		SGVec_3f result =  input_global.copy();
+		setToOrientationalLocalOf(input_global, result);
+		return  result;
+	}
+	
+	/**
+	 * if the input axes have have the same global
+	 * values as these axes, returns true, otherwise, returns false.
+	 * 
+	 * This function is orthonormality aware. Meaning, if the orthonormality 
+	 * constraint is enabled on either axes, that axes' orthonormal version
+	 * will be used in the comparison. 
+	 * @param ax
+	 */
+	@Override
+	public <A extends AbstractAxes> boolean equals(A ax) {
+		this.updateGlobal();
+		ax.updateGlobal();
+		boolean composedMatricesAreEquivalent = false; 
+		Matrix4f thisGlobal = forceOrthoNormality ? getGlobalMBasis().getComposedOrthoNormalMatrix() : getGlobalMBasis().getComposedMatrix();
+		if(this.getClass().isAssignableFrom(ax.getClass())) {
+			Matrix4f axGlobal = ((AffineAxes)ax).forceOrthoNormality ? ((AffineAxes)ax).getGlobalMBasis().getComposedOrthoNormalMatrix() : ((AffineAxes)ax).getGlobalMBasis().getComposedMatrix();
+			composedMatricesAreEquivalent = thisGlobal.equals(axGlobal);
+		}		
+		boolean originsAreEquivalent = getGlobalMBasis().getOrigin().equals(ax.origin_());
+
+		return composedMatricesAreEquivalent && originsAreEquivalent;
+	}
+
+	/**
+	 * @param input_local a point with respect to this axes
+	 * @param output_local_orthonormal_chiral will be updated to a point 
+	 * equivalent to the point which would result if transforming
+	 * only by this axes position and orientation (scale, shear, and reflection are not applied)
+	 */	
+	public void setToOrientationalGlobalOf(SGVec_3f input_local, SGVec_3f output_global_orthonormal_chiral) {
+		this.updateGlobal();
+		this.getGlobalMBasis().setToOrientationalGlobalOf(input_local, output_global_orthonormal_chiral);
+	}
+
+	/**
+	 * @param input_local a point with respect to this axes
+	 * @return a point equivalent to the point which would result if transforming
+	 * only by this axes position and orientation (scale, shear, and reflection are not applied)
+	 */	
+	public SGVec_3f getOrientationalGlobalOf(SGVec_3f input_local) {
+		SGVec_3f result =  input_local.copy();
+		setToOrientationalGlobalOf(input_local, result);
+		return result;
+	}
+	
+	/**
+	 * brings the global basis of these axes up to date. Staleness is detected lazily: 
+	 * these axes are recomposed only if they are dirty themselves, or if the parent's globalVersion 
+	 * differs from the one they were last composed against.
+	 */
+	public void updateGlobal() {
+		if(this.hierarchy != null && this.validatedEpoch == this.hierarchy.epoch() && !this.dirty && !this.scaleDirty) 
+			return;
+		boolean stale = this.dirty || this.scaleDirty;
+		if(!this.areGlobal) {
+			AffineAxes parent = getParentAxes();
+			parent.updateGlobal();
+			stale = stale || isStaleAgainst(parent);
+		}
+		//read before composing, so that a modification made while composing is not mistaken for one already seen.
+		long epoch = syncHierarchy().epoch();
+		if(stale) 
+			composeGlobal();
+		dirty = false;
+		this.validatedEpoch = epoch;
+	} 
+	
+	/**
+	 * @return the hierarchy these axes belong to. 
+	 */
+	Hierarchy hierarchy() {
+		Hierarchy result = this.hierarchy;
+		return result != null ? result : syncHierarchy();
+	}
+	
+	/**
+	 * moves these axes into the hierarchy of their parent (or into one of their own, if they have no parent) 
+	 * if they aren't in it already. Leaving a hierarchy counts as modifying it, so that descendants which were 
+	 * validated against the old hierarchy revalidate (and move along with these axes) the next time they are read. 
+	 * @return the hierarchy these axes now belong to.
+	 */
+	Hierarchy syncHierarchy() {
+		AffineAxes parent = getPathParent();
+		Hierarchy current = this.hierarchy;
+		Hierarchy target;
+		if(parent != null) 
+			target = parent.hierarchy();
+		else 
+			target = current != null && current.root == this ? current : new Hierarchy(this);
+		if(target != current) {
+			this.hierarchy = target;
+			this.validatedEpoch = 0;
+			this.depthEpoch = 0;
+			this.stampEpoch = 0;
+			if(current != null) 
+				current.modified();
+		}
+		return target;
+	}
+	
+	/**
+	 * @return true if these axes are dirty, or were last composed against a different parent 
+	 * or against an older version of the given parent's global basis.
+	 */
+	boolean isStaleAgainst(AffineAxes parent) {
+		return this.dirty || this.scaleDirty
+				|| this.composedAgainst != parent 
+				|| this.parentVersionAtUpdate != parent.globalVersion;
+	}
+	
+	/**
+	 * recomputes the global basis of these axes from their local basis and the global basis of their parent, 
+	 * without walking up the hierarchy. The parent's global basis is assumed to already be up to date 
+	 * (as is the case when axes are updated in parent-before-child order).
+	 */
+	void composeGlobal() {
+		if(this.areGlobal) {
+			this.globalMBasis.adoptValues(this.getLocalMBasis());
+			this.composedAgainst = null;
+		} else {
+			AffineAxes parent = getParentAxes();
+			((AffineBasis)parent.globalMBasis).applyTo(this.localMBasis, this.globalMBasis);
+			this.composedAgainst = parent;
+			this.parentVersionAtUpdate = parent.globalVersion;
+			/*if(this.debug) {	
+				System.out.println("Global Rotation post: \n" + getGlobalMBasis().rotation);
+			}*/
+		}
+		this.globalVersion++;
+		hierarchy().recomputations.increment();
+		this.dirty = false;
+		this.scaleDirty = false;
+	}
+	
+	/**
+	 * marks these axes dirty. Child AffineAxes are not marked dirty themselves, as they notice the change 
+	 * through this axes' globalVersion the next time they are read.
+	 */
+	@Override
+	public void markDirty() {
+		this.modifiedEpoch = hierarchy().modified();
+		super.markDirty();
+	}
+	
+	/**
+	 * notifies the dependents of these axes which aren't child AffineAxes. Neither children nor the dependents 
+	 * of descendants are visited, so modifying axes costs the same however many descendants they have: children 
+	 * recompose lazily (see {@link #markDirty()}), and anything depending on a descendant can tell whether it is 
+	 * still current by comparing that descendant's {@link #getModificationStamp()} with the one it last saw.
+	 */
+	@Override
+	public void markDependentsDirty() {
+		for(AxisDependancy dependent : dependentsSet) {
+			if(dependent == null) continue;
+			if(dependent instanceof AffineAxes && ((AffineAxes)dependent).getParentAxes() == this) continue;
+			dependent.markDirty();
+		}
+	}
+	
+	/**
+	 * invalidates every descendant of these axes in constant time, by advancing 
+	 * the version they were composed against.
+	 */
+	public void markChildScalesDirty() {
+		this.globalVersion++;
+		this.modifiedEpoch = hierarchy().modified();
+	}
+
+	public void markChildReflectionDirty(int flipFlag) {
+		markChildScalesDirty();
+	}
+
+	public void markScaleDirty() {
+		this.scaleDirty = true;
+		this.modifiedEpoch = hierarchy().modified();
+	}
+
+	public void markReflectionDirty(int flipFlag) {
+		this.flipFlag = flipFlag;
+		markChildReflectionDirty(this.flipFlag);
+	}
+	
+	/** 
+	 * @param val if set to false, axes will not be reorthonormalized on update. If set to true, axes will 
+	 * be reorthogonalized. By default, this is set to true;
+	 */
+	public void setOrthoNormalityConstraint(boolean val) {
+		forceOrthoNormality = val;
+		this.markDirty();
+	}
+	
+	@Override
+	public AffineAxes getLocalOf(AbstractAxes input) {
+		this.updateGlobal();
+			AffineBasis newBasis = new AffineBasis((AffineBasis)input.getLocalMBasis());
+			this.getGlobalMBasis().setToLocalOf(input.getGlobalMBasis(), newBasis);
+			return new AffineAxes(
+				newBasis, 
+				((AffineAxes)input).forceOrthoNormality,
+				null); 		
+	}	
+	
+	/**
+	 * like {@link #getLocalOf(AbstractAxes)}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param input
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes localOfInto(AffineAxes input, AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, input.forceOrthoNormality);
+		this.getGlobalMBasis().setToLocalOf(input.getGlobalMBasis(), target.getLocalMBasis());
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+	
+	
+	
+	/**
+	 *  Given an input vector in this axes local coordinates, modifies the output vector's values to represent the input's position in global coordinates.
+	 * @param in
+	 */
+	public void setToGlobalOf(SGVec_3f input, SGVec_3f output) {
+		this.updateGlobal();
+		if(this.forceOrthoNormality)
+			this.setToOrthoNormalizedGlobalOf(input, output);
+		else 
+			getGlobalMBasis().applyTo(input, output);		
+	}
+	
+	
+	/**
+	 *  Given a vector in this axes local coordinates, modifies the vector's values to represent its position global coordinates.
+	 * @param in
+	 * @return a reference to this the @param in object.
+	 */
+	public SGVec_3f setToGlobalOf(SGVec_3f in) {
+		this.updateGlobal();
+		if(this.forceOrthoNormality)
+			this.setToOrthoNormalizedGlobalOf(in, in);
+		else 
+			getGlobalMBasis().applyTo(in, in);
+		return in;
+	}
+	
+	/** 
+	 * like setToGlobalOf, but operates on the axes non-orthonormaldoppelganger
+	 * @param input
+	 * @param output
+	 * @return a reference to these Axes, for method chaining.
+	 */
+	public <V extends Vec3f<?>> void setToRawGlobalOf(V input, V output) {
+		this.updateGlobal();
+		getGlobalMBasis().applyTo(input, output);
+	}
+	
+	public  <V extends Vec3f<?>> V getOrthoNormalizedGlobalOf(V in) {
+		V result =  (V) workingVector.copy();
+		setToOrthoNormalizedGlobalOf(in, result);
+		return  result;
+	}
+	
+	public  <V extends Vec3f<?>> void setToOrthoNormalizedGlobalOf(V input, V output) {
+		this.updateGlobal();		
+		getGlobalMBasis().setToOrthoNormalGlobalOf(input, output);
+	}
+
+	public void setToOrthoNormalizedGlobalOf(sgRayf input, sgRayf output) {
+		this.updateGlobal();
+		this.setToOrthoNormalizedGlobalOf(input.p1(), output.p1());
+		this.setToOrthoNormalizedGlobalOf(input.p2(), output.p2());
+	}
+
+	public void setToRawGlobalOf(sgRayf input, sgRayf output) {
+		this.updateGlobal();
+		this.setToRawGlobalOf(input.p1(), output.p1());
+		this.setToRawGlobalOf(input.p2(), output.p2());
+	}
+	
+	/**
+	 * 
+	 * @param xHeading new global xHeading
+	 * @param yHeading new global yHeading
+	 * @param zHeading new gloabl zHeading
+	 * @param flipOn axis to ignore on rotation adjustment if chirality changes. 0 = x, 1= y, 2 =z;
+	 */
+	public  <V extends Vec3f<?>> void setHeadings(V xHeading, V yHeading, V zHeading, int autoFlip) {
+		this.markDirty();
+		this.updateGlobal();
+		V localX = (V) xHeading.copy(); localX.set(0,0,0);
+		 V localY = (V) localX.copy(); V localZ = (V)localX.copy();
+		V tempX =(V) xHeading.copy(); 
+		V tempY = (V) yHeading.copy(); 
+		V tempZ = (V) zHeading.copy(); 
+		if(this.getParentAxes() != null) {
+			this.getParentAxes().getGlobalMBasis().setToLocalOf(tempX.add(this.getParentAxes().getGlobalMBasis().translate), localX); 
+			this.getParentAxes().getGlobalMBasis().setToLocalOf(tempY.add(this.getParentAxes().getGlobalMBasis().translate), localY);
+			this.getParentAxes().getGlobalMBasis().setToLocalOf(tempZ.add(this.getParentAxes().getGlobalMBasis().translate), localZ);
+		}
+		if(autoFlip >= 0) {
+			this.flipFlag = autoFlip;
+
+			if(autoFlip == 0) {
+				Rot newRot = new Rot(this.getParentAxes().getGlobalMBasis().getOrthonormalYHead(), this.getParentAxes().getGlobalMBasis().getOrthonormalZHead(), yHeading, zHeading);//new Rot(this.getGlobalMBasis().yBase, this.getGlobalMBasis().zBase, localY, localZ);/
+				this.getParentAxes().getGlobalMBasis().setToLocalizedRotation(newRot, this.getLocalMBasis().rotation);//this.getParentAxes().getGlobalMBasis().rotation.applyInverseTo(newRot.applyTo(this.getParentAxes().getGlobalMBasis().rotation));
+			} else if( autoFlip == 1) {
+				Rot newRot = new Rot(this.getParentAxes().getGlobalMBasis().getOrthonormalXHead(), this.getParentAxes().getGlobalMBasis().getOrthonormalZHead(), xHeading, zHeading);
+				this.getParentAxes().getGlobalMBasis().setToLocalizedRotation(newRot, this.getLocalMBasis().rotation);
+			} else{// if(autoFlip == 2){
+				Rot newRot = new Rot(this.getParentAxes().getGlobalMBasis().getOrthonormalXHead(), this.getParentAxes().getGlobalMBasis().getOrthonormalYHead(), xHeading, yHeading);
+				this.getParentAxes().getGlobalMBasis().setToLocalizedRotation(newRot, this.getLocalMBasis().rotation);
+			}
+		}
+		this.getLocalMBasis().setXHeading(localX, false);
+		this.getLocalMBasis().setYHeading(localY, false);
+		this.getLocalMBasis().setZHeading(localZ, true);
+		this.markDirty();
+		this.updateGlobal();	
+	}
+	
+	public AffineAxes getRawGlobalCopy() {
+		this.updateGlobal();
+		AffineAxes rawGlobalCopy = 
+				new AffineAxes(
+						this.getGlobalMBasis(), 
+						false,
+						null);
+		rawGlobalCopy.getLocalMBasis().adoptValues(this.globalMBasis);
+		rawGlobalCopy.markDirty();
+		rawGlobalCopy.updateGlobal();
+		return rawGlobalCopy;
+	}
+	
+	/**
+	 * like {@link #getRawGlobalCopy()}, but overwrites the given axes instead of allocating new ones. 
+	 * The target is detached from its parent if it has one.
+	 * @param target
+	 * @return the target, for chaining.
+	 */
+	public AffineAxes rawGlobalCopyInto(AffineAxes target) {
+		this.updateGlobal();
+		prepareTarget(target, null, false);
+		target.getLocalMBasis().adoptValues(this.globalMBasis);
+		target.markDirty();
+		target.updateGlobal();
+		return target;
+	}
+	
+	public sgRayf x_() {
+		this.updateGlobal();
+		if(this.forceOrthoNormality) {
+			return x_norm_();
+		} else 
+			return this.getGlobalMBasis().getXRay();
+	}
+
+
+	public sgRayf y_() {
+		this.updateGlobal();  	
+		if(this.forceOrthoNormality) {
+			return y_norm_();
+		} else 
+			return this.getGlobalMBasis().getYRay();
+	}
+
+	public sgRayf z_() {
+		this.updateGlobal();  
+		if(this.forceOrthoNormality) {
+			return z_norm_();
+		} else 
+			return this.getGlobalMBasis().getZRay();
+	}
+
+	public sgRayf x_norm_() {
+		this.updateGlobal();  
+		this.getGlobalMBasis().setToOrthonormalXHead(tempHeading);
+		xTemp.p1().set(this.getGlobalMBasis().getOrigin()); xTemp.heading(tempHeading);
+		return xTemp;
+	}
+
+	public sgRayf y_norm_() {
+		this.updateGlobal();  
+		this.getGlobalMBasis().setToOrthonormalYHead(tempHeading);
+		yTemp.p1().set(this.getGlobalMBasis().getOrigin()); yTemp.heading(tempHeading);
+		return yTemp;
+	}
+
+	public sgRayf z_norm_() {
+		this.updateGlobal();  
+		this.getGlobalMBasis().setToOrthonormalZHead(tempHeading);
+		zTemp.p1().set(this.getGlobalMBasis().getOrigin()); zTemp.heading(tempHeading);
+		return zTemp;
+	}
+
+	public sgRayf x_raw_() {
+		this.updateGlobal();  
+		return this.getGlobalMBasis().getXRay();
+	}
+
+	public sgRayf y_raw_() {
+		this.updateGlobal();  
+		return this.getGlobalMBasis().getYRay();
+	}
+
+	public sgRayf z_raw_() {
+		this.updateGlobal();  
+		return this.getGlobalMBasis().getZRay();
+	}
+	
+	public sgRayf ly_raw_() {
+		return this.getLocalMBasis().getYRay();
+	}
+
+	public sgRayf lz_raw_() {
+		return this.getLocalMBasis().getZRay();
+	}
+
+	public sgRayf lx_norm_() {
+		return this.getLocalMBasis().getXRay();
+	}
+
+	public sgRayf ly_norm_() {
+		return this.getLocalMBasis().getYRay();
+	}
+
+	public sgRayf lz_norm_() {
+		return this.getLocalMBasis().getZRay();
+	}
+	
+
+	public sgRayf lx_raw_() {
+		return this.getLocalMBasis().getXRay();
+	}
+
+	/**
+	 * @return a vector representing this frame's orientational X basis vector. Guaranteed to be Right-Handed and orthonormal. 
+	 */
+
+	public Vec3f<?> orientation_X_() {
+		this.updateGlobal();
+		return  this.getGlobalMBasis().getRotationalXHead();
+	}
+
+	/**
+	 * @return a vector representing this frame's orientational Y basis vector. Guaranteed to be Right-Handed and orthonormal. 
+	 */
+
+	public Vec3f<?>   orientation_Y_() {
+		this.updateGlobal();
+		return  this.getGlobalMBasis().getRotationalYHead();
+	}
+
+	/**
+	 * @return a vector representing this frame's orientational Z basis vector. Guaranteed to be Right-Handed and orthonormal. 
+	 */
+
+	public Vec3f<?>   orientation_Z_() {
+		this.updateGlobal();
+		return  this.getGlobalMBasis().getRotationalZHead();
+	}
+
+	/**
+	 * @return a vector representing this frame's orthonormal X basis vector. Guaranteed to be orthonormal but not necessarily right-handed. 
+	 */
+
+	public Vec3f<?>   orthonormal_X_() {
+		this.updateGlobal();
+		return  this.getGlobalMBasis().getOrthonormalXHead();
+	}
+	
+
+	/**
+	 * @return a vector representing this frame's orthonormal Y basis vector. Guaranteed to be orthonormal but not necessarily right-handed. 
+	 */
+	public Vec3f<?>   orthonormal_Y_() {
+		this.updateGlobal();
+		return  this.getGlobalMBasis().getOrthonormalYHead();
+	}
+	
+	/**
+	 * @return a vector representing this frame's orthonormal Z basis vector. Guaranteed to be orthonormal but not necessarily right-handed. 
+	 */
+	public Vec3f<?>   orthonormal_Z_() {
+		this.updateGlobal();
+		return  this.getGlobalMBasis().getOrthonormalZHead();
+	}
+	
+
+	public sgRayf getOrthoNormalizedGlobalOf(sgRayf in) {
+		sgRayf result = new sgRayf(new SGVec_3f(0,0,0), new SGVec_3f(1,1,1));
+		setToOrthoNormalizedGlobalOf(in, result);
+		return result;
+	}
+	
+		
+	public void rotateAboutX(float angle, boolean orthonormalized) {
+		this.updateGlobal();
+		Vec3f<?> xHead = orthonormalized ? getGlobalMBasis().getOrthonormalXHead() : getGlobalMBasis().getXHeading();
+		Rot xRot = new Rot(xHead, angle);
+		this.rotateBy(xRot);
+		this.markDirty();
+	}
+
+	public void rotateAboutY(float angle, boolean orthonormalized) {
+		this.updateGlobal();
+		Vec3f<?> yHead = orthonormalized ? getGlobalMBasis().getOrthonormalYHead() : getGlobalMBasis().getYHeading();
+		Rot yRot = new Rot(yHead, angle);
+		this.rotateBy(yRot);
+		this.markDirty();
+	}
+
+	public void rotateAboutZ(float angle, boolean orthonormalized) {
+		this.updateGlobal();
+		Vec3f<?> zHead = orthonormalized ? getGlobalMBasis().getOrthonormalZHead() : getGlobalMBasis().getZHeading();
+		Rot zRot = new Rot(zHead, angle);
+		this.rotateBy(zRot);
+		this.markDirty();
+	}
+	
+	public void rotateAboutX(float angle) {
+		this.rotateAboutX(angle, false);
+	}
+
+	public void rotateAboutY(float angle) {
+		this.rotateAboutY(angle, false);
+	}
+
+	public void rotateAboutZ(float angle) {
+		this.rotateAboutZ(angle, false);
+	}
+	
+	public void scaleBy(float scaleX, float scaleY, float scaleZ) {
+		this.updateGlobal();
+		this.getLocalMBasis().scaleXBy(scaleX);
+		this.getLocalMBasis().scaleYBy(scaleY);
+		this.getLocalMBasis().scaleZBy(scaleZ);
+		this.markDirty();
+		this.updateGlobal();
+	}
+	
+	public void scaleXBy(float scale) {
+		this.getLocalMBasis().scaleXBy(scale);
+		this.markDirty();
+		this.updateGlobal();
+	}
+
+	public void scaleYBy(float scale) {
+		this.getLocalMBasis().scaleYBy(scale);
+		this.markDirty();
+		this.updateGlobal();
+		//}
+	}	
+
+	public void scaleZBy(float scale) {
+		this.updateGlobal();
+		this.getLocalMBasis().scaleZBy(scale);
+		this.markDirty();
+		this.updateGlobal();
+	}
+
+
+	public void scaleXTo(float scale) {		
+		if(!this.forceOrthoNormality) {
+			this.updateGlobal();
+			this.getGlobalMBasis().scaleXTo(scale);
+			if(this.getParentAxes() != null)
+				this.getParentAxes().setToLocalOf(this.getGlobalMBasis(), this.getLocalMBasis());
+			else
+				this.getLocalMBasis().adoptValues(getGlobalMBasis());
+			this.markDirty();
+			this.updateGlobal();
+		}
+	}
+
+	public void scaleYTo(float scale) {		
+		if(!this.forceOrthoNormality) {
+			this.updateGlobal();
+			this.getGlobalMBasis().scaleYTo(scale);
+			if(this.getParentAxes() != null)
+				this.getParentAxes().setToLocalOf(this.getGlobalMBasis(), this.getLocalMBasis());
+			else
+				this.getLocalMBasis().adoptValues(getGlobalMBasis());
+			this.markDirty();
+			this.updateGlobal();
+		}
+	}	
+
+	public void scaleZTo(float scale) {
+		if(!this.forceOrthoNormality) {
+			this.updateGlobal();
+			this.getGlobalMBasis().scaleZTo(scale);
+			if(this.getParentAxes() != null)
+				this.getParentAxes().setToLocalOf(this.getGlobalMBasis(), this.getLocalMBasis());
+			else
+				this.getLocalMBasis().adoptValues(getGlobalMBasis());
+			this.markDirty();
+			this.updateGlobal();
+		}
+	}
+	
+	/**
+	 * @return the number of ancestors these axes have (0 for axes without a parent). 
+	 * Cached until some axes in the same hierarchy is next modified.
+	 */
+	public int getDepth() {
+		if(hierarchy == null || depthEpoch != hierarchy.epoch()) {
+			AffineAxes parent = getPathParent();
+			int parentDepth = parent == null ? -1 : parent.getDepth();
+			long epoch = syncHierarchy().epoch();
+			depth = parentDepth + 1;
+			depthEpoch = epoch;
+		}
+		return depth;
+	}
+	
+	/**
+	 * @return the parent whose global basis these axes are composed against, or null if these axes are global.
+	 */
+	private AffineAxes getPathParent() {
+		return this.areGlobal ? null : getParentAxes();
+	}
+	
+	/**
+	 * @param a
+	 * @param b
+	 * @return the deepest axes which is an ancestor of (or the same as) both a and b, or null if they 
+	 * belong to different hierarchies.
+	 */
+	public static AffineAxes lowestCommonAncestor(AffineAxes a, AffineAxes b) {
+		int depthA = a.getDepth(), depthB = b.getDepth();
+		for(; depthA > depthB; depthA--) a = a.getPathParent();
+		for(; depthB > depthA; depthB--) b = b.getPathParent();
+		while(a != b) {
+			a = a.getPathParent();
+			b = b.getPathParent();
+		}
+		return a;
+	}
+	
+	/**
+	 * computes the affine matrix taking points in the local space of these axes to points in the local space of 
+	 * the reference axes. Only the local bases on the path between the two and their lowest common ancestor 
+	 * are composed, so neither axes' global basis is touched (or brought up to date), and nothing above 
+	 * the common ancestor contributes any rounding error. If the two belong to different hierarchies, both 
+	 * paths are composed all the way up through world space.
+	 * @param reference
+	 * @param output
+	 * @return the output matrix, for chaining.
+	 */
+	public Matrix4f setToTransformIn(AffineAxes reference, Matrix4f output) {
+		AffineAxes ancestor = lowestCommonAncestor(this, reference);
+		output.idt();
+		boolean orthogonal = reference.appendPathFrom(ancestor, output);
+		if(orthogonal) 
+			Matrix4f.invRigid(output.val, output.val);
+		else 
+			Matrix4f.invAffine(output.val, output.val);
+		appendPathFrom(ancestor, output);
+		return output;
+	}
+	
+	/**
+	 * @return the transform of these axes relative to the reference axes, see {@link #setToTransformIn(AffineAxes, Matrix4f)}.
+	 */
+	public Matrix4f getTransformIn(AffineAxes reference) {
+		return setToTransformIn(reference, new Matrix4f());
+	}
+	
+	/**
+	 * postmultiplies output by each local affine matrix from the given ancestor (exclusive) down to these axes, 
+	 * outermost first. A null ancestor appends the whole path from world space, root included. The path is walked by recursion, so that nothing needs to hold the partial products.
+	 * @return true if every local basis on the path was orthogonal (so that the product can be inverted by transposition).
+	 */
+	private boolean appendPathFrom(AffineAxes ancestor, Matrix4f output) {
+		if(this == ancestor) 
+			return true;
+		AffineAxes parent = getPathParent();
+		boolean orthogonal = parent == null || parent.appendPathFrom(ancestor, output);
+		AffineBasis local = getLocalMBasis();
+		float[] m = output.val, c = local.getComposedMatrix().val;
+		float tx = local.translate.x, ty = local.translate.y, tz = local.translate.z;
+		for(int row = 0; row < 3; row++) {
+			float a0 = m[row + Matrix4f.M00], a1 = m[row + Matrix4f.M01], a2 = m[row + Matrix4f.M02];
+			m[row + Matrix4f.M00] = a0 * c[Matrix4f.M00] + a1 * c[Matrix4f.M10] + a2 * c[Matrix4f.M20];
+			m[row + Matrix4f.M01] = a0 * c[Matrix4f.M01] + a1 * c[Matrix4f.M11] + a2 * c[Matrix4f.M21];
+			m[row + Matrix4f.M02] = a0 * c[Matrix4f.M02] + a1 * c[Matrix4f.M12] + a2 * c[Matrix4f.M22];
+			m[row + Matrix4f.M03] += a0 * tx + a1 * ty + a2 * tz;
+		}
+		return orthogonal && (local.getTransformKind() & AffineBasis.ORTHOGONAL) != 0;
+	}
+	
+	/**
+	 * @return a counter which changes every time the global basis of these axes is recomputed 
+	 * (or their dependents are otherwise invalidated). 
+	 */
+	public long getGlobalVersion() {
+		this.updateGlobal();
+		return globalVersion;
+	}
+	
+	/**
+	 * @return a value which changes whenever these axes or any of their ancestors are modified or reparented, 
+	 * and otherwise stays the same. Reading it never recomposes a global basis: after a modification, only the 
+	 * ancestors which haven't been read since are visited, to collect the stamps they were last modified at. 
+	 * Values are unique across hierarchies, so axes moved into another hierarchy never repeat a stamp they had before.
+	 */
+	public long getModificationStamp() {
+		Hierarchy current = this.hierarchy;
+		if(current == null || this.stampEpoch != current.epoch()) {
+			//read before visiting the ancestors, so that a modification made meanwhile is not mistaken for one already seen.
+			long epoch = syncHierarchy().epoch();
+			AffineAxes parent = getPathParent();
+			long parentStamp = parent == null ? 0 : parent.getModificationStamp();
+			this.stamp = Math.max(parentStamp, this.modifiedEpoch);
+			this.stampEpoch = epoch;
+		}
+		return this.stamp;
+	}
+	
+	/**
+	 * @return the number of times the global basis of any axes in the same hierarchy as these 
+	 * has been recomputed since the last call to {@link #resetRecomputationCount()}.
+	 */
+	public long getRecomputationCount() {
+		return hierarchy().recomputations.sum();
+	}
+	
+	/**
+	 * resets the recomputation count of the hierarchy these axes belong to.
+	 */
+	public void resetRecomputationCount() {
+		hierarchy().recomputations.reset();
+	}
+	
+	@Override
+	public AffineBasis getGlobalMBasis() {
+		this.updateGlobal();
+		return (AffineBasis)globalMBasis;
+	}
+	
+	@Override
+	public AffineBasis getLocalMBasis() {
+		return (AffineBasis)localMBasis;
+	}
+	
+	@Override
+	public AffineAxes getParentAxes() {
+		return (AffineAxes)super.getParentAxes();
+	}
+
+}
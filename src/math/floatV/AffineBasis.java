@@ -0,0 +1,1483 @@
+package math.floatV;
+
+
+
+import math.floatV.AbstractBasis;
+import math.floatV.Rot;
+import math.floatV.SGVec_3f;
+import math.floatV.Vec3f;
+import math.floatV.sgRayf;
+import numerical.Precision.NotARotationMatrixException;
+
+/**
+ * Single precision counterpart of {@link math.doubleV.AffineBasis}, with the same handling of 
+ * non-uniform scale, shear, reflection and chirality.
+ */
+public class AffineBasis extends AbstractBasis {
+
+	/**
+	 * FIXME:  magnitudes should always remain positive! 
+	 * Use determinants to determine handedness.
+	 */
+
+	/**
+	 * xHeading, yHeading, and zHeading represent the direction of this vector's bases
+	 * relative to their parent. The orthogonality of these is dependent on the ancestor's
+	 * scaling. If all ancestors have uniform scaling, these are guaranteed to remain orthogonal. 
+	 * 
+	 * if orthogonality is not assured due to non-uniform parent scaling, and the user 
+	 * wants to operate on these bases as if they were orthogonal, it is prudent to work
+	 * with respect to the rotation of this basis instead of its headings. 
+	 * 
+	 * note that orthogonality should generally be assured unless this is a world-space matrix or 
+	 * has been derived from a world space matrix in which orthogonality was not assured. 
+	 */
+	/*private SGVec_3f xHeading  = new SGVec_3f(1,0,0); 
+	private SGVec_3f yHeading  = new SGVec_3f(0,1,0); 
+	private SGVec_3f zHeading  = new SGVec_3f(0,0,1);*/ 
+
+	//public boolean forceOrthonormal = false;
+	public Vec3f<?> scale;
+
+	
+
+	private boolean[] flippedAxes;// = new boolean[3];
+	private Matrix4f reflectionMatrix;// = new Matrix4f();
+	private Matrix4f inverseReflectionMatrix;// = new Matrix4f();
+
+	protected int chirality = RIGHT;
+
+	private Vec3f<?> scaledXHeading; 
+	private Vec3f<?> scaledYHeading; 
+	private Vec3f<?> scaledZHeading; 
+
+	//private Transform3D inverseComposedTransform = new Transform3D();
+
+	private Matrix4f composedMatrix; 
+	private Matrix4f inverseComposedMatrix;
+	private Matrix4f shearScaleMatrix; 
+	
+	private Matrix4f composedOrthoNormalMatrix;
+	private Matrix4f inverseComposedOrthoNormalMatrix;
+
+
+	private boolean reflectionInversesDirty = true;
+	private boolean composedInversesDirty = true;
+	private boolean orthoNormalInversesDirty = true;
+	//Matrix4f tempMat = new Matrix4f();
+	
+	float [] arrVec1 = new float[4];
+	float [] arrVec2 = new float[4];
+	
+	/**
+	 * scratch vectors, so that per-frame operations don't need to allocate. 
+	 * (created in init(), since init() may run before field initializers do).
+	 */
+	private SGVec_3f workingV1; 
+	private SGVec_3f workingV2;
+	private Rot localizedRotation;
+	
+	/**
+	 * bitmask of the derived values which are out of date with respect to this basis' 
+	 * rotation and shearScaleMatrix. refreshPrecomputed() only sets these bits, and each 
+	 * derived value is recomputed the first time it is read after its bit was set. 
+	 */
+	private int dirtyArtifacts; 
+	private static final int DIRTY_COMPOSED = 1, DIRTY_CHIRALITY = 2, DIRTY_ORTHONORMAL = 4, DIRTY_HEADINGS = 8, DIRTY_RAYS = 16; 
+	private static final int DIRTY_ALL = DIRTY_COMPOSED | DIRTY_CHIRALITY | DIRTY_ORTHONORMAL | DIRTY_HEADINGS | DIRTY_RAYS;
+	private long recomputations;
+	private long skippedRecomputations;
+	
+	/**
+	 * bitmask classifying the linear (rotation, scale, shear, reflection) portion of this basis,
+	 * see {@link #getTransformKind()}. Updated by refreshPrecomputed().
+	 */
+	private int transformKind;
+	
+	/**the linear portion of the basis is the identity. The basis can at most translate.*/
+	public static final int TRANSLATION = 1; 
+	/**the basis can only rotate and translate (its shearScaleMatrix is the identity).*/
+	public static final int RIGID = 2; 
+	/**the basis can rotate, reflect and translate, but does not scale or shear.*/
+	public static final int ORTHOGONAL = 4;
+	/**the basis preserves angles. It may rotate, reflect, translate and scale uniformly.*/
+	public static final int CONGRUENT = 8;
+	/**always set, any basis is affine.*/
+	public static final int AFFINE = 16;
+	/**the basis is mirrored (its shearScaleMatrix has a negative determinant).*/
+	public static final int NEGATIVE_DETERMINANT = 32;
+	
+	/**how far from exact a shearScaleMatrix or rotation may be and still be treated as belonging to a more specific kind. 
+	 * (Looser than the double precision version's, as single precision rounding alone exceeds 1e-12).*/
+	private static final float KIND_TOLERANCE = 1e-6f;
+	/**
+	 * convergence threshold for decomposing the initial headings into a rotation. The double precision basis uses 1e-8, 
+	 * which single precision can't resolve (float epsilon is about 1.2e-7), so the decomposition would never converge.
+	 */
+	private static final float DECOMPOSITION_THRESHOLD = 1e-5f;
+
+
+
+	
+
+	/**
+	 * A basis is a collection of linearly independent rays + their origin. 
+	 * Bases can be affine -- supporting uniform scaling, non-uniform scaling
+	 * shearing, rotation, and reflection. 
+	 * 
+	 * rotation is handled behind the scenes as if the basis were of righthanded 
+	 * chirality, even if the basis is of left-handed chirality. 
+	 * 
+	 * when the basis is instantiated, the initial orientation attempts to line up
+	 * with the input y-axis, and x-axis (for historical reasons having mostly to do with
+	 * this library's original purpose) regardless of chirality. 
+	 * 
+	 * if it cannot align with both y and z due to non-orthogonality, the orientaiton
+	 * aligns its x to the xy plane, and its y precisely to the yheading.
+	 *
+	 * @param x the x ray. it's p1 value is assumed to be the base's origin. 
+	 * @param y the y ray. it's p1 value is ignored for any purpose other than determining direction.
+	 * @param z the z ray. it's p1 value is ignored for any purpose other than determining direction.
+	 */
+	public AffineBasis(sgRayf x, sgRayf y, sgRayf z) {
+		super(x.p1());
+		this.shearScaleMatrix.idt();
+		this.translate.set((SGVec_3f) x.p1().copy());
+		arrVec1 = new float[4];
+		arrVec2 = new float[4];
+
+		scale = translate.copy(); 
+		this.scale.x = x.mag();
+		this.scale.y = y.mag();
+		this.scale.z = z.mag();
+		
+		this.scaledXHeading = xBase.copy();
+		this.scaledYHeading = yBase.copy(); 
+		this.scaledZHeading = zBase.copy();
+		
+		Vec3f<?>  xDirNew = x.heading().copy();
+		Vec3f<?> yDirNew = y.heading().copy(); 
+		Vec3f<?> zDirNew =  z.heading().copy();   		
+		Vec3f<?>[]  dirNew = new Vec3f<?>[] {xDirNew, yDirNew, zDirNew}; 
+		Vec3f<?>[]  baseDir = new Vec3f<?>[] {xBase, yBase, zBase}; 
+		
+		
+		tempMatrix.val[M00] = xDirNew.x; tempMatrix.val[M10] = xDirNew.y; tempMatrix.val[M20] = xDirNew.z;
+		tempMatrix.val[M01] = yDirNew.x; tempMatrix.val[M11] = yDirNew.y; tempMatrix.val[M21] = yDirNew.z;
+		tempMatrix.val[M02] = zDirNew.x; tempMatrix.val[M12] = zDirNew.y; tempMatrix.val[M22] = zDirNew.z;
+		
+		int negmostidx = -1;
+		if(tempMatrix.det3x3() <0) {
+			float negMost = 1f;
+			//improper rotation, resolve by negating whichever component most deviates from its identity representation
+			for(int i= 0; i<dirNew.length; i++) {
+				float dirdot = dirNew[i].dot(baseDir[i]);
+				if(dirdot < negMost) {
+					negMost = dirdot; negmostidx = i;
+				}
+			}
+			Vec3f<?> nv = dirNew[negmostidx].multCopy(-1f);
+			tempMatrix.setColumn(negmostidx, nv.x, nv.y, nv.z, 0);
+		}
+		float[][] tempMat = new float[3][3]; 
+		
+		createMultiDimMatrixFromMat4f(tempMatrix, tempMat);
+			
+		Rot decompRot;
+		try {
+			decompRot = new Rot(new MRotation(tempMat, DECOMPOSITION_THRESHOLD, true));
+		} catch (NotARotationMatrixException e) {
+			//too far from orthogonal to converge. Fall back to the rotation which takes x exactly onto the x heading 
+			//and y into the plane of the x and y headings (Gram-Schmidt), leaving the rest to the shear.
+			SGVec_3f xHead = new SGVec_3f(tempMatrix.val[M00], tempMatrix.val[M10], tempMatrix.val[M20]);
+			SGVec_3f yHead = new SGVec_3f(tempMatrix.val[M01], tempMatrix.val[M11], tempMatrix.val[M21]);
+			decompRot = new Rot(new SGVec_3f(1f, 0f, 0f), new SGVec_3f(0f, 1f, 0f), xHead, yHead);
+		}
+		applyInverseRotTo(decompRot, tempMatrix, shearScaleMatrix);
+		if(negmostidx > -1) {
+			float[] tempvec = new float[4];
+			shearScaleMatrix.getColumn(negmostidx, tempvec);
+			Vec3f<?> tempV = this.translate.copy().set(tempvec); 
+			tempV.mult(-1f);
+			shearScaleMatrix.setColumn(negmostidx, tempV.x, tempV.y, tempV.z, 0);
+			flippedAxes[negmostidx] = true;
+		}
+		this.rotation = decompRot;
+		this.refreshPrecomputed();
+	}
+	
+
+	public AffineBasis(Vec3f<?> origin) {
+		super(origin);
+		arrVec1 = new float[4];
+		arrVec2 = new float[4];
+		scale = translate.copy(); 
+		this.scale.set(1,1,1);
+		this.rotation = new Rot();
+		this.shearScaleMatrix.idt();
+		this.scaledXHeading = xBase.copy();
+		this.scaledYHeading = yBase.copy(); 
+		this.scaledZHeading = zBase.copy();
+		this.refreshPrecomputed();
+	}
+
+	public AffineBasis(AffineBasis input) {
+		super(input.translate);
+		arrVec1 = new float[4];
+		arrVec2 = new float[4];
+		scale = translate.copy(); 
+		this.adoptValues(input);
+	}
+	
+	public void init() {
+		this.scaledXHeading = xBase.copy();
+		this.scaledYHeading = yBase.copy(); 
+		this.scaledZHeading = zBase.copy();
+		arrVec1 = new float[4];
+		arrVec2 = new float[4];
+		composedMatrix = new Matrix4f(); 
+		inverseComposedMatrix = new Matrix4f();
+		 shearScaleMatrix = new Matrix4f(); 
+		flippedAxes = new boolean[3];
+		reflectionMatrix = new Matrix4f();
+		inverseReflectionMatrix = new Matrix4f();
+		reflectionInversesDirty = true;
+		composedInversesDirty = true;
+		orthoNormalInversesDirty = true;
+		composedOrthoNormalMatrix = new Matrix4f();
+		inverseComposedOrthoNormalMatrix = new Matrix4f();
+		workingV1 = new SGVec_3f(); 
+		workingV2 = new SGVec_3f();
+		localizedRotation = new Rot();
+		dirtyArtifacts = DIRTY_ALL;
+		transformKind = AFFINE;
+		this.initialized = true;
+	}
+
+	/**
+	 * takes on the same values (not references) as the input basis. 
+	 * @param in
+	 */
+	public <T extends AbstractBasis> void adoptValues(T inputBasis) {
+		AffineBasis in = (AffineBasis) inputBasis;
+		super.adoptValues(in);
+		this.shearScaleMatrix.set(in.getShearScaleMatrix());
+		scale.set(in.scale);
+
+		this.reflectionInversesDirty = true;
+		this.composedInversesDirty = true;
+		this.orthoNormalInversesDirty = true;
+		refreshPrecomputed();
+	}
+
+	public void orthoNormalize() {
+		ensureChirality();
+		if(flippedAxes[X]) shearScaleMatrix.setColumn(X, -xBase.x, -xBase.y, -xBase.z, 0);
+		else shearScaleMatrix.setColumn(X, xBase.x, xBase.y, xBase.z, 0);
+		if(flippedAxes[Y]) shearScaleMatrix.setColumn(Y, -yBase.x, -yBase.y, -yBase.z, 0);
+		else shearScaleMatrix.setColumn(Y, yBase.x, yBase.y, yBase.z, 0);
+		if(flippedAxes[Z]) shearScaleMatrix.setColumn(Z, -zBase.x, -zBase.y, -zBase.z, 0);
+		else shearScaleMatrix.setColumn(Z, zBase.x, zBase.y, zBase.z, 0);
+
+		refreshPrecomputed();
+	}
+
+	@Override
+	public AffineBasis copy() {
+		return new AffineBasis(this);
+	}
+	Matrix4f tempMatrix = new Matrix4f();
+
+	/**
+	 * sets the values of local_output such that
+	 * 
+	 * this.getGlobalOf(local_output) == global_input.  
+	 *  
+	 * @param input
+	 */
+
+	@Override
+	public <B extends AbstractBasis> void setToLocalOf(B global_input, B local_output) {
+		
+		if((transformKind & RIGID) != 0) {
+			//this basis has no scale, shear or reflection to remove, so only the rotation and translation change.
+			this.rotation.applyInverseTo(global_input.rotation, local_output.rotation);
+			((AffineBasis)local_output).shearScaleMatrix.set(((AffineBasis)global_input).shearScaleMatrix);
+			this.setToLocalOf(global_input.translate, local_output.translate);
+			local_output.refreshPrecomputed();
+			return;
+		}
+
+		this.rotation.applyInverseTo(global_input.rotation, local_output.rotation); 
+		((AffineBasis)local_output).composedMatrix.setToAffineMulOf(this.getInverseComposedMatrix(), ((AffineBasis)global_input).getComposedMatrix());
+		this.setToChiralityModifiedRotationOf(local_output.rotation, local_output.rotation);
+		//local_output.rotation.set(currentRot);
+		//Rot postModRot = this.rotation.applyTo(currentRot);
+
+		((AffineBasis)local_output).composedMatrix.getColumn(X, arrVec1);		
+		local_output.rotation.rotation.applyInverseTo(arrVec1, arrVec2);
+		//SGVec_3f orthonormalVer = new SGVec_3f();  this.setToOrthoNormalLocalOf(arrV, orthonormalVer);
+		((AffineBasis)local_output).shearScaleMatrix.setColumn(X, arrVec2);	
+
+		((AffineBasis)local_output).composedMatrix.getColumn(Y, arrVec1);		
+		local_output.rotation.rotation.applyInverseTo(arrVec1, arrVec2);
+		((AffineBasis)local_output).shearScaleMatrix.setColumn(Y, arrVec2);
+
+		((AffineBasis)local_output).composedMatrix.getColumn(Z, arrVec1);		
+		local_output.rotation.rotation.applyInverseTo(arrVec1, arrVec2);
+		((AffineBasis)local_output).shearScaleMatrix.setColumn(Z, arrVec2);
+		//tempMatrix.mul(this.reflectionMatrix, global_input.reflectionMatrix);
+		//local_output.shearScaleMatrix.mul(local_output.shearScaleMatrix, tempMatrix);		
+		this.setToLocalOf(global_input.translate, local_output.translate);
+
+		local_output.refreshPrecomputed();
+	}
+	
+	public <B extends AbstractBasis> void setToLocalOf(Rot global_input, Rot local_output) {
+		this.refreshPrecomputed();
+		this.inverseRotation.applyTo(global_input, local_output);
+		setToChiralityModifiedRotationOf(local_output, local_output);
+	}
+
+	/**
+	 * like set to OrientationalLocalOf, but acknowledge chirality.
+	 * @param globalInput
+	 * @param local_output
+	 */
+	public void setToOrthoNormalLocalOf(AffineBasis global_input, AffineBasis local_output) {
+		this.rotation.applyInverseTo(global_input.rotation, local_output.rotation);//global_input.rotation.applyToInverseOf(this.rotation);
+		local_output.shearScaleMatrix.set(global_input.shearScaleMatrix);
+		local_output.applyInverseRotTo(this.rotation, global_input.shearScaleMatrix, local_output.shearScaleMatrix);
+		this.setToLocalOf(global_input.translate, local_output.translate);
+		local_output.shearScaleMatrix.setToAffineMulOf(local_output.shearScaleMatrix, this.getReflectionMatrix());
+		local_output.refreshPrecomputed();		
+	}
+
+	public boolean debug = false;
+
+	/**
+	 * sets globalOutput such that the result of 
+	 * this.getLocalOf(globalOutput) == localInput. 
+	 * 
+	 * @param localInput
+	 * @param globalOutput
+	 */
+	@Override
+	public <B extends AbstractBasis>  void applyTo(B localInput, B globalOutput) {	
+		//all scratch space used here belongs to globalOutput, so that 
+		//many children can safely be composed against the same parent concurrently.
+		AffineBasis globalOut = (AffineBasis)globalOutput;
+		this.applyTo(localInput.translate, globalOutput.translate);
+		if((transformKind & RIGID) != 0) {
+			//this basis has no scale, shear or reflection to impart, so the rotations simply compose.
+			globalOut.shearScaleMatrix.set(((AffineBasis)localInput).shearScaleMatrix);
+			this.rotation.applyTo(localInput.rotation, globalOutput.rotation);
+			globalOutput.refreshPrecomputed();
+			return;
+		}
+		globalOut.tempMatrix.setToAffineMulOf(this.shearScaleMatrix, ((AffineBasis)localInput).getComposedMatrix());		
+		setToChiralityModifiedRotationOf(localInput.rotation, globalOutput.rotation, globalOut.workingV1);
+		globalOut.applyInverseRotTo(globalOutput.rotation, globalOut.tempMatrix, globalOut.shearScaleMatrix);
+		this.rotation.applyTo(globalOutput.rotation, globalOutput.rotation);
+		globalOutput.refreshPrecomputed();
+	}
+	
+	@Override
+	public void applyTo(Rot input, Rot output) {
+		try {
+		setToChiralityModifiedRotationOf(input, output);
+		rotation.applyTo(output, output);
+		} catch(Exception e) {
+			e.printStackTrace();
+		}
+ 	}
+
+	/**
+	 * @return the input rotation with respect to this basis, computed into scratch storage belonging to this basis. 
+	 * The returned Rot is overwritten by the next call, so copy it (or use {@link #setToLocalizedRotation(Rot, Rot)}) 
+	 * to keep the result.
+	 */
+	@Override
+	public Rot getLocalizedRotation(Rot inRot) {	
+			setToLocalizedRotation(inRot, localizedRotation);
+			return localizedRotation;		
+	}
+	
+	/**
+	 * like getLocalizedRotation, but writes the result into outRot. 
+	 * @param inRot
+	 * @param outRot may be the same object as inRot
+	 */
+	public void setToLocalizedRotation(Rot inRot, Rot outRot) {
+		float q0 = inRot.rotation.getQ0();
+		workingV1.x = inRot.rotation.getQ1();
+		workingV1.y = inRot.rotation.getQ2();
+		workingV1.z = inRot.rotation.getQ3();
+		this.getInverseComposedOrthoNormalMatrix().transform(workingV1, workingV1);		
+		ensureChirality();
+		setToChiralityScaled(q0, workingV1, outRot);
+	}
+	
+	private void setToChiralityModifiedRotationOf(Rot localRot, Rot outputRot) {
+		setToChiralityModifiedRotationOf(localRot, outputRot, workingV1);
+	}
+	
+	/**
+	 * @param scratch vector to work in. 
+	 */
+	private void setToChiralityModifiedRotationOf(Rot localRot, Rot outputRot, SGVec_3f scratch) {
+		float q0 = localRot.rotation.getQ0();
+		scratch.x = localRot.rotation.getQ1();
+		scratch.y = localRot.rotation.getQ2();
+		scratch.z = localRot.rotation.getQ3();
+		this.getReflectionMatrix().transform(scratch, scratch);
+		setToChiralityScaled(q0, scratch, outputRot);
+	}
+	
+	/**
+	 * sets outputRot to the rotation with the given scalar part and (already transformed) vector part, 
+	 * its angle multiplied by this basis' chirality. 
+	 * 
+	 * Transforming a rotation's axis by an orthonormal matrix is the same as transforming the vector part of its quaternion, 
+	 * and negating its angle is the same as negating that vector part. So this is equivalent to 
+	 * outputRot.set(transformedAxis, angle * chirality), without the trigonometry of 
+	 * extracting an axis and angle and converting them back.
+	 */
+	private void setToChiralityScaled(float q0, SGVec_3f transformedVector, Rot outputRot) {
+		outputRot.rotation.set(q0,
+				this.chirality * transformedVector.x,
+				this.chirality * transformedVector.y,
+				this.chirality * transformedVector.z, false);
+	}
+
+
+	//SGVec_3f tempV_3 = new SGVec_3f(0,0,0);
+
+	/**
+	 * @return the x-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed. 
+	 */
+	public Vec3f<?> getRotationalXHead() {
+		return this.rotation.applyToCopy(xBase);
+	}
+
+	/**
+	 * @return the y-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public Vec3f<?> getRotationalYHead() {
+		return this.rotation.applyToCopy(yBase);
+	}
+
+	/**
+	 * @return the z-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public Vec3f<?> getRotationalZHead() {
+		return this.rotation.applyToCopy(zBase);
+	}
+
+
+	/**
+	 * @return the x-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public Vec3f<?> getOrthonormalXHead() {
+		//setToShearXBase(workingVector);
+		if(!isAxisFlipped(X))  
+			return this.rotation.applyToCopy(xBase);
+		else 
+			return this.rotation.applyToCopy(SGVec_3f.mult(xBase, -1f));
+	}
+
+	/**
+	 * @return the y-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public Vec3f<?> getOrthonormalYHead() {
+		if(!isAxisFlipped(Y))  
+			return this.rotation.applyToCopy(yBase);
+		else 
+			return this.rotation.applyToCopy(SGVec_3f.mult(yBase, -1f));
+	}
+
+	/**
+	 * @return the z-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public Vec3f<?> getOrthonormalZHead() {
+
+		if(!isAxisFlipped(Z))  
+			return this.rotation.applyToCopy(zBase);
+		else 
+			return this.rotation.applyToCopy(SGVec_3f.mult(zBase, -1f));
+	}
+	
+	/**
+	 * sets output to the x-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public <V extends Vec3f<?>> void setToRotationalXHead(V output) {
+		this.rotation.applyTo(xBase, output);
+	}
+
+	/**
+	 * sets output to the y-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public <V extends Vec3f<?>> void setToRotationalYHead(V output) {
+		this.rotation.applyTo(yBase, output);
+	}
+
+	/**
+	 * sets output to the z-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal and right-handed.
+	 */
+	public <V extends Vec3f<?>> void setToRotationalZHead(V output) {
+		this.rotation.applyTo(zBase, output);
+	}
+
+	/**
+	 * sets output to the x-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public <V extends Vec3f<?>> void setToOrthonormalXHead(V output) {
+		ensureChirality();
+		output.setX_(flippedAxes[X] ? -xBase.x : xBase.x); 
+		output.setY_(flippedAxes[X] ? -xBase.y : xBase.y); 
+		output.setZ_(flippedAxes[X] ? -xBase.z : xBase.z);
+		this.rotation.applyTo(output, output);
+	}
+
+	/**
+	 * sets output to the y-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public <V extends Vec3f<?>> void setToOrthonormalYHead(V output) {
+		ensureChirality();
+		output.setX_(flippedAxes[Y] ? -yBase.x : yBase.x); 
+		output.setY_(flippedAxes[Y] ? -yBase.y : yBase.y); 
+		output.setZ_(flippedAxes[Y] ? -yBase.z : yBase.z);
+		this.rotation.applyTo(output, output);
+	}
+
+	/**
+	 * sets output to the z-heading of the orthonormal rotation matrix of this basis.
+	 * guaranteed to be orthonormal but not necessarily right-handed.
+	 */
+	public <V extends Vec3f<?>> void setToOrthonormalZHead(V output) {
+		ensureChirality();
+		output.setX_(flippedAxes[Z] ? -zBase.x : zBase.x); 
+		output.setY_(flippedAxes[Z] ? -zBase.y : zBase.y); 
+		output.setZ_(flippedAxes[Z] ? -zBase.z : zBase.z);
+		this.rotation.applyTo(output, output);
+	}
+
+	//FIXME: Or, at least make sure I work. 
+
+	/**
+	 * like set setToOrientationalGlobalOf, but acknowledges chirality. 
+	 * @param input
+	 * @param output
+	 */
+	public <V extends Vec3f<?>> void setToOrthoNormalGlobalOf(V input, V output) {	
+		if(input != null) {
+			mulLinear(getReflectionMatrix().val, input, output);
+			this.rotation.applyTo(output, output);
+			output.setX_(output.x+translate.x); 
+			output.setY_(output.y+translate.y); 
+			output.setZ_(output.z+translate.z);  		
+		}
+	}
+
+	public void setToOrientationalGlobalOf(SGVec_3f input, SGVec_3f output) {	
+		this.rotation.applyTo(input, output);
+		output.setX_(output.x+translate.x); 
+		output.setY_(output.y+translate.y); 
+		output.setZ_(output.z+translate.z);  		
+	}
+
+	public <V extends Vec3f<?>> void applyTo(V input, V output) {
+		if((transformKind & TRANSLATION) != 0) {
+			output.setX_(input.x); output.setY_(input.y); output.setZ_(input.z);
+		} else if((transformKind & RIGID) != 0) 
+			this.rotation.applyTo(input, output);
+		else 
+			mulLinear(this.getComposedMatrix().val, input, output);		
+		output.setX_(output.x+translate.x); 
+		output.setY_(output.y+translate.y); 
+		output.setZ_(output.z+translate.z); 	
+	}
+
+
+	public <V extends Vec3f<?>> void setToGlobalOf(V input) {
+		this.applyTo(input, input);
+	}
+
+	public <V extends Vec3f<?>> V getGlobalOf(V input) {
+		V result = (V) input.copy();
+		this.applyTo(input, result);
+		return result;
+	}
+	
+	
+	public <V extends Vec3f<?>> void setToLocalOf(V input, V output) {
+		float x = input.x - translate.x; 
+		float y = input.y - translate.y; 
+		float z = input.z - translate.z; 		
+		if((transformKind & (TRANSLATION | RIGID)) != 0) {
+			output.setX_(x); output.setY_(y); output.setZ_(z);
+			if((transformKind & TRANSLATION) == 0) 
+				this.rotation.applyInverseTo(output, output);
+			return;
+		}
+		float[] inv = this.getInverseComposedMatrix().val;
+		output.setX_(x * inv[M00] + y * inv[M01] + z * inv[M02]); 
+		output.setY_(x * inv[M10] + y * inv[M11] + z * inv[M12]); 
+		output.setZ_(x * inv[M20] + y * inv[M21] + z * inv[M22]);
+	}
+
+	/**
+	 * transforms a packed run of vectors from this basis' local space into global space, in place. 
+	 * The result is the same as calling {@link #applyTo(Vec3f, Vec3f)} on each vector.
+	 * @param vecs array holding the x, y, and z components of each vector
+	 * @param offset index of the x component of the first vector
+	 * @param numVecs number of vectors to transform
+	 * @param stride number of floats between the starts of subsequent vectors. Must be >= 3.
+	 */
+	public void applyTo(float[] vecs, int offset, int numVecs, int stride) {
+		transform3x3(this.getComposedMatrix().val, translate.x, translate.y, translate.z, vecs, offset, numVecs, stride);
+	}
+	
+	/**
+	 * like {@link #setToOrthoNormalGlobalOf(Vec3f, Vec3f)}, but for a packed run of vectors, in place.
+	 * @see #applyTo(float[], int, int, int) 
+	 */
+	public void setToOrthoNormalGlobalOf(float[] vecs, int offset, int numVecs, int stride) {
+		transform3x3(this.getComposedOrthoNormalMatrix().val, translate.x, translate.y, translate.z, vecs, offset, numVecs, stride);
+	}
+	
+	/**
+	 * transforms a packed run of vectors from global space into this basis' local space, in place.
+	 * The result is the same as calling {@link #setToLocalOf(Vec3f, Vec3f)} on each vector.
+	 * @see #applyTo(float[], int, int, int) 
+	 */
+	public void setToLocalOf(float[] vecs, int offset, int numVecs, int stride) {
+		float[] m = this.getInverseComposedMatrix().val;
+		float m00 = m[M00], m01 = m[M01], m02 = m[M02];
+		float m10 = m[M10], m11 = m[M11], m12 = m[M12];
+		float m20 = m[M20], m21 = m[M21], m22 = m[M22];
+		float tx = translate.x, ty = translate.y, tz = translate.z;
+		for(int i = 0, v = offset; i < numVecs; i++, v += stride) {
+			float x = vecs[v] - tx, y = vecs[v+1] - ty, z = vecs[v+2] - tz;
+			vecs[v] = x * m00 + y * m01 + z * m02;
+			vecs[v+1] = x * m10 + y * m11 + z * m12;
+			vecs[v+2] = x * m20 + y * m21 + z * m22;
+		}
+	}
+	
+	private static void transform3x3(float[] m, float tx, float ty, float tz, float[] vecs, int offset, int numVecs, int stride) {
+		float m00 = m[M00], m01 = m[M01], m02 = m[M02];
+		float m10 = m[M10], m11 = m[M11], m12 = m[M12];
+		float m20 = m[M20], m21 = m[M21], m22 = m[M22];
+		for(int i = 0, v = offset; i < numVecs; i++, v += stride) {
+			float x = vecs[v], y = vecs[v+1], z = vecs[v+2];
+			vecs[v] = x * m00 + y * m01 + z * m02 + tx;
+			vecs[v+1] = x * m10 + y * m11 + z * m12 + ty;
+			vecs[v+2] = x * m20 + y * m21 + z * m22 + tz;
+		}
+	}
+
+	/**
+	 * multiplies the input by the upper 3x3 portion of the given matrix. (Matrix4f.transform only accepts SGVec_3f).
+	 */
+	private static <V extends Vec3f<?>> void mulLinear(float[] m, V input, V output) {
+		float x = input.x, y = input.y, z = input.z;
+		output.x = x * m[M00] + y * m[M01] + z * m[M02];
+		output.y = x * m[M10] + y * m[M11] + z * m[M12];
+		output.z = x * m[M20] + y * m[M21] + z * m[M22];
+	}
+
+	public <V extends Vec3f<?>> V getLocalOf(V global_input) {
+		V result = (V) global_input.copy();
+		setToLocalOf(global_input, result);
+		return result;
+	}
+
+	public void setToOrientationalLocalOf(AffineBasis global_input, AffineBasis local_output) {
+		this.rotation.applyInverseTo(global_input.rotation, local_output.rotation);
+		local_output.shearScaleMatrix.set(global_input.shearScaleMatrix);
+		local_output.applyInverseRotTo(this.rotation, local_output.shearScaleMatrix, local_output.composedMatrix);
+		this.setToLocalOf(global_input.translate, local_output.translate);
+		local_output.refreshPrecomputed();		
+	}
+
+	/**
+	 * sets output to the value of input in terms of the right-handed
+	 * orthonormal basis representing this affine's rotation. 
+	 * @param input
+	 * @param output
+	 */
+	public <V extends Vec3f<?>> void setToOrientationalLocalOf(V input, V output) {
+		float x = input.x - translate.x; 
+		float y = input.y - translate.y; 
+		float z = input.z - translate.z; 
+		output.setX_(x); output.setY_(y); output.setZ_(z);
+		this.rotation.applyInverseTo(output, output);
+	}
+
+	/*public void setToOrthoNormalLocalOf(SGVec_3f input, SGVec_3f output) {		
+		this.setToOrientationalLocalOf(input, output);		
+		setTupleFromDVec(output, workingPoint);
+		tempMatrix.invert(this.reflectionMatrix);
+		tempMatrix.transform(this.workingPoint);
+		this.setDVecFromTuple(output, workingPoint);		
+	}*/
+
+	public <V extends Vec3f<?>> void setToOrthoNormalLocalOf(V input, V output) {		
+		this.setToOrientationalLocalOf(input, output);		
+		mulLinear(this.getInverseReflectionMatrix().val, output, output);
+	}
+
+
+	/*public void orthoNormalize() {
+		this.scaleRotationMatrix.setAutoNormalize(true);
+		this.scaleRotationMatrix.normalize();
+		this.inverseScaleRotation.normalize();		
+	}*/
+
+
+	
+
+	public String toString() {
+		SGVec_3f tempV = new SGVec_3f();
+		setToComposedXBase(tempV);
+		SGVec_3f xh = tempV.copy();
+
+		setToComposedYBase(tempV);
+		SGVec_3f yh = tempV.copy();
+
+		setToComposedZBase(tempV);
+		SGVec_3f zh = tempV.copy();
+
+		String xMag =String.format("%." + 4 + "f", xh.mag() ); 	
+		String yMag =String.format("%." + 4 + "f", yh.mag() ); 
+		String zMag =String.format("%." + 4 + "f", zh.mag() ); 
+		ensureChirality();
+		String chirality = this.chirality == LEFT ? "LEFT" : "RIGHT";
+		String result = "-----------\n"  
+				+chirality + " handed \n"
+				+"origin: " + this.translate + "\n"
+				+"rot Axis: " + this.rotation.getAxis() + ", "
+				+"Angle: " + (float)Math.toDegrees(this.rotation.getAngle()) + "\n"
+				+"xHead: " + xh + ", mag: " + xMag + "\n"
+				+"yHead: " + yh + ", mag: " + yMag + "\n"
+				+"zHead: " + zh + ", mag: " + zMag + "\n";
+
+		return result;
+	}	
+
+	public void scaleXTo(float scale) {
+		SGVec_3f shearX = workingV2; 
+		this.setToShearXBase(shearX); 
+		shearX.normalize();
+		this.setShearXBaseTo(shearX, true);
+		scaleXBy(scale);
+	}
+
+	public void scaleYTo(float scale) {
+		SGVec_3f shearY = workingV2; 
+		this.setToShearYBase(shearY); 
+		shearY.normalize();
+		this.setShearYBaseTo(shearY, true);
+		scaleYBy(scale);
+	}
+
+	public void scaleZTo(float scale) {
+		SGVec_3f shearZ = workingV2; 
+		this.setToShearZBase(shearZ); 
+		shearZ.normalize();
+		this.setShearZBaseTo(shearZ, true);
+		scaleZBy(scale);
+	}
+
+	public void scaleXBy(float scale) {
+		SGVec_3f shearX = workingV2; 
+		setToShearXBase(shearX); 
+		float clampedScale = clamp(shearX.mag()*scale);
+		shearX.normalize();
+		shearX.mult(clampedScale);
+		this.setShearXBaseTo(shearX, true);
+
+	}
+
+	public void scaleYBy(float scale) {
+		SGVec_3f shearY = workingV2; 
+		setToShearYBase(shearY); 
+		float clampedScale = clamp(shearY.mag()*scale);
+		shearY.normalize();
+		shearY.mult(clampedScale);
+		this.setShearYBaseTo(shearY, true);
+	}
+
+	public void scaleZBy(float scale) {
+		SGVec_3f shearZ = workingV2; 
+		setToShearZBase(shearZ); 
+		float clampedScale = clamp(shearZ.mag()*scale);
+		shearZ.normalize();
+		shearZ.mult(clampedScale);
+		this.setShearZBaseTo(shearZ, true);
+	}
+
+
+	public Vec3f<?> getXHeading() {
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
+		return scaledXHeading;
+	}
+
+	public Vec3f<?> getYHeading() {
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
+		return scaledYHeading;
+	}
+
+	public Vec3f<?> getZHeading() {
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
+		return scaledZHeading;
+	}
+
+	public <V extends Vec3f<?>> void setXHeading(V newXHeading, boolean refreshMatrices) {
+		float xHeadingMag = newXHeading.mag();
+		xHeadingMag = clamp(xHeadingMag); 
+		SGVec_3f modifiedXHeading = workingV2; 
+		modifiedXHeading.set(newXHeading);
+		modifiedXHeading.normalize(); modifiedXHeading.mult(xHeadingMag);
+		rotation.applyInverseTo(modifiedXHeading, modifiedXHeading);
+		this.setShearXBaseTo(modifiedXHeading, refreshMatrices);
+	}
+
+	public <V extends Vec3f<?>> void setYHeading(V newYHeading, boolean refreshMatrices) {
+		float yHeadingMag = newYHeading.mag();
+		yHeadingMag = clamp(yHeadingMag); 
+		SGVec_3f modifiedYHeading = workingV2; 
+		modifiedYHeading.set(newYHeading);
+		modifiedYHeading.normalize(); modifiedYHeading.mult(yHeadingMag);
+		rotation.applyInverseTo(modifiedYHeading, modifiedYHeading);	 		
+		this.setShearYBaseTo(modifiedYHeading, refreshMatrices);
+	}
+
+	public <V extends Vec3f<?>> void setZHeading(V newZHeading, boolean refreshMatrices) {
+		float zHeadingMag = newZHeading.mag();
+		zHeadingMag = clamp(zHeadingMag); 
+		SGVec_3f modifiedZHeading = workingV2; 
+		modifiedZHeading.set(newZHeading);
+		modifiedZHeading.normalize(); modifiedZHeading.mult(zHeadingMag);
+		rotation.applyInverseTo(modifiedZHeading, modifiedZHeading);	 		
+		this.setShearZBaseTo(modifiedZHeading, refreshMatrices);
+	}
+
+	public <V extends Vec3f<?>> void setXHeading(V newXHeading) { 
+		setXHeading(newXHeading, true);
+	}
+
+	public <V extends Vec3f<?>> void setYHeading(V newYHeading) { 
+		setXHeading(newYHeading, true);  
+	}
+
+
+	public<V extends Vec3f<?>>  void setZHeading(V newZHeading) { 
+		setXHeading(newZHeading, true);
+	}
+
+	/*public void updateScaledHeadings() {
+	setToXBase(scaledXHeading);  		
+	setToYBase(scaledYHeading);		
+	setToZBase(scaledZHeading);
+}*/
+
+
+
+	protected float clamp(float val) {
+		if(val>= 0)
+			return Math.max(val, 0.0000000000001f);
+		else 
+			return Math.min(val, -0.0000000000001f);
+	}
+
+	public sgRayf getInverseXRay() {
+		SGVec_3f inverseX = new SGVec_3f();
+		Matrix4f updatedInverseComposed = this.getInverseComposedMatrix();
+		inverseX.setX_(updatedInverseComposed.val[M00]); 
+		inverseX.setY_(updatedInverseComposed.val[M10]); 
+		inverseX.setZ_(updatedInverseComposed.val[M20]);
+
+		sgRayf inverseXRay = new sgRayf(SGVec_3f.mult(this.translate, -1), null); 
+		inverseXRay.heading(inverseX);
+
+		return inverseXRay; 
+	}
+
+	public sgRayf getInverseYRay() {
+		SGVec_3f inverseY = new SGVec_3f();
+		Matrix4f updatedInverseComposed = this.getInverseComposedMatrix();
+		inverseY.setX_(updatedInverseComposed.val[M01]); 
+		inverseY.setY_(updatedInverseComposed.val[M11]); 
+		inverseY.setZ_(updatedInverseComposed.val[M21]);
+
+		sgRayf inverseYRay = new sgRayf(SGVec_3f.mult(this.translate, -1), null); 
+		inverseYRay.heading(inverseY);
+		return inverseYRay; 
+	}
+
+	public sgRayf getInverseZRay() {
+		SGVec_3f inverseZ = new SGVec_3f();
+		Matrix4f updatedInverseComposed = this.getInverseComposedMatrix();
+		inverseZ.setX_(updatedInverseComposed.val[M02]); 
+		inverseZ.setY_(updatedInverseComposed.val[M12]); 
+		inverseZ.setZ_(updatedInverseComposed.val[M22]);
+		sgRayf inverseZRay = new sgRayf(SGVec_3f.mult(this.translate, -1), null); 
+		inverseZRay.heading(inverseZ);
+		return inverseZRay; 
+	}
+	
+
+
+	/**sets the input Tuple3d to have the values
+	 * of this matrix's xbasis 
+	 */
+	public void setToComposedXBase(Vec3f<?> vec){
+		ensureComposed();
+		vec.setX_(composedMatrix.val[M00]);
+		vec.setY_(composedMatrix.val[M10]); 
+		vec.setZ_(composedMatrix.val[M20]);
+	}
+
+	/**sets the input Tuple3d to have the values
+	 * of this matrix's pre-rotation ybasis 
+	 */
+	public void setToComposedYBase(Vec3f<?> vec){
+		ensureComposed();
+		vec.setX_(composedMatrix.val[M01]); 
+		vec.setY_(composedMatrix.val[M11]); 
+		vec.setZ_(composedMatrix.val[M21]);
+	}
+
+	/**sets the input Tuple3d to have the values
+	 * of this matrix's pre-rotation zbasis 
+	 */
+	public void setToComposedZBase(Vec3f<?> vec){
+		ensureComposed();
+		vec.setX_(composedMatrix.val[M02]); 
+		vec.setY_(composedMatrix.val[M12]); 
+		vec.setZ_(composedMatrix.val[M22]);
+	}
+
+
+	/**
+	 *sets @param vec to the direction and magnitude of the x axis prior to rotation.
+	 */
+	public <V extends Vec3f<?>> void setToShearXBase(V vec){
+		vec.x = shearScaleMatrix.val[M00];
+		vec.y = shearScaleMatrix.val[M10]; 
+		vec.z = shearScaleMatrix.val[M20];
+	}
+
+	/**
+	 *sets @param vec to the direction and magnitude of the y axis prior to rotation.
+	 */
+	public <V extends Vec3f<?>> void setToShearYBase(V vec){
+		vec.x = shearScaleMatrix.val[M01]; 
+		vec.y = shearScaleMatrix.val[M11]; 
+		vec.z = shearScaleMatrix.val[M21];
+	}
+
+	/**
+	 *sets @param vec to the direction and magnitude of the y axis prior to rotation.
+	 */
+	public <V extends Vec3f<?>> void setToShearZBase(V vec){
+		vec.x = shearScaleMatrix.val[M02]; 
+		vec.y = shearScaleMatrix.val[M12]; 
+		vec.z = shearScaleMatrix.val[M22];
+	}
+
+	/**sets the matrix's xbasis according to this vector. 
+	 * @param compose if true, the cached data for this Basis is recomputed after setting the matrix.  
+	 */
+	public <V extends Vec3f<?>> void setShearXBaseTo(V vec, boolean compose){
+		shearScaleMatrix.val[M00] = vec.x; 
+		shearScaleMatrix.val[M10] = vec.y; 
+		shearScaleMatrix.val[M20] = vec.z;
+		if(compose) {
+			refreshPrecomputed();
+		}
+	}
+
+	/**sets the matrix's ybasis according to this vector. 
+	 * @param compose if true, the cached data for this Basis is recomputed after setting the matrix.  
+	 */
+	public <V extends Vec3f<?>> void setShearYBaseTo(V vec, boolean compose){
+		shearScaleMatrix.val[M01] = vec.x; 
+		shearScaleMatrix.val[M11] = vec.y; 
+		shearScaleMatrix.val[M21] = vec.z;
+		if(compose) {
+			refreshPrecomputed();
+		}
+	}
+
+	/**sets the matrix's zbasis according to this vector. 
+	 * @param compose if true, the cached data for this Basis is recomputed after setting the matrix.  
+	 */
+	public <V extends Vec3f<?>> void setShearZBaseTo(V vec, boolean compose){
+		shearScaleMatrix.val[M02] = vec.x; 
+		shearScaleMatrix.val[M12] = vec.y; 
+		shearScaleMatrix.val[M22] = vec.z;
+		if(compose) {
+			refreshPrecomputed();
+		}
+	}
+
+
+	public void updateHeadings() {
+		ensureComposed();
+		scaledXHeading.x = composedMatrix.val[M00];
+		scaledXHeading.y = composedMatrix.val[M10];
+		scaledXHeading.z = composedMatrix.val[M20];
+
+		scaledYHeading.x = composedMatrix.val[M01];
+		scaledYHeading.y = composedMatrix.val[M11];
+		scaledYHeading.z = composedMatrix.val[M21];
+
+		scaledZHeading.x = composedMatrix.val[M02];
+		scaledZHeading.y = composedMatrix.val[M12];
+		scaledZHeading.z = composedMatrix.val[M22];
+
+		/*setToShearXBase(workingVector);
+	if(xBase.dot(workingVector) < 0) flippedAxes[X] = true;
+	else flippedAxes[X] = false;
+
+	setToShearYBase(workingVector);
+	if(yBase.dot(workingVector) < 0) flippedAxes[Y] = true;
+	else flippedAxes[Y] = false;
+
+	setToShearZBase(workingVector);
+	if(zBase.dot(workingVector) < 0) flippedAxes[Z] = true;
+	else flippedAxes[Z] = false;*/
+		dirtyArtifacts &= ~DIRTY_HEADINGS;
+		recomputations++;
+	}
+	
+	/**
+	 * flags every value derived from this basis' rotation and shearScaleMatrix as out of date. 
+	 * Other than the inverse rotation, nothing is recomputed here; each derived value 
+	 * (composed matrix, chirality and reflection, orthonormal matrix, headings, rays) 
+	 * is recomputed the first time it is read afterward.
+	 */
+	public void refreshPrecomputed() {
+		//this.shearScaleTransform.set(shearScaleMatrix);
+		if(!this.initialized) this.init();
+		skippedRecomputations += Integer.bitCount(dirtyArtifacts);
+		dirtyArtifacts = DIRTY_ALL;
+		this.rotation.setToReversion(inverseRotation);
+		updateTransformKind();
+		orthoNormalInversesDirty = true;
+		composedInversesDirty = true;
+		reflectionInversesDirty = true;
+	}
+	
+	/**
+	 * computes any derived values which are currently out of date. Call this before 
+	 * sharing a basis between threads which will only read from it. 
+	 */
+	public void ensurePrecomputed() {
+		ensureOrthoNormal();
+		if((dirtyArtifacts & DIRTY_HEADINGS) != 0) 
+			updateHeadings();
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+	}
+	
+	private void ensureComposed() {
+		if((dirtyArtifacts & DIRTY_COMPOSED) != 0) {
+			applyRotTo(this.rotation, this.shearScaleMatrix, this.composedMatrix);
+			dirtyArtifacts &= ~DIRTY_COMPOSED;
+			recomputations++;
+		}
+	}
+	
+	private void ensureChirality() {
+		if((dirtyArtifacts & DIRTY_CHIRALITY) != 0) {
+			ensureComposed();
+			if(this.composedMatrix.determinant() > 0)
+				this.chirality = RIGHT; 
+			else 
+				this.chirality = LEFT;
+			this.updateChirality();
+			dirtyArtifacts &= ~DIRTY_CHIRALITY;
+			recomputations++;
+		}
+	}
+	
+	private void ensureOrthoNormal() {
+		if((dirtyArtifacts & DIRTY_ORTHONORMAL) != 0) {
+			ensureChirality();
+			applyRotTo(this.rotation, this.reflectionMatrix, this.composedOrthoNormalMatrix);
+			dirtyArtifacts &= ~DIRTY_ORTHONORMAL;
+			recomputations++;
+		}
+	}
+	
+	/**
+	 * @return the number of derived values (composed matrix, chirality, orthonormal matrix, headings, rays) 
+	 * this basis has computed since its counters were last reset.
+	 */
+	public long getRecomputationCount() {
+		return recomputations;
+	}
+	
+	/**
+	 * @return the number of derived values which were invalidated again before anything read them 
+	 * (and so were never computed) since this basis' counters were last reset.
+	 */
+	public long getSkippedRecomputationCount() {
+		return skippedRecomputations;
+	}
+	
+	public void resetRecomputationCounters() {
+		recomputations = 0; 
+		skippedRecomputations = 0;
+	}
+
+	public void applyRotTo(Rot rotation, Matrix4f inputMatrix, Matrix4f outputMatrix) {		
+
+		inputMatrix.getColumn(X, arrVec1); 
+		rotation.rotation.applyTo(arrVec1, arrVec2);
+		outputMatrix.setColumn(X, arrVec2);
+
+		inputMatrix.getColumn(Y, arrVec1); 
+		rotation.rotation.applyTo(arrVec1, arrVec2);
+		outputMatrix.setColumn(Y, arrVec2);
+
+		inputMatrix.getColumn(Z, arrVec1); 
+		rotation.rotation.applyTo(arrVec1, arrVec2);
+		outputMatrix.setColumn(Z, arrVec2);
+
+		outputMatrix.val[M33] = 1;
+	}
+
+
+	private void applyInverseRotTo(Rot rotation, Matrix4f inputMatrix, Matrix4f outputMatrix) {
+		inputMatrix.getColumn(X, arrVec1); 
+		rotation.rotation.applyInverseTo(arrVec1, arrVec2);
+		outputMatrix.setColumn(X, arrVec2);
+
+		inputMatrix.getColumn(Y, arrVec1); 
+		rotation.rotation.applyInverseTo(arrVec1, arrVec2);
+		outputMatrix.setColumn(Y, arrVec2);
+
+		inputMatrix.getColumn(Z, arrVec1); 
+		rotation.rotation.applyInverseTo(arrVec1, arrVec2);
+		outputMatrix.setColumn(Z, arrVec2);
+
+		outputMatrix.val[M33] = 1;
+	}
+
+	
+
+	private void updateChirality() {
+		setFlipArrayForMatrix(this.composedMatrix, this.flippedAxes, this.rotation);
+		arrVec1[X] = flippedAxes[X] ? -1 : 1; arrVec1[Y] = 0; arrVec1[Z] = 0; arrVec1[3] = 0;
+		reflectionMatrix.setColumn(0, arrVec1);
+
+		arrVec1[X] = 0; arrVec1[Y] = flippedAxes[Y] ? -1 : 1; arrVec1[Z] = 0;
+		reflectionMatrix.setColumn(1, arrVec1);
+
+		arrVec1[X] = 0; arrVec1[Y] = 0; arrVec1[Z]= flippedAxes[Z] ? -1 : 1;
+		reflectionMatrix.setColumn(2, arrVec1);
+
+		reflectionMatrix.val[M33] = 1;	
+	}
+
+	public void setFlipArrayForMatrix(Matrix4f forMatrix, boolean[] flipArray, Rot rotation) {
+		float[] m = forMatrix.val;
+		SGVec_3f tempVec = workingV1; 
+		rotation.applyTo(xBase, tempVec);		
+		float dot = tempVec.x*m[M00] + tempVec.y*m[M10] + tempVec.z*m[M20];
+		if( dot < 0) {		
+			flipArray[X] = true;
+		} else {
+			flipArray[X] = false;
+		}
+
+		rotation.applyTo(yBase, tempVec);
+		if(tempVec.x*m[M01] + tempVec.y*m[M11] + tempVec.z*m[M21] < 0) {
+			flipArray[Y] = true;
+		}
+		else flipArray[Y] = false;
+
+		rotation.applyTo(zBase, tempVec);
+		if(tempVec.x*m[M02] + tempVec.y*m[M12] + tempVec.z*m[M22] < 0) {
+			flipArray[Z] = true;
+		}
+		else flipArray[Z] = false;		
+	}
+	
+	/**
+	 * true if the input axis should be multiplied by negative one after rotation. 
+	 * 
+	 * @param axis
+	 * @return true if axis should be flipped, false otherwise. Default is false. 
+	 */
+	public boolean isAxisFlipped(int axis) {
+		ensureChirality();
+		return this.flippedAxes[axis]; 
+	}
+	
+	/**
+	 * @return which of this basis' axes are mirrored, indexed by X, Y and Z. 
+	 * The array belongs to this basis and is overwritten whenever it changes; don't modify it. 
+	 */
+	public boolean[] getFlippedAxes() {
+		ensureChirality();
+		return flippedAxes;
+	}
+
+
+	private void updateRays() {		
+		SGVec_3f tempV = workingV1;
+		ensureComposed();
+		xRay.setP1(this.translate); 		
+		yRay.setP1(this.translate);			
+		zRay.setP1(this.translate);
+
+		setToComposedXBase(tempV);
+		xRay.heading(tempV);
+		setToComposedYBase(tempV);
+		yRay.heading(tempV);
+		setToComposedZBase(tempV);
+		zRay.heading(tempV);
+		dirtyArtifacts &= ~DIRTY_RAYS;
+		recomputations++;
+	}
+	
+	@Override
+	public sgRayf getXRay() {
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+		return xRay;
+	}
+	
+	@Override
+	public sgRayf getYRay() {
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+		return yRay;
+	}
+	
+	@Override
+	public sgRayf getZRay() {
+		if((dirtyArtifacts & DIRTY_RAYS) != 0) 
+			updateRays();
+		return zRay;
+	}
+
+
+	/**
+	 * @return a bitmask of {@link #TRANSLATION}, {@link #RIGID}, {@link #ORTHOGONAL}, {@link #CONGRUENT}, {@link #AFFINE} 
+	 * and {@link #NEGATIVE_DETERMINANT} describing what the linear portion of this basis does. More specific kinds
+	 * imply all of the less specific ones (a RIGID basis is also ORTHOGONAL, CONGRUENT and AFFINE).
+	 */
+	public int getTransformKind() {
+		return transformKind;
+	}
+	
+	/**
+	 * @return true if this basis neither translates, rotates, scales, shears nor reflects.
+	 */
+	public boolean isIdentity() {
+		return (transformKind & TRANSLATION) != 0 && translate.x == 0 && translate.y == 0 && translate.z == 0;
+	}
+	
+	private void updateTransformKind() {
+		float[] m = shearScaleMatrix.val;
+		float xx = m[M00]*m[M00] + m[M10]*m[M10] + m[M20]*m[M20];
+		float yy = m[M01]*m[M01] + m[M11]*m[M11] + m[M21]*m[M21];
+		float zz = m[M02]*m[M02] + m[M12]*m[M12] + m[M22]*m[M22];
+		float xy = m[M00]*m[M01] + m[M10]*m[M11] + m[M20]*m[M21];
+		float xz = m[M00]*m[M02] + m[M10]*m[M12] + m[M20]*m[M22];
+		float yz = m[M01]*m[M02] + m[M11]*m[M12] + m[M21]*m[M22];
+		float tolerance = KIND_TOLERANCE * xx;
+		int kind = AFFINE;
+		if(shearScaleMatrix.det3x3() < 0) 
+			kind |= NEGATIVE_DETERMINANT;
+		if(Math.abs(xy) <= tolerance && Math.abs(xz) <= tolerance && Math.abs(yz) <= tolerance 
+				&& Math.abs(xx - yy) <= tolerance && Math.abs(xx - zz) <= tolerance) {
+			kind |= CONGRUENT;
+			if(Math.abs(xx - 1f) <= KIND_TOLERANCE) {
+				kind |= ORTHOGONAL;
+				//unit length columns with a diagonal of 1 can only be the identity.
+				if(Math.abs(m[M00] - 1f) <= KIND_TOLERANCE && Math.abs(m[M11] - 1f) <= KIND_TOLERANCE && Math.abs(m[M22] - 1f) <= KIND_TOLERANCE) {
+					kind |= RIGID;
+					MRotation r = this.rotation.rotation;
+					if(Math.abs(r.getQ1()) <= KIND_TOLERANCE && Math.abs(r.getQ2()) <= KIND_TOLERANCE && Math.abs(r.getQ3()) <= KIND_TOLERANCE) 
+						kind |= TRANSLATION;
+				}
+			}
+		}
+		transformKind = kind;
+	}
+	
+	public String typeString() {
+		String result = "";
+		if ((transformKind & TRANSLATION)          > 0 ) result +=" TRANSLATION";
+		if ((transformKind & RIGID)                > 0 ) result +=" RIGID";
+		if ((transformKind & ORTHOGONAL)           > 0 ) result +=" ORTHOGONAL";
+		if ((transformKind & CONGRUENT)            > 0 ) result +=" CONGRUENT";
+		if ((transformKind & AFFINE)               > 0 ) result +=" AFFINE";
+		if ((transformKind & NEGATIVE_DETERMINANT) > 0 ) result +=" NEGATIVE_DETERMINANT";
+		return result;
+	}
+
+	public void setIdentity() {
+		this.scale.x = 1; this.scale.y = 1; this.scale.z = 1; 
+		//the scaled headings are rederived from the composed matrix by refreshPrecomputed(). 
+		this.rotation.rotation.set(1, 0, 0, 0, false);
+		this.translate.x = 0; this.translate.y = 0; this.translate.z = 0;
+		this.xRay.p1(this.translate); this.xRay.p2(xBase);
+		this.yRay.p1(this.translate); this.yRay.p2(yBase); 
+		this.zRay.p1(this.translate); this.zRay.p2(zBase);
+		this.composedMatrix.idt();
+		this.shearScaleMatrix.idt();
+		refreshPrecomputed();
+	}
+
+
+
+	public void createMultiDimMatrixFromMat3f(Matrix3f mat3f, float[][] outputMultiDimMatrix) {
+		outputMultiDimMatrix[0][0] = mat3f.val[M00];   outputMultiDimMatrix[1][0] = mat3f.val[M01];  outputMultiDimMatrix[2][0] = mat3f.val[M02];
+		outputMultiDimMatrix[0][1] = mat3f.val[M10];   outputMultiDimMatrix[1][1] = mat3f.val[M11];  outputMultiDimMatrix[2][1] = mat3f.val[M12];
+		outputMultiDimMatrix[0][2] = mat3f.val[M20];   outputMultiDimMatrix[1][2] = mat3f.val[M21];  outputMultiDimMatrix[2][2] = mat3f.val[M22];		
+	}
+
+	public void createMultiDimMatrixFromMat4f(Matrix4f mat4f, float[][] outputMultiDimMatrix) {
+		outputMultiDimMatrix[0][0] = mat4f.val[M00];   outputMultiDimMatrix[1][0] = mat4f.val[M01];  outputMultiDimMatrix[2][0] = mat4f.val[M02];
+		outputMultiDimMatrix[0][1] = mat4f.val[M10];   outputMultiDimMatrix[1][1] = mat4f.val[M11];  outputMultiDimMatrix[2][1] = mat4f.val[M12];
+		outputMultiDimMatrix[0][2] = mat4f.val[M20];   outputMultiDimMatrix[1][2] = mat4f.val[M21];  outputMultiDimMatrix[2][2] = mat4f.val[M22];		
+	}
+
+	public void createMat3fFromMultiDimMatrix(float[][] multiDimMatrix, Matrix3f outputMat3f) {
+
+		outputMat3f.val[M00] = multiDimMatrix[0][0];  outputMat3f.val[M01] = multiDimMatrix[1][0];  outputMat3f.val[M02] = multiDimMatrix[2][0]; 
+		outputMat3f.val[M10] = multiDimMatrix[0][1];  outputMat3f.val[M11] = multiDimMatrix[1][1];  outputMat3f.val[M12] = multiDimMatrix[2][1]; 
+		outputMat3f.val[M20] = multiDimMatrix[0][2];  outputMat3f.val[M21] = multiDimMatrix[1][2];  outputMat3f.val[M22] = multiDimMatrix[2][2]; 
+
+	}
+
+	public void createMat4fFromMultiDimMatrix(float[][] multiDimMatrix, Matrix4f outputMat4f) {
+
+		outputMat4f.val[M00] = multiDimMatrix[0][0];  outputMat4f.val[M01] = multiDimMatrix[1][0];  outputMat4f.val[M02] = multiDimMatrix[2][0]; 
+		outputMat4f.val[M10] = multiDimMatrix[0][1];  outputMat4f.val[M11] = multiDimMatrix[1][1];  outputMat4f.val[M12] = multiDimMatrix[2][1]; 
+		outputMat4f.val[M20] = multiDimMatrix[0][2];  outputMat4f.val[M21] = multiDimMatrix[1][2];  outputMat4f.val[M22] = multiDimMatrix[2][2]; 
+		outputMat4f.val[M33] = 1;
+
+	}
+
+	public Matrix4f getComposedMatrix() {
+		ensureComposed();
+		return composedMatrix;
+	}
+	
+	/**
+	 * @return the diagonal matrix of 1s and -1s which flips whichever axes of this basis are mirrored. 
+	 */
+	public Matrix4f getReflectionMatrix() {
+		ensureChirality();
+		return reflectionMatrix;
+	}
+	
+	/**
+	 * @return this basis' rotation applied to its reflection matrix. 
+	 */
+	public Matrix4f getComposedOrthoNormalMatrix() {
+		ensureOrthoNormal();
+		return composedOrthoNormalMatrix;
+	}
+
+	public Matrix4f getInverseComposedMatrix() {
+		if(composedInversesDirty) {
+			if((transformKind & ORTHOGONAL) != 0) 
+				this.inverseComposedMatrix.toRigidInverseOf(getComposedMatrix());
+			else
+				this.inverseComposedMatrix.toAffineInverseOf(getComposedMatrix());
+			composedInversesDirty = false;			
+		}
+		return this.inverseComposedMatrix;
+	}
+
+	public Matrix4f getInverseReflectionMatrix() {
+		if(reflectionInversesDirty) {
+			//a reflection matrix is diagonal with entries of 1 or -1, so it is its own inverse.
+			this.inverseReflectionMatrix.set(this.getReflectionMatrix());
+			reflectionInversesDirty = false;			
+		}
+		return this.inverseReflectionMatrix;
+	}
+
+
+	private Matrix4f getInverseComposedOrthoNormalMatrix() {
+		if(orthoNormalInversesDirty) {
+			//a rotation applied to a reflection is orthonormal, so its transpose is its inverse.
+			this.inverseComposedOrthoNormalMatrix.toRigidInverseOf(getComposedOrthoNormalMatrix());
+			orthoNormalInversesDirty = false;			
+		}
+		return this.inverseComposedOrthoNormalMatrix;
+	}
+
+
+	public Matrix4f getShearScaleMatrix() {
+		return this.shearScaleMatrix;
+	}
+
+	/**
+	 * writes the composed matrix and translation of this basis into a single 4x4 affine matrix.
+	 * @param output
+	 * @return the output matrix, for chaining.
+	 */
+	public Matrix4f setToAffineMatrix(Matrix4f output) {
+		float[] c = getComposedMatrix().val, o = output.val;
+		o[Matrix4f.M00] = c[Matrix4f.M00]; o[Matrix4f.M01] = c[Matrix4f.M01]; o[Matrix4f.M02] = c[Matrix4f.M02]; o[Matrix4f.M03] = translate.x;
+		o[Matrix4f.M10] = c[Matrix4f.M10]; o[Matrix4f.M11] = c[Matrix4f.M11]; o[Matrix4f.M12] = c[Matrix4f.M12]; o[Matrix4f.M13] = translate.y;
+		o[Matrix4f.M20] = c[Matrix4f.M20]; o[Matrix4f.M21] = c[Matrix4f.M21]; o[Matrix4f.M22] = c[Matrix4f.M22]; o[Matrix4f.M23] = translate.z;
+		o[Matrix4f.M30] = 0; o[Matrix4f.M31] = 0; o[Matrix4f.M32] = 0; o[Matrix4f.M33] = 1;
+		return output;
+	}
+	
+	/**
+	 * writes the inverse of {@link #setToAffineMatrix(Matrix4f)} into the output matrix, 
+	 * taking the cheaper rigid inverse when this basis does not scale or shear.
+	 * @param output
+	 * @return the output matrix, for chaining.
+	 */
+	public Matrix4f setToInverseAffineMatrix(Matrix4f output) {
+		setToAffineMatrix(output);
+		if((transformKind & ORTHOGONAL) != 0) 
+			output.toRigidInverseOf(output);
+		else 
+			output.toAffineInverseOf(output);
+		return output;
+	}
+
+	public static final int 
+	M00 = 0, M01 = 4, M02 = 8, M03 = 1, 
+	M10 = 1, M11 = 5, M12 = 9, M13 = 13,
+	M20 = 2, M21 = 6, M22 = 10, M23 = 14, 
+	M30 = 3, M31 = 7, M32 = 11, M33 = 15;
+
+
+	public static final int 
+	mM00 = 0, mM01 = 3, mM02 = 6,
+	mM10 = 1, mM11 = 4, mM12 = 7, 
+	mM20 = 2, mM21 = 5, mM22 = 8; 
+
+}
\ No newline at end of file
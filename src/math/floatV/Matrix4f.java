@@ -25,6 +25,9 @@ import java.io.Serializable;
  * Matrix4f mat = new Matrix4f().trn(position).mul(camera.combined);
  * </pre>
  * 
+ * Apart from {@link #cpy()} and the exception {@link #inv()} throws for a singular matrix, no method allocates. Methods which
+ * need temporaries take them from storage each matrix creates for itself on first use.
+ * 
  * @author badlogicgames@gmail.com */
 public class Matrix4f implements Serializable {
 	private static final long serialVersionUID = -2717655254359578617L;
@@ -70,9 +73,29 @@ public class Matrix4f implements Serializable {
 	/** WW: Typically the value one. On Vector3 multiplication this value is ignored. */
 	public static final int M33 = 15;
 
-	private static final float tmp[] = new float[16];
 	public final float val[] = new float[16];
 
+	/** temporaries for the methods which need them. Per instance rather than static, so that matrices used from different
+	 * threads never share them, and created on first use, so that matrices which never need them don't pay for them. */
+	private transient Scratch scratch;
+
+	private static final class Scratch {
+		final Quaternionf quat = new Quaternionf();
+		final Quaternionf quat2 = new Quaternionf();
+		final SGVec_3f vecA = new SGVec_3f();
+		final SGVec_3f vecB = new SGVec_3f();
+		final SGVec_3f vecC = new SGVec_3f();
+		final SGVec_3f vecD = new SGVec_3f();
+	}
+
+	private Scratch scratch () {
+		Scratch result = scratch;
+		if (result == null) {
+			result = new Scratch();
+			scratch = result;
+		}
+		return result;
+	}
 
 
 	/** Constructs an identity matrix */
@@ -417,38 +440,27 @@ public class Matrix4f implements Serializable {
 	 * @param matrix The other matrix to multiply by.
 	 * @return This matrix for the purpose of chaining operations together. */
 	public Matrix4f mulLeft (Matrix4f matrix) {
-		tmpMat.set(matrix);
-		mul(tmpMat.val, this.val);
-		return set(tmpMat);
+		mul(matrix.val, val, val);
+		return this;
 	}
 	
 	public Matrix4f mulLeft (float[] matrix) {
-		tmpMat.set(matrix);
-		mul(tmpMat.val, this.val);
-		return set(tmpMat);
+		mul(matrix, val, val);
+		return this;
 	}
 
 	/** Transposes the matrix.
 	 * 
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f tra () {
-		tmp[M00] = val[M00];
-		tmp[M01] = val[M10];
-		tmp[M02] = val[M20];
-		tmp[M03] = val[M30];
-		tmp[M10] = val[M01];
-		tmp[M11] = val[M11];
-		tmp[M12] = val[M21];
-		tmp[M13] = val[M31];
-		tmp[M20] = val[M02];
-		tmp[M21] = val[M12];
-		tmp[M22] = val[M22];
-		tmp[M23] = val[M32];
-		tmp[M30] = val[M03];
-		tmp[M31] = val[M13];
-		tmp[M32] = val[M23];
-		tmp[M33] = val[M33];
-		return set(tmp);
+		float t;
+		t = val[M01]; val[M01] = val[M10]; val[M10] = t;
+		t = val[M02]; val[M02] = val[M20]; val[M20] = t;
+		t = val[M03]; val[M03] = val[M30]; val[M30] = t;
+		t = val[M12]; val[M12] = val[M21]; val[M21] = t;
+		t = val[M13]; val[M13] = val[M31]; val[M31] = t;
+		t = val[M23]; val[M23] = val[M32]; val[M32] = t;
+		return this;
 	}
 
 	/** Sets the matrix to an identity matrix.
@@ -479,65 +491,7 @@ public class Matrix4f implements Serializable {
 	 * @return This matrix for the purpose of chaining methods together.
 	 * @throws RuntimeException if the matrix is singular (not invertible) */
 	public Matrix4f inv () {
-		float l_det = val[M30] * val[M21] * val[M12] * val[M03] - val[M20] * val[M31] * val[M12] * val[M03] - val[M30] * val[M11]
-				* val[M22] * val[M03] + val[M10] * val[M31] * val[M22] * val[M03] + val[M20] * val[M11] * val[M32] * val[M03] - val[M10]
-						* val[M21] * val[M32] * val[M03] - val[M30] * val[M21] * val[M02] * val[M13] + val[M20] * val[M31] * val[M02] * val[M13]
-								+ val[M30] * val[M01] * val[M22] * val[M13] - val[M00] * val[M31] * val[M22] * val[M13] - val[M20] * val[M01] * val[M32]
-										* val[M13] + val[M00] * val[M21] * val[M32] * val[M13] + val[M30] * val[M11] * val[M02] * val[M23] - val[M10] * val[M31]
-												* val[M02] * val[M23] - val[M30] * val[M01] * val[M12] * val[M23] + val[M00] * val[M31] * val[M12] * val[M23] + val[M10]
-														* val[M01] * val[M32] * val[M23] - val[M00] * val[M11] * val[M32] * val[M23] - val[M20] * val[M11] * val[M02] * val[M33]
-																+ val[M10] * val[M21] * val[M02] * val[M33] + val[M20] * val[M01] * val[M12] * val[M33] - val[M00] * val[M21] * val[M12]
-																		* val[M33] - val[M10] * val[M01] * val[M22] * val[M33] + val[M00] * val[M11] * val[M22] * val[M33];
-		if (l_det == 0f) throw new RuntimeException("non-invertible matrix");
-		float inv_det = 1.0f / l_det;
-		tmp[M00] = val[M12] * val[M23] * val[M31] - val[M13] * val[M22] * val[M31] + val[M13] * val[M21] * val[M32] - val[M11]
-				* val[M23] * val[M32] - val[M12] * val[M21] * val[M33] + val[M11] * val[M22] * val[M33];
-		tmp[M01] = val[M03] * val[M22] * val[M31] - val[M02] * val[M23] * val[M31] - val[M03] * val[M21] * val[M32] + val[M01]
-				* val[M23] * val[M32] + val[M02] * val[M21] * val[M33] - val[M01] * val[M22] * val[M33];
-		tmp[M02] = val[M02] * val[M13] * val[M31] - val[M03] * val[M12] * val[M31] + val[M03] * val[M11] * val[M32] - val[M01]
-				* val[M13] * val[M32] - val[M02] * val[M11] * val[M33] + val[M01] * val[M12] * val[M33];
-		tmp[M03] = val[M03] * val[M12] * val[M21] - val[M02] * val[M13] * val[M21] - val[M03] * val[M11] * val[M22] + val[M01]
-				* val[M13] * val[M22] + val[M02] * val[M11] * val[M23] - val[M01] * val[M12] * val[M23];
-		tmp[M10] = val[M13] * val[M22] * val[M30] - val[M12] * val[M23] * val[M30] - val[M13] * val[M20] * val[M32] + val[M10]
-				* val[M23] * val[M32] + val[M12] * val[M20] * val[M33] - val[M10] * val[M22] * val[M33];
-		tmp[M11] = val[M02] * val[M23] * val[M30] - val[M03] * val[M22] * val[M30] + val[M03] * val[M20] * val[M32] - val[M00]
-				* val[M23] * val[M32] - val[M02] * val[M20] * val[M33] + val[M00] * val[M22] * val[M33];
-		tmp[M12] = val[M03] * val[M12] * val[M30] - val[M02] * val[M13] * val[M30] - val[M03] * val[M10] * val[M32] + val[M00]
-				* val[M13] * val[M32] + val[M02] * val[M10] * val[M33] - val[M00] * val[M12] * val[M33];
-		tmp[M13] = val[M02] * val[M13] * val[M20] - val[M03] * val[M12] * val[M20] + val[M03] * val[M10] * val[M22] - val[M00]
-				* val[M13] * val[M22] - val[M02] * val[M10] * val[M23] + val[M00] * val[M12] * val[M23];
-		tmp[M20] = val[M11] * val[M23] * val[M30] - val[M13] * val[M21] * val[M30] + val[M13] * val[M20] * val[M31] - val[M10]
-				* val[M23] * val[M31] - val[M11] * val[M20] * val[M33] + val[M10] * val[M21] * val[M33];
-		tmp[M21] = val[M03] * val[M21] * val[M30] - val[M01] * val[M23] * val[M30] - val[M03] * val[M20] * val[M31] + val[M00]
-				* val[M23] * val[M31] + val[M01] * val[M20] * val[M33] - val[M00] * val[M21] * val[M33];
-		tmp[M22] = val[M01] * val[M13] * val[M30] - val[M03] * val[M11] * val[M30] + val[M03] * val[M10] * val[M31] - val[M00]
-				* val[M13] * val[M31] - val[M01] * val[M10] * val[M33] + val[M00] * val[M11] * val[M33];
-		tmp[M23] = val[M03] * val[M11] * val[M20] - val[M01] * val[M13] * val[M20] - val[M03] * val[M10] * val[M21] + val[M00]
-				* val[M13] * val[M21] + val[M01] * val[M10] * val[M23] - val[M00] * val[M11] * val[M23];
-		tmp[M30] = val[M12] * val[M21] * val[M30] - val[M11] * val[M22] * val[M30] - val[M12] * val[M20] * val[M31] + val[M10]
-				* val[M22] * val[M31] + val[M11] * val[M20] * val[M32] - val[M10] * val[M21] * val[M32];
-		tmp[M31] = val[M01] * val[M22] * val[M30] - val[M02] * val[M21] * val[M30] + val[M02] * val[M20] * val[M31] - val[M00]
-				* val[M22] * val[M31] - val[M01] * val[M20] * val[M32] + val[M00] * val[M21] * val[M32];
-		tmp[M32] = val[M02] * val[M11] * val[M30] - val[M01] * val[M12] * val[M30] - val[M02] * val[M10] * val[M31] + val[M00]
-				* val[M12] * val[M31] + val[M01] * val[M10] * val[M32] - val[M00] * val[M11] * val[M32];
-		tmp[M33] = val[M01] * val[M12] * val[M20] - val[M02] * val[M11] * val[M20] + val[M02] * val[M10] * val[M21] - val[M00]
-				* val[M12] * val[M21] - val[M01] * val[M10] * val[M22] + val[M00] * val[M11] * val[M22];
-		val[M00] = tmp[M00] * inv_det;
-		val[M01] = tmp[M01] * inv_det;
-		val[M02] = tmp[M02] * inv_det;
-		val[M03] = tmp[M03] * inv_det;
-		val[M10] = tmp[M10] * inv_det;
-		val[M11] = tmp[M11] * inv_det;
-		val[M12] = tmp[M12] * inv_det;
-		val[M13] = tmp[M13] * inv_det;
-		val[M20] = tmp[M20] * inv_det;
-		val[M21] = tmp[M21] * inv_det;
-		val[M22] = tmp[M22] * inv_det;
-		val[M23] = tmp[M23] * inv_det;
-		val[M30] = tmp[M30] * inv_det;
-		val[M31] = tmp[M31] * inv_det;
-		val[M32] = tmp[M32] * inv_det;
-		val[M33] = tmp[M33] * inv_det;
+		if (!inv(val, val)) throw new RuntimeException("non-invertible matrix");
 		return this;
 	}
 
@@ -549,6 +503,122 @@ public class Matrix4f implements Serializable {
 		inv(m1.val, val);
 	}
 
+	/**
+	 * Sets this matrix to the product of two affine matrices (matrices whose bottom row is 0, 0, 0, 1). 
+	 * Only the upper 3x4 portion of the product is computed, and the bottom row of the result is set to 0, 0, 0, 1. 
+	 * This matrix may be either of the inputs.
+	 * @param matA the left hand matrix
+	 * @param matB the right hand matrix
+	 * @return This matrix for the purpose of chaining methods together.
+	 */
+	public Matrix4f setToAffineMulOf(Matrix4f matA, Matrix4f matB) {
+		mulAffine(matA.val, matB.val, val);
+		return this;
+	}
+
+	/**
+	 * Sets this matrix to the inverse of the given affine matrix (a matrix whose bottom row is 0, 0, 0, 1), by 
+	 * inverting its upper 3x3 portion and applying the result to its negated translation. 
+	 * m1 may be this matrix.
+	 * @param m1 matrix to invert
+	 * @return false if the matrix could not be inverted (in which case this matrix is left unchanged), true otherwise.
+	 */
+	public boolean toAffineInverseOf(Matrix4f m1) {
+		return invAffine(m1.val, val);
+	}
+
+	/**
+	 * Sets this matrix to the inverse of the given rigid matrix (a matrix whose upper 3x3 portion is orthonormal, and whose 
+	 * bottom row is 0, 0, 0, 1), by transposing its upper 3x3 portion and applying the result to its negated translation. 
+	 * Reflections are fine, scaling and shearing are not. m1 may be this matrix.
+	 * @param m1 matrix to invert
+	 * @return This matrix for the purpose of chaining methods together.
+	 */
+	public Matrix4f toRigidInverseOf(Matrix4f m1) {
+		invRigid(m1.val, val);
+		return this;
+	}
+
+	/** Multiplies the affine matrix mata with the affine matrix matb, storing the result in out. The arrays are assumed to hold 
+	 * 4x4 column major matrices with a bottom row of 0, 0, 0, 1. out may be the same array as either input.
+	 * @param mata the first matrix.
+	 * @param matb the second matrix.
+	 * @param out the array to store the product in. */
+	public static void mulAffine (float[] mata, float[] matb, float[] out) {
+		float m00 = mata[M00] * matb[M00] + mata[M01] * matb[M10] + mata[M02] * matb[M20];
+		float m01 = mata[M00] * matb[M01] + mata[M01] * matb[M11] + mata[M02] * matb[M21];
+		float m02 = mata[M00] * matb[M02] + mata[M01] * matb[M12] + mata[M02] * matb[M22];
+		float m03 = mata[M00] * matb[M03] + mata[M01] * matb[M13] + mata[M02] * matb[M23] + mata[M03];
+		float m10 = mata[M10] * matb[M00] + mata[M11] * matb[M10] + mata[M12] * matb[M20];
+		float m11 = mata[M10] * matb[M01] + mata[M11] * matb[M11] + mata[M12] * matb[M21];
+		float m12 = mata[M10] * matb[M02] + mata[M11] * matb[M12] + mata[M12] * matb[M22];
+		float m13 = mata[M10] * matb[M03] + mata[M11] * matb[M13] + mata[M12] * matb[M23] + mata[M13];
+		float m20 = mata[M20] * matb[M00] + mata[M21] * matb[M10] + mata[M22] * matb[M20];
+		float m21 = mata[M20] * matb[M01] + mata[M21] * matb[M11] + mata[M22] * matb[M21];
+		float m22 = mata[M20] * matb[M02] + mata[M21] * matb[M12] + mata[M22] * matb[M22];
+		float m23 = mata[M20] * matb[M03] + mata[M21] * matb[M13] + mata[M22] * matb[M23] + mata[M23];
+
+		out[M00] = m00; out[M01] = m01; out[M02] = m02; out[M03] = m03;
+		out[M10] = m10; out[M11] = m11; out[M12] = m12; out[M13] = m13;
+		out[M20] = m20; out[M21] = m21; out[M22] = m22; out[M23] = m23;
+		out[M30] = 0; out[M31] = 0; out[M32] = 0; out[M33] = 1;
+	}
+
+	/** Computes the inverse of the affine matrix m1 (a matrix whose bottom row is 0, 0, 0, 1), and stores it in storeIn. 
+	 * storeIn may be the same array as m1.
+	 * @param m1 the matrix values.
+	 * @param storeIn the array to store the inverse in.
+	 * @return false in case the inverse could not be calculated, true otherwise. */
+	public static boolean invAffine (float[] m1, float[] storeIn) {
+		float a00 = m1[M00], a01 = m1[M01], a02 = m1[M02];
+		float a10 = m1[M10], a11 = m1[M11], a12 = m1[M12];
+		float a20 = m1[M20], a21 = m1[M21], a22 = m1[M22];
+		float c00 = a11 * a22 - a12 * a21;
+		float c10 = a12 * a20 - a10 * a22;
+		float c20 = a10 * a21 - a11 * a20;
+		float l_det = a00 * c00 + a01 * c10 + a02 * c20;
+		if (l_det == 0) return false;
+		float inv_det = 1.0f / l_det;
+		float i00 = c00 * inv_det;
+		float i01 = (a02 * a21 - a01 * a22) * inv_det;
+		float i02 = (a01 * a12 - a02 * a11) * inv_det;
+		float i10 = c10 * inv_det;
+		float i11 = (a00 * a22 - a02 * a20) * inv_det;
+		float i12 = (a02 * a10 - a00 * a12) * inv_det;
+		float i20 = c20 * inv_det;
+		float i21 = (a01 * a20 - a00 * a21) * inv_det;
+		float i22 = (a00 * a11 - a01 * a10) * inv_det;
+		float tx = m1[M03], ty = m1[M13], tz = m1[M23];
+
+		storeIn[M00] = i00; storeIn[M01] = i01; storeIn[M02] = i02; 
+		storeIn[M10] = i10; storeIn[M11] = i11; storeIn[M12] = i12; 
+		storeIn[M20] = i20; storeIn[M21] = i21; storeIn[M22] = i22; 
+		storeIn[M03] = -(i00 * tx + i01 * ty + i02 * tz);
+		storeIn[M13] = -(i10 * tx + i11 * ty + i12 * tz);
+		storeIn[M23] = -(i20 * tx + i21 * ty + i22 * tz);
+		storeIn[M30] = 0; storeIn[M31] = 0; storeIn[M32] = 0; storeIn[M33] = 1;
+		return true;
+	}
+
+	/** Computes the inverse of the rigid matrix m1 (a matrix whose upper 3x3 portion is orthonormal, and whose 
+	 * bottom row is 0, 0, 0, 1), and stores it in storeIn. storeIn may be the same array as m1.
+	 * @param m1 the matrix values.
+	 * @param storeIn the array to store the inverse in. */
+	public static void invRigid (float[] m1, float[] storeIn) {
+		float a00 = m1[M00], a01 = m1[M01], a02 = m1[M02];
+		float a10 = m1[M10], a11 = m1[M11], a12 = m1[M12];
+		float a20 = m1[M20], a21 = m1[M21], a22 = m1[M22];
+		float tx = m1[M03], ty = m1[M13], tz = m1[M23];
+
+		storeIn[M00] = a00; storeIn[M01] = a10; storeIn[M02] = a20; 
+		storeIn[M10] = a01; storeIn[M11] = a11; storeIn[M12] = a21; 
+		storeIn[M20] = a02; storeIn[M21] = a12; storeIn[M22] = a22; 
+		storeIn[M03] = -(a00 * tx + a10 * ty + a20 * tz);
+		storeIn[M13] = -(a01 * tx + a11 * ty + a21 * tz);
+		storeIn[M23] = -(a02 * tx + a12 * ty + a22 * tz);
+		storeIn[M30] = 0; storeIn[M31] = 0; storeIn[M32] = 0; storeIn[M33] = 1;
+	}
+
 	/** @return The determinant of this matrix */
 	public float det () {
 		return val[M30] * val[M21] * val[M12] * val[M03] - val[M20] * val[M31] * val[M12] * val[M03] - val[M30] * val[M11]
@@ -800,8 +870,6 @@ public class Matrix4f implements Serializable {
 		return this;
 	}
 
-	static Quaternionf quat = new Quaternionf();
-	static Quaternionf quat2 = new Quaternionf();
 
 	/** Sets the matrix to a rotation matrix around the given axis.
 	 * 
@@ -813,7 +881,7 @@ public class Matrix4f implements Serializable {
 			idt();
 			return this;
 		}
-		return set(quat.set(axis, degrees));
+		return set(scratch().quat.set(axis, degrees));
 	}
 
 	/** Sets the matrix to a rotation matrix around the given axis.
@@ -826,7 +894,7 @@ public class Matrix4f implements Serializable {
 			idt();
 			return this;
 		}
-		return set(quat.setFromAxisRad(axis, radians));
+		return set(scratch().quat.setFromAxisRad(axis, radians));
 	}
 
 	/** Sets the matrix to a rotation matrix around the given axis.
@@ -841,7 +909,7 @@ public class Matrix4f implements Serializable {
 			idt();
 			return this;
 		}
-		return set(quat.setFromAxis(axisX, axisY, axisZ, degrees));
+		return set(scratch().quat.setFromAxis(axisX, axisY, axisZ, degrees));
 	}
 
 	/** Sets the matrix to a rotation matrix around the given axis.
@@ -856,7 +924,7 @@ public class Matrix4f implements Serializable {
 			idt();
 			return this;
 		}
-		return set(quat.setFromAxisRad(axisX, axisY, axisZ, radians));
+		return set(scratch().quat.setFromAxisRad(axisX, axisY, axisZ, radians));
 	}
 
 	/** Set the matrix to a rotation matrix between two vectors.
@@ -864,7 +932,7 @@ public class Matrix4f implements Serializable {
 	 * @param v2 The target vector
 	 * @return This matrix for the purpose of chaining methods together */
 	public Matrix4f setToRotation (final SGVec_3f v1, final SGVec_3f v2) {
-		return set(quat.setFromCross(v1, v2));
+		return set(scratch().quat.setFromCross(v1, v2));
 	}
 
 	/** Set the matrix to a rotation matrix between two vectors.
@@ -876,7 +944,7 @@ public class Matrix4f implements Serializable {
 	 * @param z2 The target vector z value
 	 * @return This matrix for the purpose of chaining methods together */
 	public Matrix4f setToRotation (final float x1, final float y1, final float z1, final float x2, final float y2, final float z2) {
-		return set(quat.setFromCross(x1, y1, z1, x2, y2, z2));
+		return set(scratch().quat.setFromCross(x1, y1, z1, x2, y2, z2));
 	}
 
 	/** Sets this matrix to a rotation matrix from the given euler angles.
@@ -885,6 +953,7 @@ public class Matrix4f implements Serializable {
 	 * @param roll the roll in degrees
 	 * @return This matrix */
 	public Matrix4f setFromEulerAngles (float yaw, float pitch, float roll) {
+		Quaternionf quat = scratch().quat;
 		quat.setEulerAngles(yaw, pitch, roll);
 		return set(quat);
 	}
@@ -895,6 +964,7 @@ public class Matrix4f implements Serializable {
 	 * @param roll the roll in radians
 	 * @return This matrix */
 	public Matrix4f setFromEulerAnglesRad (float yaw, float pitch, float roll) {
+		Quaternionf quat = scratch().quat;
 		quat.setEulerAnglesRad(yaw, pitch, roll);
 		return set(quat);
 	}
@@ -925,10 +995,6 @@ public class Matrix4f implements Serializable {
 		return this;
 	}
 
-	static final SGVec_3f l_vez = new SGVec_3f();
-	static final SGVec_3f l_vex = new SGVec_3f();
-	static final SGVec_3f l_vey = new SGVec_3f();
-
 	/** Sets the matrix to a look at matrix with a direction and an up vector. Multiply with a translation matrix to get a camera
 	 * model view matrix.
 	 * 
@@ -936,6 +1002,10 @@ public class Matrix4f implements Serializable {
 	 * @param up The up vector
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f setToLookAt (SGVec_3f direction, SGVec_3f up) {
+		Scratch scratch = scratch();
+		SGVec_3f l_vez = scratch.vecA;
+		SGVec_3f l_vex = scratch.vecB;
+		SGVec_3f l_vey = scratch.vecC;
 		l_vez.set(direction).normalize();
 		l_vex.set(direction).normalize();
 		l_vex.crs(up).normalize();
@@ -954,9 +1024,6 @@ public class Matrix4f implements Serializable {
 		return this;
 	}
 
-	static final SGVec_3f tmpVec = new SGVec_3f();
-	protected static final Matrix4f tmpMat = new Matrix4f();
-
 	/** Sets this matrix to a look at matrix with the given position, target and up vector.
 	 * 
 	 * @param position the position
@@ -964,18 +1031,19 @@ public class Matrix4f implements Serializable {
 	 * @param up the up vector
 	 * @return This matrix */
 	public Matrix4f setToLookAt (SGVec_3f position, SGVec_3f target, SGVec_3f up) {
-		tmpVec.set(target).sub(position);
-		setToLookAt(tmpVec, up);
-		this.mul(tmpMat.setToTranslation(-position.x, -position.y, -position.z));
+		SGVec_3f direction = scratch().vecD;
+		direction.set(target).sub(position);
+		setToLookAt(direction, up);
+		this.translate(-position.x, -position.y, -position.z);
 
 		return this;
 	}
 
-	static final SGVec_3f right = new SGVec_3f();
-	static final SGVec_3f tmpForward = new SGVec_3f();
-	static final SGVec_3f tmpUp = new SGVec_3f();
-
 	public Matrix4f setToWorld (SGVec_3f position, SGVec_3f forward, SGVec_3f up) {
+		Scratch scratch = scratch();
+		SGVec_3f right = scratch.vecA;
+		SGVec_3f tmpForward = scratch.vecB;
+		SGVec_3f tmpUp = scratch.vecC;
 		tmpForward.set(forward).normalize();
 		right.set(tmpForward).crs(up).normalize();
 		tmpUp.set(right).crs(tmpForward).normalize();
@@ -1007,6 +1075,14 @@ public class Matrix4f implements Serializable {
 	 * @param w Weight of this transform; weight of the other transform is (1 - w)
 	 * @return This matrix for chaining */
 	public Matrix4f avg (Matrix4f other, float w) {
+		Scratch scratch = scratch();
+		SGVec_3f tmpVec = scratch.vecA;
+		SGVec_3f tmpForward = scratch.vecB;
+		SGVec_3f tmpUp = scratch.vecC;
+		SGVec_3f right = scratch.vecD;
+		Quaternionf quat = scratch.quat;
+		Quaternionf quat2 = scratch.quat2;
+
 		getScale(tmpVec);
 		other.getScale(tmpForward);
 
@@ -1029,6 +1105,12 @@ public class Matrix4f implements Serializable {
 	 * @return This matrix for chaining */
 	public Matrix4f avg (Matrix4f[] t) {
 		final float w = 1.0f / t.length;
+		Scratch scratch = scratch();
+		SGVec_3f tmpVec = scratch.vecA;
+		SGVec_3f tmpForward = scratch.vecB;
+		SGVec_3f tmpUp = scratch.vecC;
+		Quaternionf quat = scratch.quat;
+		Quaternionf quat2 = scratch.quat2;
 
 		tmpVec.set(t[0].getScale(tmpUp).mult(w));
 		quat.set(t[0].getRotation(quat2).exp(w));
@@ -1055,6 +1137,13 @@ public class Matrix4f implements Serializable {
 	 * @param w List of weights
 	 * @return This matrix for chaining */
 	public Matrix4f avg (Matrix4f[] t, float[] w) {
+		Scratch scratch = scratch();
+		SGVec_3f tmpVec = scratch.vecA;
+		SGVec_3f tmpForward = scratch.vecB;
+		SGVec_3f tmpUp = scratch.vecC;
+		Quaternionf quat = scratch.quat;
+		Quaternionf quat2 = scratch.quat2;
+
 		tmpVec.set(t[0].getScale(tmpUp).mult(w[0]));
 		quat.set(t[0].getRotation(quat2).exp(w[0]));
 		tmpForward.set(t[0].getTranslation(tmpUp).mult(w[0]));
@@ -1335,25 +1424,37 @@ public class Matrix4f implements Serializable {
 	 * @param mata the first matrix.
 	 * @param matb the second matrix. */
 	public static void mul (float[] mata, float[] matb) {
-		float[] tmp = new float[16];
-		tmp[M00] = mata[M00] * matb[M00] + mata[M01] * matb[M10] + mata[M02] * matb[M20] + mata[M03] * matb[M30];
-		tmp[M01] = mata[M00] * matb[M01] + mata[M01] * matb[M11] + mata[M02] * matb[M21] + mata[M03] * matb[M31];
-		tmp[M02] = mata[M00] * matb[M02] + mata[M01] * matb[M12] + mata[M02] * matb[M22] + mata[M03] * matb[M32];
-		tmp[M03] = mata[M00] * matb[M03] + mata[M01] * matb[M13] + mata[M02] * matb[M23] + mata[M03] * matb[M33];
-		tmp[M10] = mata[M10] * matb[M00] + mata[M11] * matb[M10] + mata[M12] * matb[M20] + mata[M13] * matb[M30];
-		tmp[M11] = mata[M10] * matb[M01] + mata[M11] * matb[M11] + mata[M12] * matb[M21] + mata[M13] * matb[M31];
-		tmp[M12] = mata[M10] * matb[M02] + mata[M11] * matb[M12] + mata[M12] * matb[M22] + mata[M13] * matb[M32];
-		tmp[M13] = mata[M10] * matb[M03] + mata[M11] * matb[M13] + mata[M12] * matb[M23] + mata[M13] * matb[M33];
-		tmp[M20] = mata[M20] * matb[M00] + mata[M21] * matb[M10] + mata[M22] * matb[M20] + mata[M23] * matb[M30];
-		tmp[M21] = mata[M20] * matb[M01] + mata[M21] * matb[M11] + mata[M22] * matb[M21] + mata[M23] * matb[M31];
-		tmp[M22] = mata[M20] * matb[M02] + mata[M21] * matb[M12] + mata[M22] * matb[M22] + mata[M23] * matb[M32];
-		tmp[M23] = mata[M20] * matb[M03] + mata[M21] * matb[M13] + mata[M22] * matb[M23] + mata[M23] * matb[M33];
-		tmp[M30] = mata[M30] * matb[M00] + mata[M31] * matb[M10] + mata[M32] * matb[M20] + mata[M33] * matb[M30];
-		tmp[M31] = mata[M30] * matb[M01] + mata[M31] * matb[M11] + mata[M32] * matb[M21] + mata[M33] * matb[M31];
-		tmp[M32] = mata[M30] * matb[M02] + mata[M31] * matb[M12] + mata[M32] * matb[M22] + mata[M33] * matb[M32];
-		tmp[M33] = mata[M30] * matb[M03] + mata[M31] * matb[M13] + mata[M32] * matb[M23] + mata[M33] * matb[M33];
+		mul(mata, matb, mata);
+	}
 
-		for(int i = 0; i<mata.length; i++) mata[i] = tmp[i];
+	/** Multiplies the matrix mata with matrix matb, storing the result in out. The arrays are assumed to hold 4x4 column major
+	 * matrices as you can get from {@link Matrix4f#val}. out may be the same array as either input.
+	 *
+	 * @param mata the first matrix.
+	 * @param matb the second matrix.
+	 * @param out the array to store the product in. */
+	public static void mul (float[] mata, float[] matb, float[] out) {
+		float m00 = mata[M00] * matb[M00] + mata[M01] * matb[M10] + mata[M02] * matb[M20] + mata[M03] * matb[M30];
+		float m01 = mata[M00] * matb[M01] + mata[M01] * matb[M11] + mata[M02] * matb[M21] + mata[M03] * matb[M31];
+		float m02 = mata[M00] * matb[M02] + mata[M01] * matb[M12] + mata[M02] * matb[M22] + mata[M03] * matb[M32];
+		float m03 = mata[M00] * matb[M03] + mata[M01] * matb[M13] + mata[M02] * matb[M23] + mata[M03] * matb[M33];
+		float m10 = mata[M10] * matb[M00] + mata[M11] * matb[M10] + mata[M12] * matb[M20] + mata[M13] * matb[M30];
+		float m11 = mata[M10] * matb[M01] + mata[M11] * matb[M11] + mata[M12] * matb[M21] + mata[M13] * matb[M31];
+		float m12 = mata[M10] * matb[M02] + mata[M11] * matb[M12] + mata[M12] * matb[M22] + mata[M13] * matb[M32];
+		float m13 = mata[M10] * matb[M03] + mata[M11] * matb[M13] + mata[M12] * matb[M23] + mata[M13] * matb[M33];
+		float m20 = mata[M20] * matb[M00] + mata[M21] * matb[M10] + mata[M22] * matb[M20] + mata[M23] * matb[M30];
+		float m21 = mata[M20] * matb[M01] + mata[M21] * matb[M11] + mata[M22] * matb[M21] + mata[M23] * matb[M31];
+		float m22 = mata[M20] * matb[M02] + mata[M21] * matb[M12] + mata[M22] * matb[M22] + mata[M23] * matb[M32];
+		float m23 = mata[M20] * matb[M03] + mata[M21] * matb[M13] + mata[M22] * matb[M23] + mata[M23] * matb[M33];
+		float m30 = mata[M30] * matb[M00] + mata[M31] * matb[M10] + mata[M32] * matb[M20] + mata[M33] * matb[M30];
+		float m31 = mata[M30] * matb[M01] + mata[M31] * matb[M11] + mata[M32] * matb[M21] + mata[M33] * matb[M31];
+		float m32 = mata[M30] * matb[M02] + mata[M31] * matb[M12] + mata[M32] * matb[M22] + mata[M33] * matb[M32];
+		float m33 = mata[M30] * matb[M03] + mata[M31] * matb[M13] + mata[M32] * matb[M23] + mata[M33] * matb[M33];
+
+		out[M00] = m00; out[M01] = m01; out[M02] = m02; out[M03] = m03;
+		out[M10] = m10; out[M11] = m11; out[M12] = m12; out[M13] = m13;
+		out[M20] = m20; out[M21] = m21; out[M22] = m22; out[M23] = m23;
+		out[M30] = m30; out[M31] = m31; out[M32] = m32; out[M33] = m33;
 	}
 	
 	/** Multiplies the matrix mata with matrix matb, storing the result in this matrix. The arrays are assumed to hold 4x4 column major
@@ -1361,28 +1462,8 @@ public class Matrix4f implements Serializable {
 	 *
 	 * @param mata the first matrix.
 	 * @param matb the second matrix. */
-	public void setToMulOf (Matrix4f matA, Matrix4f matB) {		
-		float[] mata = matA.val; float[] matb = matB.val;
-		float[] tmp = matA != matB ? this.val : new float[16];
-		tmp[M00] = mata[M00] * matb[M00] + mata[M01] * matb[M10] + mata[M02] * matb[M20] + mata[M03] * matb[M30];
-		tmp[M01] = mata[M00] * matb[M01] + mata[M01] * matb[M11] + mata[M02] * matb[M21] + mata[M03] * matb[M31];
-		tmp[M02] = mata[M00] * matb[M02] + mata[M01] * matb[M12] + mata[M02] * matb[M22] + mata[M03] * matb[M32];
-		tmp[M03] = mata[M00] * matb[M03] + mata[M01] * matb[M13] + mata[M02] * matb[M23] + mata[M03] * matb[M33];
-		tmp[M10] = mata[M10] * matb[M00] + mata[M11] * matb[M10] + mata[M12] * matb[M20] + mata[M13] * matb[M30];
-		tmp[M11] = mata[M10] * matb[M01] + mata[M11] * matb[M11] + mata[M12] * matb[M21] + mata[M13] * matb[M31];
-		tmp[M12] = mata[M10] * matb[M02] + mata[M11] * matb[M12] + mata[M12] * matb[M22] + mata[M13] * matb[M32];
-		tmp[M13] = mata[M10] * matb[M03] + mata[M11] * matb[M13] + mata[M12] * matb[M23] + mata[M13] * matb[M33];
-		tmp[M20] = mata[M20] * matb[M00] + mata[M21] * matb[M10] + mata[M22] * matb[M20] + mata[M23] * matb[M30];
-		tmp[M21] = mata[M20] * matb[M01] + mata[M21] * matb[M11] + mata[M22] * matb[M21] + mata[M23] * matb[M31];
-		tmp[M22] = mata[M20] * matb[M02] + mata[M21] * matb[M12] + mata[M22] * matb[M22] + mata[M23] * matb[M32];
-		tmp[M23] = mata[M20] * matb[M03] + mata[M21] * matb[M13] + mata[M22] * matb[M23] + mata[M23] * matb[M33];
-		tmp[M30] = mata[M30] * matb[M00] + mata[M31] * matb[M10] + mata[M32] * matb[M20] + mata[M33] * matb[M30];
-		tmp[M31] = mata[M30] * matb[M01] + mata[M31] * matb[M11] + mata[M32] * matb[M21] + mata[M33] * matb[M31];
-		tmp[M32] = mata[M30] * matb[M02] + mata[M31] * matb[M12] + mata[M32] * matb[M22] + mata[M33] * matb[M32];
-		tmp[M33] = mata[M30] * matb[M03] + mata[M31] * matb[M13] + mata[M32] * matb[M23] + mata[M33] * matb[M33];
-
-		if(matB == matA)
-			for(int i = 0; i<mata.length; i++) this.val[i] = tmp[i];
+	public void setToMulOf (Matrix4f matA, Matrix4f matB) {
+		mul(matA.val, matB.val, val);
 	}
 	/*-{ }-*/; /*
 	}
@@ -1444,14 +1525,18 @@ public class Matrix4f implements Serializable {
 	 * @param offset the offset into the vectors array
 	 * @param numVecs the number of vectors
 	 * @param stride the stride between vectors in floats */
-	//public static native void mulVec (float[] mat, float[] vecs, int offset, int numVecs, int stride) /*-{ }-*/; 
-	/*
-		float* vecPtr = vecs + offset;
-		for(int i = 0; i < numVecs; i++) {
-			matrix4_mulVec(mat, vecPtr);
-			vecPtr += stride;
+	public static void mulVec (float[] mat, float[] vecs, int offset, int numVecs, int stride) {
+		float m00 = mat[M00], m01 = mat[M01], m02 = mat[M02];
+		float m10 = mat[M10], m11 = mat[M11], m12 = mat[M12];
+		float m20 = mat[M20], m21 = mat[M21], m22 = mat[M22];
+		float m03 = mat[M03], m13 = mat[M13], m23 = mat[M23];
+		for (int i = 0, v = offset; i < numVecs; i++, v += stride) {
+			float x = vecs[v], y = vecs[v + 1], z = vecs[v + 2];
+			vecs[v] = x * m00 + y * m01 + z * m02 + m03;
+			vecs[v + 1] = x * m10 + y * m11 + z * m12 + m13;
+			vecs[v + 2] = x * m20 + y * m21 + z * m22 + m23;
 		}
-	 */
+	}
 
 	/** Multiplies the vector with the given matrix, performing a division by w. The matrix array is assumed to hold a 4x4 column
 	 * major matrix as you can get from {@link Matrix4f#val}. The vector array is assumed to hold a 3-component vector, with x being
@@ -1484,14 +1569,20 @@ public class Matrix4f implements Serializable {
 	 * @param offset the offset into the vectors array
 	 * @param numVecs the number of vectors
 	 * @param stride the stride between vectors in floats */
-	//public static  void prj (float[] mat, float[] vecs, int offset, int numVecs, int stride) /*-{ }-*/; 
-	/*
-		float* vecPtr = vecs + offset;
-		for(int i = 0; i < numVecs; i++) {
-			matrix4_proj(mat, vecPtr);
-			vecPtr += stride;
+	public static void prj (float[] mat, float[] vecs, int offset, int numVecs, int stride) {
+		float m00 = mat[M00], m01 = mat[M01], m02 = mat[M02];
+		float m10 = mat[M10], m11 = mat[M11], m12 = mat[M12];
+		float m20 = mat[M20], m21 = mat[M21], m22 = mat[M22];
+		float m03 = mat[M03], m13 = mat[M13], m23 = mat[M23];
+		float m30 = mat[M30], m31 = mat[M31], m32 = mat[M32], m33 = mat[M33];
+		for (int i = 0, v = offset; i < numVecs; i++, v += stride) {
+			float x = vecs[v], y = vecs[v + 1], z = vecs[v + 2];
+			float inv_w = 1.0f / (x * m30 + y * m31 + z * m32 + m33);
+			vecs[v] = (x * m00 + y * m01 + z * m02 + m03) * inv_w;
+			vecs[v + 1] = (x * m10 + y * m11 + z * m12 + m13) * inv_w;
+			vecs[v + 2] = (x * m20 + y * m21 + z * m22 + m23) * inv_w;
 		}
-	 */
+	}
 
 	/** Multiplies the vector with the top most 3x3 sub-matrix of the given matrix. The matrix array is assumed to hold a 4x4 column
 	 * major matrix as you can get from {@link Matrix4f#val}. The vector array is assumed to hold a 3-component vector, with x being
@@ -1524,74 +1615,176 @@ public class Matrix4f implements Serializable {
 	 * @param offset the offset into the vectors array
 	 * @param numVecs the number of vectors
 	 * @param stride the stride between vectors in floats */
-	//public static  void rot (float[] mat, float[] vecs, int offset, int numVecs, int stride) /*-{ }-*/; 
-	/*
-		float* vecPtr = vecs + offset;
-		for(int i = 0; i < numVecs; i++) {
-			matrix4_rot(mat, vecPtr);
-			vecPtr += stride;
+	public static void rot (float[] mat, float[] vecs, int offset, int numVecs, int stride) {
+		float m00 = mat[M00], m01 = mat[M01], m02 = mat[M02];
+		float m10 = mat[M10], m11 = mat[M11], m12 = mat[M12];
+		float m20 = mat[M20], m21 = mat[M21], m22 = mat[M22];
+		for (int i = 0, v = offset; i < numVecs; i++, v += stride) {
+			float x = vecs[v], y = vecs[v + 1], z = vecs[v + 2];
+			vecs[v] = x * m00 + y * m01 + z * m02;
+			vecs[v + 1] = x * m10 + y * m11 + z * m12;
+			vecs[v + 2] = x * m20 + y * m21 + z * m22;
 		}
-	 */
+	}
+
+	/** Multiplies the vectors with the given matrix, like {@link #mulVec(float[], float[], int, int, int)}, but for vectors 
+	 * stored as separate arrays of x, y and z components. Each iteration reads and writes only index i of each array, so the JIT 
+	 * can compile the loop to SIMD instructions, which it can't do for the interleaved, strided layout.
+	 * 
+	 * @param mat the matrix
+	 * @param xs the x components
+	 * @param ys the y components
+	 * @param zs the z components
+	 * @param offset index of the first vector in each array
+	 * @param numVecs the number of vectors */
+	public static void mulVec (float[] mat, float[] xs, float[] ys, float[] zs, int offset, int numVecs) {
+		float m00 = mat[M00], m01 = mat[M01], m02 = mat[M02];
+		float m10 = mat[M10], m11 = mat[M11], m12 = mat[M12];
+		float m20 = mat[M20], m21 = mat[M21], m22 = mat[M22];
+		float m03 = mat[M03], m13 = mat[M13], m23 = mat[M23];
+		for (int i = offset, end = offset + numVecs; i < end; i++) {
+			float x = xs[i], y = ys[i], z = zs[i];
+			xs[i] = x * m00 + y * m01 + z * m02 + m03;
+			ys[i] = x * m10 + y * m11 + z * m12 + m13;
+			zs[i] = x * m20 + y * m21 + z * m22 + m23;
+		}
+	}
+
+	/** Multiplies the vectors with the top most 3x3 sub-matrix of the given matrix, like 
+	 * {@link #rot(float[], float[], int, int, int)}, but for vectors stored as separate arrays of x, y and z components.
+	 * @see #mulVec(float[], float[], float[], float[], int, int)
+	 * 
+	 * @param mat the matrix
+	 * @param xs the x components
+	 * @param ys the y components
+	 * @param zs the z components
+	 * @param offset index of the first vector in each array
+	 * @param numVecs the number of vectors */
+	public static void rot (float[] mat, float[] xs, float[] ys, float[] zs, int offset, int numVecs) {
+		float m00 = mat[M00], m01 = mat[M01], m02 = mat[M02];
+		float m10 = mat[M10], m11 = mat[M11], m12 = mat[M12];
+		float m20 = mat[M20], m21 = mat[M21], m22 = mat[M22];
+		for (int i = offset, end = offset + numVecs; i < end; i++) {
+			float x = xs[i], y = ys[i], z = zs[i];
+			xs[i] = x * m00 + y * m01 + z * m02;
+			ys[i] = x * m10 + y * m11 + z * m12;
+			zs[i] = x * m20 + y * m21 + z * m22;
+		}
+	}
+
+	/** Copies the top three rows of the affine matrix mat into slot index of a batch of count matrices, in the layout 
+	 * {@link #mulAffine(float[], float[], float[], int)} and {@link #invAffine(float[], float[], int)} take: entry (row, column) of matrix i 
+	 * is at batch[(column * 3 + row) * count + i], so that each of the twelve entries forms one contiguous run of count values.
+	 * 
+	 * @param mat the matrix to copy
+	 * @param batch the batch, at least 12 * count long
+	 * @param index the slot to copy into
+	 * @param count the number of matrices in the batch */
+	public static void toBatch (float[] mat, float[] batch, int index, int count) {
+		for (int column = 0, p = index; column < 4; column++)
+			for (int row = 0; row < 3; row++, p += count)
+				batch[p] = mat[column * 4 + row];
+	}
+
+	/** Copies slot index of a batch of count matrices into mat, and sets the bottom row of mat to (0, 0, 0, 1).
+	 * @see #toBatch(float[], float[], int, int)
+	 * 
+	 * @param batch the batch
+	 * @param index the slot to copy from
+	 * @param count the number of matrices in the batch
+	 * @param mat the matrix to store the slot in */
+	public static void fromBatch (float[] batch, int index, int count, float[] mat) {
+		for (int column = 0, p = index; column < 4; column++)
+			for (int row = 0; row < 3; row++, p += count)
+				mat[column * 4 + row] = batch[p];
+		mat[M30] = 0; mat[M31] = 0; mat[M32] = 0; mat[M33] = 1;
+	}
+
+	/** Multiplies each affine matrix in as with the affine matrix in the same slot of bs, as 
+	 * {@link #mulAffine(float[], float[], float[])} would. The arrays hold count matrices in the layout described at 
+	 * {@link #toBatch(float[], float[], int, int)}. Each iteration reads and writes only slot i of each of the twelve runs, so the 
+	 * JIT can compile the loop to SIMD instructions, as with {@link #mulVec(float[], float[], float[], float[], int, int)}. outs may be 
+	 * the same array as either input.
+	 * 
+	 * @param as the left hand matrices
+	 * @param bs the right hand matrices
+	 * @param outs the array to store the products in
+	 * @param count the number of matrices */
+	public static void mulAffine (float[] as, float[] bs, float[] outs, int count) {
+		final int n = count;
+		for (int i = 0; i < n; i++) {
+			float a00 = as[i], a10 = as[n + i], a20 = as[2 * n + i];
+			float a01 = as[3 * n + i], a11 = as[4 * n + i], a21 = as[5 * n + i];
+			float a02 = as[6 * n + i], a12 = as[7 * n + i], a22 = as[8 * n + i];
+			float a03 = as[9 * n + i], a13 = as[10 * n + i], a23 = as[11 * n + i];
+			float b00 = bs[i], b10 = bs[n + i], b20 = bs[2 * n + i];
+			float b01 = bs[3 * n + i], b11 = bs[4 * n + i], b21 = bs[5 * n + i];
+			float b02 = bs[6 * n + i], b12 = bs[7 * n + i], b22 = bs[8 * n + i];
+			float b03 = bs[9 * n + i], b13 = bs[10 * n + i], b23 = bs[11 * n + i];
+			outs[i] = a00 * b00 + a01 * b10 + a02 * b20;
+			outs[n + i] = a10 * b00 + a11 * b10 + a12 * b20;
+			outs[2 * n + i] = a20 * b00 + a21 * b10 + a22 * b20;
+			outs[3 * n + i] = a00 * b01 + a01 * b11 + a02 * b21;
+			outs[4 * n + i] = a10 * b01 + a11 * b11 + a12 * b21;
+			outs[5 * n + i] = a20 * b01 + a21 * b11 + a22 * b21;
+			outs[6 * n + i] = a00 * b02 + a01 * b12 + a02 * b22;
+			outs[7 * n + i] = a10 * b02 + a11 * b12 + a12 * b22;
+			outs[8 * n + i] = a20 * b02 + a21 * b12 + a22 * b22;
+			outs[9 * n + i] = a00 * b03 + a01 * b13 + a02 * b23 + a03;
+			outs[10 * n + i] = a10 * b03 + a11 * b13 + a12 * b23 + a13;
+			outs[11 * n + i] = a20 * b03 + a21 * b13 + a22 * b23 + a23;
+		}
+	}
+
+	/** Inverts each affine matrix in mats, as {@link #invAffine(float[], float[])} would. The arrays hold count matrices in the 
+	 * layout described at {@link #toBatch(float[], float[], int, int)}. storeIn may be the same array as mats. Singular matrices 
+	 * don't branch out of the loop (which would keep it from being vectorized); their slots in storeIn are set to all zeros 
+	 * instead, which no inverse can be, whatever storeIn held before.
+	 * 
+	 * @param mats the matrices to invert
+	 * @param storeIn the array to store the inverses in
+	 * @param count the number of matrices
+	 * @return the number of matrices which could not be inverted. */
+	public static int invAffine (float[] mats, float[] storeIn, int count) {
+		final int n = count;
+		int failures = 0;
+		for (int i = 0; i < n; i++) {
+			float a00 = mats[i], a10 = mats[n + i], a20 = mats[2 * n + i];
+			float a01 = mats[3 * n + i], a11 = mats[4 * n + i], a21 = mats[5 * n + i];
+			float a02 = mats[6 * n + i], a12 = mats[7 * n + i], a22 = mats[8 * n + i];
+			float tx = mats[9 * n + i], ty = mats[10 * n + i], tz = mats[11 * n + i];
+			float c00 = a11 * a22 - a12 * a21;
+			float c10 = a12 * a20 - a10 * a22;
+			float c20 = a10 * a21 - a11 * a20;
+			float l_det = a00 * c00 + a01 * c10 + a02 * c20;
+			boolean singular = l_det == 0;
+			failures += singular ? 1 : 0;
+			float inv_det = singular ? 0 : 1.0f / l_det;
+			float i00 = c00 * inv_det;
+			float i01 = (a02 * a21 - a01 * a22) * inv_det;
+			float i02 = (a01 * a12 - a02 * a11) * inv_det;
+			float i10 = c10 * inv_det;
+			float i11 = (a00 * a22 - a02 * a20) * inv_det;
+			float i12 = (a02 * a10 - a00 * a12) * inv_det;
+			float i20 = c20 * inv_det;
+			float i21 = (a01 * a20 - a00 * a21) * inv_det;
+			float i22 = (a00 * a11 - a01 * a10) * inv_det;
+			storeIn[i] = i00; storeIn[n + i] = i10; storeIn[2 * n + i] = i20;
+			storeIn[3 * n + i] = i01; storeIn[4 * n + i] = i11; storeIn[5 * n + i] = i21;
+			storeIn[6 * n + i] = i02; storeIn[7 * n + i] = i12; storeIn[8 * n + i] = i22;
+			storeIn[9 * n + i] = singular ? 0 : -(i00 * tx + i01 * ty + i02 * tz);
+			storeIn[10 * n + i] = singular ? 0 : -(i10 * tx + i11 * ty + i12 * tz);
+			storeIn[11 * n + i] = singular ? 0 : -(i20 * tx + i21 * ty + i22 * tz);
+		}
+		return failures;
+	}
 
 	/** Computes the inverse of the given matrix. The matrix array is assumed to hold a 4x4 column major matrix as you can get from
 	 * {@link Matrix4f#val}.
 	 * @param values the matrix values.
 	 * @return false in case the inverse could not be calculated, true otherwise. */
 	public static  boolean inv (float[] val) {
-		float[] tmp = new float[16];
-		float l_det = det(val);
-		if (l_det == 0) return false;
-		tmp[M00] = val[M12] * val[M23] * val[M31] - val[M13] * val[M22] * val[M31] + val[M13] * val[M21] * val[M32] - val[M11]
-				* val[M23] * val[M32] - val[M12] * val[M21] * val[M33] + val[M11] * val[M22] * val[M33];
-		tmp[M01] = val[M03] * val[M22] * val[M31] - val[M02] * val[M23] * val[M31] - val[M03] * val[M21] * val[M32] + val[M01]
-				* val[M23] * val[M32] + val[M02] * val[M21] * val[M33] - val[M01] * val[M22] * val[M33];
-		tmp[M02] = val[M02] * val[M13] * val[M31] - val[M03] * val[M12] * val[M31] + val[M03] * val[M11] * val[M32] - val[M01]
-				* val[M13] * val[M32] - val[M02] * val[M11] * val[M33] + val[M01] * val[M12] * val[M33];
-		tmp[M03] = val[M03] * val[M12] * val[M21] - val[M02] * val[M13] * val[M21] - val[M03] * val[M11] * val[M22] + val[M01]
-				* val[M13] * val[M22] + val[M02] * val[M11] * val[M23] - val[M01] * val[M12] * val[M23];
-		tmp[M10] = val[M13] * val[M22] * val[M30] - val[M12] * val[M23] * val[M30] - val[M13] * val[M20] * val[M32] + val[M10]
-				* val[M23] * val[M32] + val[M12] * val[M20] * val[M33] - val[M10] * val[M22] * val[M33];
-		tmp[M11] = val[M02] * val[M23] * val[M30] - val[M03] * val[M22] * val[M30] + val[M03] * val[M20] * val[M32] - val[M00]
-				* val[M23] * val[M32] - val[M02] * val[M20] * val[M33] + val[M00] * val[M22] * val[M33];
-		tmp[M12] = val[M03] * val[M12] * val[M30] - val[M02] * val[M13] * val[M30] - val[M03] * val[M10] * val[M32] + val[M00]
-				* val[M13] * val[M32] + val[M02] * val[M10] * val[M33] - val[M00] * val[M12] * val[M33];
-		tmp[M13] = val[M02] * val[M13] * val[M20] - val[M03] * val[M12] * val[M20] + val[M03] * val[M10] * val[M22] - val[M00]
-				* val[M13] * val[M22] - val[M02] * val[M10] * val[M23] + val[M00] * val[M12] * val[M23];
-		tmp[M20] = val[M11] * val[M23] * val[M30] - val[M13] * val[M21] * val[M30] + val[M13] * val[M20] * val[M31] - val[M10]
-				* val[M23] * val[M31] - val[M11] * val[M20] * val[M33] + val[M10] * val[M21] * val[M33];
-		tmp[M21] = val[M03] * val[M21] * val[M30] - val[M01] * val[M23] * val[M30] - val[M03] * val[M20] * val[M31] + val[M00]
-				* val[M23] * val[M31] + val[M01] * val[M20] * val[M33] - val[M00] * val[M21] * val[M33];
-		tmp[M22] = val[M01] * val[M13] * val[M30] - val[M03] * val[M11] * val[M30] + val[M03] * val[M10] * val[M31] - val[M00]
-				* val[M13] * val[M31] - val[M01] * val[M10] * val[M33] + val[M00] * val[M11] * val[M33];
-		tmp[M23] = val[M03] * val[M11] * val[M20] - val[M01] * val[M13] * val[M20] - val[M03] * val[M10] * val[M21] + val[M00]
-				* val[M13] * val[M21] + val[M01] * val[M10] * val[M23] - val[M00] * val[M11] * val[M23];
-		tmp[M30] = val[M12] * val[M21] * val[M30] - val[M11] * val[M22] * val[M30] - val[M12] * val[M20] * val[M31] + val[M10]
-				* val[M22] * val[M31] + val[M11] * val[M20] * val[M32] - val[M10] * val[M21] * val[M32];
-		tmp[M31] = val[M01] * val[M22] * val[M30] - val[M02] * val[M21] * val[M30] + val[M02] * val[M20] * val[M31] - val[M00]
-				* val[M22] * val[M31] - val[M01] * val[M20] * val[M32] + val[M00] * val[M21] * val[M32];
-		tmp[M32] = val[M02] * val[M11] * val[M30] - val[M01] * val[M12] * val[M30] - val[M02] * val[M10] * val[M31] + val[M00]
-				* val[M12] * val[M31] + val[M01] * val[M10] * val[M32] - val[M00] * val[M11] * val[M32];
-		tmp[M33] = val[M01] * val[M12] * val[M20] - val[M02] * val[M11] * val[M20] + val[M02] * val[M10] * val[M21] - val[M00]
-				* val[M12] * val[M21] - val[M01] * val[M10] * val[M22] + val[M00] * val[M11] * val[M22];
-
-		float inv_det = 1.0f / l_det;
-		val[M00] = tmp[M00] * inv_det;
-		val[M01] = tmp[M01] * inv_det;
-		val[M02] = tmp[M02] * inv_det;
-		val[M03] = tmp[M03] * inv_det;
-		val[M10] = tmp[M10] * inv_det;
-		val[M11] = tmp[M11] * inv_det;
-		val[M12] = tmp[M12] * inv_det;
-		val[M13] = tmp[M13] * inv_det;
-		val[M20] = tmp[M20] * inv_det;
-		val[M21] = tmp[M21] * inv_det;
-		val[M22] = tmp[M22] * inv_det;
-		val[M23] = tmp[M23] * inv_det;
-		val[M30] = tmp[M30] * inv_det;
-		val[M31] = tmp[M31] * inv_det;
-		val[M32] = tmp[M32] * inv_det;
-		val[M33] = tmp[M33] * inv_det;
-		return true;
+		return inv(val, val);
 	}
 
 	/** Computes the inverse of m1, and stores the value in storeIn. The matrix array is assumed to hold a 4x4 column major matrix as you can get from
@@ -1599,60 +1792,59 @@ public class Matrix4f implements Serializable {
 	 * @param values the matrix values.
 	 * @return false in case the inverse could not be calculated, true otherwise. */
 	public static  boolean inv (float[] m1, float[] storeIn) {
-		float[] tmp = storeIn; 
 		float[] val = m1; 
 		float l_det = det(val);
 		if (l_det == 0) return false;
-		tmp[M00] = val[M12] * val[M23] * val[M31] - val[M13] * val[M22] * val[M31] + val[M13] * val[M21] * val[M32] - val[M11]
+		float t00 = val[M12] * val[M23] * val[M31] - val[M13] * val[M22] * val[M31] + val[M13] * val[M21] * val[M32] - val[M11]
 				* val[M23] * val[M32] - val[M12] * val[M21] * val[M33] + val[M11] * val[M22] * val[M33];
-		tmp[M01] = val[M03] * val[M22] * val[M31] - val[M02] * val[M23] * val[M31] - val[M03] * val[M21] * val[M32] + val[M01]
+		float t01 = val[M03] * val[M22] * val[M31] - val[M02] * val[M23] * val[M31] - val[M03] * val[M21] * val[M32] + val[M01]
 				* val[M23] * val[M32] + val[M02] * val[M21] * val[M33] - val[M01] * val[M22] * val[M33];
-		tmp[M02] = val[M02] * val[M13] * val[M31] - val[M03] * val[M12] * val[M31] + val[M03] * val[M11] * val[M32] - val[M01]
+		float t02 = val[M02] * val[M13] * val[M31] - val[M03] * val[M12] * val[M31] + val[M03] * val[M11] * val[M32] - val[M01]
 				* val[M13] * val[M32] - val[M02] * val[M11] * val[M33] + val[M01] * val[M12] * val[M33];
-		tmp[M03] = val[M03] * val[M12] * val[M21] - val[M02] * val[M13] * val[M21] - val[M03] * val[M11] * val[M22] + val[M01]
+		float t03 = val[M03] * val[M12] * val[M21] - val[M02] * val[M13] * val[M21] - val[M03] * val[M11] * val[M22] + val[M01]
 				* val[M13] * val[M22] + val[M02] * val[M11] * val[M23] - val[M01] * val[M12] * val[M23];
-		tmp[M10] = val[M13] * val[M22] * val[M30] - val[M12] * val[M23] * val[M30] - val[M13] * val[M20] * val[M32] + val[M10]
+		float t10 = val[M13] * val[M22] * val[M30] - val[M12] * val[M23] * val[M30] - val[M13] * val[M20] * val[M32] + val[M10]
 				* val[M23] * val[M32] + val[M12] * val[M20] * val[M33] - val[M10] * val[M22] * val[M33];
-		tmp[M11] = val[M02] * val[M23] * val[M30] - val[M03] * val[M22] * val[M30] + val[M03] * val[M20] * val[M32] - val[M00]
+		float t11 = val[M02] * val[M23] * val[M30] - val[M03] * val[M22] * val[M30] + val[M03] * val[M20] * val[M32] - val[M00]
 				* val[M23] * val[M32] - val[M02] * val[M20] * val[M33] + val[M00] * val[M22] * val[M33];
-		tmp[M12] = val[M03] * val[M12] * val[M30] - val[M02] * val[M13] * val[M30] - val[M03] * val[M10] * val[M32] + val[M00]
+		float t12 = val[M03] * val[M12] * val[M30] - val[M02] * val[M13] * val[M30] - val[M03] * val[M10] * val[M32] + val[M00]
 				* val[M13] * val[M32] + val[M02] * val[M10] * val[M33] - val[M00] * val[M12] * val[M33];
-		tmp[M13] = val[M02] * val[M13] * val[M20] - val[M03] * val[M12] * val[M20] + val[M03] * val[M10] * val[M22] - val[M00]
+		float t13 = val[M02] * val[M13] * val[M20] - val[M03] * val[M12] * val[M20] + val[M03] * val[M10] * val[M22] - val[M00]
 				* val[M13] * val[M22] - val[M02] * val[M10] * val[M23] + val[M00] * val[M12] * val[M23];
-		tmp[M20] = val[M11] * val[M23] * val[M30] - val[M13] * val[M21] * val[M30] + val[M13] * val[M20] * val[M31] - val[M10]
+		float t20 = val[M11] * val[M23] * val[M30] - val[M13] * val[M21] * val[M30] + val[M13] * val[M20] * val[M31] - val[M10]
 				* val[M23] * val[M31] - val[M11] * val[M20] * val[M33] + val[M10] * val[M21] * val[M33];
-		tmp[M21] = val[M03] * val[M21] * val[M30] - val[M01] * val[M23] * val[M30] - val[M03] * val[M20] * val[M31] + val[M00]
+		float t21 = val[M03] * val[M21] * val[M30] - val[M01] * val[M23] * val[M30] - val[M03] * val[M20] * val[M31] + val[M00]
 				* val[M23] * val[M31] + val[M01] * val[M20] * val[M33] - val[M00] * val[M21] * val[M33];
-		tmp[M22] = val[M01] * val[M13] * val[M30] - val[M03] * val[M11] * val[M30] + val[M03] * val[M10] * val[M31] - val[M00]
+		float t22 = val[M01] * val[M13] * val[M30] - val[M03] * val[M11] * val[M30] + val[M03] * val[M10] * val[M31] - val[M00]
 				* val[M13] * val[M31] - val[M01] * val[M10] * val[M33] + val[M00] * val[M11] * val[M33];
-		tmp[M23] = val[M03] * val[M11] * val[M20] - val[M01] * val[M13] * val[M20] - val[M03] * val[M10] * val[M21] + val[M00]
+		float t23 = val[M03] * val[M11] * val[M20] - val[M01] * val[M13] * val[M20] - val[M03] * val[M10] * val[M21] + val[M00]
 				* val[M13] * val[M21] + val[M01] * val[M10] * val[M23] - val[M00] * val[M11] * val[M23];
-		tmp[M30] = val[M12] * val[M21] * val[M30] - val[M11] * val[M22] * val[M30] - val[M12] * val[M20] * val[M31] + val[M10]
+		float t30 = val[M12] * val[M21] * val[M30] - val[M11] * val[M22] * val[M30] - val[M12] * val[M20] * val[M31] + val[M10]
 				* val[M22] * val[M31] + val[M11] * val[M20] * val[M32] - val[M10] * val[M21] * val[M32];
-		tmp[M31] = val[M01] * val[M22] * val[M30] - val[M02] * val[M21] * val[M30] + val[M02] * val[M20] * val[M31] - val[M00]
+		float t31 = val[M01] * val[M22] * val[M30] - val[M02] * val[M21] * val[M30] + val[M02] * val[M20] * val[M31] - val[M00]
 				* val[M22] * val[M31] - val[M01] * val[M20] * val[M32] + val[M00] * val[M21] * val[M32];
-		tmp[M32] = val[M02] * val[M11] * val[M30] - val[M01] * val[M12] * val[M30] - val[M02] * val[M10] * val[M31] + val[M00]
+		float t32 = val[M02] * val[M11] * val[M30] - val[M01] * val[M12] * val[M30] - val[M02] * val[M10] * val[M31] + val[M00]
 				* val[M12] * val[M31] + val[M01] * val[M10] * val[M32] - val[M00] * val[M11] * val[M32];
-		tmp[M33] = val[M01] * val[M12] * val[M20] - val[M02] * val[M11] * val[M20] + val[M02] * val[M10] * val[M21] - val[M00]
+		float t33 = val[M01] * val[M12] * val[M20] - val[M02] * val[M11] * val[M20] + val[M02] * val[M10] * val[M21] - val[M00]
 				* val[M12] * val[M21] - val[M01] * val[M10] * val[M22] + val[M00] * val[M11] * val[M22];
 
 		float inv_det = 1.0f / l_det;
-		storeIn[M00] = tmp[M00] * inv_det;
-		storeIn[M01] = tmp[M01] * inv_det;
-		storeIn[M02] = tmp[M02] * inv_det;
-		storeIn[M03] = tmp[M03] * inv_det;
-		storeIn[M10] = tmp[M10] * inv_det;
-		storeIn[M11] = tmp[M11] * inv_det;
-		storeIn[M12] = tmp[M12] * inv_det;
-		storeIn[M13] = tmp[M13] * inv_det;
-		storeIn[M20] = tmp[M20] * inv_det;
-		storeIn[M21] = tmp[M21] * inv_det;
-		storeIn[M22] = tmp[M22] * inv_det;
-		storeIn[M23] = tmp[M23] * inv_det;
-		storeIn[M30] = tmp[M30] * inv_det;
-		storeIn[M31] = tmp[M31] * inv_det;
-		storeIn[M32] = tmp[M32] * inv_det;
-		storeIn[M33] = tmp[M33] * inv_det;
+		storeIn[M00] = t00 * inv_det;
+		storeIn[M01] = t01 * inv_det;
+		storeIn[M02] = t02 * inv_det;
+		storeIn[M03] = t03 * inv_det;
+		storeIn[M10] = t10 * inv_det;
+		storeIn[M11] = t11 * inv_det;
+		storeIn[M12] = t12 * inv_det;
+		storeIn[M13] = t13 * inv_det;
+		storeIn[M20] = t20 * inv_det;
+		storeIn[M21] = t21 * inv_det;
+		storeIn[M22] = t22 * inv_det;
+		storeIn[M23] = t23 * inv_det;
+		storeIn[M30] = t30 * inv_det;
+		storeIn[M31] = t31 * inv_det;
+		storeIn[M32] = t32 * inv_det;
+		storeIn[M33] = t33 * inv_det;
 		return true;
 	}
 
@@ -1703,24 +1895,10 @@ public class Matrix4f implements Serializable {
 	 * @param z Translation in the z-axis.
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f translate (float x, float y, float z) {
-		tmp[M00] = 1;
-		tmp[M01] = 0;
-		tmp[M02] = 0;
-		tmp[M03] = x;
-		tmp[M10] = 0;
-		tmp[M11] = 1;
-		tmp[M12] = 0;
-		tmp[M13] = y;
-		tmp[M20] = 0;
-		tmp[M21] = 0;
-		tmp[M22] = 1;
-		tmp[M23] = z;
-		tmp[M30] = 0;
-		tmp[M31] = 0;
-		tmp[M32] = 0;
-		tmp[M33] = 1;
-
-		mul(val, tmp);
+		val[M03] = val[M00] * x + val[M01] * y + val[M02] * z + val[M03];
+		val[M13] = val[M10] * x + val[M11] * y + val[M12] * z + val[M13];
+		val[M23] = val[M20] * x + val[M21] * y + val[M22] * z + val[M23];
+		val[M33] = val[M30] * x + val[M31] * y + val[M32] * z + val[M33];
 		return this;
 	}
 
@@ -1732,6 +1910,7 @@ public class Matrix4f implements Serializable {
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f rotate (SGVec_3f axis, float degrees) {
 		if (degrees == 0) return this;
+		Quaternionf quat = scratch().quat;
 		quat.set(axis, degrees);
 		return rotate(quat);
 	}
@@ -1744,6 +1923,7 @@ public class Matrix4f implements Serializable {
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f rotateRad (SGVec_3f axis, float radians) {
 		if (radians == 0) return this;
+		Quaternionf quat = scratch().quat;
 		quat.setFromAxisRad(axis, radians);
 		return rotate(quat);
 	}
@@ -1757,6 +1937,7 @@ public class Matrix4f implements Serializable {
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f rotate (float axisX, float axisY, float axisZ, float degrees) {
 		if (degrees == 0) return this;
+		Quaternionf quat = scratch().quat;
 		quat.setFromAxis(axisX, axisY, axisZ, degrees);
 		return rotate(quat);
 	}
@@ -1770,6 +1951,7 @@ public class Matrix4f implements Serializable {
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f rotateRad (float axisX, float axisY, float axisZ, float radians) {
 		if (radians == 0) return this;
+		Quaternionf quat = scratch().quat;
 		quat.setFromAxisRad(axisX, axisY, axisZ, radians);
 		return rotate(quat);
 	}
@@ -1780,8 +1962,20 @@ public class Matrix4f implements Serializable {
 	 * @param rotation
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f rotate (Quaternionf rotation) {
-		rotation.toMatrix(tmp);
-		mul(val, tmp);
+		//the rotation matrix has no translation and an identity last row, so only the upper 3x3 of each row changes.
+		final float x = rotation.getQ1(), y = rotation.getQ2(), z = rotation.getQ3(), w = rotation.getQ0();
+		final float xx = x * x, xy = x * y, xz = x * z, xw = x * w;
+		final float yy = y * y, yz = y * z, yw = y * w;
+		final float zz = z * z, zw = z * w;
+		final float r00 = 1 - 2 * (yy + zz), r01 = 2 * (xy - zw), r02 = 2 * (xz + yw);
+		final float r10 = 2 * (xy + zw), r11 = 1 - 2 * (xx + zz), r12 = 2 * (yz - xw);
+		final float r20 = 2 * (xz - yw), r21 = 2 * (yz + xw), r22 = 1 - 2 * (xx + yy);
+		for (int row = 0; row < 4; row++) {
+			final float a0 = val[row], a1 = val[row + 4], a2 = val[row + 8];
+			val[row] = a0 * r00 + a1 * r10 + a2 * r20;
+			val[row + 4] = a0 * r01 + a1 * r11 + a2 * r21;
+			val[row + 8] = a0 * r02 + a1 * r12 + a2 * r22;
+		}
 		return this;
 	}
 
@@ -1790,7 +1984,7 @@ public class Matrix4f implements Serializable {
 	 * @param v2 The target vector
 	 * @return This matrix for the purpose of chaining methods together */
 	public Matrix4f rotate (final SGVec_3f v1, final SGVec_3f v2) {
-		return rotate(quat.setFromCross(v1, v2));
+		return rotate(scratch().quat.setFromCross(v1, v2));
 	}
 
 	/** Postmultiplies this matrix with a scale matrix. Postmultiplication is also used by OpenGL ES' 1.x
@@ -1800,24 +1994,9 @@ public class Matrix4f implements Serializable {
 	 * @param scaleZ The scale in the z-axis.
 	 * @return This matrix for the purpose of chaining methods together. */
 	public Matrix4f scale (float scaleX, float scaleY, float scaleZ) {
-		tmp[M00] = scaleX;
-		tmp[M01] = 0;
-		tmp[M02] = 0;
-		tmp[M03] = 0;
-		tmp[M10] = 0;
-		tmp[M11] = scaleY;
-		tmp[M12] = 0;
-		tmp[M13] = 0;
-		tmp[M20] = 0;
-		tmp[M21] = 0;
-		tmp[M22] = scaleZ;
-		tmp[M23] = 0;
-		tmp[M30] = 0;
-		tmp[M31] = 0;
-		tmp[M32] = 0;
-		tmp[M33] = 1;
-
-		mul(val, tmp);
+		val[M00] *= scaleX; val[M10] *= scaleX; val[M20] *= scaleX; val[M30] *= scaleX;
+		val[M01] *= scaleY; val[M11] *= scaleY; val[M21] *= scaleY; val[M31] *= scaleY;
+		val[M02] *= scaleZ; val[M12] *= scaleZ; val[M22] *= scaleZ; val[M32] *= scaleZ;
 		return this;
 	}
 
@@ -0,0 +1,214 @@
+package math.floatV;
+
+import math.TrigPolicy;
+
+/**
+ * Bulk quaternion operations over packed arrays.
+ *
+ * Quaternions are stored four floats apiece, scalar first (w, x, y, z), so that quaternion i occupies indices
+ * [4i, 4i+4). Every operation walks its arrays front to back in a single pass, without allocating, and
+ * computes its results into locals before storing them, so the output array may be the same as any of the inputs.
+ *
+ * The operations follow the same conventions as their per-object counterparts on {@link Quaternionf}
+ * (multiplication order, taking the shortest path when interpolating), which they are meant to replace in
+ * loops over thousands of rotations.
+ */
+public final class QuaternionBatchf {
+
+	public static final int STRIDE = 4;
+
+	/**below this angle (in terms of 1 - |cos(angle)|) slerp falls back to linear interpolation.*/
+	private static final float SLERP_LINEAR_THRESHOLD = 1e-6f;
+
+	private QuaternionBatchf() {}
+
+	/**
+	 * packs the given quaternions into a float array.
+	 * @param qs
+	 * @param out must hold at least 4 * qs.length floats.
+	 * @return the output array, for chaining.
+	 */
+	public static float[] pack(Quaternionf[] qs, float[] out) {
+		for(int i = 0, idx = 0; i < qs.length; i++, idx += STRIDE) {
+			Quaternionf q = qs[i];
+			out[idx] = q.getQ0();
+			out[idx + 1] = q.getQ1();
+			out[idx + 2] = q.getQ2();
+			out[idx + 3] = q.getQ3();
+		}
+		return out;
+	}
+
+	/**
+	 * sets each of the given quaternions from the packed array.
+	 * @param in
+	 * @param qs
+	 */
+	public static void unpack(float[] in, Quaternionf[] qs) {
+		for(int i = 0, idx = 0; i < qs.length; i++, idx += STRIDE)
+			qs[i].set(in[idx], in[idx + 1], in[idx + 2], in[idx + 3]);
+	}
+
+	/**
+	 * sets each output quaternion to the product a * b of the corresponding input quaternions
+	 * (as in {@link Quaternionf#mul(Quaternionf)}).
+	 * @param a
+	 * @param b
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void multiply(float[] a, float[] b, float[] out, int count) {
+		int end = count * STRIDE;
+		for(int i = 0; i < end; i += STRIDE) {
+			float aw = a[i], ax = a[i + 1], ay = a[i + 2], az = a[i + 3];
+			float bw = b[i], bx = b[i + 1], by = b[i + 2], bz = b[i + 3];
+			out[i] = aw * bw - ax * bx - ay * by - az * bz;
+			out[i + 1] = aw * bx + ax * bw + ay * bz - az * by;
+			out[i + 2] = aw * by + ay * bw + az * bx - ax * bz;
+			out[i + 3] = aw * bz + az * bw + ax * by - ay * bx;
+		}
+	}
+
+	/**
+	 * normalizes each quaternion to unit length, in place. Zero length quaternions become the identity.
+	 * @param q
+	 * @param count number of quaternions
+	 */
+	public static void normalize(float[] q, int count) {
+		normalize(q, q, count);
+	}
+
+	/**
+	 * writes the normalized version of each input quaternion to the output array. Zero length quaternions become the identity.
+	 * @param in
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void normalize(float[] in, float[] out, int count) {
+		int end = count * STRIDE;
+		for(int i = 0; i < end; i += STRIDE) {
+			float w = in[i], x = in[i + 1], y = in[i + 2], z = in[i + 3];
+			float len2 = w * w + x * x + y * y + z * z;
+			if(len2 == 0f) {
+				out[i] = 1f; out[i + 1] = 0f; out[i + 2] = 0f; out[i + 3] = 0f;
+			} else {
+				float invLen = 1f / (float)Math.sqrt(len2);
+				out[i] = w * invLen; out[i + 1] = x * invLen; out[i + 2] = y * invLen; out[i + 3] = z * invLen;
+			}
+		}
+	}
+
+	/**
+	 * spherically interpolates each quaternion of a toward the corresponding quaternion of b by the same amount,
+	 * along the shortest path. Evaluated with the active {@link TrigPolicy}.
+	 * @param a
+	 * @param b
+	 * @param alpha in the range [0,1]
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void slerp(float[] a, float[] b, float alpha, float[] out, int count) {
+		TrigPolicy trig = TrigPolicy.active();
+		int end = count * STRIDE;
+		for(int i = 0; i < end; i += STRIDE)
+			slerp(a, b, i, alpha, out, trig);
+	}
+
+	/**
+	 * as {@link #slerp(float[], float[], float, float[], int)}, but with a separate amount for each quaternion.
+	 * @param alphas one per quaternion
+	 */
+	public static void slerp(float[] a, float[] b, float[] alphas, float[] out, int count) {
+		TrigPolicy trig = TrigPolicy.active();
+		for(int q = 0, i = 0; q < count; q++, i += STRIDE)
+			slerp(a, b, i, alphas[q], out, trig);
+	}
+
+	private static void slerp(float[] a, float[] b, int i, float alpha, float[] out, TrigPolicy trig) {
+		float aw = a[i], ax = a[i + 1], ay = a[i + 2], az = a[i + 3];
+		float bw = b[i], bx = b[i + 1], by = b[i + 2], bz = b[i + 3];
+		float d = aw * bw + ax * bx + ay * by + az * bz;
+		float absDot = d < 0f ? -d : d;
+		float scale0 = 1f - alpha;
+		float scale1 = alpha;
+		if(1f - absDot > SLERP_LINEAR_THRESHOLD) {
+			//sin((1-t)theta) = sin(theta)cos(t theta) - cos(theta)sin(t theta), so only one angle's sine and cosine are needed.
+			double theta = trig.acos(absDot);
+			double invSinTheta = 1d / Math.sqrt(1d - (double)absDot * absDot);
+			double tTheta = alpha * theta;
+			double sinT = trig.sin(tTheta);
+			double cosT = trig.cos(tTheta);
+			scale1 = (float)(sinT * invSinTheta);
+			scale0 = (float)(cosT - absDot * sinT * invSinTheta);
+		}
+		if(d < 0f) scale1 = -scale1;
+		out[i] = scale0 * aw + scale1 * bw;
+		out[i + 1] = scale0 * ax + scale1 * bx;
+		out[i + 2] = scale0 * ay + scale1 * by;
+		out[i + 3] = scale0 * az + scale1 * bz;
+	}
+
+	/**
+	 * linearly interpolates each quaternion of a toward the corresponding quaternion of b along the shortest path, and
+	 * normalizes the result. Cheaper than slerp, at the cost of a nonuniform rate of rotation across alpha.
+	 * @param a
+	 * @param b
+	 * @param alpha in the range [0,1]
+	 * @param out
+	 * @param count number of quaternions
+	 */
+	public static void nlerp(float[] a, float[] b, float alpha, float[] out, int count) {
+		int end = count * STRIDE;
+		float scale0 = 1f - alpha;
+		for(int i = 0; i < end; i += STRIDE) {
+			float aw = a[i], ax = a[i + 1], ay = a[i + 2], az = a[i + 3];
+			float bw = b[i], bx = b[i + 1], by = b[i + 2], bz = b[i + 3];
+			float scale1 = aw * bw + ax * bx + ay * by + az * bz < 0f ? -alpha : alpha;
+			float w = scale0 * aw + scale1 * bw;
+			float x = scale0 * ax + scale1 * bx;
+			float y = scale0 * ay + scale1 * by;
+			float z = scale0 * az + scale1 * bz;
+			float len2 = w * w + x * x + y * y + z * z;
+			float invLen = len2 == 0f ? 0f : 1f / (float)Math.sqrt(len2);
+			out[i] = w * invLen; out[i + 1] = x * invLen; out[i + 2] = y * invLen; out[i + 3] = z * invLen;
+		}
+	}
+
+	/**
+	 * blends any number of poses by normalized weighted quaternion averaging. Each quaternion is first
+	 * flipped into the same hemisphere as its counterpart in the first pose, so that q and -q (the same rotation)
+	 * reinforce rather than cancel. This is a close approximation of the true weighted rotational mean for
+	 * rotations which are not too far apart, as is the case when blending animation layers.
+	 * @param poses the packed quaternions of each pose. Each must hold at least count quaternions.
+	 * @param weights one per pose. Need not sum to 1.
+	 * @param poseCount number of poses to blend
+	 * @param out must not be any of the poses.
+	 * @param count number of quaternions per pose
+	 */
+	public static void blend(float[][] poses, float[] weights, int poseCount, float[] out, int count) {
+		int end = count * STRIDE;
+		float[] reference = poses[0];
+		for(int p = 0; p < poseCount; p++) {
+			if(poses[p] == out)
+				throw new IllegalArgumentException("the output must not be one of the poses being blended");
+		}
+		float w0 = weights[0];
+		for(int i = 0; i < end; i++)
+			out[i] = reference[i] * w0;
+		for(int p = 1; p < poseCount; p++) {
+			float[] pose = poses[p];
+			float weight = weights[p];
+			if(weight == 0f) continue;
+			for(int i = 0; i < end; i += STRIDE) {
+				float pw = pose[i], px = pose[i + 1], py = pose[i + 2], pz = pose[i + 3];
+				float d = pw * reference[i] + px * reference[i + 1] + py * reference[i + 2] + pz * reference[i + 3];
+				float s = d < 0f ? -weight : weight;
+				out[i] += s * pw;
+				out[i + 1] += s * px;
+				out[i + 2] += s * py;
+				out[i + 3] += s * pz;
+			}
+		}
+		normalize(out, out, count);
+	}
+}
@@ -18,17 +18,18 @@ package math.floatV;
 
 import java.io.Serializable;
 
+import math.TrigPolicy;
+
 //import com.badlogic.gdx.utils.NumberUtils;
 
 /** A simple quaternion class.
  * @see <a href="http://en.wikipedia.org/wiki/Quaternionf">http://en.wikipedia.org/wiki/Quaternionf</a>
  * @author badlogicgames@gmail.com
  * @author vesuvio
- * @author xoppa */
+ * @author xoppa
+ * @see TrigPolicy for trading the accuracy of the trigonometric functions used here for speed */
 public class Quaternionf implements Serializable {
 	private static final long serialVersionUID = -7661875440674897168L;
-	private static Quaternionf tmp1 = new Quaternionf(0, 0, 0, 0);
-	private static Quaternionf tmp2 = new Quaternionf(0, 0, 0, 0);
 
 	private float q1;
 	private float q2;
@@ -130,15 +131,16 @@ public class Quaternionf implements Serializable {
 	 * @param roll the rotation around the z axis in radians
 	 * @return this quaternion */
 	public Quaternionf setEulerAnglesRad (float yaw, float pitch, float roll) {
+		final TrigPolicy trig = TrigPolicy.active();
 		final float hr = roll * 0.5f;
-		final float shr = (float)MathUtils.sin(hr);
-		final float chr = (float)MathUtils.cos(hr);
+		final float shr = (float)trig.sin(hr);
+		final float chr = (float)trig.cos(hr);
 		final float hp = pitch * 0.5f;
-		final float shp = (float)MathUtils.sin(hp);
-		final float chp = (float)MathUtils.cos(hp);
+		final float shp = (float)trig.sin(hp);
+		final float chp = (float)trig.cos(hp);
 		final float hy = yaw * 0.5f;
-		final float shy = (float)MathUtils.sin(hy);
-		final float chy = (float)MathUtils.cos(hy);
+		final float shy = (float)trig.sin(hy);
+		final float chy = (float)trig.cos(hy);
 		final float chy_shp = chy * shp;
 		final float shy_chp = shy * chp;
 		final float chy_chp = chy * chp;
@@ -162,8 +164,9 @@ public class Quaternionf implements Serializable {
 	 * @return the rotation around the z axis in radians (between -PI and +PI) */
 	public float getRollRad () {
 		final int pole = getGimbalPole();
-		return pole == 0 ? MathUtils.atan2(2f * (q0 * q3 + q2 * q1), 1f - 2f * (q1 * q1 + q3 * q3)) : (float)pole * 2f
-			* MathUtils.atan2(q2, q0);
+		final TrigPolicy trig = TrigPolicy.active();
+		return pole == 0 ? (float)trig.atan2(2f * (q0 * q3 + q2 * q1), 1f - 2f * (q1 * q1 + q3 * q3)) : (float)pole * 2f
+			* (float)trig.atan2(q2, q0);
 	}
 
 	/** Get the roll euler angle in degrees, which is the rotation around the z axis. Requires that this quaternion is normalized.
@@ -176,7 +179,7 @@ public class Quaternionf implements Serializable {
 	 * @return the rotation around the x axis in radians (between -(PI/2) and +(PI/2)) */
 	public float getPitchRad () {
 		final int pole = getGimbalPole();
-		return pole == 0 ? (float)MathUtils.asin(MathUtils.clamp(2f * (q0 * q1 - q3 * q2), -1f, 1f)) : (float)pole * MathUtils.PI * 0.5f;
+		return pole == 0 ? (float)TrigPolicy.active().asin(MathUtils.clamp(2f * (q0 * q1 - q3 * q2), -1f, 1f)) : (float)pole * MathUtils.PI * 0.5f;
 	}
 
 	/** Get the pitch euler angle in degrees, which is the rotation around the x axis. Requires that this quaternion is normalized.
@@ -188,7 +191,7 @@ public class Quaternionf implements Serializable {
 	/** Get the yaw euler angle in radians, which is the rotation around the y axis. Requires that this quaternion is normalized.
 	 * @return the rotation around the y axis in radians (between -PI and +PI) */
 	public float getYawRad () {
-		return getGimbalPole() == 0 ? MathUtils.atan2(2f * (q2 * q0 + q1 * q3), 1f - 2f * (q2 * q2 + q1 * q1)) : 0f;
+		return getGimbalPole() == 0 ? (float)TrigPolicy.active().atan2(2f * (q2 * q0 + q1 * q3), 1f - 2f * (q2 * q2 + q1 * q1)) : 0f;
 	}
 
 	/** Get the yaw euler angle in degrees, which is the rotation around the y axis. Requires that this quaternion is normalized.
@@ -243,13 +246,14 @@ public class Quaternionf implements Serializable {
 	 * 
 	 * @param v Vector to transform */
 	public SGVec_3f transform (SGVec_3f v) {
-		tmp2.set(this);
-		tmp2.conjugate();
-		tmp2.mulLeft(tmp1.set(0, v.x, v.y, v.z)).mulLeft(this);
-
-		v.x = tmp2.q1;
-		v.y = tmp2.q2;
-		v.z = tmp2.q3;
+		//expanded form of this * (0, v) * conjugate(this), so nothing is allocated.
+		final float x = v.x, y = v.y, z = v.z;
+		final float ww = q0 * q0 - (q1 * q1 + q2 * q2 + q3 * q3);
+		final float uDotV2 = 2f * (q1 * x + q2 * y + q3 * z);
+		final float w2 = 2f * q0;
+		v.x = ww * x + uDotV2 * q1 + w2 * (q2 * z - q3 * y);
+		v.y = ww * y + uDotV2 * q2 + w2 * (q3 * x - q1 * z);
+		v.z = ww * z + uDotV2 * q3 + w2 * (q1 * y - q2 * x);
 		return v;
 	}
 
@@ -390,8 +394,9 @@ public class Quaternionf implements Serializable {
 		if (d == 0f) return idt();
 		d = 1f / d;
 		float l_ang = radians < 0 ? MathUtils.PI2 - (-radians % MathUtils.PI2) : radians % MathUtils.PI2;
-		float l_sin = (float)MathUtils.sin(l_ang / 2);
-		float l_cos = (float)MathUtils.cos(l_ang / 2);
+		final TrigPolicy trig = TrigPolicy.active();
+		float l_sin = (float)trig.sin(l_ang / 2);
+		float l_cos = (float)trig.cos(l_ang / 2);
 		return this.set(l_cos, d * x * l_sin, d * y * l_sin, d * z * l_sin).nor();
 	}
 
@@ -527,7 +532,7 @@ public class Quaternionf implements Serializable {
 	 * @return This quaternion for chaining */
 	public Quaternionf setFromCross (final SGVec_3f v1, final SGVec_3f v2) {
 		final float dot = MathUtils.clamp(v1.dot(v2), -1f, 1f);
-		final float angle = (float)MathUtils.acos(dot);
+		final float angle = (float)TrigPolicy.active().acos(dot);
 		return setFromAxisRad(v1.y * v2.z - v1.z * v2.y, v1.z * v2.x - v1.x * v2.z, v1.x * v2.y - v1.y * v2.x, angle);
 	}
 
@@ -541,7 +546,7 @@ public class Quaternionf implements Serializable {
 	 * @return This quaternion for chaining */
 	public Quaternionf setFromCross (final float x1, final float y1, final float z1, final float x2, final float y2, final float z2) {
 		final float dot = MathUtils.clamp(SGVec_3f.dot(x1, y1, z1, x2, y2, z2), -1f, 1f);
-		final float angle = (float)MathUtils.acos(dot);
+		final float angle = (float)TrigPolicy.active().acos(dot);
 		return setFromAxisRad(y1 * z2 - z1 * y2, z1 * x2 - x1 * z2, x1 * y2 - y1 * x2, angle);
 	}
 
@@ -562,13 +567,14 @@ public class Quaternionf implements Serializable {
 		// warrant such calculations
 		if ((1 - absDot) > 0.d) {// Get the angle between the 2 quaternions,
 			// and then store the sin() of that angle
-			final float angle = (float)MathUtils.acos(absDot);
-			final float invSinTheta = 1f / (float)MathUtils.sin(angle);
+			final TrigPolicy trig = TrigPolicy.active();
+			final float angle = (float)trig.acos(absDot);
+			final float invSinTheta = 1f / (float)trig.sin(angle);
 
 			// Calculate the scale for q1 and q2, according to the angle and
 			// it's sine value
-			scale0 = ((float)MathUtils.sin((1f - alpha) * angle) * invSinTheta);
-			scale1 = ((float)MathUtils.sin((alpha * angle)) * invSinTheta);
+			scale0 = ((float)trig.sin((1f - alpha) * angle) * invSinTheta);
+			scale1 = ((float)trig.sin((alpha * angle)) * invSinTheta);
 		}
 
 		if (d < 0.d) scale1 = -scale1;
@@ -594,7 +600,7 @@ public class Quaternionf implements Serializable {
 		final float w = 1.0f / q.length;
 		set(q[0]).exp(w);
 		for (int i = 1; i < q.length; i++)
-			mul(tmp1.set(q[i]).exp(w));
+			mulByPowerOf(q[i], w);
 		nor();
 		return this;
 	}
@@ -610,11 +616,39 @@ public class Quaternionf implements Serializable {
 		// Calculate exponents and multiply everything from left to right
 		set(q[0]).exp(w[0]);
 		for (int i = 1; i < q.length; i++)
-			mul(tmp1.set(q[i]).exp(w[i]));
+			mulByPowerOf(q[i], w[i]);
 		nor();
 		return this;
 	}
 
+	/** this = this * (q^alpha), as mul(q.copy().exp(alpha)) but without the copy. q is not modified. */
+	private void mulByPowerOf (Quaternionf q, float alpha) {
+		float norm = q.len();
+		float normExp = (float)MathUtils.pow(norm, alpha);
+		final TrigPolicy trig = TrigPolicy.active();
+		float theta = (float)trig.acos(q.q0 / norm);
+		float coeff;
+		if (MathUtils.abs(theta) < 0.001)
+			coeff = normExp * alpha / norm;
+		else
+			coeff = (float)(normExp * trig.sin(alpha * theta) / (norm * trig.sin(theta)));
+		float ow = (float)(normExp * trig.cos(alpha * theta));
+		float ox = q.q1 * coeff, oy = q.q2 * coeff, oz = q.q3 * coeff;
+		float len2 = ow * ow + ox * ox + oy * oy + oz * oz;
+		if (len2 != 0f && !MathUtils.isEqual(len2, 1f)) {
+			float len = (float)MathUtils.sqrt(len2);
+			ow /= len; ox /= len; oy /= len; oz /= len;
+		}
+		final float newX = q0 * ox + q1 * ow + q2 * oz - q3 * oy;
+		final float newY = q0 * oy + q2 * ow + q3 * ox - q1 * oz;
+		final float newZ = q0 * oz + q3 * ow + q1 * oy - q2 * ox;
+		final float newW = q0 * ow - q1 * ox - q2 * oy - q3 * oz;
+		q1 = newX;
+		q2 = newY;
+		q3 = newZ;
+		q0 = newW;
+	}
+
 	/** Calculates (this quaternion)^alpha where alpha is a real number and stores the result in this quaternion. See
 	 * http://en.wikipedia.org/wiki/Quaternionf#Exponential.2C_logarithm.2C_and_power
 	 * @param alpha Exponent
@@ -626,7 +660,8 @@ public class Quaternionf implements Serializable {
 		float normExp = (float)MathUtils.pow(norm, alpha);
 
 		// Calculate theta
-		float theta = (float)MathUtils.acos(q0 / norm);
+		final TrigPolicy trig = TrigPolicy.active();
+		float theta = (float)trig.acos(q0 / norm);
 
 		// Calculate coefficient of basis elements
 		float coeff = 0;
@@ -634,10 +669,10 @@ public class Quaternionf implements Serializable {
 // value
 			coeff = normExp * alpha / norm;
 		else
-			coeff = (float)(normExp * MathUtils.sin(alpha * theta) / (norm * MathUtils.sin(theta)));
+			coeff = (float)(normExp * trig.sin(alpha * theta) / (norm * trig.sin(theta)));
 
 		// Write results
-		q0 = (float)(normExp * MathUtils.cos(alpha * theta));
+		q0 = (float)(normExp * trig.cos(alpha * theta));
 		q1 *= coeff;
 		q2 *= coeff;
 		q3 *= coeff;
@@ -724,7 +759,7 @@ public class Quaternionf implements Serializable {
 	 * @see <a href="http://www.euclideanspace.com/maths/geometry/rotations/conversions/quaternionToAngle">calculation</a> */
 	public float getAxisAngleRad (SGVec_3f axis) {
 		if (this.q0 > 1) this.nor(); // if w>1 acos and sqrt will produce errors, this cant happen if quaternion is normalised
-		float angle = (float)(2.0 * MathUtils.acos(this.q0));
+		float angle = (float)(2.0 * TrigPolicy.active().acos(this.q0));
 		float s = MathUtils.sqrt(1 - this.q0 * this.q0); // assuming quaternion normalised then w is less than 1, so term always positive.
 		if (s < MathUtils.DOUBLE_ROUNDING_ERROR) { // test to avoid divide by zero, s is always positive due to sqrt
 			// if s close to zero then direction of axis not important
@@ -745,7 +780,7 @@ public class Quaternionf implements Serializable {
 	 * {@link #getAngleAroundRad(SGVec_3f)} to get the angle around a specific axis.
 	 * @return the angle in radians of the rotation */
 	public float getAngleRad () {
-		return (float)(2.0 * MathUtils.acos((this.q0 > 1) ? (this.q0 / len()) : this.q0));
+		return (float)(2.0 * TrigPolicy.active().acos((this.q0 > 1) ? (this.q0 / len()) : this.q0));
 	}
 
 	/** Get the angle in degrees of the rotation this quaternion represents. Use {@link #getAxisAngle(SGVec_3f)} to get both the axis
@@ -795,7 +830,7 @@ public class Quaternionf implements Serializable {
 	public float getAngleAroundRad (final float axisX, final float axisY, final float axisZ) {
 		final float d = SGVec_3f.dot(this.q1, this.q2, this.q3, axisX, axisY, axisZ);
 		final float l2 = Quaternionf.len2(axisX * d, axisY * d, axisZ * d, this.q0);
-		return MathUtils.isZero(l2) ? 0f : (float)(2.0 * MathUtils.acos(MathUtils.clamp(
+		return MathUtils.isZero(l2) ? 0f : (float)(2.0 * TrigPolicy.active().acos(MathUtils.clamp(
 			(float)((d < 0 ? -this.q0 : this.q0) / MathUtils.sqrt(l2)), -1f, 1f)));
 	}
 
@@ -0,0 +1,318 @@
+package sceneGraph;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+import math.doubleV.Vec3d;
+
+/**
+ * Reads arrays of vectors written in the {@link IKVector#toJSONObject()} layout ({"dvec":[x,y,z]}) straight from
+ * a character stream, into existing vectors or packed arrays.
+ *
+ * No JSONObject or JSONArray is created per vector; the stream is tokenized in place from a reusable buffer.
+ * Keys other than "dvec" are skipped, so objects carrying extra fields alongside their vector are accepted.
+ * Plain numbers whose significant digits form an integer no larger than 2^53, with a decimal exponent within 22 of zero,
+ * are parsed without allocating. That covers every value of up to 15 significant digits and most of 16. Anything else
+ * falls back on Double.parseDouble, so every value is read back exactly: correctly rounding a 17 digit mantissa (as
+ * Double.toString writes for values which aren't short decimals) needs more than one double operation, which is
+ * parseDouble's job rather than this class's.
+ *
+ * <pre>
+ * VectorJSONReader in = new VectorJSONReader(reader);
+ * in.beginArray();
+ * while(in.hasNext()) in.next(scratch);
+ * in.endArray();
+ * </pre>
+ */
+public class VectorJSONReader implements Closeable {
+
+	/**the largest integer up to which every integer is exactly representable as a double.*/
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private final Reader in;
+	private final char[] buf = new char[8192];
+	private int pos = 0;
+	private int limit = 0;
+	/**the characters of the number currently being parsed.*/
+	private final StringBuilder number = new StringBuilder(32);
+	private final double[] components = new double[3];
+
+	public VectorJSONReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * consumes the opening bracket of an array.
+	 * @throws IOException if the next token is not '['
+	 */
+	public void beginArray() throws IOException {
+		expect('[');
+	}
+
+	/**
+	 * consumes the closing bracket of an array.
+	 * @throws IOException if the array has unread elements.
+	 */
+	public void endArray() throws IOException {
+		expect(']');
+	}
+
+	/**
+	 * @return true if the current array has another element. Consumes the separating comma, if any.
+	 */
+	public boolean hasNext() throws IOException {
+		int c = peekNonWhitespace();
+		if(c == ',') {
+			pos++;
+			c = peekNonWhitespace();
+		}
+		return c != ']' && c != -1;
+	}
+
+	/**
+	 * reads the next vector of the current array into the given vector.
+	 * @param into
+	 * @return the vector read into, for chaining.
+	 */
+	public <V extends Vec3d<?>> V next(V into) throws IOException {
+		readVector();
+		into.x = components[0];
+		into.y = components[1];
+		into.z = components[2];
+		return into;
+	}
+
+	/**
+	 * reads the next vector of the current array into a new IKVector.
+	 */
+	public IKVector next() throws IOException {
+		readVector();
+		return new IKVector(components[0], components[1], components[2]);
+	}
+
+	/**
+	 * reads the remaining vectors of the current array (up to maxCount of them) as consecutive x, y, z triples.
+	 * @param into
+	 * @param offset index to store the first vector's x component at
+	 * @param maxCount
+	 * @return the number of vectors read.
+	 */
+	public int readPacked(double[] into, int offset, int maxCount) throws IOException {
+		int count = 0;
+		for(int idx = offset; count < maxCount && hasNext(); count++, idx += 3) {
+			readVector();
+			into[idx] = components[0];
+			into[idx + 1] = components[1];
+			into[idx + 2] = components[2];
+		}
+		return count;
+	}
+
+	private void readVector() throws IOException {
+		hasNext();
+		expect('{');
+		boolean found = false;
+		int c = peekNonWhitespace();
+		while(c != '}') {
+			if(c == ',') {
+				pos++;
+			}
+			boolean isDvec = readKeyIsDvec();
+			expect(':');
+			if(isDvec) {
+				expect('[');
+				for(int i = 0; i < 3; i++) {
+					if(i > 0) expect(',');
+					components[i] = readNumber();
+				}
+				expect(']');
+				found = true;
+			} else {
+				skipValue();
+			}
+			c = peekNonWhitespace();
+			if(c == -1)
+				throw syntaxError("unterminated object");
+		}
+		pos++;
+		if(!found)
+			throw syntaxError("object has no \"dvec\" key");
+	}
+
+	/**
+	 * reads a quoted key, without allocating.
+	 * @return whether the key was "dvec"
+	 */
+	private boolean readKeyIsDvec() throws IOException {
+		expect('"');
+		int matched = 0;
+		boolean isDvec = true;
+		while(true) {
+			int c = read();
+			if(c == -1) throw syntaxError("unterminated string");
+			if(c == '"') break;
+			if(c == '\\') {
+				read();
+				isDvec = false;
+				continue;
+			}
+			if(matched < 4 && c == "dvec".charAt(matched)) matched++;
+			else isDvec = false;
+		}
+		return isDvec && matched == 4;
+	}
+
+	private double readNumber() throws IOException {
+		peekNonWhitespace();
+		number.setLength(0);
+		while(true) {
+			if(pos == limit && !refill()) break;
+			char c = buf[pos];
+			if((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+				number.append(c);
+				pos++;
+			} else {
+				break;
+			}
+		}
+		if(number.length() == 0)
+			throw syntaxError("expected a number");
+		return parseNumber();
+	}
+
+	/**
+	 * Parses the buffered number exactly when its mantissa and exponent are small enough for
+	 * a single double multiplication or division to be correctly rounded (both operands exact, so the one rounding
+	 * is the operation's own), and defers to Double.parseDouble otherwise.
+	 */
+	private double parseNumber() throws IOException {
+		int i = 0, len = number.length();
+		boolean negative = false;
+		if(number.charAt(0) == '-') {
+			negative = true;
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0, exp10 = 0;
+		boolean inFraction = false, sawDigit = false, simple = true;
+		for(; i < len && simple; i++) {
+			char c = number.charAt(i);
+			if(c >= '0' && c <= '9') {
+				sawDigit = true;
+				if(mantissa != 0 || c != '0') digits++;
+				mantissa = mantissa * 10 + (c - '0');
+				if(inFraction) exp10--;
+				//18 digits always fit in a long; the 2^53 bound is checked once the number ends.
+				if(digits > 18) simple = false;
+			} else if(c == '.' && !inFraction) {
+				inFraction = true;
+			} else if(c == 'e' || c == 'E') {
+				int e = 0, sign = 1;
+				i++;
+				if(i < len && (number.charAt(i) == '-' || number.charAt(i) == '+')) {
+					sign = number.charAt(i) == '-' ? -1 : 1;
+					i++;
+				}
+				if(i == len || len - i > 3) simple = false;
+				for(; i < len && simple; i++) {
+					char ec = number.charAt(i);
+					if(ec < '0' || ec > '9') simple = false;
+					else e = e * 10 + (ec - '0');
+				}
+				exp10 += sign * e;
+				break;
+			} else {
+				simple = false;
+			}
+		}
+		if(simple && sawDigit && mantissa <= MAX_EXACT_MANTISSA && exp10 >= -22 && exp10 <= 22) {
+			double result = exp10 < 0 ? mantissa / POWERS_OF_TEN[-exp10] : mantissa * POWERS_OF_TEN[exp10];
+			return negative ? -result : result;
+		}
+		try {
+			return Double.parseDouble(number.toString());
+		} catch(NumberFormatException e) {
+			throw new IOException("malformed vector JSON: bad number \"" + number + "\"", e);
+		}
+	}
+
+	/**
+	 * skips over a value of any type, including nested objects and arrays.
+	 */
+	private void skipValue() throws IOException {
+		int c = peekNonWhitespace();
+		if(c == '"') {
+			pos++;
+			while(true) {
+				int s = read();
+				if(s == -1) throw syntaxError("unterminated string");
+				if(s == '\\') read();
+				else if(s == '"') return;
+			}
+		} else if(c == '[' || c == '{') {
+			int nesting = 0;
+			while(true) {
+				int s = read();
+				if(s == -1) throw syntaxError("unterminated " + (c == '[' ? "array" : "object"));
+				if(s == '"') {
+					pos--;
+					skipValue();
+				} else if(s == '[' || s == '{') {
+					nesting++;
+				} else if(s == ']' || s == '}') {
+					if(--nesting == 0) return;
+				}
+			}
+		} else {
+			//a number or a literal (true, false, null).
+			while(true) {
+				if(pos == limit && !refill()) return;
+				char s = buf[pos];
+				if(s == ',' || s == '}' || s == ']' || Character.isWhitespace(s)) return;
+				pos++;
+			}
+		}
+	}
+
+	private void expect(char expected) throws IOException {
+		int c = peekNonWhitespace();
+		if(c != expected)
+			throw syntaxError("expected '" + expected + "' but found " + (c == -1 ? "end of input" : "'" + (char)c + "'"));
+		pos++;
+	}
+
+	private int peekNonWhitespace() throws IOException {
+		while(true) {
+			if(pos == limit && !refill()) return -1;
+			char c = buf[pos];
+			if(c == ' ' || c == '\n' || c == '\r' || c == '\t') pos++;
+			else return c;
+		}
+	}
+
+	private int read() throws IOException {
+		if(pos == limit && !refill()) return -1;
+		return buf[pos++];
+	}
+
+	private boolean refill() throws IOException {
+		int n = in.read(buf, 0, buf.length);
+		if(n <= 0) return false;
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	private IOException syntaxError(String message) {
+		return new IOException("malformed vector JSON: " + message);
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,162 @@
+package sceneGraph;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+
+import math.doubleV.Vec3d;
+
+/**
+ * Writes arrays of vectors as JSON, directly to a character stream.
+ *
+ * Each vector is written in the same layout as {@link IKVector#toJSONObject()} ({"dvec":[x,y,z]}),
+ * so the output can be read back by {@link IKVector#populateSelfFromJSON(data.JSONObject)} as well as
+ * by {@link VectorJSONReader}. Unlike going through toJSONObject(), no intermediate JSON objects are created
+ * per vector; characters are accumulated in a reusable buffer and handed to the underlying writer in chunks.
+ *
+ * <pre>
+ * VectorJSONWriter out = new VectorJSONWriter(writer);
+ * out.beginArray();
+ * for(IKVector v : vertices) out.write(v);
+ * out.endArray().flush();
+ * </pre>
+ */
+public class VectorJSONWriter implements Closeable, Flushable {
+
+	private static final int FLUSH_THRESHOLD = 8192;
+
+	private final Writer out;
+	private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 128);
+	private final char[] chunk = new char[FLUSH_THRESHOLD + 128];
+	/**nesting depth of arrays opened with beginArray(), and whether each has had an element written to it yet.*/
+	private boolean[] hasElements = new boolean[4];
+	private int depth = 0;
+
+	public VectorJSONWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * opens a JSON array. Arrays may be nested.
+	 */
+	public VectorJSONWriter beginArray() throws IOException {
+		separate();
+		if(depth == hasElements.length) {
+			boolean[] grown = new boolean[depth * 2];
+			System.arraycopy(hasElements, 0, grown, 0, depth);
+			hasElements = grown;
+		}
+		hasElements[depth++] = false;
+		buffer.append('[');
+		return this;
+	}
+
+	/**
+	 * closes the most recently opened array.
+	 */
+	public VectorJSONWriter endArray() throws IOException {
+		if(depth == 0)
+			throw new IllegalStateException("no array to close");
+		depth--;
+		buffer.append(']');
+		drainIfFull();
+		return this;
+	}
+
+	/**
+	 * writes a vector as {"dvec":[x,y,z]}.
+	 * @param v
+	 */
+	public <V extends Vec3d<?>> VectorJSONWriter write(V v) throws IOException {
+		return write(v.x, v.y, v.z);
+	}
+
+	/**
+	 * writes the given components as {"dvec":[x,y,z]}.
+	 * @throws IllegalArgumentException if any component is NaN or infinite, which JSON can't represent.
+	 */
+	public VectorJSONWriter write(double x, double y, double z) throws IOException {
+		separate();
+		buffer.append("{\"dvec\":[");
+		appendNumber(x);
+		buffer.append(',');
+		appendNumber(y);
+		buffer.append(',');
+		appendNumber(z);
+		buffer.append("]}");
+		drainIfFull();
+		return this;
+	}
+
+	/**
+	 * writes each vector of the given array.
+	 * @param vecs
+	 */
+	public <V extends Vec3d<?>> VectorJSONWriter writeAll(V[] vecs) throws IOException {
+		for(int i = 0; i < vecs.length; i++)
+			write(vecs[i].x, vecs[i].y, vecs[i].z);
+		return this;
+	}
+
+	/**
+	 * writes vectors stored as consecutive x, y, z triples.
+	 * @param xyz
+	 * @param offset index of the first vector's x component
+	 * @param count number of vectors to write
+	 */
+	public VectorJSONWriter writePacked(double[] xyz, int offset, int count) throws IOException {
+		for(int i = 0, idx = offset; i < count; i++, idx += 3)
+			write(xyz[idx], xyz[idx + 1], xyz[idx + 2]);
+		return this;
+	}
+
+	private void separate() {
+		if(depth > 0) {
+			if(hasElements[depth - 1])
+				buffer.append(',');
+			hasElements[depth - 1] = true;
+		}
+	}
+
+	private void appendNumber(double d) {
+		if(Double.isNaN(d) || Double.isInfinite(d))
+			throw new IllegalArgumentException("JSON does not allow non-finite numbers.");
+		buffer.append(d);
+	}
+
+	private void drainIfFull() throws IOException {
+		if(buffer.length() >= FLUSH_THRESHOLD)
+			drain();
+	}
+
+	private void drain() throws IOException {
+		int length = buffer.length();
+		int start = 0;
+		while(start < length) {
+			int end = Math.min(length, start + chunk.length);
+			buffer.getChars(start, end, chunk, 0);
+			out.write(chunk, 0, end - start);
+			start = end;
+		}
+		buffer.setLength(0);
+	}
+
+	/**
+	 * writes any buffered characters to the underlying writer, and flushes it.
+	 */
+	@Override
+	public void flush() throws IOException {
+		drain();
+		out.flush();
+	}
+
+	/**
+	 * flushes and closes the underlying writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		drain();
+		out.close();
+	}
+}
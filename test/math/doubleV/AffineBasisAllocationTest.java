@@ -0,0 +1,155 @@
+package math.doubleV;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Fails if any per-frame AffineBasis or AffineAxes operation allocates once the JIT has warmed up.
+ *
+ * Each operation is run {@link #WARMUP} times, and then the bytes the current thread allocates over
+ * {@link #MEASURED} further runs are counted with com.sun.management.ThreadMXBean. An operation which
+ * allocates in every one of {@link #ROUNDS} measured rounds fails the test (a single clean round is enough to
+ * pass, so that a compilation finishing midway through a round isn't mistaken for steady-state garbage).
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class AffineBasisAllocationTest {
+
+	private static final int WARMUP = 50000;
+	private static final int MEASURED = 10000;
+	private static final int ROUNDS = 5;
+
+	private static com.sun.management.ThreadMXBean threads;
+	private static long threadId;
+
+	/**
+	 * a single operation under test. Each call to run() should leave its operands as it found them (or at least in
+	 * a state from which the next call does the same work), so that every measured round exercises the same path.
+	 */
+	static abstract class Op {
+		final String name;
+
+		Op(String name) {
+			this.name = name;
+		}
+
+		abstract void run();
+	}
+
+	public static void main(String[] args) {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(!(bean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported()) {
+			System.out.println("SKIPPED: this JVM cannot count per-thread allocations");
+			return;
+		}
+		threads = (com.sun.management.ThreadMXBean)bean;
+		threads.setThreadAllocatedMemoryEnabled(true);
+		threadId = Thread.currentThread().getId();
+
+		StringBuilder failures = new StringBuilder();
+		for(Op op : operations()) {
+			long bytes = measure(op);
+			if(bytes > 0)
+				failures.append("\n  ").append(op.name).append(" allocated ").append(bytes).append(" bytes over ").append(MEASURED).append(" calls");
+			else
+				System.out.println("ok   " + op.name);
+		}
+		if(failures.length() > 0)
+			throw new AssertionError("operations allocated after warm-up:" + failures);
+		System.out.println("PASSED");
+	}
+
+	/**
+	 * @return the fewest bytes the operation allocated in any measured round.
+	 */
+	private static long measure(Op op) {
+		for(int i = 0; i < WARMUP; i++)
+			op.run();
+		long overhead = allocatedBytes();
+		overhead = allocatedBytes() - overhead;
+		long fewest = Long.MAX_VALUE;
+		for(int round = 0; round < ROUNDS && fewest > 0; round++) {
+			long before = allocatedBytes();
+			for(int i = 0; i < MEASURED; i++)
+				op.run();
+			long after = allocatedBytes();
+			fewest = Math.min(fewest, Math.max(0, after - before - overhead));
+		}
+		return fewest;
+	}
+
+	private static long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(threadId);
+	}
+
+	/**
+	 * a basis with non-uniform scale, shear and a reflected z axis, so that none of the cheaper transform kinds apply.
+	 */
+	private static AffineBasis affineBasis(double ox, double oy, double oz) {
+		SGVec_3d origin = new SGVec_3d(ox, oy, oz);
+		return new AffineBasis(
+				new sgRayd(origin, new SGVec_3d(ox + 2, oy + 0.5, oz)),
+				new sgRayd(origin.copy(), new SGVec_3d(ox + 0.2, oy + 1.5, oz + 0.1)),
+				new sgRayd(origin.copy(), new SGVec_3d(ox, oy - 0.1, oz - 0.8)));
+	}
+
+	private static Op[] operations() {
+		final AffineBasis basis = affineBasis(1, 2, 3);
+		final AffineBasis local = affineBasis(-0.5, 0.25, 2);
+		final AffineBasis global = affineBasis(0, 0, 0);
+		final AffineBasis roundTrip = affineBasis(0, 0, 0);
+		final SGVec_3d in = new SGVec_3d(0.3, -1.2, 0.7);
+		final SGVec_3d out = new SGVec_3d();
+		final Rot rot = new Rot(new SGVec_3d(0.2, 1, -0.4), 0.8);
+		final Rot outRot = new Rot();
+		final boolean[] flips = new boolean[3];
+		final double[] packed = new double[3 * 64];
+		for(int i = 0; i < packed.length; i++)
+			packed[i] = (i % 7) - 3;
+
+		final AffineAxes root = new AffineAxes(new SGVec_3d(1, 0, 0), new SGVec_3d(1, 0, 0), new SGVec_3d(0, 1.5, 0), new SGVec_3d(0, 0, -1), false, null);
+		AffineAxes parent = root;
+		for(int i = 0; i < 8; i++)
+			parent = new AffineAxes(new SGVec_3d(0, 1, 0), new SGVec_3d(1, 0.1, 0), new SGVec_3d(0, 1, 0), new SGVec_3d(0, 0, 1), false, parent);
+		final AffineAxes leaf = parent;
+		final AffineAxes sibling = new AffineAxes(new SGVec_3d(0, 0, 1), new SGVec_3d(1, 0, 0), new SGVec_3d(0, 2, 0), new SGVec_3d(0, 0.1, 1), false, root);
+		final Matrix4d relative = new Matrix4d();
+		final SceneGraphUpdater updater = new SceneGraphUpdater(root);
+		final Quaterniond quat = new Quaterniond();
+		final Quaterniond[] quats = {new Quaterniond(0.9, 0.1, -0.3, 0.2), new Quaterniond(0.5, 0.5, 0.5, 0.5), new Quaterniond(0.2, -0.7, 0.1, 0.6)};
+		final double[] weights = {0.2, 0.5, 0.3};
+
+		return new Op[] {
+			new Op("AffineBasis.applyTo(V, V)") { void run() { basis.applyTo(in, out); } },
+			new Op("AffineBasis.setToLocalOf(V, V)") { void run() { basis.setToLocalOf(in, out); } },
+			new Op("AffineBasis.setToOrthoNormalGlobalOf(V, V)") { void run() { basis.setToOrthoNormalGlobalOf(in, out); } },
+			new Op("AffineBasis.setToOrthoNormalLocalOf(V, V)") { void run() { basis.setToOrthoNormalLocalOf(in, out); } },
+			new Op("AffineBasis.setToOrientationalGlobalOf") { void run() { basis.setToOrientationalGlobalOf(in, out); } },
+			new Op("AffineBasis.setToOrientationalLocalOf(V, V)") { void run() { basis.setToOrientationalLocalOf(in, out); } },
+			new Op("AffineBasis.applyTo(B, B)") { void run() { basis.applyTo(local, global); } },
+			new Op("AffineBasis.setToLocalOf(B, B)") { void run() { basis.setToLocalOf(global, roundTrip); } },
+			new Op("AffineBasis.applyTo(Rot, Rot)") { void run() { basis.applyTo(rot, outRot); } },
+			new Op("AffineBasis.setToLocalOf(Rot, Rot)") { void run() { basis.setToLocalOf(rot, outRot); } },
+			new Op("AffineBasis.setToLocalizedRotation") { void run() { basis.setToLocalizedRotation(rot, outRot); } },
+			new Op("AffineBasis.getLocalizedRotation") { void run() { basis.getLocalizedRotation(rot); } },
+			new Op("AffineBasis.setFlipArrayForMatrix") { void run() { basis.setFlipArrayForMatrix(basis.getComposedMatrix(), flips, basis.rotation); } },
+			new Op("AffineBasis.setToRotationalXHead") { void run() { basis.setToRotationalXHead(out); } },
+			new Op("AffineBasis.setToOrthonormalXHead") { void run() { basis.setToOrthonormalXHead(out); } },
+			new Op("AffineBasis.refreshPrecomputed + ensurePrecomputed") { void run() { basis.refreshPrecomputed(); basis.ensurePrecomputed(); } },
+			new Op("AffineBasis.getXRay after refresh") { void run() { basis.refreshPrecomputed(); basis.getXRay(); } },
+			new Op("AffineBasis.getInverseComposedMatrix after refresh") { void run() { basis.refreshPrecomputed(); basis.getInverseComposedMatrix(); } },
+			new Op("AffineBasis.scaleXBy") { void run() { basis.scaleXBy(1d); } },
+			new Op("AffineBasis.applyTo(double[])") { void run() { basis.applyTo(packed, 0, 64, 3); basis.setToLocalOf(packed, 0, 64, 3); } },
+			new Op("AffineAxes.updateGlobal (clean)") { void run() { leaf.updateGlobal(); } },
+			new Op("AffineAxes.updateGlobal (ancestors changed)") { void run() { root.markChildScalesDirty(); leaf.updateGlobal(); } },
+			new Op("AffineAxes.x_norm_") { void run() { leaf.x_norm_(); } },
+			new Op("AffineAxes.setToGlobalOf") { void run() { leaf.setToGlobalOf(in, out); } },
+			new Op("AffineAxes.setToLocalOf") { void run() { leaf.setToLocalOf(in, out); } },
+			new Op("AffineAxes.setToTransformIn") { void run() { leaf.setToTransformIn(sibling, relative); } },
+			new Op("SceneGraphUpdater.update") { void run() { root.markChildScalesDirty(); updater.update(); } },
+			new Op("Quaterniond.slerp(Q[])") { void run() { quat.slerp(quats); } },
+			new Op("Quaterniond.slerp(Q[], double[])") { void run() { quat.slerp(quats, weights); } },
+			new Op("Quaterniond.transform") { void run() { out.set(in); quat.transform(out); } }
+		};
+	}
+}
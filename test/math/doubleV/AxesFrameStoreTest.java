@@ -0,0 +1,144 @@
+package math.doubleV;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records a hierarchy into an {@link AxesFrameStore} in a temporary file, reopens the file read only against a second,
+ * separately built hierarchy of the same topology, samples every frame (in order, in reverse and by seeking), and fails
+ * unless every local basis value (translation, rotation, shear/scale and scale) comes back bit for bit.
+ *
+ * The store is created with a segment size that doesn't divide the number of frames, so that the recording spans many
+ * segments and ends part way into one, and enough frames are recorded that reading spans more than one segment too.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class AxesFrameStoreTest {
+
+	private static final int SEGMENT_FRAMES = 7;
+	/**more than the default number of frames per segment, which is what a store is reopened with.*/
+	private static final int FRAMES = AxesFrameStore.DEFAULT_SEGMENT_FRAMES + 200;
+	/**values compared per axes: translation, rotation, 3x3 shear/scale and scale.*/
+	private static final int VALUES = 3 + 4 + 9 + 3;
+
+	private static int comparisons = 0;
+
+	public static void main(String[] args) throws IOException {
+		SceneGraphUpdater recorded = new SceneGraphUpdater(build());
+		recorded.rebuild();
+		SceneGraphUpdater played = new SceneGraphUpdater(build());
+		played.rebuild();
+		int nodes = recorded.size();
+		double[][] expected = new double[FRAMES][nodes * VALUES];
+
+		Path file = Files.createTempFile("AxesFrameStoreTest", ".ewbf");
+		try {
+			AxesFrameStore store = AxesFrameStore.create(file, recorded, SEGMENT_FRAMES);
+			try {
+				for(int f = 0; f < FRAMES; f++) {
+					pose(recorded, f);
+					for(int i = 0; i < nodes; i++)
+						values(recorded.get(i).getLocalMBasis(), expected[f], i * VALUES);
+					if(store.append() != f)
+						throw new AssertionError("frame " + f + " was appended out of order");
+				}
+			} finally {
+				store.close();
+			}
+
+			long exact = 16 + 8L * nodes + (long)AxesFrameStore.FRAME_RECORD_BYTES * nodes * FRAMES;
+			long untrimmed = 16 + 8L * nodes + (long)AxesFrameStore.FRAME_RECORD_BYTES * nodes * SEGMENT_FRAMES
+					* ((FRAMES + SEGMENT_FRAMES - 1) / SEGMENT_FRAMES);
+			long size = Files.size(file);
+			if(size != exact && size != untrimmed)
+				throw new AssertionError("closed store is " + size + " bytes long, expected " + exact
+						+ " (or " + untrimmed + " if the mapped space couldn't be trimmed)");
+
+			store = AxesFrameStore.open(file, played, false);
+			try {
+				if(store.getFrameCount() != FRAMES)
+					throw new AssertionError("reopened store holds " + store.getFrameCount() + " frames, recorded " + FRAMES);
+				double[] actual = new double[nodes * VALUES];
+				while(store.next())
+					compare(played, store.getCurrentFrame(), expected, actual);
+				for(int f = FRAMES - 1; f >= 0; f -= 3) {
+					store.sample(f);
+					compare(played, f, expected, actual);
+				}
+				for(int f = -5; f < FRAMES + 5; f += SEGMENT_FRAMES + 4) {
+					int sampled = store.seek(f);
+					compare(played, sampled, expected, actual);
+				}
+				try {
+					store.append();
+					throw new AssertionError("a read only store accepted a frame");
+				} catch(IllegalStateException expectedFailure) {
+				}
+			} finally {
+				store.close();
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+		System.out.println("PASSED (" + FRAMES + " frames of " + nodes + " axes, " + comparisons + " comparisons)");
+	}
+
+	/**
+	 * a small branching hierarchy, so that the recording runs to many frames without a large file.
+	 */
+	private static AffineAxes build() {
+		AffineAxes root = new AffineAxes(new SGVec_3d(1, 2, 3), new SGVec_3d(2, 0.5, 0), new SGVec_3d(0.2, 1.5, 0.1), new SGVec_3d(0, -0.1, 0.8), false, null);
+		AffineAxes parent = root;
+		for(int i = 1; i < 6; i++) {
+			AffineAxes axes = new AffineAxes(new SGVec_3d(0.1 * i, 1, -0.3), new SGVec_3d(1, 0.01 * i, 0), new SGVec_3d(0, 1, 0.3), new SGVec_3d(0, 0.2, 1), i % 3 == 0, parent);
+			parent = i % 2 == 0 ? root : axes;
+		}
+		return root;
+	}
+
+	/**
+	 * moves every axes of the hierarchy into a pose unique to the given frame.
+	 */
+	private static void pose(SceneGraphUpdater order, int frame) {
+		for(int i = 0; i < order.size(); i++) {
+			AffineAxes axes = order.get(i);
+			axes.rotateAboutY(0.001 * (frame + i));
+			if((frame + i) % 11 == 0)
+				axes.scaleXBy(1.001);
+			AffineBasis local = axes.getLocalMBasis();
+			local.translate.x = frame * 0.25 - i;
+			//scale is kept separately from the shear/scale matrix, so give it values the matrix doesn't imply.
+			local.scale.z = 0.5 + frame;
+			axes.markDirty();
+		}
+	}
+
+	private static void values(AffineBasis basis, double[] out, int offset) {
+		out[offset] = basis.translate.x;
+		out[offset + 1] = basis.translate.y;
+		out[offset + 2] = basis.translate.z;
+		out[offset + 3] = basis.rotation.rotation.getQ0();
+		out[offset + 4] = basis.rotation.rotation.getQ1();
+		out[offset + 5] = basis.rotation.rotation.getQ2();
+		out[offset + 6] = basis.rotation.rotation.getQ3();
+		double[] ss = basis.getShearScaleMatrix().val;
+		out[offset + 7] = ss[Matrix4d.M00]; out[offset + 8] = ss[Matrix4d.M10]; out[offset + 9] = ss[Matrix4d.M20];
+		out[offset + 10] = ss[Matrix4d.M01]; out[offset + 11] = ss[Matrix4d.M11]; out[offset + 12] = ss[Matrix4d.M21];
+		out[offset + 13] = ss[Matrix4d.M02]; out[offset + 14] = ss[Matrix4d.M12]; out[offset + 15] = ss[Matrix4d.M22];
+		out[offset + 16] = basis.scale.x;
+		out[offset + 17] = basis.scale.y;
+		out[offset + 18] = basis.scale.z;
+	}
+
+	private static void compare(SceneGraphUpdater order, int frame, double[][] expected, double[] actual) {
+		for(int i = 0; i < order.size(); i++)
+			values(order.get(i).getLocalMBasis(), actual, i * VALUES);
+		for(int v = 0; v < actual.length; v++) {
+			comparisons++;
+			if(Double.doubleToLongBits(expected[frame][v]) != Double.doubleToLongBits(actual[v]))
+				throw new AssertionError("frame " + frame + ", axes " + (v / VALUES) + ", value " + (v % VALUES)
+						+ ": recorded " + expected[frame][v] + ", sampled " + actual[v]);
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package math.doubleV;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes a hierarchy with {@link AxesSnapshot}, reads it back, and fails unless every local basis value
+ * (translation, rotation, shear/scale and scale), parent link and orthonormality flag survives bit for bit.
+ *
+ * Also checks that reading stops exactly at the end of a snapshot, so that data following it in the same stream
+ * is left unread, and that truncated or corrupt snapshots are rejected with an IOException.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class AxesSnapshotTest {
+
+	/**more axes than fit in the snapshot's buffer at once, so that records straddle refills.*/
+	private static final int CHAIN_LENGTH = 700;
+
+	public static void main(String[] args) throws IOException {
+		AffineAxes root = new AffineAxes(new SGVec_3d(1, 2, 3), new SGVec_3d(2, 0.5, 0), new SGVec_3d(0.2, 1.5, 0.1), new SGVec_3d(0, -0.1, -0.8), false, null);
+		AffineAxes parent = root;
+		for(int i = 1; i < CHAIN_LENGTH; i++) {
+			AffineAxes axes = new AffineAxes(new SGVec_3d(0.1 * i, 1, -0.3), new SGVec_3d(1, 0.01 * i, 0), new SGVec_3d(0, 1, 0.3), new SGVec_3d(0, 0.2, 1), i % 3 == 0, parent);
+			axes.rotateAboutY(0.01 * i);
+			if(i % 5 == 0)
+				axes.scaleXBy(1.5);
+			//scale is kept separately from the shear/scale matrix, so give it values the matrix doesn't imply.
+			axes.getLocalMBasis().scale.x = 0.5 + i;
+			parent = i % 7 == 0 ? root : axes;
+		}
+
+		SceneGraphUpdater order = new SceneGraphUpdater(root);
+		order.rebuild();
+		int[] parents = order.getParentIndices();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		AxesSnapshot.write(root, bytes);
+		int snapshotLength = bytes.size();
+		byte[] trailer = {1, 2, 3, 4, 5};
+		bytes.write(trailer);
+		bytes.write(trailer);
+
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+		AffineAxes[] read = AxesSnapshot.read(in);
+		if(in.available() != 2 * trailer.length)
+			throw new AssertionError("reading consumed " + (bytes.size() - in.available() - snapshotLength) + " bytes past the end of the snapshot");
+		if(read.length != order.size())
+			throw new AssertionError("read " + read.length + " axes, wrote " + order.size());
+		for(int i = 0; i < read.length; i++) {
+			AffineAxes expected = order.get(i);
+			AffineAxes actual = read[i];
+			AffineAxes expectedParent = parents[i] < 0 ? null : read[parents[i]];
+			if(actual.getParentAxes() != expectedParent)
+				throw new AssertionError("axes " + i + " has the wrong parent");
+			if(actual.forceOrthoNormality != expected.forceOrthoNormality)
+				throw new AssertionError("axes " + i + " lost its orthonormality flag");
+			compare("axes " + i, expected.getLocalMBasis(), actual.getLocalMBasis());
+		}
+
+		//a second, back to back snapshot in the same stream.
+		bytes.reset();
+		AxesSnapshot.write(root, bytes);
+		AxesSnapshot.write(read[0], bytes);
+		in = new ByteArrayInputStream(bytes.toByteArray());
+		AxesSnapshot.read(in);
+		if(AxesSnapshot.read(in).length != order.size() || in.available() != 0)
+			throw new AssertionError("back to back snapshots were not read independently");
+
+		expectFailure("truncated snapshot", Arrays.copyOf(bytes.toByteArray(), snapshotLength - 1));
+		byte[] hugeCount = Arrays.copyOf(bytes.toByteArray(), AxesSnapshot.HEADER_BYTES + AxesSnapshot.RECORD_BYTES);
+		hugeCount[8] = (byte)0xff; hugeCount[9] = (byte)0xff; hugeCount[10] = (byte)0xff; hugeCount[11] = (byte)0x7f;
+		expectFailure("snapshot claiming " + Integer.MAX_VALUE + " axes", hugeCount);
+
+		System.out.println("PASSED (" + read.length + " axes)");
+	}
+
+	private static void compare(String label, AffineBasis expected, AffineBasis actual) {
+		check(label + " translate x", expected.translate.x, actual.translate.x);
+		check(label + " translate y", expected.translate.y, actual.translate.y);
+		check(label + " translate z", expected.translate.z, actual.translate.z);
+		check(label + " rotation q0", expected.rotation.rotation.getQ0(), actual.rotation.rotation.getQ0());
+		check(label + " rotation q1", expected.rotation.rotation.getQ1(), actual.rotation.rotation.getQ1());
+		check(label + " rotation q2", expected.rotation.rotation.getQ2(), actual.rotation.rotation.getQ2());
+		check(label + " rotation q3", expected.rotation.rotation.getQ3(), actual.rotation.rotation.getQ3());
+		double[] ssExpected = expected.getShearScaleMatrix().val, ssActual = actual.getShearScaleMatrix().val;
+		for(int m = 0; m < 16; m++)
+			check(label + " shear/scale entry " + m, ssExpected[m], ssActual[m]);
+		check(label + " scale x", expected.scale.x, actual.scale.x);
+		check(label + " scale y", expected.scale.y, actual.scale.y);
+		check(label + " scale z", expected.scale.z, actual.scale.z);
+	}
+
+	private static void check(String what, double expected, double actual) {
+		if(Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual))
+			throw new AssertionError(what + ": wrote " + expected + ", read " + actual);
+	}
+
+	private static void expectFailure(String what, byte[] data) {
+		try {
+			AxesSnapshot.read(new ByteArrayInputStream(data));
+		} catch(IOException expected) {
+			return;
+		}
+		throw new AssertionError(what + " was read without error");
+	}
+}
@@ -0,0 +1,204 @@
+package math.doubleV;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import math.floatV.Quaternionf;
+import math.floatV.SGVec_3f;
+
+/**
+ * Checks {@link DualQuaternionSkinner} against rigid transforms computed independently:
+ * <ul>
+ * <li>a vertex influenced by a single bone (at any weight) moves exactly as that bone's rotation and translation
+ * move it, as computed by Quaternionf.transform, to within float precision;</li>
+ * <li>deforming in parallel gives bit for bit the same positions and normals as deforming sequentially;</li>
+ * <li>bones in the pose the mesh was bound in compose with the inverse bind pose to the identity, leaving the mesh
+ * undeformed, and a bone moved away from its bind pose carries its vertices from the bind-time global basis to its
+ * current one.</li>
+ * </ul>
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class DualQuaternionSkinnerTest {
+
+	private static final int BONES = 24;
+	private static final int INFLUENCES = 4;
+	/**well above the grain size used below, so deformation is split into many chunks.*/
+	private static final int VERTICES = 50000;
+	private static final int GRAIN_SIZE = 256;
+
+	/**allowed difference of a deformed float coordinate, relative to its magnitude (or absolute, below magnitude 1).*/
+	private static final double FLOAT_TOLERANCE = 1e-5;
+	/**allowed difference of a dual quaternion component from the identity.*/
+	private static final double IDENTITY_TOLERANCE = 1e-12;
+
+	private static int comparisons = 0;
+
+	public static void main(String[] args) {
+		Random random = new Random(20261018L);
+		singleBone(random);
+		deformInParallel(random);
+		bindPose();
+		System.out.println("PASSED (" + comparisons + " comparisons)");
+	}
+
+	/**
+	 * binds every vertex to one bone only, with a weight other than 1 and its remaining weights zero, and compares
+	 * against rotating by that bone's quaternion and then translating.
+	 */
+	private static void singleBone(Random random) {
+		DualQuaternionSkinner skinner = new DualQuaternionSkinner(BONES);
+		Quaternionf[] rotations = new Quaternionf[BONES];
+		SGVec_3f[] translations = new SGVec_3f[BONES];
+		for(int b = 0; b < BONES; b++) {
+			rotations[b] = randomRotation(random);
+			translations[b] = new SGVec_3f(randomCoordinate(random), randomCoordinate(random), randomCoordinate(random));
+			skinner.setBone(b, rotations[b], translations[b]);
+		}
+		int vertices = 4000;
+		float[] positions = randomVectors(random, vertices, false);
+		float[] normals = randomVectors(random, vertices, true);
+		int[] indices = new int[vertices * INFLUENCES];
+		float[] weights = new float[vertices * INFLUENCES];
+		for(int v = 0; v < vertices; v++) {
+			int first = v * INFLUENCES;
+			for(int k = 0; k < INFLUENCES; k++)
+				indices[first + k] = random.nextInt(BONES);
+			weights[first + random.nextInt(INFLUENCES)] = 0.1f + random.nextFloat();
+		}
+		float[] outPositions = new float[positions.length];
+		float[] outNormals = new float[normals.length];
+		skinner.deform(positions, normals, indices, weights, INFLUENCES, outPositions, outNormals);
+
+		SGVec_3f expected = new SGVec_3f();
+		for(int v = 0; v < vertices; v++) {
+			int bone = -1;
+			for(int k = 0; k < INFLUENCES; k++)
+				if(weights[v * INFLUENCES + k] != 0f) bone = indices[v * INFLUENCES + k];
+			int p = v * 3;
+			expected.set(positions[p], positions[p + 1], positions[p + 2]);
+			rotations[bone].transform(expected);
+			check("single bone vertex " + v + " x", expected.x + translations[bone].x, outPositions[p], FLOAT_TOLERANCE);
+			check("single bone vertex " + v + " y", expected.y + translations[bone].y, outPositions[p + 1], FLOAT_TOLERANCE);
+			check("single bone vertex " + v + " z", expected.z + translations[bone].z, outPositions[p + 2], FLOAT_TOLERANCE);
+			expected.set(normals[p], normals[p + 1], normals[p + 2]);
+			rotations[bone].transform(expected);
+			check("single bone normal " + v + " x", expected.x, outNormals[p], FLOAT_TOLERANCE);
+			check("single bone normal " + v + " y", expected.y, outNormals[p + 1], FLOAT_TOLERANCE);
+			check("single bone normal " + v + " z", expected.z, outNormals[p + 2], FLOAT_TOLERANCE);
+		}
+	}
+
+	private static void deformInParallel(Random random) {
+		DualQuaternionSkinner skinner = new DualQuaternionSkinner(BONES);
+		for(int b = 0; b < BONES; b++)
+			skinner.setBone(b, randomRotation(random), new SGVec_3f(randomCoordinate(random), randomCoordinate(random), randomCoordinate(random)));
+		float[] positions = randomVectors(random, VERTICES, false);
+		float[] normals = randomVectors(random, VERTICES, true);
+		int[] indices = new int[VERTICES * INFLUENCES];
+		float[] weights = new float[VERTICES * INFLUENCES];
+		for(int i = 0; i < indices.length; i++) {
+			indices[i] = random.nextInt(BONES);
+			weights[i] = random.nextInt(5) == 0 ? 0f : random.nextFloat();
+		}
+
+		float[] sequentialPositions = new float[positions.length], sequentialNormals = new float[normals.length];
+		float[] parallelPositions = new float[positions.length], parallelNormals = new float[normals.length];
+		skinner.setSequential();
+		skinner.deform(positions, normals, indices, weights, INFLUENCES, sequentialPositions, sequentialNormals);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			skinner.setParallel(pool, GRAIN_SIZE);
+			skinner.deform(positions, normals, indices, weights, INFLUENCES, parallelPositions, parallelNormals);
+		} finally {
+			pool.shutdown();
+		}
+		for(int i = 0; i < positions.length; i++) {
+			comparisons += 2;
+			if(Float.floatToIntBits(sequentialPositions[i]) != Float.floatToIntBits(parallelPositions[i]))
+				throw new AssertionError("vertex " + (i / 3) + " coordinate " + (i % 3) + ": deformed to "
+						+ sequentialPositions[i] + " sequentially, " + parallelPositions[i] + " in parallel");
+			if(Float.floatToIntBits(sequentialNormals[i]) != Float.floatToIntBits(parallelNormals[i]))
+				throw new AssertionError("normal " + (i / 3) + " coordinate " + (i % 3) + ": deformed to "
+						+ sequentialNormals[i] + " sequentially, " + parallelNormals[i] + " in parallel");
+		}
+	}
+
+	private static void bindPose() {
+		AffineAxes[] bones = new AffineAxes[6];
+		AffineAxes parent = null;
+		for(int b = 0; b < bones.length; b++) {
+			bones[b] = new AffineAxes(new SGVec_3d(0.5 * b, 1, -0.25 * b), new SGVec_3d(1, 0, 0), new SGVec_3d(0, 1, 0), new SGVec_3d(0, 0, 1), false, parent);
+			bones[b].rotateAboutX(0.3 * b);
+			bones[b].rotateAboutY(-0.7 + 0.2 * b);
+			bones[b].rotateAboutZ(1.1);
+			parent = bones[b];
+		}
+		DualQuaternionSkinner skinner = new DualQuaternionSkinner(bones.length);
+		skinner.setBindPose(bones);
+		skinner.setBones(bones);
+		double[] dqs = skinner.getSkinningDualQuaternions();
+		for(int b = 0; b < bones.length; b++)
+			for(int k = 0; k < DualQuaternionSkinner.STRIDE; k++)
+				check("bone " + b + " in its bind pose, component " + k, k == 0 ? 1 : 0, dqs[b * DualQuaternionSkinner.STRIDE + k], IDENTITY_TOLERANCE);
+
+		int vertices = bones.length * 50;
+		float[] positions = randomVectors(new Random(7L), vertices, false);
+		int[] indices = new int[vertices];
+		float[] weights = new float[vertices];
+		for(int v = 0; v < vertices; v++) {
+			indices[v] = v % bones.length;
+			weights[v] = 1f;
+		}
+		float[] out = new float[positions.length];
+		skinner.deform(positions, null, indices, weights, 1, out, null);
+		for(int i = 0; i < positions.length; i++)
+			check("bind pose vertex " + (i / 3) + " coordinate " + (i % 3), positions[i], out[i], FLOAT_TOLERANCE);
+
+		AffineBasis[] bind = new AffineBasis[bones.length];
+		for(int b = 0; b < bones.length; b++)
+			bind[b] = new AffineBasis(bones[b].getGlobalMBasis());
+		bones[1].rotateAboutY(0.9);
+		bones[3].rotateAboutX(-0.4);
+		skinner.setBones(bones);
+		skinner.deform(positions, null, indices, weights, 1, out, null);
+		SGVec_3d expected = new SGVec_3d();
+		for(int v = 0; v < vertices; v++) {
+			int p = v * 3;
+			SGVec_3d position = new SGVec_3d(positions[p], positions[p + 1], positions[p + 2]);
+			bind[indices[v]].setToLocalOf(position, position);
+			bones[indices[v]].setToGlobalOf(position, expected);
+			check("posed vertex " + v + " x", expected.x, out[p], FLOAT_TOLERANCE);
+			check("posed vertex " + v + " y", expected.y, out[p + 1], FLOAT_TOLERANCE);
+			check("posed vertex " + v + " z", expected.z, out[p + 2], FLOAT_TOLERANCE);
+		}
+	}
+
+	private static Quaternionf randomRotation(Random random) {
+		double w = random.nextGaussian(), x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+		double invLen = 1 / Math.sqrt(w * w + x * x + y * y + z * z);
+		return new Quaternionf((float)(w * invLen), (float)(x * invLen), (float)(y * invLen), (float)(z * invLen));
+	}
+
+	private static float randomCoordinate(Random random) {
+		return (random.nextFloat() * 2 - 1) * 10;
+	}
+
+	private static float[] randomVectors(Random random, int count, boolean unit) {
+		float[] vectors = new float[count * 3];
+		for(int i = 0; i < vectors.length; i += 3) {
+			double x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+			double scale = unit ? 1 / Math.sqrt(x * x + y * y + z * z) : 5;
+			vectors[i] = (float)(x * scale);
+			vectors[i + 1] = (float)(y * scale);
+			vectors[i + 2] = (float)(z * scale);
+		}
+		return vectors;
+	}
+
+	private static void check(String what, double expected, double actual, double tolerance) {
+		comparisons++;
+		if(!(Math.abs(expected - actual) <= tolerance * Math.max(1, Math.abs(expected))))
+			throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+	}
+}
@@ -0,0 +1,150 @@
+package math.doubleV;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the Matrix4d, Quaterniond, AffineBasis and AffineAxes operations which need temporaries on many threads at once,
+ * each thread on its own instances, and fails if any thread ever computes a different result than the same sequence
+ * computed on a single thread.
+ *
+ * The double precision counterpart of {@link math.floatV.Matrix4fConcurrencyTest}. Double arithmetic is deterministic
+ * in Java, so results are compared exactly.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class Matrix4dConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int ITERATIONS = 100000;
+
+	/**
+	 * one thread's operands and results. Every call to run() starts from the same inputs, so it always produces the same
+	 * output.
+	 */
+	static final class Sequence {
+		final double seed;
+		final Matrix4d a = new Matrix4d();
+		final Matrix4d b = new Matrix4d();
+		final Matrix4d c = new Matrix4d();
+		final Quaterniond q = new Quaterniond();
+		final Quaterniond[] qs = {new Quaterniond(), new Quaterniond(), new Quaterniond()};
+		final double[] weights = {0.2, 0.5, 0.3};
+		final SGVec_3d position = new SGVec_3d();
+		final SGVec_3d target = new SGVec_3d();
+		final SGVec_3d up = new SGVec_3d();
+		final SGVec_3d axis = new SGVec_3d();
+		final SGVec_3d v = new SGVec_3d();
+		final SGVec_3d w = new SGVec_3d();
+		final AffineBasis basis;
+		final AffineBasis local;
+		final AffineBasis global;
+		final Rot rot;
+		final Rot outRot = new Rot();
+		final AffineAxes root;
+		final AffineAxes leaf;
+		final double[] result = new double[16 * 4 + 4 + 3 * 3 + 4 + 16];
+
+		Sequence(double seed) {
+			this.seed = seed;
+			SGVec_3d origin = new SGVec_3d(seed, 2, 3);
+			basis = new AffineBasis(
+					new sgRayd(origin, new SGVec_3d(seed + 2, 2.5, 3)),
+					new sgRayd(origin.copy(), new SGVec_3d(seed + 0.2, 3.5, 3.1)),
+					new sgRayd(origin.copy(), new SGVec_3d(seed, 1.9, 2.2)));
+			local = new AffineBasis(basis);
+			global = new AffineBasis(basis);
+			rot = new Rot(new SGVec_3d(0.2, 1, -seed), 0.8);
+			root = new AffineAxes(new SGVec_3d(seed, 0, 0), new SGVec_3d(1, 0, 0), new SGVec_3d(0, 1.5, 0), new SGVec_3d(0, 0, -1), false, null);
+			AffineAxes parent = root;
+			for(int i = 0; i < 6; i++)
+				parent = new AffineAxes(new SGVec_3d(0, 1, 0), new SGVec_3d(1, 0.1 * seed, 0), new SGVec_3d(0, 1, 0), new SGVec_3d(0, 0, 1), false, parent);
+			leaf = parent;
+		}
+
+		double[] run() {
+			position.set(seed, 2, -1);
+			target.set(-3, seed * 0.5, 4);
+			up.set(0.1, 1, 0);
+			axis.set(0.3, -0.4, seed);
+
+			a.setToLookAt(position, target, up);
+			b.setToWorld(position, target, up);
+			a.mul(b).inv();
+			b.tra().scale(1.5, 0.5, 2).translate(1, seed, -2);
+			c.setToLookAt(axis, up);
+			c.mul(a);
+
+			for(int i = 0; i < qs.length; i++)
+				qs[i].setFromAxisRad(axis, seed * 0.3 * (i + 1));
+			q.slerp(qs);
+			qs[0].slerp(qs, weights);
+			v.set(target);
+			q.transform(v);
+
+			local.setFromMatrix(c.val, 0);
+			basis.applyTo(local, global);
+			basis.setToLocalOf(global, local);
+			basis.setToLocalizedRotation(rot, outRot);
+			basis.applyTo(target, w);
+
+			root.getLocalMBasis().setFromMatrix(a.val, 0);
+			root.markDirty();
+			leaf.setToGlobalOf(position, axis);
+
+			System.arraycopy(a.val, 0, result, 0, 16);
+			System.arraycopy(b.val, 0, result, 16, 16);
+			System.arraycopy(c.val, 0, result, 32, 16);
+			System.arraycopy(global.getComposedMatrix().val, 0, result, 48, 16);
+			result[64] = q.getQ0(); result[65] = q.getQ1(); result[66] = q.getQ2(); result[67] = q.getQ3();
+			result[68] = v.x; result[69] = v.y; result[70] = v.z;
+			result[71] = w.x; result[72] = w.y; result[73] = w.z;
+			result[74] = axis.x; result[75] = axis.y; result[76] = axis.z;
+			MRotation r = outRot.rotation;
+			result[77] = r.getQ0(); result[78] = r.getQ1(); result[79] = r.getQ2(); result[80] = r.getQ3();
+			System.arraycopy(local.getComposedMatrix().val, 0, result, 81, 16);
+			return result;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		final double[][] expected = new double[THREADS][];
+		for(int t = 0; t < THREADS; t++)
+			expected[t] = new Sequence(0.5 + t * 0.25).run().clone();
+
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for(int t = 0; t < THREADS; t++) {
+			final int index = t;
+			threads[t] = new Thread("Matrix4dConcurrencyTest-" + t) {
+				@Override
+				public void run() {
+					Sequence sequence = new Sequence(0.5 + index * 0.25);
+					try {
+						start.await();
+					} catch(InterruptedException e) {
+						return;
+					}
+					for(int i = 0; i < ITERATIONS && failure.get() == null; i++) {
+						double[] actual = sequence.run();
+						if(!Arrays.equals(actual, expected[index])) {
+							failure.compareAndSet(null, getName() + " diverged on iteration " + i
+									+ "\n  expected " + Arrays.toString(expected[index])
+									+ "\n  actual   " + Arrays.toString(actual));
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for(Thread thread : threads)
+			thread.join();
+
+		if(failure.get() != null)
+			throw new AssertionError(failure.get());
+		System.out.println("PASSED");
+	}
+}
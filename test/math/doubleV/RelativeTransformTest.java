@@ -0,0 +1,90 @@
+package math.doubleV;
+
+/**
+ * Checks {@link AffineAxes#setToTransformIn(AffineAxes, Matrix4d)} against the transform obtained by going through
+ * world space (global of the source axes, then local of the reference), for pairs of axes within one hierarchy and
+ * for pairs from two separate hierarchies, which share no common ancestor.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class RelativeTransformTest {
+
+	/**allowed difference, relative to the magnitude of the expected value (or absolute, below magnitude 1).*/
+	private static final double TOLERANCE = 1e-9;
+
+	private static final double[][] POINTS = {
+		{0, 0, 0}, {1, 0, 0}, {0, 1, 0}, {0, 0, 1}, {0.3, -1.2, 0.7}, {-2.5, 4, 1.5}
+	};
+
+	private static int comparisons = 0;
+
+	public static void main(String[] args) {
+		AffineAxes[] treeA = chain(new SGVec_3d(1, 2, 3), 5);
+		AffineAxes[] treeB = chain(new SGVec_3d(-4, 0.5, 2), 4);
+		AffineAxes branch = new AffineAxes(new SGVec_3d(0, 0, 1), new SGVec_3d(1, 0, 0), new SGVec_3d(0, 2, 0), new SGVec_3d(0, 0.1, 1), false, treeA[1]);
+		AffineAxes global = new AffineAxes(new SGVec_3d(2, 2, 2), new SGVec_3d(0, 1, 0), new SGVec_3d(-1, 0, 0), new SGVec_3d(0, 0, 1), false, null);
+
+		//same hierarchy: self, ancestor and descendant both ways, and across branches
+		compare("leaf in itself", treeA[4], treeA[4]);
+		compare("leaf in root", treeA[4], treeA[0]);
+		compare("root in leaf", treeA[0], treeA[4]);
+		compare("leaf in branch", treeA[4], branch);
+		compare("branch in leaf", branch, treeA[4]);
+
+		//different hierarchies: no common ancestor
+		compare("leaf A in leaf B", treeA[4], treeB[3]);
+		compare("leaf B in root A", treeB[3], treeA[0]);
+		compare("root A in root B", treeA[0], treeB[0]);
+		compare("branch in unparented axes", branch, global);
+		compare("unparented axes in leaf B", global, treeB[3]);
+
+		if(AffineAxes.lowestCommonAncestor(treeA[4], treeB[3]) != null)
+			throw new AssertionError("axes in different hierarchies reported a common ancestor");
+		if(AffineAxes.lowestCommonAncestor(treeA[4], branch) != treeA[1])
+			throw new AssertionError("wrong common ancestor for axes in the same hierarchy");
+
+		treeA[2].rotateAboutY(0.7);
+		treeB[1].scaleXBy(1.5);
+		compare("leaf A in leaf B after edits", treeA[4], treeB[3]);
+		compare("leaf in branch after edits", treeA[4], branch);
+
+		System.out.println("PASSED (" + comparisons + " comparisons)");
+	}
+
+	/**
+	 * a chain of the given length below a new root, each axes sheared, non-uniformly scaled and offset from its parent.
+	 */
+	private static AffineAxes[] chain(SGVec_3d rootOrigin, int length) {
+		AffineAxes[] axes = new AffineAxes[length];
+		axes[0] = new AffineAxes(rootOrigin, new SGVec_3d(2, 0.5, 0), new SGVec_3d(0.2, 1.5, 0.1), new SGVec_3d(0, -0.1, 0.8), false, null);
+		for(int i = 1; i < length; i++)
+			axes[i] = new AffineAxes(new SGVec_3d(0, 1, 0.5 * i), new SGVec_3d(1, 0.1 * i, 0), new SGVec_3d(0, 1, 0.3), new SGVec_3d(0, 0.2, -1), false, axes[i - 1]);
+		return axes;
+	}
+
+	private static void compare(String label, AffineAxes source, AffineAxes reference) {
+		Matrix4d relative = source.setToTransformIn(reference, new Matrix4d());
+		SGVec_3d expected = new SGVec_3d();
+		double[] actual = new double[3];
+		for(double[] p : POINTS) {
+			source.setToGlobalOf(new SGVec_3d(p[0], p[1], p[2]), expected);
+			reference.setToLocalOf(expected.copy(), expected);
+			actual[0] = p[0]; actual[1] = p[1]; actual[2] = p[2];
+			Matrix4d.mulVec(relative.val, actual, 0, 1, 3);
+			check(label + " x of " + str(p), expected.x, actual[0]);
+			check(label + " y of " + str(p), expected.y, actual[1]);
+			check(label + " z of " + str(p), expected.z, actual[2]);
+		}
+	}
+
+	private static void check(String what, double expected, double actual) {
+		comparisons++;
+		double allowed = TOLERANCE * Math.max(1, Math.abs(expected));
+		if(!(Math.abs(expected - actual) <= allowed))
+			throw new AssertionError(what + ": expected " + expected + ", got " + actual);
+	}
+
+	private static String str(double[] v) {
+		return "(" + v[0] + ", " + v[1] + ", " + v[2] + ")";
+	}
+}
@@ -0,0 +1,116 @@
+package math.doubleV;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Builds two identical hierarchies, each much larger than the grain size and branching both widely and deeply,
+ * updates one with a sequential {@link SceneGraphUpdater} and the other with a parallel one, and fails unless every
+ * global basis (translation, rotation, shear/scale and composed matrices) is bit for bit the same.
+ *
+ * Repeats the comparison after editing the same scattered axes in both hierarchies, so that the parallel update
+ * also has to skip clean subtrees, and checks that both updates recompute the same number of axes.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class SceneGraphUpdaterParallelTest {
+
+	private static final int BRANCHES = 60;
+	private static final int BRANCH_DEPTH = 8;
+	private static final int FAN = 6;
+	private static final int GRAIN_SIZE = 16;
+
+	private static int comparisons = 0;
+
+	public static void main(String[] args) {
+		AffineAxes sequentialRoot = build();
+		AffineAxes parallelRoot = build();
+		SceneGraphUpdater sequential = new SceneGraphUpdater(sequentialRoot);
+		SceneGraphUpdater parallel = new SceneGraphUpdater(parallelRoot);
+		sequential.setSequential();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			parallel.setParallel(pool, GRAIN_SIZE);
+			sequential.rebuild();
+			parallel.rebuild();
+			if(parallel.size() <= 10 * GRAIN_SIZE)
+				throw new AssertionError("hierarchy of " + parallel.size() + " axes is too small to be split");
+
+			update("first update", sequential, parallel);
+			for(int round = 1; round <= 3; round++) {
+				edit(sequential, round);
+				edit(parallel, round);
+				update("update after edit round " + round, sequential, parallel);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		System.out.println("PASSED (" + sequential.size() + " axes, " + comparisons + " comparisons)");
+	}
+
+	/**
+	 * a root with many branches, each a chain whose every link also carries a fan of leaves, all sheared, rotated and
+	 * non-uniformly scaled relative to their parents.
+	 */
+	private static AffineAxes build() {
+		AffineAxes root = new AffineAxes(new SGVec_3d(1, 2, 3), new SGVec_3d(2, 0.5, 0), new SGVec_3d(0.2, 1.5, 0.1), new SGVec_3d(0, -0.1, 0.8), false, null);
+		for(int b = 0; b < BRANCHES; b++) {
+			AffineAxes parent = root;
+			for(int d = 0; d < BRANCH_DEPTH; d++) {
+				AffineAxes link = new AffineAxes(new SGVec_3d(0.1 * b, 1, -0.05 * d), new SGVec_3d(1, 0.01 * b, 0), new SGVec_3d(0, 1.1, 0.2), new SGVec_3d(0.1, 0, 0.9), (b + d) % 4 == 0, parent);
+				link.rotateAboutY(0.03 * b + 0.1 * d);
+				for(int f = 0; f < FAN; f++) {
+					AffineAxes leaf = new AffineAxes(new SGVec_3d(f, 0.5, 0), new SGVec_3d(0.9, 0, 0.1 * f), new SGVec_3d(0, 1, 0), new SGVec_3d(0, 0.3, 1.2), false, link);
+					leaf.rotateAboutX(0.2 * f);
+				}
+				parent = link;
+			}
+		}
+		return root;
+	}
+
+	/**
+	 * edits a scattered selection of axes, the same selection in either hierarchy.
+	 */
+	private static void edit(SceneGraphUpdater updater, int round) {
+		for(int i = round; i < updater.size(); i += 37 * round) {
+			AffineAxes axes = updater.get(i);
+			axes.rotateAboutZ(0.05 * round);
+			if(i % 3 == 0)
+				axes.scaleXBy(1.01);
+		}
+	}
+
+	private static void update(String label, SceneGraphUpdater sequential, SceneGraphUpdater parallel) {
+		sequential.update();
+		parallel.update();
+		if(sequential.getLastRecomputedCount() != parallel.getLastRecomputedCount())
+			throw new AssertionError(label + ": recomputed " + sequential.getLastRecomputedCount() + " axes sequentially, "
+					+ parallel.getLastRecomputedCount() + " in parallel");
+		for(int i = 0; i < sequential.size(); i++)
+			compare(label + ", axes " + i, (AffineBasis)sequential.get(i).globalMBasis, (AffineBasis)parallel.get(i).globalMBasis);
+	}
+
+	private static void compare(String label, AffineBasis expected, AffineBasis actual) {
+		check(label + " translate x", expected.translate.x, actual.translate.x);
+		check(label + " translate y", expected.translate.y, actual.translate.y);
+		check(label + " translate z", expected.translate.z, actual.translate.z);
+		check(label + " rotation q0", expected.rotation.rotation.getQ0(), actual.rotation.rotation.getQ0());
+		check(label + " rotation q1", expected.rotation.rotation.getQ1(), actual.rotation.rotation.getQ1());
+		check(label + " rotation q2", expected.rotation.rotation.getQ2(), actual.rotation.rotation.getQ2());
+		check(label + " rotation q3", expected.rotation.rotation.getQ3(), actual.rotation.rotation.getQ3());
+		compare(label + " shear/scale", expected.getShearScaleMatrix(), actual.getShearScaleMatrix());
+		compare(label + " composed", expected.getComposedMatrix(), actual.getComposedMatrix());
+		compare(label + " inverse composed", expected.getInverseComposedMatrix(), actual.getInverseComposedMatrix());
+	}
+
+	private static void compare(String label, Matrix4d expected, Matrix4d actual) {
+		for(int m = 0; m < 16; m++)
+			check(label + " entry " + m, expected.val[m], actual.val[m]);
+	}
+
+	private static void check(String what, double expected, double actual) {
+		comparisons++;
+		if(Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual))
+			throw new AssertionError(what + ": " + expected + " sequentially, " + actual + " in parallel");
+	}
+}
@@ -0,0 +1,118 @@
+package math.doubleV;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fails unless {@link TransformBlender} produces bit for bit the same blend whether run sequentially or split into node
+ * ranges in parallel, and unless a matrix written into a pose with {@link TransformBlender#setNode(double[], int, Matrix4d)}
+ * and read back with {@link TransformBlender#toMatrix(double[], int, Matrix4d)} is the matrix it started as.
+ *
+ * The round trip covers rotations in each of the branches of the matrix to quaternion conversion, non-uniform and
+ * negative (mirroring) scales, and translations of varied magnitude.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class TransformBlenderTest {
+
+	/**well above the grain size used below, so the blend is split into many ranges.*/
+	private static final int NODES = 5000;
+	private static final int POSES = 4;
+	private static final int GRAIN_SIZE = 64;
+
+	/**allowed difference in a matrix entry, relative to the largest entry of its row (or absolute, below magnitude 1).*/
+	private static final double TOLERANCE = 1e-14;
+
+	private static int comparisons = 0;
+
+	public static void main(String[] args) {
+		Random random = new Random(20261018L);
+		blendInParallel(random);
+		roundTripMatrices(random);
+		System.out.println("PASSED (" + comparisons + " comparisons)");
+	}
+
+	private static void blendInParallel(Random random) {
+		double[][] poses = new double[POSES][];
+		for(int p = 0; p < POSES; p++)
+			poses[p] = randomPose(random, NODES);
+		double[] weights = {0.5, 1.25, 0.1, 2};
+		double[] sequential = new double[NODES * TransformBlender.STRIDE];
+		double[] parallel = new double[NODES * TransformBlender.STRIDE];
+
+		TransformBlender blender = new TransformBlender();
+		blender.setSequential();
+		blender.blend(poses, weights, POSES, sequential, 0, NODES);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			blender.setParallel(pool, GRAIN_SIZE);
+			blender.blend(poses, weights, POSES, parallel, 0, NODES);
+		} finally {
+			pool.shutdown();
+		}
+		for(int i = 0; i < sequential.length; i++) {
+			comparisons++;
+			if(Double.doubleToLongBits(sequential[i]) != Double.doubleToLongBits(parallel[i]))
+				throw new AssertionError("node " + (i / TransformBlender.STRIDE) + " value " + (i % TransformBlender.STRIDE)
+						+ ": blended " + sequential[i] + " sequentially, " + parallel[i] + " in parallel");
+		}
+	}
+
+	/**
+	 * builds matrices from random poses, converts each back into a pose and that pose into a matrix again.
+	 */
+	private static void roundTripMatrices(Random random) {
+		int count = 20000;
+		double[] source = randomPose(random, count);
+		//rotations by exactly pi about each axis, which have zero trace and a dominant diagonal entry.
+		for(int axis = 0; axis < 3; axis++) {
+			int i = axis * TransformBlender.STRIDE + TransformBlender.ROTATION;
+			source[i] = 0; source[i + 1] = 0; source[i + 2] = 0; source[i + 3] = 0;
+			source[i + 1 + axis] = 1;
+		}
+		double[] pose = new double[count * TransformBlender.STRIDE];
+		Matrix4d expected = new Matrix4d();
+		Matrix4d actual = new Matrix4d();
+		for(int n = 0; n < count; n++) {
+			TransformBlender.toMatrix(source, n, expected);
+			TransformBlender.setNode(pose, n, expected);
+			TransformBlender.toMatrix(pose, n, actual);
+			for(int row = 0; row < 4; row++) {
+				double magnitude = 1;
+				for(int col = 0; col < 4; col++)
+					magnitude = Math.max(magnitude, Math.abs(expected.val[col * 4 + row]));
+				for(int col = 0; col < 4; col++) {
+					comparisons++;
+					double e = expected.val[col * 4 + row], a = actual.val[col * 4 + row];
+					if(!(Math.abs(e - a) <= TOLERANCE * magnitude))
+						throw new AssertionError("node " + n + " entry (" + row + ", " + col + "): started as " + e
+								+ ", round tripped to " + a);
+				}
+			}
+		}
+	}
+
+	/**
+	 * random translations, unit quaternions and scales, a fifth of them mirrored along x.
+	 */
+	private static double[] randomPose(Random random, int nodes) {
+		double[] pose = new double[nodes * TransformBlender.STRIDE];
+		for(int n = 0; n < nodes; n++) {
+			int i = n * TransformBlender.STRIDE;
+			double magnitude = Math.pow(10, random.nextInt(5) - 2);
+			for(int k = 0; k < 3; k++)
+				pose[i + TransformBlender.TRANSLATION + k] = (random.nextDouble() * 2 - 1) * magnitude;
+			double w = random.nextGaussian(), x = random.nextGaussian(), y = random.nextGaussian(), z = random.nextGaussian();
+			double invLen = 1 / Math.sqrt(w * w + x * x + y * y + z * z);
+			pose[i + TransformBlender.ROTATION] = w * invLen;
+			pose[i + TransformBlender.ROTATION + 1] = x * invLen;
+			pose[i + TransformBlender.ROTATION + 2] = y * invLen;
+			pose[i + TransformBlender.ROTATION + 3] = z * invLen;
+			for(int k = 0; k < 3; k++)
+				pose[i + TransformBlender.SCALE + k] = 0.25 + random.nextDouble() * 3;
+			if(n % 5 == 0)
+				pose[i + TransformBlender.SCALE] = -pose[i + TransformBlender.SCALE];
+		}
+		return pose;
+	}
+}
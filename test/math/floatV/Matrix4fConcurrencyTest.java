@@ -0,0 +1,120 @@
+package math.floatV;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the Matrix4f and Quaternionf operations which need temporaries on many threads at once, each thread on its own
+ * instances, and fails if any thread ever computes a different result than the same sequence computed on a single thread.
+ *
+ * While those temporaries were static, threads overwrote each other's intermediate values and this test failed within
+ * a few iterations. Float arithmetic is deterministic in Java, so results are compared exactly.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class Matrix4fConcurrencyTest {
+
+	private static final int THREADS = 8;
+	private static final int ITERATIONS = 200000;
+
+	/**
+	 * one thread's operands and results. Every call to run() starts from the same inputs, so it always produces the same
+	 * output.
+	 */
+	static final class Sequence {
+		final float seed;
+		final Matrix4f a = new Matrix4f();
+		final Matrix4f b = new Matrix4f();
+		final Matrix4f c = new Matrix4f();
+		final Matrix4f[] blend = {new Matrix4f(), new Matrix4f(), new Matrix4f()};
+		final float[] weights = {0.2f, 0.5f, 0.3f};
+		final Quaternionf q = new Quaternionf();
+		final Quaternionf[] qs = {new Quaternionf(), new Quaternionf(), new Quaternionf()};
+		final SGVec_3f position = new SGVec_3f();
+		final SGVec_3f target = new SGVec_3f();
+		final SGVec_3f up = new SGVec_3f();
+		final SGVec_3f axis = new SGVec_3f();
+		final SGVec_3f v = new SGVec_3f();
+		final float[] result = new float[16 * 4 + 4 + 3];
+
+		Sequence(float seed) {
+			this.seed = seed;
+		}
+
+		float[] run() {
+			position.set(seed, 2f, -1f);
+			target.set(-3f, seed * 0.5f, 4f);
+			up.set(0.1f, 1f, 0f);
+			axis.set(0.3f, -0.4f, seed);
+
+			a.setToLookAt(position, target, up);
+			b.setToWorld(position, target, up);
+			a.mul(b).rotate(axis, 17f * seed).rotateRad(0.2f, 0.9f, -0.1f, seed);
+			a.inv();
+			b.setFromEulerAngles(10f * seed, -25f, 40f).tra();
+			b.rotate(position, target);
+
+			c.setToRotation(axis, 33f * seed).scale(1.5f, 0.5f, 2f).translate(1f, seed, -2f);
+			c.avg(a, 0.3f);
+			for(int i = 0; i < blend.length; i++)
+				blend[i].setToRotationRad(axis, seed * (i + 1)).translate(i, -i, seed);
+			blend[0].avg(blend, weights);
+			blend[1].avg(blend);
+
+			for(int i = 0; i < qs.length; i++)
+				qs[i].setFromAxisRad(axis, seed * 0.3f * (i + 1));
+			q.slerp(qs);
+			v.set(target);
+			q.transform(v);
+
+			System.arraycopy(a.val, 0, result, 0, 16);
+			System.arraycopy(b.val, 0, result, 16, 16);
+			System.arraycopy(c.val, 0, result, 32, 16);
+			System.arraycopy(blend[1].val, 0, result, 48, 16);
+			result[64] = q.getQ0(); result[65] = q.getQ1(); result[66] = q.getQ2(); result[67] = q.getQ3();
+			result[68] = v.x; result[69] = v.y; result[70] = v.z;
+			return result;
+		}
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		final float[][] expected = new float[THREADS][];
+		for(int t = 0; t < THREADS; t++)
+			expected[t] = new Sequence(0.5f + t * 0.25f).run().clone();
+
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS];
+		for(int t = 0; t < THREADS; t++) {
+			final int index = t;
+			threads[t] = new Thread("Matrix4fConcurrencyTest-" + t) {
+				@Override
+				public void run() {
+					Sequence sequence = new Sequence(0.5f + index * 0.25f);
+					try {
+						start.await();
+					} catch(InterruptedException e) {
+						return;
+					}
+					for(int i = 0; i < ITERATIONS && failure.get() == null; i++) {
+						float[] actual = sequence.run();
+						if(!Arrays.equals(actual, expected[index])) {
+							failure.compareAndSet(null, getName() + " diverged on iteration " + i
+									+ "\n  expected " + Arrays.toString(expected[index])
+									+ "\n  actual   " + Arrays.toString(actual));
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		start.countDown();
+		for(Thread thread : threads)
+			thread.join();
+
+		if(failure.get() != null)
+			throw new AssertionError(failure.get());
+		System.out.println("PASSED");
+	}
+}
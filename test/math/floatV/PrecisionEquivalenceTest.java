@@ -0,0 +1,145 @@
+package math.floatV;
+
+import math.doubleV.SGVec_3d;
+import math.doubleV.sgRayd;
+
+/**
+ * Builds the same bases and hierarchies in single and double precision, applies the same operations to both, and fails
+ * if any transformed point differs by more than single precision rounding can account for.
+ *
+ * The inputs deliberately include non-uniform scale, shear and reflection, and headings only slightly off
+ * orthogonal (which the single precision basis could not decompose while it used the double precision convergence threshold).
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class PrecisionEquivalenceTest {
+
+	/**allowed difference, relative to the magnitude of the double precision result (or absolute, below magnitude 1).*/
+	private static final double TOLERANCE = 1e-4;
+	private static final int DEPTH = 6;
+
+	private static final double[][] POINTS = {
+		{0, 0, 0}, {1, 0, 0}, {0, 1, 0}, {0, 0, 1}, {0.3, -1.2, 0.7}, {-2.5, 4, 1.5}
+	};
+
+	/**origin, x, y and z heading of each test basis.*/
+	private static final double[][][] BASES = {
+		//identity
+		{{0, 0, 0}, {1, 0, 0}, {0, 1, 0}, {0, 0, 1}},
+		//rotated, non-uniformly scaled
+		{{1, 2, 3}, {0, 2, 0}, {-0.5, 0, 0}, {0, 0, 3}},
+		//sheared
+		{{-0.5, 0.25, 2}, {2, 0.5, 0}, {0.2, 1.5, 0.1}, {0, -0.1, 0.8}},
+		//reflected and sheared
+		{{0, 1, 0}, {1, 0.1, 0}, {0, 1, 0.3}, {0, 0.2, -1}},
+		//a few ulps away from orthonormal
+		{{3, -1, 2}, {1, 1e-7, 0}, {-1e-7, 1, 2e-7}, {0, 0, 1.0000001}}
+	};
+
+	private static int comparisons = 0;
+
+	public static void main(String[] args) {
+		compareBases();
+		compareHierarchies();
+		System.out.println("PASSED (" + comparisons + " comparisons)");
+	}
+
+	private static void compareBases() {
+		for(int b = 0; b < BASES.length; b++) {
+			double[][] h = BASES[b];
+			math.doubleV.AffineBasis basisD = new math.doubleV.AffineBasis(
+					rayD(h[0], h[1]), rayD(h[0], h[2]), rayD(h[0], h[3]));
+			AffineBasis basisF = new AffineBasis(
+					rayF(h[0], h[1]), rayF(h[0], h[2]), rayF(h[0], h[3]));
+			SGVec_3d outD = new SGVec_3d();
+			SGVec_3f outF = new SGVec_3f();
+			for(double[] p : POINTS) {
+				basisD.applyTo(vecD(p), outD);
+				basisF.applyTo(vecF(p), outF);
+				check("basis " + b + " global of " + str(p), outD, outF);
+				basisD.setToLocalOf(vecD(p), outD);
+				basisF.setToLocalOf(vecF(p), outF);
+				check("basis " + b + " local of " + str(p), outD, outF);
+			}
+		}
+	}
+
+	private static void compareHierarchies() {
+		for(int b = 0; b < BASES.length; b++) {
+			math.doubleV.AffineAxes[] axesD = new math.doubleV.AffineAxes[DEPTH];
+			AffineAxes[] axesF = new AffineAxes[DEPTH];
+			for(int i = 0; i < DEPTH; i++) {
+				double[][] h = BASES[(b + i) % BASES.length];
+				axesD[i] = new math.doubleV.AffineAxes(vecD(h[0]), vecD(h[1]), vecD(h[2]), vecD(h[3]), false, i == 0 ? null : axesD[i - 1]);
+				axesF[i] = new AffineAxes(vecF(h[0]), vecF(h[1]), vecF(h[2]), vecF(h[3]), false, i == 0 ? null : axesF[i - 1]);
+			}
+			compareHierarchy("hierarchy " + b, axesD, axesF);
+
+			for(int i = 0; i < DEPTH; i++) {
+				double angle = 0.3 * (i + 1);
+				axesD[i].rotateAboutX(angle); axesF[i].rotateAboutX((float)angle);
+				axesD[i].rotateAboutY(-angle); axesF[i].rotateAboutY((float)-angle);
+				axesD[i].rotateAboutZ(angle * 0.5); axesF[i].rotateAboutZ((float)(angle * 0.5));
+			}
+			axesD[2].scaleXBy(1.5); axesF[2].scaleXBy(1.5f);
+			axesD[4].scaleZBy(0.5); axesF[4].scaleZBy(0.5f);
+			compareHierarchy("hierarchy " + b + " after rotation and scaling", axesD, axesF);
+		}
+	}
+
+	private static void compareHierarchy(String label, math.doubleV.AffineAxes[] axesD, AffineAxes[] axesF) {
+		SGVec_3d outD = new SGVec_3d();
+		SGVec_3f outF = new SGVec_3f();
+		math.doubleV.Matrix4d relativeD = new math.doubleV.Matrix4d();
+		Matrix4f relativeF = new Matrix4f();
+		for(int i = 0; i < axesD.length; i++) {
+			for(double[] p : POINTS) {
+				axesD[i].setToGlobalOf(vecD(p), outD);
+				axesF[i].setToGlobalOf(vecF(p), outF);
+				check(label + ", axes " + i + " global of " + str(p), outD, outF);
+				axesD[i].setToLocalOf(vecD(p), outD);
+				axesF[i].setToLocalOf(vecF(p), outF);
+				check(label + ", axes " + i + " local of " + str(p), outD, outF);
+			}
+			axesD[axesD.length - 1].setToTransformIn(axesD[i], relativeD);
+			axesF[axesF.length - 1].setToTransformIn(axesF[i], relativeF);
+			for(int m = 0; m < 16; m++)
+				check(label + ", leaf in axes " + i + " entry " + m, relativeD.val[m], relativeF.val[m]);
+		}
+	}
+
+	private static void check(String what, SGVec_3d expected, SGVec_3f actual) {
+		check(what + " x", expected.x, actual.x);
+		check(what + " y", expected.y, actual.y);
+		check(what + " z", expected.z, actual.z);
+	}
+
+	private static void check(String what, double expected, float actual) {
+		comparisons++;
+		double allowed = TOLERANCE * Math.max(1, Math.abs(expected));
+		if(!(Math.abs(expected - actual) <= allowed))
+			throw new AssertionError(what + ": double " + expected + ", float " + actual);
+	}
+
+	private static sgRayd rayD(double[] origin, double[] heading) {
+		SGVec_3d o = vecD(origin);
+		return new sgRayd(o, new SGVec_3d(origin[0] + heading[0], origin[1] + heading[1], origin[2] + heading[2]));
+	}
+
+	private static sgRayf rayF(double[] origin, double[] heading) {
+		SGVec_3f o = vecF(origin);
+		return new sgRayf(o, new SGVec_3f((float)(origin[0] + heading[0]), (float)(origin[1] + heading[1]), (float)(origin[2] + heading[2])));
+	}
+
+	private static SGVec_3d vecD(double[] v) {
+		return new SGVec_3d(v[0], v[1], v[2]);
+	}
+
+	private static SGVec_3f vecF(double[] v) {
+		return new SGVec_3f((float)v[0], (float)v[1], (float)v[2]);
+	}
+
+	private static String str(double[] v) {
+		return "(" + v[0] + ", " + v[1] + ", " + v[2] + ")";
+	}
+}
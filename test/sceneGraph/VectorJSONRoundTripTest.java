@@ -0,0 +1,160 @@
+package sceneGraph;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Random;
+
+/**
+ * Fails unless every double written by {@link VectorJSONWriter} is read back by {@link VectorJSONReader} with exactly
+ * the same bits, and unless every number the reader parses itself agrees bit for bit with Double.parseDouble.
+ *
+ * Covers random doubles across the whole finite range, mantissas of 15 to 18 significant digits on either side of
+ * 2^53, decimal exponents at and just past the reader's limit of 22, negative zero, and objects carrying unknown keys
+ * with nested values before and after their vector.
+ *
+ * Run with assertions enabled or not; failures are reported by throwing an AssertionError from main.
+ */
+public class VectorJSONRoundTripTest {
+
+	private static final int RANDOM_VECTORS = 200000;
+
+	private static int comparisons = 0;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(20261018L);
+		roundTripRandomBits(random);
+		roundTripRandomDecimals(random);
+		parseEdgeCases();
+		parseShortAndLongMantissas(random);
+		skipUnknownKeys();
+		System.out.println("PASSED (" + comparisons + " comparisons)");
+	}
+
+	/**
+	 * doubles with uniformly random bit patterns, so every exponent is exercised. Double.toString writes most of them
+	 * with 16 or 17 significant digits.
+	 */
+	private static void roundTripRandomBits(Random random) throws IOException {
+		double[] values = new double[RANDOM_VECTORS * 3];
+		for(int i = 0; i < values.length; i++) {
+			double d;
+			do {
+				d = Double.longBitsToDouble(random.nextLong());
+			} while(Double.isNaN(d) || Double.isInfinite(d));
+			values[i] = d;
+		}
+		values[0] = -0d; values[1] = 0d; values[2] = Double.MIN_VALUE;
+		values[3] = Double.MAX_VALUE; values[4] = -Double.MIN_NORMAL; values[5] = 1e22;
+		values[6] = 1e23; values[7] = 1e-22; values[8] = 1e-23;
+		roundTrip("random bits", values);
+	}
+
+	/**
+	 * short decimals scaled by powers of ten near the reader's exponent limit, the values most often written in practice.
+	 */
+	private static void roundTripRandomDecimals(Random random) throws IOException {
+		double[] values = new double[RANDOM_VECTORS * 3];
+		for(int i = 0; i < values.length; i++) {
+			int digits = 1 + random.nextInt(16);
+			long mantissa = (long)(random.nextDouble() * Math.pow(10, digits));
+			int exponent = random.nextInt(47) - 23;
+			double d = Double.parseDouble(mantissa + "e" + exponent);
+			values[i] = random.nextBoolean() ? -d : d;
+		}
+		roundTrip("random decimals", values);
+	}
+
+	private static void roundTrip(String label, double[] values) throws IOException {
+		StringWriter text = new StringWriter();
+		VectorJSONWriter writer = new VectorJSONWriter(text);
+		writer.beginArray();
+		writer.writePacked(values, 0, values.length / 3);
+		writer.endArray();
+		writer.flush();
+
+		double[] read = new double[values.length];
+		VectorJSONReader reader = new VectorJSONReader(new StringReader(text.toString()));
+		reader.beginArray();
+		int count = reader.readPacked(read, 0, values.length / 3);
+		reader.endArray();
+		if(count != values.length / 3)
+			throw new AssertionError(label + ": wrote " + (values.length / 3) + " vectors, read " + count);
+		for(int i = 0; i < values.length; i++)
+			check(label + " value " + i, values[i], read[i]);
+	}
+
+	private static void parseEdgeCases() throws IOException {
+		String[] numbers = {
+			"0", "-0", "0.0", "-0.0", "0e0", "-0e-5", "1", "-1", "1.5", "0.1", "0.30000000000000004",
+			"123456789012345", "999999999999999", "1234567890123456", "9007199254740992", "9007199254740993",
+			"9999999999999999", "12345678901234567", "123456789012345678", "1234567890123456789",
+			"1e22", "1e23", "1e-22", "1e-23", "1E+22", "1E+23", "-1e-22", "-1e-23",
+			"9007199254740991e22", "9007199254740991e-22", "9007199254740992e22", "9007199254740993e-22",
+			"1234567890123456e22", "1234567890123456e-22", "1234567890123456e23", "1234567890123456e-23",
+			"12345678901234567e22", "12345678901234567e-22", "0.0000000000000000000001", "0.00000000000000000000001",
+			"1.7976931348623157E308", "4.9E-324", "2.2250738585072014E-308", "1e400", "1e-400", "1e0001",
+			"000123.4500", "-000.000", "12.3456789012345678901234567890"
+		};
+		for(String n : numbers)
+			parseAndCompare(n);
+	}
+
+	/**
+	 * random mantissas of 15 to 18 digits, with decimal points inside them and exponents around the limit of 22.
+	 */
+	private static void parseShortAndLongMantissas(Random random) throws IOException {
+		StringBuilder n = new StringBuilder();
+		for(int i = 0; i < RANDOM_VECTORS; i++) {
+			n.setLength(0);
+			if(random.nextBoolean()) n.append('-');
+			int digits = 15 + random.nextInt(4);
+			int point = random.nextInt(digits + 1);
+			for(int d = 0; d < digits; d++) {
+				if(d == point) n.append('.');
+				n.append((char)((d == 0 ? '1' : '0') + random.nextInt(d == 0 ? 9 : 10)));
+			}
+			if(point == digits) n.append(".0");
+			if(random.nextBoolean()) n.append('e').append(random.nextInt(49) - 24);
+			parseAndCompare(n.toString());
+		}
+	}
+
+	/**
+	 * reads the given number as all three components of a vector, and compares each with Double.parseDouble.
+	 */
+	private static void parseAndCompare(String number) throws IOException {
+		double expected = Double.parseDouble(number);
+		double[] read = new double[3];
+		VectorJSONReader reader = new VectorJSONReader(new StringReader(
+				"[{\"dvec\":[" + number + ", " + number + " ,\n" + number + "]}]"));
+		reader.beginArray();
+		reader.readPacked(read, 0, 1);
+		reader.endArray();
+		for(int i = 0; i < 3; i++)
+			check("\"" + number + "\" component " + i, expected, read[i]);
+	}
+
+	private static void skipUnknownKeys() throws IOException {
+		String json = "[ {\"name\":\"a \\\"dvec\\\" b\", \"extra\":{\"k\":[1,{\"z\":null},\"]}\"],\"t\":true}, "
+				+ "\"dvec\":[1.5,-0.0,1e-23], \"after\":[[],{}], \"n\":-12.5e3},"
+				+ "{\"dve\":false,\"dvecs\":[9,9,9],\"dvec\":[ 2 , 3 , 4 ]},"
+				+ "{\"dvec\":[5,6,7],\"flag\":false}]";
+		double[] expected = {1.5, -0d, 1e-23, 2, 3, 4, 5, 6, 7};
+		double[] read = new double[expected.length];
+		VectorJSONReader reader = new VectorJSONReader(new StringReader(json));
+		reader.beginArray();
+		int count = reader.readPacked(read, 0, 10);
+		reader.endArray();
+		if(count != 3)
+			throw new AssertionError("read " + count + " vectors from objects with unknown keys, expected 3");
+		for(int i = 0; i < expected.length; i++)
+			check("unknown keys value " + i, expected[i], read[i]);
+	}
+
+	private static void check(String what, double expected, double actual) {
+		comparisons++;
+		if(Double.doubleToLongBits(expected) != Double.doubleToLongBits(actual))
+			throw new AssertionError(what + ": expected " + expected + ", read " + actual);
+	}
+}